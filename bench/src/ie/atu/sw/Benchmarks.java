@@ -0,0 +1,24 @@
+package ie.atu.sw;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+    /* Entry point of benchmarks.jar. Takes the usual JMH arguments (a name
+     * filter, -f, -wi, -p mapping=...) and always adds the GC profiler, so
+     * each result comes with its allocation rate (gc.alloc.rate.norm is
+     * bytes allocated per operation).
+     */
+public class Benchmarks {
+
+    public static void main(String[] args) throws RunnerException, CommandLineOptionException {
+        Options options = new OptionsBuilder()
+                .parent(new CommandLineOptions(args))
+                .addProfiler(GCProfiler.class)
+                .build();
+        new org.openjdk.jmh.runner.Runner(options).run();
+    }
+}
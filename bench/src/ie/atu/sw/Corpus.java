@@ -0,0 +1,85 @@
+package ie.atu.sw;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+    /* Generated text for the benchmarks, built from a mapping file's own words
+     * so the mix is realistic: mostly dictionary words, some with a known
+     * suffix glued on, and some unknown words that end up as hex.
+     * The same seed always gives the same text, so runs can be compared.
+     * Files are read and written in the platform charset, as the Encoder does.
+     */
+public class Corpus {
+    private static final long SEED = 42;
+
+    private final List<String> words = new ArrayList<>();
+    private final List<String> suffixes = new ArrayList<>();
+
+    public Corpus(String mappingFile) throws IOException {
+        try (BufferedReader br = new BufferedReader(new FileReader(mappingFile))) {
+            String line;
+            while ((line = br.readLine()) != null) {
+                String[] values = line.split(",");
+                if (values.length == 2) {
+                    String key = values[0].trim();
+                    if (key.startsWith("@@")) {
+                        suffixes.add(key.substring(2));
+                    } else if (!key.isEmpty()) {
+                        words.add(key);
+                    }
+                }
+            }
+        }
+    }
+
+    // count words: 70% dictionary words, 15% word + suffix, 15% unknown
+    public String[] words(int count) {
+        Random random = new Random(SEED);
+        String[] result = new String[count];
+        for (int i = 0; i < count; i++) {
+            int kind = random.nextInt(100);
+            String word = words.get(random.nextInt(words.size()));
+            if (kind < 70) {
+                result[i] = word;
+            } else if (kind < 85 && !suffixes.isEmpty()) {
+                result[i] = word + suffixes.get(random.nextInt(suffixes.size()));
+            } else {
+                result[i] = unknownWord(random);
+            }
+        }
+        return result;
+    }
+
+    // Writes about megabytes MB of text, twelve words to a line
+    public Path write(Path file, int megabytes) throws IOException {
+        long target = megabytes * 1024L * 1024L;
+        String[] sample = words(64 * 1024);
+        long written = 0;
+        try (BufferedWriter bw = new BufferedWriter(new FileWriter(file.toFile()))) {
+            for (int i = 0; written < target; i++) {
+                String word = sample[i % sample.length];
+                bw.write(word);
+                bw.write(i % 12 == 11 ? '\n' : ' ');
+                written += word.length() + 1;
+            }
+        }
+        return file;
+    }
+
+    private static String unknownWord(Random random) {
+        StringBuilder word = new StringBuilder();
+        int length = 3 + random.nextInt(8);
+        for (int i = 0; i < length; i++) {
+            // Mostly ASCII, with the odd accented letter for multi-byte UTF-8
+            word.append(random.nextInt(10) == 0 ? (char) ('à' + random.nextInt(20)) : (char) ('q' + random.nextInt(9)));
+        }
+        return word.toString();
+    }
+}
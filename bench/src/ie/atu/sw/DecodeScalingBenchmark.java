@@ -0,0 +1,95 @@
+package ie.atu.sw;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.FileReader;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+    /* Shows that decoding scales linearly with input size.
+     * Generates suffix-heavy encoded files from 1 MB up to a limit (1 GB by default),
+     * doubling each time, and times Decoder on each. With O(1) suffix handling
+     * the MB/s column should stay flat; the old lastIndexOf(" ") version fell
+     * away quickly as every suffix copied the whole output so far.
+     *
+     * Usage: java -cp <classes> ie.atu.sw.DecodeScalingBenchmark [mapping.csv] [maxMB]
+     */
+public class DecodeScalingBenchmark {
+    private static final int CHUNK_SIZE = 64 * 1024;
+
+    public static void main(String[] args) throws IOException {
+        String mappingFile = args.length > 0 ? args[0] : "encodings-10000.csv";
+        long maxMb = args.length > 1 ? Long.parseLong(args[1]) : 1024;
+
+        List<String> wordCodes = new ArrayList<>();
+        List<String> suffixCodes = new ArrayList<>();
+        try (BufferedReader br = new BufferedReader(new FileReader(mappingFile))) {
+            String line;
+            while ((line = br.readLine()) != null) {
+                String[] values = line.split(",");
+                if (values.length == 2) {
+                    (values[0].trim().startsWith("@@") ? suffixCodes : wordCodes).add(values[1].trim());
+                }
+            }
+        }
+
+        long maxHeap = Runtime.getRuntime().maxMemory();
+
+        System.out.printf("%8s %12s %10s %12s %10s%n", "MB", "stream ms", "MB/s", "in-memory ms", "MB/s");
+        for (long mb = 1; mb <= maxMb; mb *= 2) {
+            Path in = Files.createTempFile("decode-bench", ".txt");
+            Path out = Files.createTempFile("decode-bench", ".out");
+            try {
+                writeSuffixHeavyInput(in, mb * 1024 * 1024, wordCodes, suffixCodes);
+                Decoder decoder = new Decoder(in.toString(), mappingFile, out.toString());
+                decoder.setProgressListener(new NoOpProgressListener()); // Keep progress output out of the timings
+
+                long start = System.nanoTime();
+                decoder.decodeStream(CHUNK_SIZE);
+                long streamNanos = System.nanoTime() - start;
+
+                // decode() holds the whole file several times over, skip it once it won't fit
+                long memoryNanos = -1;
+                if (mb * 1024 * 1024 * 16 < maxHeap) {
+                    start = System.nanoTime();
+                    decoder.decode();
+                    memoryNanos = System.nanoTime() - start;
+                }
+
+                System.out.printf("%8d %12d %10.1f %12s %10s%n", mb, streamNanos / 1_000_000,
+                        mb / (streamNanos / 1e9),
+                        memoryNanos < 0 ? "-" : String.valueOf(memoryNanos / 1_000_000),
+                        memoryNanos < 0 ? "-" : String.format("%.1f", mb / (memoryNanos / 1e9)));
+            } finally {
+                Files.deleteIfExists(in);
+                Files.deleteIfExists(out);
+            }
+        }
+    }
+
+    // Every word code is followed by a suffix code, the worst case for the old decoder
+    private static void writeSuffixHeavyInput(Path file, long size, List<String> wordCodes,
+            List<String> suffixCodes) throws IOException {
+        try (BufferedWriter bw = Files.newBufferedWriter(file)) {
+            bw.write("[");
+            long written = 1;
+            int i = 0;
+            while (written < size) {
+                String word = wordCodes.get(i % wordCodes.size());
+                String suffix = suffixCodes.get(i % suffixCodes.size());
+                if (i > 0) {
+                    bw.write(",");
+                }
+                bw.write(word);
+                bw.write(",");
+                bw.write(suffix);
+                written += word.length() + suffix.length() + 2;
+                i++;
+            }
+            bw.write("]");
+        }
+    }
+}
@@ -0,0 +1,62 @@
+package ie.atu.sw;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+    /* Mapping load: parsing the CSV and building every index, against mapping
+     * a compiled .dict, against a hit in the session cache.
+     */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class DictionaryBenchmark {
+    @Param("encodings-10000.csv")
+    public String mapping;
+
+    private String csv;
+    private String compiled;
+
+    @Setup
+    public void setup() throws IOException {
+        // A copy, so compiling doesn't leave a .dict next to the real mapping file
+        Path dir = Files.createTempDirectory("prefixpacker-bench");
+        Path copy = Files.copy(Path.of(mapping), dir.resolve("mapping.csv"));
+        csv = copy.toString();
+        compiled = Dictionary.compile(csv).toString();
+        dir.toFile().deleteOnExit();
+        copy.toFile().deleteOnExit();
+        Path.of(compiled).toFile().deleteOnExit();
+    }
+
+    @Benchmark
+    public Dictionary fromCsv() {
+        return Dictionary.fromCsv(csv);
+    }
+
+    @Benchmark
+    public Dictionary mapCompiled() {
+        return Dictionary.loadUncached(compiled);
+    }
+
+    @Benchmark
+    public Dictionary cached() {
+        return Dictionary.load(csv);
+    }
+}
@@ -0,0 +1,105 @@
+package ie.atu.sw;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+    /* Whole files through encode()/decode(), their streaming versions and
+     * encodeMapped(), on generated corpora of sizeMb MB. One operation is
+     * one file, so MB/s is ops/s times sizeMb. The dictionary comes from the
+     * session cache, see DictionaryBenchmark for loading it.
+     */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 3, time = 5)
+@Fork(1)
+public class EncodeDecodeBenchmark {
+    private static final int CHUNK_SIZE = 64 * 1024;
+
+    @Param("encodings-10000.csv")
+    public String mapping;
+
+    @Param({ "1", "8", "32" })
+    public int sizeMb;
+
+    @Param({ "TEXT", "BINARY" })
+    public EncodedFormat format;
+
+    private Path dir;
+    private String text;
+    private String encoded;
+    private String output;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        dir = Files.createTempDirectory("prefixpacker-bench");
+        text = new Corpus(mapping).write(dir.resolve("text.txt"), sizeMb).toString();
+        encoded = dir.resolve("text.enc").toString();
+        output = dir.resolve("out.txt").toString();
+        Encoder encoder = encoder(text, encoded);
+        encoder.encodeStream(CHUNK_SIZE);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        for (String file : new String[] { text, encoded, output }) {
+            Files.deleteIfExists(Path.of(file));
+        }
+        Files.deleteIfExists(dir);
+    }
+
+    @Benchmark
+    public void encode() throws IOException {
+        encoder(text, output).encode();
+    }
+
+    @Benchmark
+    public void encodeStream() throws IOException {
+        encoder(text, output).encodeStream(CHUNK_SIZE);
+    }
+
+    @Benchmark
+    public void encodeMapped() throws IOException {
+        encoder(text, output).encodeMapped();
+    }
+
+    @Benchmark
+    public void decode() throws IOException {
+        decoder().decode();
+    }
+
+    @Benchmark
+    public void decodeStream() throws IOException {
+        decoder().decodeStream(CHUNK_SIZE);
+    }
+
+    private Encoder encoder(String in, String out) {
+        Encoder encoder = new Encoder(in, mapping, out);
+        encoder.setProgressListener(new NoOpProgressListener());
+        encoder.setFormat(format);
+        return encoder;
+    }
+
+    private Decoder decoder() {
+        Decoder decoder = new Decoder(encoded, mapping, output);
+        decoder.setProgressListener(new NoOpProgressListener());
+        return decoder;
+    }
+}
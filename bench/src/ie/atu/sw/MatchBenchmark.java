@@ -0,0 +1,120 @@
+package ie.atu.sw;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+    /* The per-word steps of encoding and decoding, each over the same
+     * WORDS generated words so the results are per word (or per code):
+     *   prefixMatch    longest word code at the start of the word
+     *   suffixLookup   exact suffix match on what the prefix left over
+     *   hexFallback    unknown text written as UTF-8 hex
+     *   codeLookup     code -> word or suffix, as the Decoder does
+     *   optimalSegment the whole word through OptimalSegmenter
+     */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MatchBenchmark {
+    private static final int WORDS = 10_000;
+
+    @Param("encodings-10000.csv")
+    public String mapping;
+
+    private Dictionary dictionary;
+    private String[] words;
+    private String[] remainders; // What is left after each word's longest prefix, "" if nothing
+    private String[] unknown; // Words with no prefix at all, encoded as hex
+    private String[] codes; // Each word's prefix code, as the Decoder sees them
+    private int[] numbers;
+    private EncodedWriter hexWriter;
+    private OptimalSegmenter segmenter;
+
+    @Setup
+    public void setup() throws IOException {
+        dictionary = Dictionary.load(mapping);
+        words = new Corpus(mapping).words(WORDS);
+        PrefixTrie prefixes = dictionary.words();
+        remainders = new String[WORDS];
+        codes = new String[WORDS];
+        numbers = new int[WORDS];
+        List<String> noPrefix = new ArrayList<>();
+        for (int i = 0; i < WORDS; i++) {
+            int node = prefixes.longestPrefix(words[i], 0, words[i].length());
+            if (node >= 0) {
+                remainders[i] = words[i].substring(prefixes.length(node));
+                codes[i] = prefixes.code(node);
+            } else {
+                remainders[i] = "";
+                codes[i] = "0";
+                noPrefix.add(words[i]);
+            }
+            numbers[i] = CodeTable.numberOf(codes[i]);
+        }
+        unknown = noPrefix.isEmpty() ? new String[] { "unknown" } : noPrefix.toArray(new String[0]);
+        hexWriter = new TextEncodedWriter(Writer.nullWriter());
+        segmenter = new OptimalSegmenter(dictionary, Segmentation.FEWEST_BYTES, EncodedFormat.TEXT);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(WORDS)
+    public void prefixMatch(Blackhole bh) {
+        PrefixTrie prefixes = dictionary.words();
+        for (String word : words) {
+            bh.consume(prefixes.longestPrefix(word, 0, word.length()));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(WORDS)
+    public void suffixLookup(Blackhole bh) {
+        PrefixTrie suffixes = dictionary.suffixes();
+        for (String remainder : remainders) {
+            bh.consume(suffixes.find(remainder, 0, remainder.length()));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(WORDS)
+    public void hexFallback() throws IOException {
+        for (int i = 0; i < WORDS; i++) {
+            hexWriter.raw(unknown[i % unknown.length]);
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(WORDS)
+    public void codeLookup(Blackhole bh) {
+        CodeTable table = dictionary.codes();
+        for (int i = 0; i < WORDS; i++) {
+            bh.consume(table.lookup(codes[i], numbers[i]));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(WORDS)
+    public void optimalSegment() throws IOException {
+        for (String word : words) {
+            segmenter.encode(word, hexWriter);
+        }
+    }
+}
@@ -0,0 +1,338 @@
+package ie.atu.sw;
+
+import java.io.IOException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+    /* Non-interactive mode, used when Runner is started with arguments:
+     *   encode|decode [--map file] --in <dir|glob|file> [--out dir] [--threads N]
+     *                 [--format text|binary|blocked|huffman] [--segmentation greedy|fewest_tokens|fewest_bytes]
+     *                 [--report json|csv|none] [--extend-map file [--top N]] [--mapped true|false]
+     *                 [--pipelined true|false] [--words first,count | --source-bytes start,end]
+     * Anything not given comes from settings.properties, as set in the menu.
+     * --extend-map counts the words written as hex across every file encoded
+     * and writes the mapping with the top N (default 100) of them added, see
+     * VocabularyAnalyzer.
+     * --words and --source-bytes decode only part of each file, which must be
+     * in the blocked format, see Decoder.decodeWords() and decodeSourceRange().
+     * --pipelined reads and writes each file on threads of its own while it
+     * is processed, see Pipeline, which pays off on slow storage.
+     * --mapped encodes from the input's UTF-8 bytes and decodes to UTF-8
+     * bytes, see Encoder.encodeMapped() and Decoder.decodeUtf8().
+     * If both are on, --mapped wins, see ProcessingMode.perFile().
+     *
+     * The dictionary is loaded once up front, every file then gets it from
+     * Dictionary's cache. Files are processed in streaming mode on a fixed
+     * pool of N threads, so memory stays at about N chunks however many
+     * files there are. Each file's size, time and MB/s is printed as it
+     * finishes, and the totals at the end.
+     *
+     * Exit codes: 0 all files done, 1 a file failed, 2 bad arguments.
+     */
+public class BatchRunner {
+    public static final int OK = 0;
+    public static final int FAILED = 1;
+    public static final int USAGE = 2;
+
+    private static final String ENCODED_EXTENSION = ".enc";
+
+    private final Settings settings;
+    private boolean encode;
+    private String mapFile;
+    private String in;
+    private String out = ".";
+    private int threads;
+    private String extendMap; // Extended mapping to write after encoding, or null
+    private int top = 100; // Entries --extend-map adds at most
+    private VocabularyAnalyzer vocabulary; // Every file's counts, merged as they finish
+    private long[] words; // First word and word count to decode, or null for all of them
+    private long[] sourceBytes; // Source byte range to decode, or null
+
+    public BatchRunner(Settings settings) {
+        this.settings = settings;
+        this.mapFile = settings.mapFile;
+        this.in = settings.inFile;
+        this.threads = settings.threads;
+    }
+
+    // Runs a batch from the command line arguments and returns the exit code
+    public static int run(String[] args) {
+        Settings settings = new Settings();
+        settings.load();
+        BatchRunner batch = new BatchRunner(settings);
+        try {
+            batch.parse(args);
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            printUsage();
+            return USAGE;
+        }
+        return batch.run();
+    }
+
+    private void parse(String[] args) {
+        if (args.length == 0 || !(args[0].equals("encode") || args[0].equals("decode"))) {
+            throw new IllegalArgumentException("First argument must be encode or decode");
+        }
+        encode = args[0].equals("encode");
+        for (int i = 1; i < args.length; i++) {
+            String option = args[i];
+            if (i + 1 >= args.length) {
+                throw new IllegalArgumentException("Missing value for " + option);
+            }
+            String value = args[++i];
+            switch (option) {
+                case "--map":
+                    mapFile = value;
+                    break;
+                case "--in":
+                    in = value;
+                    break;
+                case "--out":
+                    out = value;
+                    break;
+                case "--threads":
+                    threads = parsePositive(option, value);
+                    break;
+                case "--format":
+                    settings.outputFormat = EncodedFormat.parse(value);
+                    break;
+                case "--segmentation":
+                    settings.segmentation = Segmentation.parse(value);
+                    break;
+                case "--report":
+                    settings.metricsReport = ReportFormat.parse(value);
+                    break;
+                case "--extend-map":
+                    extendMap = value;
+                    break;
+                case "--mapped":
+                    settings.mappedInput = Boolean.parseBoolean(value);
+                    break;
+                case "--pipelined":
+                    settings.pipelined = Boolean.parseBoolean(value);
+                    break;
+                case "--top":
+                    top = parsePositive(option, value);
+                    break;
+                case "--words":
+                    words = parseRange(option, value);
+                    break;
+                case "--source-bytes":
+                    sourceBytes = parseRange(option, value);
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown option " + option);
+            }
+        }
+        if (mapFile == null || mapFile.isEmpty()) {
+            throw new IllegalArgumentException("No mapping file, give one with --map");
+        }
+        if (in == null || in.isEmpty()) {
+            throw new IllegalArgumentException("No input, give a directory, glob or file with --in");
+        }
+        if (extendMap != null && !encode) {
+            throw new IllegalArgumentException("--extend-map only works when encoding");
+        }
+        if ((words != null || sourceBytes != null) && encode) {
+            throw new IllegalArgumentException("--words and --source-bytes only work when decoding");
+        }
+        if (words != null && sourceBytes != null) {
+            throw new IllegalArgumentException("Give either --words or --source-bytes, not both");
+        }
+    }
+
+    private int run() {
+        long started = System.nanoTime();
+        List<Path> files;
+        Path outDir = Path.of(out);
+        try {
+            files = inputFiles(in);
+            Files.createDirectories(outDir);
+            Dictionary.load(mapFile); // Once, every file after this is a cache hit
+        } catch (IOException | RuntimeException e) {
+            System.err.println("Error: " + e.getMessage());
+            return FAILED;
+        }
+        if (files.isEmpty()) {
+            System.err.println("No files match " + in);
+            return FAILED;
+        }
+
+        if (extendMap != null) {
+            vocabulary = new VocabularyAnalyzer(settings.outputFormat);
+        }
+        int workers = Math.min(threads, files.size());
+        String mode = words != null || sourceBytes != null ? "range decoding"
+                : ProcessingMode.perFile(settings).report(settings);
+        System.out.println((encode ? "Encoding " : "Decoding ") + files.size() + " file(s) on " + workers
+                + " thread(s), " + mode);
+        ExecutorService pool = Executors.newFixedThreadPool(workers);
+        List<Future<Long>> results = new ArrayList<>();
+        for (Path file : files) {
+            Path target = outDir.resolve(outputName(file));
+            results.add(pool.submit(() -> process(file, target)));
+        }
+        pool.shutdown();
+
+        int failed = 0;
+        long totalBytes = 0;
+        for (Future<Long> result : results) {
+            try {
+                totalBytes += result.get();
+            } catch (ExecutionException e) {
+                failed++; // Already reported by process()
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return FAILED;
+            }
+        }
+
+        boolean extended = true;
+        if (vocabulary != null) {
+            try {
+                List<VocabularyAnalyzer.Candidate> added = vocabulary.writeExtendedMapping(mapFile,
+                        Path.of(extendMap), top);
+                System.out.println(vocabulary.distinct() + " distinct unknown word(s) and remainder(s), "
+                        + added.size() + " added to " + extendMap);
+            } catch (IOException e) {
+                System.err.println("Error writing extended mapping: " + e.getMessage());
+                extended = false;
+            }
+        }
+
+        double seconds = (System.nanoTime() - started) / 1e9;
+        System.out.printf("%d of %d file(s) done, %s in %.2f s, %.1f MB/s%n", files.size() - failed,
+                files.size(), megabytes(totalBytes), seconds, totalBytes / 1e6 / Math.max(seconds, 1e-9));
+        return failed == 0 && extended ? OK : FAILED;
+    }
+
+    // Encodes or decodes one file, returns its size in bytes
+    private long process(Path file, Path target) throws IOException {
+        long started = System.nanoTime();
+        try {
+            if (target.toAbsolutePath().normalize().equals(file.toAbsolutePath().normalize())) {
+                throw new IOException("Output would overwrite the input");
+            }
+            if (encode) {
+                Encoder encoder = new Encoder(file.toString(), mapFile, target.toString());
+                encoder.setProgressListener(new NoOpProgressListener());
+                encoder.setSegmentation(settings.segmentation);
+                encoder.setFormat(settings.outputFormat);
+                encoder.setReportFormat(settings.metricsReport);
+                encoder.setVocabularyAnalysis(vocabulary != null);
+                ProcessingMode.perFile(settings).encode(encoder, settings);
+                if (vocabulary != null) {
+                    synchronized (vocabulary) {
+                        vocabulary.merge(encoder.vocabulary());
+                    }
+                }
+            } else {
+                Decoder decoder = new Decoder(file.toString(), mapFile, target.toString());
+                decoder.setProgressListener(new NoOpProgressListener());
+                decoder.setReportFormat(settings.metricsReport);
+                if (words != null) {
+                    decoder.decodeWords(words[0], words[1]);
+                } else if (sourceBytes != null) {
+                    decoder.decodeSourceRange(sourceBytes[0], sourceBytes[1]);
+                } else {
+                    ProcessingMode.perFile(settings).decode(decoder, settings);
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            System.err.println("FAILED " + file + ": " + e.getMessage());
+            throw e;
+        }
+        long size = Files.size(file);
+        double seconds = (System.nanoTime() - started) / 1e9;
+        System.out.printf("OK     %s -> %s, %s in %.3f s, %.1f MB/s%n", file, target, megabytes(size), seconds,
+                size / 1e6 / Math.max(seconds, 1e-9));
+        return size;
+    }
+
+    /*
+     * A directory gives every regular file in it, a path with * ? [ or {
+     * in its file name is a glob over its directory, anything else is a
+     * single file. Sorted so runs are repeatable.
+     */
+    private static List<Path> inputFiles(String in) throws IOException {
+        Path path = Path.of(in);
+        if (Files.isDirectory(path)) {
+            return listFiles(path, file -> true);
+        }
+        String name = path.getFileName().toString();
+        if (name.matches(".*[*?\\[{].*")) {
+            Path dir = path.getParent() != null ? path.getParent() : Path.of(".");
+            PathMatcher matcher = FileSystems.getDefault().getPathMatcher("glob:" + name);
+            return listFiles(dir, file -> matcher.matches(file.getFileName()));
+        }
+        if (!Files.isRegularFile(path)) {
+            throw new IOException("Input not found: " + in);
+        }
+        return List.of(path);
+    }
+
+    private static List<Path> listFiles(Path dir, PathMatcher filter) throws IOException {
+        try (Stream<Path> stream = Files.list(dir)) {
+            return stream.filter(Files::isRegularFile).filter(filter::matches).sorted()
+                    .collect(Collectors.toList());
+        }
+    }
+
+    // a.txt -> a.txt.enc, and back again. Other decoded files get .dec
+    private String outputName(Path file) {
+        String name = file.getFileName().toString();
+        if (encode) {
+            return name + ENCODED_EXTENSION;
+        }
+        return name.endsWith(ENCODED_EXTENSION) ? name.substring(0, name.length() - ENCODED_EXTENSION.length())
+                : name + ".dec";
+    }
+
+    // As Settings.parsePositive(), but a bad value is an error rather than a default
+    private static int parsePositive(String option, String value) {
+        int parsed = Settings.parsePositive(value, 0);
+        if (parsed == 0) {
+            throw new IllegalArgumentException(option + " must be a positive number: " + value);
+        }
+        return parsed;
+    }
+
+    // "a,b" -> {a, b}, both zero or more
+    private static long[] parseRange(String option, String value) {
+        String[] parts = value.split(",");
+        try {
+            if (parts.length == 2) {
+                long[] range = { Long.parseLong(parts[0].trim()), Long.parseLong(parts[1].trim()) };
+                if (range[0] >= 0 && range[1] >= 0) {
+                    return range;
+                }
+            }
+        } catch (NumberFormatException e) {
+            // Reported below
+        }
+        throw new IllegalArgumentException(option + " must be two numbers, e.g. 100,50: " + value);
+    }
+
+    private static String megabytes(long bytes) {
+        return String.format("%.2f MB", bytes / 1e6);
+    }
+
+    private static void printUsage() {
+        System.err.println("Usage: encode|decode [--map file] --in <dir|glob|file> [--out dir] [--threads N]");
+        System.err.println("                     [--format text|binary|blocked|huffman] [--segmentation greedy|fewest_tokens|fewest_bytes]");
+        System.err.println("                     [--report json|csv|none] [--extend-map file [--top N]] [--mapped true|false]");
+        System.err.println("                     [--pipelined true|false] [--words first,count | --source-bytes start,end]");
+        System.err.println("Missing options are taken from settings.properties.");
+    }
+}
@@ -0,0 +1,156 @@
+package ie.atu.sw;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+
+    /* Reads the tokens written by BinaryEncodedWriter, one per call to next().
+     * There is nothing to split or strip, each token says how long it is,
+     * so reading is a few byte reads per code. It buffers the stream itself,
+     * so reading a byte is an array read rather than a stream call.
+     */
+public class BinaryCodeReader {
+    private final InputStream in;
+    private final byte[] buffer;
+    private long remaining; // Bytes still to be taken from in
+    private int position; // Next byte to read in buffer
+    private int limit; // End of the valid bytes in buffer
+    private int kind; // BinaryEncodedWriter.WORD, SUFFIX, RAW or CODE
+    private int number; // Code for WORD and SUFFIX
+    private String text; // Text for RAW, the code for CODE, made from textBytes when first asked for
+    private byte[] textBytes; // UTF-8 of text is textBytes[textOffset, textOffset + textLength)
+    private int textOffset;
+    private int textLength;
+    private boolean suffix; // True for SUFFIX, and for a CODE with the suffix flag
+
+    /*
+     * Reads tokens from the next length bytes of in and no further, e.g. one
+     * BLOCKED block. in must be past the header, see EncodedHeader.
+     */
+    public BinaryCodeReader(InputStream in, int bufferSize, long length) {
+        this.in = in;
+        this.buffer = new byte[Math.max(bufferSize, 16)];
+        this.remaining = length;
+    }
+
+    // Moves to the next token, false at the end of the input
+    public boolean next() throws IOException {
+        int first = read();
+        if (first < 0) {
+            return false;
+        }
+        long header = readVarint(first);
+        kind = (int) (header & 3);
+        long value = header >>> 2;
+        switch (kind) {
+            case BinaryEncodedWriter.WORD:
+            case BinaryEncodedWriter.SUFFIX:
+                if (value > Integer.MAX_VALUE) {
+                    throw new IOException("Code out of range: " + value);
+                }
+                number = (int) value;
+                suffix = kind == BinaryEncodedWriter.SUFFIX;
+                text = null;
+                textBytes = null;
+                break;
+            case BinaryEncodedWriter.RAW:
+                readText(value);
+                suffix = false;
+                break;
+            default:
+                readText(value >>> 1);
+                suffix = (value & 1) != 0;
+                break;
+        }
+        return true;
+    }
+
+    public int kind() {
+        return kind;
+    }
+
+    public int number() {
+        return number;
+    }
+
+    public String text() {
+        if (text == null && textBytes != null) {
+            text = new String(textBytes, textOffset, textLength, StandardCharsets.UTF_8);
+        }
+        return text;
+    }
+
+    // The UTF-8 bytes of text(), valid until the next call to next(), see DecodedByteWriter
+    public byte[] textBytes() {
+        return textBytes;
+    }
+
+    public int textOffset() {
+        return textOffset;
+    }
+
+    public int textLength() {
+        return textLength;
+    }
+
+    public boolean isSuffix() {
+        return suffix;
+    }
+
+    private long readVarint(int first) throws IOException {
+        long value = first & 0x7F;
+        int shift = 7;
+        int b = first;
+        while ((b & 0x80) != 0) {
+            b = read();
+            if (b < 0 || shift > 63) {
+                throw new EOFException("Truncated or corrupt code in encoded file");
+            }
+            value |= (long) (b & 0x7F) << shift;
+            shift += 7;
+        }
+        return value;
+    }
+
+    // Finds the bytes of a RAW or CODE token's text, text() only decodes them if asked
+    private void readText(long length) throws IOException {
+        if (length > Integer.MAX_VALUE) {
+            throw new IOException("Text too long in encoded file: " + length);
+        }
+        int size = (int) length;
+        text = null;
+        textLength = size;
+        if (limit - position >= size) {
+            // Usually the whole text is already buffered, it is used in place
+            textBytes = buffer;
+            textOffset = position;
+            position += size;
+            return;
+        }
+        byte[] bytes = new byte[size];
+        int copied = limit - position;
+        System.arraycopy(buffer, position, bytes, 0, copied);
+        position = limit;
+        if (size - copied > remaining || in.readNBytes(bytes, copied, size - copied) != size - copied) {
+            throw new EOFException("Truncated text in encoded file");
+        }
+        remaining -= size - copied;
+        textBytes = bytes;
+        textOffset = 0;
+    }
+
+    // Next byte, or -1 at the end of the input
+    private int read() throws IOException {
+        if (position == limit) {
+            limit = remaining > 0 ? in.read(buffer, 0, (int) Math.min(buffer.length, remaining)) : -1;
+            position = 0;
+            if (limit <= 0) {
+                limit = 0;
+                return -1;
+            }
+            remaining -= limit;
+        }
+        return buffer[position++] & 0xFF;
+    }
+}
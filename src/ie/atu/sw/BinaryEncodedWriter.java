@@ -0,0 +1,97 @@
+package ie.atu.sw;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+
+    /* Compact binary output: a header with the dictionary's fingerprint (see
+     * EncodedHeader), then one token after another.
+     * Each token starts with a varint (7 bits per byte, high bit set on all but
+     * the last byte) holding (value << 2) | kind:
+     *   WORD     value is a numeric dictionary code
+     *   SUFFIX   value is a numeric "@@" dictionary code
+     *   RAW      value is a byte count, followed by that many bytes of UTF-8 text
+     *   CODE     value is (byte count << 1) | suffix flag, followed by a
+     *            non-numeric code as UTF-8, for mapping files that use them
+     * Codes under 32 take one byte, under 4096 two bytes, against up to five
+     * chars plus a comma in the text format, and raw text is stored as is
+     * instead of as two hex chars per byte.
+     */
+public class BinaryEncodedWriter implements EncodedWriter {
+    static final int WORD = 0;
+    static final int SUFFIX = 1;
+    static final int RAW = 2;
+    static final int CODE = 3;
+
+    private final OutputStream out;
+
+    // fingerprint is that of the dictionary the codes come from, see Dictionary.fingerprint()
+    public BinaryEncodedWriter(OutputStream out, long fingerprint) throws IOException {
+        this(out);
+        EncodedHeader.write(out, EncodedFormat.BINARY, fingerprint);
+    }
+
+    // Without the header only tokens are written, for a fragment joined up later
+    public BinaryEncodedWriter(OutputStream out) {
+        this.out = out;
+    }
+
+    @Override
+    public void code(String code, boolean suffix) throws IOException {
+        int number = CodeTable.numberOf(code);
+        if (number >= 0) {
+            writeVarint(((long) number << 2) | (suffix ? SUFFIX : WORD));
+        } else {
+            byte[] bytes = code.getBytes(StandardCharsets.UTF_8);
+            writeVarint(((((long) bytes.length << 1) | (suffix ? 1 : 0)) << 2) | CODE);
+            out.write(bytes);
+        }
+    }
+
+    // As code(String, boolean), read from the dictionary's bytes so no String is made for an off-heap one
+    @Override
+    public void code(StringPool strings, int id, boolean suffix) throws IOException {
+        int number = strings.number(id);
+        if (number >= 0) {
+            writeVarint(((long) number << 2) | (suffix ? SUFFIX : WORD));
+        } else {
+            writeVarint(((((long) strings.length(id) << 1) | (suffix ? 1 : 0)) << 2) | CODE);
+            strings.writeTo(id, out);
+        }
+    }
+
+    @Override
+    public void raw(String text) throws IOException {
+        byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+        raw(bytes, 0, bytes.length);
+    }
+
+    @Override
+    public void raw(byte[] utf8, int offset, int length) throws IOException {
+        writeVarint(((long) length << 2) | RAW);
+        out.write(utf8, offset, length);
+    }
+
+    @Override
+    public void finish() throws IOException {
+        out.flush();
+    }
+
+    // Bytes writeVarint() takes for value, for sizing a split before it is written, see OptimalSegmenter
+    static int varintLength(long value) {
+        int length = 1;
+        while ((value & ~0x7FL) != 0) {
+            length++;
+            value >>>= 7;
+        }
+        return length;
+    }
+
+    private void writeVarint(long value) throws IOException {
+        while ((value & ~0x7FL) != 0) {
+            out.write((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.write((int) value);
+    }
+}
@@ -0,0 +1,149 @@
+package ie.atu.sw;
+
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+    /* The footer of a BLOCKED encoded file: where each block starts in the
+     * file, the first word it holds and where that word started in the
+     * source text. Found through a fixed-size trailer at the very end, so
+     * it is read without touching any block.
+     *
+     * Layout (big-endian, after the last block):
+     *   per block: file offset, first word, source byte offset   (3 longs)
+     *   total words                                               (long)
+     *   trailer: index offset (long), block count (int), "PPXI"
+     *
+     * Words are counted as the decoder writes them: every token that isn't
+     * a suffix starts one, so a hex remainder after a prefix code is a
+     * word of its own. Blocks always start at a source word, so each one
+     * decodes on its own.
+     */
+public class BlockIndex {
+    static final byte[] INDEX_MAGIC = { 'P', 'P', 'X', 'I' };
+    private static final int TRAILER_BYTES = 8 + 4 + 4;
+
+    private final long[] offsets; // File offset of each block, plus the index offset at the end
+    private final long[] firstWords; // First word of each block
+    private final long[] sourceOffsets; // Source byte offset of each block's first word
+    private final long words; // Words in the whole file
+
+    BlockIndex(long[] offsets, long[] firstWords, long[] sourceOffsets, long words) {
+        this.offsets = offsets;
+        this.firstWords = firstWords;
+        this.sourceOffsets = sourceOffsets;
+        this.words = words;
+    }
+
+    public int blocks() {
+        return firstWords.length;
+    }
+
+    public long words() {
+        return words;
+    }
+
+    // File offset of block b's first token
+    public long start(int block) {
+        return offsets[block];
+    }
+
+    // File offset just after block b, the next block or the index
+    public long end(int block) {
+        return offsets[block + 1];
+    }
+
+    public long firstWord(int block) {
+        return firstWords[block];
+    }
+
+    public long sourceOffset(int block) {
+        return sourceOffsets[block];
+    }
+
+    // O(log b) - the block holding a word, the last block for anything past the end
+    public int blockOfWord(long word) {
+        return floor(firstWords, word);
+    }
+
+    // O(log b) - the block whose source text covers a byte offset
+    public int blockOfSource(long offset) {
+        return floor(sourceOffsets, offset);
+    }
+
+    void writeTo(DataOutputStream out) throws IOException {
+        for (int block = 0; block < blocks(); block++) {
+            out.writeLong(offsets[block]);
+            out.writeLong(firstWords[block]);
+            out.writeLong(sourceOffsets[block]);
+        }
+        out.writeLong(words);
+        out.writeLong(offsets[blocks()]);
+        out.writeInt(blocks());
+        out.write(INDEX_MAGIC);
+    }
+
+    // O(b) - reads the trailer, then the index it points to
+    public static BlockIndex read(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size < EncodedFormat.BLOCKED_MAGIC.length + TRAILER_BYTES) {
+                throw new EOFException("Encoded file is too short for a block index: " + file);
+            }
+            ByteBuffer trailer = readFully(channel, size - TRAILER_BYTES, TRAILER_BYTES);
+            long indexOffset = trailer.getLong();
+            int blocks = trailer.getInt();
+            byte[] magic = new byte[INDEX_MAGIC.length];
+            trailer.get(magic);
+            long indexBytes = (long) blocks * 24 + 8;
+            if (!Arrays.equals(magic, INDEX_MAGIC) || blocks < 0
+                    || indexOffset + indexBytes != size - TRAILER_BYTES) {
+                throw new IOException("Missing or corrupt block index: " + file);
+            }
+
+            ByteBuffer index = readFully(channel, indexOffset, (int) indexBytes);
+            long[] offsets = new long[blocks + 1];
+            long[] firstWords = new long[blocks];
+            long[] sourceOffsets = new long[blocks];
+            for (int block = 0; block < blocks; block++) {
+                offsets[block] = index.getLong();
+                firstWords[block] = index.getLong();
+                sourceOffsets[block] = index.getLong();
+            }
+            offsets[blocks] = indexOffset;
+            return new BlockIndex(offsets, firstWords, sourceOffsets, index.getLong());
+        }
+    }
+
+    private static ByteBuffer readFully(FileChannel channel, long position, int length) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new EOFException("Truncated block index");
+            }
+        }
+        return buffer.flip();
+    }
+
+    // Last index whose value is <= key, or 0 if there is none
+    private static int floor(long[] values, long key) {
+        int low = 0;
+        int high = values.length - 1;
+        int found = 0;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            if (values[mid] <= key) {
+                found = mid;
+                low = mid + 1;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return found;
+    }
+}
@@ -0,0 +1,130 @@
+package ie.atu.sw;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+
+    /* Seekable binary output: a header with the dictionary's fingerprint
+     * (see EncodedHeader), then blocks of the same varint tokens
+     * BinaryEncodedWriter writes, then a BlockIndex footer.
+     * A block is closed once it holds blockBytes or more, but only ever cut
+     * before a new source word, so it can be decoded without the blocks
+     * before it. Decoder.decodeWords() and decodeSourceRange() then read
+     * just the blocks a range covers.
+     *
+     * Source byte offsets come from startWord(), which only
+     * Encoder.encodeMapped() calls, so that is what writes this format.
+     */
+public class BlockedEncodedWriter implements EncodedWriter {
+    public static final int DEFAULT_BLOCK_BYTES = 16 * 1024;
+
+    private final OutputStream out;
+    private final int blockBytes; // Block size to aim for
+    private final ByteArrayOutputStream block; // Tokens of the open block
+    private final BinaryEncodedWriter tokens; // Writes into block
+    private boolean open; // A block has been started and not yet written
+    private long position; // Bytes written to out so far
+    private long words; // Words written so far, see BlockIndex
+    private long sourceOffset; // Where the current source word starts
+
+    private int blocks;
+    private long[] offsets = new long[64];
+    private long[] firstWords = new long[64];
+    private long[] sourceOffsets = new long[64];
+
+    public BlockedEncodedWriter(OutputStream out, long fingerprint) throws IOException {
+        this(out, DEFAULT_BLOCK_BYTES, fingerprint);
+    }
+
+    // fingerprint is that of the dictionary the codes come from, see Dictionary.fingerprint()
+    public BlockedEncodedWriter(OutputStream out, int blockBytes, long fingerprint) throws IOException {
+        this.out = out;
+        this.blockBytes = Math.max(1, blockBytes);
+        this.block = new ByteArrayOutputStream(this.blockBytes + 64);
+        this.tokens = new BinaryEncodedWriter(block);
+        EncodedHeader.write(out, EncodedFormat.BLOCKED, fingerprint);
+        position = EncodedHeader.MAX_LENGTH;
+    }
+
+    // The only place a block can end, a word is never split between two
+    @Override
+    public void startWord(long sourceOffset) throws IOException {
+        this.sourceOffset = sourceOffset;
+        if (block.size() >= blockBytes) {
+            writeBlock();
+        }
+    }
+
+    @Override
+    public void code(String code, boolean suffix) throws IOException {
+        openBlock();
+        if (!suffix) {
+            words++;
+        }
+        tokens.code(code, suffix);
+    }
+
+    @Override
+    public void code(StringPool strings, int id, boolean suffix) throws IOException {
+        openBlock();
+        if (!suffix) {
+            words++;
+        }
+        tokens.code(strings, id, suffix);
+    }
+
+    @Override
+    public void raw(String text) throws IOException {
+        openBlock();
+        words++;
+        tokens.raw(text);
+    }
+
+    @Override
+    public void raw(byte[] utf8, int offset, int length) throws IOException {
+        openBlock();
+        words++;
+        tokens.raw(utf8, offset, length);
+    }
+
+    // Writes the last block and the index after it
+    @Override
+    public void finish() throws IOException {
+        writeBlock();
+        offsets = Arrays.copyOf(offsets, blocks + 1);
+        offsets[blocks] = position;
+        BlockIndex index = new BlockIndex(offsets, Arrays.copyOf(firstWords, blocks),
+                Arrays.copyOf(sourceOffsets, blocks), words);
+        DataOutputStream data = new DataOutputStream(out);
+        index.writeTo(data);
+        data.flush();
+    }
+
+    // Records where a block starts, on its first token
+    private void openBlock() {
+        if (open) {
+            return;
+        }
+        if (blocks == firstWords.length) {
+            offsets = Arrays.copyOf(offsets, blocks * 2);
+            firstWords = Arrays.copyOf(firstWords, blocks * 2);
+            sourceOffsets = Arrays.copyOf(sourceOffsets, blocks * 2);
+        }
+        offsets[blocks] = position;
+        firstWords[blocks] = words;
+        sourceOffsets[blocks] = sourceOffset;
+        blocks++;
+        open = true;
+    }
+
+    private void writeBlock() throws IOException {
+        if (open) {
+            block.writeTo(out);
+            position += block.size();
+            block.reset();
+            open = false;
+        }
+    }
+}
@@ -0,0 +1,234 @@
+package ie.atu.sw;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+    /* A bounded hand-off of bytes between two pipeline stages on different
+     * threads, see Encoder.encodePipelined(). A fixed set of buffers goes
+     * round in a loop: the producer takes a free one, fills it and passes
+     * it on, the consumer empties it and hands it back. When every buffer
+     * is full the producer waits, so a fast stage can never run more than
+     * `buffers` buffers ahead of a slow one (backpressure), and nothing is
+     * allocated once the pipe is made.
+     *
+     * The producer writes to sink() and closes it at the end, the consumer
+     * reads source(). One producer and one consumer thread. If either side
+     * fails it calls abort(), which wakes the other side with an IOException
+     * rather than leaving it waiting for a buffer that will never come.
+     */
+public class BufferPipe {
+    private static final Buffer END = new Buffer(0); // Passed on after the last buffer, or on abort()
+    private static final Buffer ABORTED = new Buffer(0); // Handed back to wake a waiting producer
+
+    private final BlockingQueue<Buffer> free; // Empty buffers, for the producer
+    private final BlockingQueue<Buffer> full; // Filled buffers in order, for the consumer
+    private volatile boolean aborted;
+
+    public BufferPipe(int buffers, int bufferSize) {
+        free = new ArrayBlockingQueue<>(buffers + 1); // Room for ABORTED on top of every buffer
+        full = new ArrayBlockingQueue<>(buffers + 1); // Room for END on top of every buffer
+        for (int i = 0; i < buffers; i++) {
+            free.add(new Buffer(bufferSize));
+        }
+    }
+
+    // Stops both sides, a stage calls this when it fails
+    public void abort() {
+        aborted = true;
+        free.offer(ABORTED);
+        full.offer(END);
+    }
+
+    public boolean aborted() {
+        return aborted;
+    }
+
+    public OutputStream sink() {
+        return new Sink();
+    }
+
+    public InputStream source() {
+        return new Source();
+    }
+
+    // Producer stage that only moves bytes: reads all of in into the pipe and ends it. Returns the bytes read
+    public long fill(InputStream in) throws IOException {
+        Sink sink = new Sink();
+        long total = sink.readFrom(in);
+        sink.close();
+        return total;
+    }
+
+    // Consumer stage that only moves bytes: writes everything that comes through to out. Returns the bytes written
+    public long drainTo(OutputStream out) throws IOException {
+        return new Source().writeTo(out);
+    }
+
+    private static Buffer take(BlockingQueue<Buffer> queue) throws IOException {
+        try {
+            return queue.take();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted waiting on the pipeline");
+        }
+    }
+
+    private void checkAborted() throws IOException {
+        if (aborted) {
+            throw new IOException("Pipeline stopped, another stage failed");
+        }
+    }
+
+    private static class Buffer {
+        final byte[] bytes;
+        int length;
+
+        Buffer(int size) {
+            bytes = new byte[size];
+        }
+    }
+
+    // The producer's side, fills a buffer and passes it on when it is full
+    private class Sink extends OutputStream {
+        private Buffer buffer; // Being filled, null until the first write
+        private boolean closed;
+
+        @Override
+        public void write(int b) throws IOException {
+            buffer().bytes[buffer.length++] = (byte) b;
+        }
+
+        @Override
+        public void write(byte[] bytes, int offset, int length) throws IOException {
+            while (length > 0) {
+                Buffer target = buffer();
+                int n = Math.min(length, target.bytes.length - target.length);
+                System.arraycopy(bytes, offset, target.bytes, target.length, n);
+                target.length += n;
+                offset += n;
+                length -= n;
+            }
+        }
+
+        // Reads straight into the pipe's buffers, no copy
+        long readFrom(InputStream in) throws IOException {
+            long total = 0;
+            int n;
+            while ((n = in.read(buffer().bytes, buffer.length, buffer.bytes.length - buffer.length)) != -1) {
+                buffer.length += n;
+                total += n;
+            }
+            return total;
+        }
+
+        // Passes on the part-filled buffer, if any
+        @Override
+        public void flush() throws IOException {
+            if (buffer != null && buffer.length > 0) {
+                pass();
+            }
+        }
+
+        // Passes on what is left and ends the stream
+        @Override
+        public void close() throws IOException {
+            if (!closed) {
+                closed = true;
+                flush();
+                checkAborted();
+                full.offer(END);
+            }
+        }
+
+        // The buffer being filled, a new one once the last is full
+        private Buffer buffer() throws IOException {
+            if (buffer != null && buffer.length == buffer.bytes.length) {
+                pass();
+            }
+            if (buffer == null) {
+                buffer = take(free);
+                if (buffer == ABORTED) {
+                    free.offer(ABORTED); // Anything else waiting wakes too
+                    buffer = null;
+                    checkAborted();
+                }
+                buffer.length = 0;
+            }
+            return buffer;
+        }
+
+        private void pass() throws IOException {
+            checkAborted();
+            full.add(buffer); // Always room, there is a place for every buffer
+            buffer = null;
+        }
+    }
+
+    // The consumer's side, reads each buffer through and then hands it back
+    private class Source extends InputStream {
+        private Buffer buffer; // Being read, null before the first read and at the end
+        private int position;
+        private boolean ended;
+
+        @Override
+        public int read() throws IOException {
+            return buffer() ? buffer.bytes[position++] & 0xFF : -1;
+        }
+
+        @Override
+        public int read(byte[] bytes, int offset, int length) throws IOException {
+            if (length == 0) {
+                return 0;
+            }
+            if (!buffer()) {
+                return -1;
+            }
+            int n = Math.min(length, buffer.length - position);
+            System.arraycopy(buffer.bytes, position, bytes, offset, n);
+            position += n;
+            return n;
+        }
+
+        // Writes straight from the pipe's buffers, no copy
+        long writeTo(OutputStream out) throws IOException {
+            long total = 0;
+            while (buffer()) {
+                out.write(buffer.bytes, position, buffer.length - position);
+                total += buffer.length - position;
+                position = buffer.length;
+            }
+            return total;
+        }
+
+        @Override
+        public int available() {
+            return buffer == null ? 0 : buffer.length - position;
+        }
+
+        // False at the end of the stream, otherwise there are bytes left in buffer
+        private boolean buffer() throws IOException {
+            while (buffer == null || position == buffer.length) {
+                if (ended) {
+                    return false;
+                }
+                if (buffer != null) {
+                    free.offer(buffer); // Always room, as for full
+                    buffer = null;
+                }
+                Buffer next = take(full);
+                checkAborted();
+                if (next == END) {
+                    ended = true;
+                    return false;
+                }
+                buffer = next;
+                position = 0;
+            }
+            return true;
+        }
+    }
+}
@@ -0,0 +1,77 @@
+package ie.atu.sw;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.IntBuffer;
+
+    /* Reads and writes the array sections of a compiled dictionary.
+     * Each section is an int element count followed by the elements, with the
+     * data aligned to 8 bytes so the views over a mapped file are aligned.
+     * Reading doesn't copy anything, it returns a view into the mapped buffer.
+     */
+public final class BufferSections {
+    private static final int ALIGNMENT = 8;
+
+    private BufferSections() {
+    }
+
+    public static void writeInts(DataOutputStream out, IntBuffer values) throws IOException {
+        writeHeader(out, values.limit());
+        for (int i = 0; i < values.limit(); i++) {
+            out.writeInt(values.get(i));
+        }
+    }
+
+    public static void writeChars(DataOutputStream out, CharBuffer values) throws IOException {
+        writeHeader(out, values.limit());
+        for (int i = 0; i < values.limit(); i++) {
+            out.writeChar(values.get(i));
+        }
+    }
+
+    public static void writeBytes(DataOutputStream out, ByteBuffer values) throws IOException {
+        writeHeader(out, values.limit());
+        for (int i = 0; i < values.limit(); i++) {
+            out.writeByte(values.get(i));
+        }
+    }
+
+    public static IntBuffer readInts(ByteBuffer in) {
+        return slice(in, 4).asIntBuffer();
+    }
+
+    public static CharBuffer readChars(ByteBuffer in) {
+        return slice(in, 2).asCharBuffer();
+    }
+
+    public static ByteBuffer readBytes(ByteBuffer in) {
+        return slice(in, 1);
+    }
+
+    // O(1) - moves the position past the section and returns a view of its data
+    private static ByteBuffer slice(ByteBuffer in, int elementSize) {
+        int count = in.getInt();
+        align(in);
+        int bytes = count * elementSize;
+        ByteBuffer section = in.slice();
+        section.limit(bytes);
+        in.position(in.position() + bytes);
+        return section;
+    }
+
+    private static void writeHeader(DataOutputStream out, int count) throws IOException {
+        out.writeInt(count);
+        while (out.size() % ALIGNMENT != 0) {
+            out.writeByte(0);
+        }
+    }
+
+    private static void align(ByteBuffer in) {
+        int misaligned = in.position() % ALIGNMENT;
+        if (misaligned != 0) {
+            in.position(in.position() + ALIGNMENT - misaligned);
+        }
+    }
+}
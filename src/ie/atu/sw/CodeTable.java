@@ -0,0 +1,224 @@
+package ie.atu.sw;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.util.Arrays;
+import java.util.Map;
+
+    /* Decode index: code -> word or suffix, in a single lookup.
+     * Entry i has its code, its text and a kind (word or suffix). Entries are
+     * found through an open addressing table of entry ids, probed linearly
+     * from the code's String.hashCode(), which is fixed by the Java spec so
+     * the table can be written to a compiled dictionary and mapped back.
+     *
+     * Mapping files normally number their codes 0, 1, 2, ... so when every
+     * numeric code is small enough there is also a flat array indexed by the
+     * code's int value. A code parsed straight to an int then needs no String,
+     * no hashing and no char comparison. Sparse or non-numeric codes fall back
+     * to the hash table.
+     */
+public class CodeTable {
+    public static final byte WORD = 0;
+    public static final byte SUFFIX = 1;
+
+    private final IntBuffer entryCodes; // StringPool id of each entry's code
+    private final IntBuffer entryTexts; // StringPool id of each entry's word, or suffix without "@@"
+    private final ByteBuffer entryKinds; // WORD or SUFFIX
+    private final IntBuffer slots; // Entry id or -1, size is a power of two
+    private final IntBuffer dense; // Entry id or -1 by numeric code, empty if the codes are too sparse
+    private final StringPool strings;
+
+    /*
+     * O(m) to build. A code found in both maps decodes as a word, as the
+     * word map was always checked first.
+     */
+    CodeTable(Map<String, String> codeToWord, Map<String, String> codeToSuffix, StringPool.Builder ids,
+            StringPool strings) {
+        int count = codeToWord.size();
+        for (String code : codeToSuffix.keySet()) {
+            if (!codeToWord.containsKey(code)) {
+                count++;
+            }
+        }
+        int[] codes = new int[count];
+        int[] texts = new int[count];
+        byte[] kinds = new byte[count];
+        int capacity = Integer.highestOneBit(Math.max(2, count * 2 - 1)) << 1; // Load factor at most 0.5
+        int[] table = new int[capacity];
+        Arrays.fill(table, -1);
+
+        int entry = 0;
+        for (Map.Entry<String, String> word : codeToWord.entrySet()) {
+            entry = add(table, codes, texts, kinds, entry, word.getKey(), ids.id(word.getKey()),
+                    ids.id(word.getValue()), WORD);
+        }
+        for (Map.Entry<String, String> suffix : codeToSuffix.entrySet()) {
+            if (!codeToWord.containsKey(suffix.getKey())) {
+                entry = add(table, codes, texts, kinds, entry, suffix.getKey(), ids.id(suffix.getKey()),
+                        ids.id(suffix.getValue()), SUFFIX);
+            }
+        }
+
+        this.entryCodes = IntBuffer.wrap(codes);
+        this.entryTexts = IntBuffer.wrap(texts);
+        this.entryKinds = ByteBuffer.wrap(kinds);
+        this.slots = IntBuffer.wrap(table);
+        this.dense = IntBuffer.wrap(buildDense(codes, ids, count));
+        this.strings = strings;
+    }
+
+    private CodeTable(IntBuffer entryCodes, IntBuffer entryTexts, ByteBuffer entryKinds, IntBuffer slots,
+            IntBuffer dense, StringPool strings) {
+        this.entryCodes = entryCodes;
+        this.entryTexts = entryTexts;
+        this.entryKinds = entryKinds;
+        this.slots = slots;
+        this.dense = dense;
+        this.strings = strings;
+    }
+
+    /*
+     * Returns the entry for a code, or -1 if it isn't in the dictionary.
+     * number is the code's value from numberOf(), or -1 if it isn't a plain
+     * number; with it the lookup is a single array read.
+     * O(1) expected, chars are compared in place so nothing is allocated.
+     */
+    public int lookup(CharSequence code, int number) {
+        if (number >= 0 && dense.limit() > 0) {
+            return lookup(number);
+        }
+        return lookup(code);
+    }
+
+    // Lookup by a numeric code alone, as stored in the binary format
+    public int lookup(int number) {
+        if (dense.limit() > 0) {
+            // Every numeric code is in the flat array, so a larger one isn't in the dictionary
+            return number < dense.limit() ? dense.get(number) : -1;
+        }
+        return lookup(Integer.toString(number));
+    }
+
+    public int lookup(CharSequence code) {
+        int mask = slots.limit() - 1;
+        int slot = spread(hash(code)) & mask;
+        while (true) {
+            int entry = slots.get(slot);
+            if (entry < 0 || strings.matches(entryCodes.get(entry), code)) {
+                return entry;
+            }
+            slot = (slot + 1) & mask;
+        }
+    }
+
+    public boolean isSuffix(int entry) {
+        return entryKinds.get(entry) == SUFFIX;
+    }
+
+    // The word, or the suffix without its "@@"
+    public String text(int entry) {
+        return strings.get(entryTexts.get(entry));
+    }
+
+    // StringPool id of text(entry), so its UTF-8 bytes can be copied without making the String
+    int textId(int entry) {
+        return entryTexts.get(entry);
+    }
+
+    StringPool strings() {
+        return strings;
+    }
+
+    void writeTo(DataOutputStream out) throws IOException {
+        BufferSections.writeInts(out, entryCodes);
+        BufferSections.writeInts(out, entryTexts);
+        BufferSections.writeBytes(out, entryKinds);
+        BufferSections.writeInts(out, slots);
+        BufferSections.writeInts(out, dense);
+    }
+
+    // O(1) - the table is used in place, nothing is copied out of the buffer
+    static CodeTable readFrom(ByteBuffer in, StringPool strings) {
+        return new CodeTable(BufferSections.readInts(in), BufferSections.readInts(in),
+                BufferSections.readBytes(in), BufferSections.readInts(in), BufferSections.readInts(in), strings);
+    }
+
+    private static int add(int[] table, int[] codes, int[] texts, byte[] kinds, int entry, String code,
+            int codeId, int textId, byte kind) {
+        int mask = table.length - 1;
+        int slot = spread(code.hashCode()) & mask;
+        while (table[slot] >= 0) {
+            slot = (slot + 1) & mask;
+        }
+        table[slot] = entry;
+        codes[entry] = codeId;
+        texts[entry] = textId;
+        kinds[entry] = kind;
+        return entry + 1;
+    }
+
+    /*
+     * The int value of a code written as a plain decimal number ("0", "173"),
+     * or -1 for anything else. Leading zeros give -1, as "07" and "7" are
+     * different codes.
+     */
+    public static int numberOf(CharSequence code) {
+        int length = code.length();
+        if (length == 0 || length > 9 || (code.charAt(0) == '0' && length > 1)) {
+            return -1; // Nine digits always fit in an int
+        }
+        int number = 0;
+        for (int i = 0; i < length; i++) {
+            char c = code.charAt(i);
+            if (c < '0' || c > '9') {
+                return -1;
+            }
+            number = number * 10 + (c - '0');
+        }
+        return number;
+    }
+
+    /*
+     * Flat array over the numeric codes, O(m + max code). Only built when
+     * the largest numeric code is at most four times the number of entries,
+     * so a few huge codes can't blow up its size.
+     */
+    private static int[] buildDense(int[] codes, StringPool.Builder ids, int count) {
+        int max = -1;
+        for (int entry = 0; entry < count; entry++) {
+            max = Math.max(max, numberOf(ids.string(codes[entry])));
+        }
+        if (max < 0 || max >= Math.max(1024, count * 4L)) {
+            return new int[0];
+        }
+
+        int[] dense = new int[max + 1];
+        Arrays.fill(dense, -1);
+        for (int entry = 0; entry < count; entry++) {
+            int number = numberOf(ids.string(codes[entry]));
+            if (number >= 0) {
+                dense[number] = entry;
+            }
+        }
+        return dense;
+    }
+
+    // Same value as String.hashCode(), without needing a String
+    private static int hash(CharSequence code) {
+        if (code instanceof String) {
+            return code.hashCode(); // Cached by String
+        }
+        int hash = 0;
+        for (int i = 0; i < code.length(); i++) {
+            hash = 31 * hash + code.charAt(i);
+        }
+        return hash;
+    }
+
+    // Mixes the high bits in, numeric codes have very similar hash codes
+    private static int spread(int hash) {
+        return hash ^ (hash >>> 16);
+    }
+}
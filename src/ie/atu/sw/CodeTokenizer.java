@@ -0,0 +1,140 @@
+package ie.atu.sw;
+
+import java.io.IOException;
+
+    /* Reads the encoder's "[code,code,...]" format one chunk at a time.
+     * It is a small state machine, so each code is handed on as soon as its
+     * comma is seen instead of after the whole file has been read,
+     * whitespace has been removed and split(",") has run.
+     * Plain decimal codes are also turned into an int while their digits
+     * arrive, so the Decoder can look them up without making a String.
+     *
+     * As in Decoder.decode(), the brackets are only stripped as a pair: a
+     * leading '[' with no closing ']' stays part of the first code. Whether
+     * the input ends with ']' has to be known before the first code is
+     * handed on, so the caller works it out first, see Decoder.endsWithBracket().
+     */
+public class CodeTokenizer {
+
+    /*
+     * Receives each code as soon as it is complete. number is the code's
+     * value (see CodeTable.numberOf) or -1. The CharSequence is reused for
+     * the next code, so call toString() to keep it.
+     */
+    public interface CodeConsumer {
+        void accept(CharSequence code, int number) throws IOException;
+    }
+
+    private final CodeConsumer consumer;
+    private final StringBuilder code = new StringBuilder(); // Code being built, may span chunks
+    private final boolean closed; // The input's last non-whitespace char is ']'
+    private boolean started; // True once the first non-whitespace char is seen
+    private boolean openBracket; // Input started with '[' and is closed, so both brackets are stripped
+    private boolean heldBracket; // A ']' that is dropped if it turns out to be the last char
+    private int number; // Value of the code so far, -1 once it can't be a plain number
+
+    /*
+     * For input whose end can't be seen first, such as a request body read
+     * once. It is taken to be closed, as the Encoder always writes it, so
+     * an unclosed "[..." decodes its first code where decode() drops it.
+     */
+    public CodeTokenizer(CodeConsumer consumer) {
+        this(consumer, true);
+    }
+
+    // closed is whether the input's last non-whitespace char is ']'
+    public CodeTokenizer(CodeConsumer consumer, boolean closed) {
+        this.consumer = consumer;
+        this.closed = closed;
+    }
+
+    /*
+     * Carries on from just after a comma part way through the input, as
+     * Decoder.decodeParallel() does for each partition but the first.
+     * openBracket is whether the whole input started with '['.
+     */
+    public CodeTokenizer(CodeConsumer consumer, boolean closed, boolean openBracket) {
+        this(consumer, closed);
+        this.started = true;
+        this.openBracket = openBracket && closed;
+    }
+
+    /*
+     * O(c) for a chunk of c chars, each char is looked at once.
+     * Memory is bounded by the longest code, not the file size.
+     */
+    public void feed(char[] chunk, int offset, int length) throws IOException {
+        int end = offset + length;
+        for (int i = offset; i < end; i++) {
+            char c = chunk[i];
+            if (isWhitespace(c)) {
+                continue; // Same as replaceAll("\\s+", "")
+            }
+            if (!started) {
+                started = true;
+                if (c == '[' && closed) {
+                    openBracket = true;
+                    continue;
+                }
+            }
+
+            if (c == ',') {
+                releaseBracket();
+                emit();
+            } else if (c == ']') {
+                releaseBracket();
+                heldBracket = true;
+            } else {
+                releaseBracket();
+                appendDigit(c);
+                code.append(c);
+            }
+        }
+    }
+
+    /*
+     * Emits the last code. A closing ']' is only stripped if the input also
+     * opened with '['.
+     */
+    public void finish() throws IOException {
+        if (heldBracket && !openBracket) {
+            code.append(']');
+            number = -1;
+        }
+        heldBracket = false;
+        emit();
+    }
+
+    // A ']' followed by anything else is part of a code, not the end of the list
+    private void releaseBracket() {
+        if (heldBracket) {
+            code.append(']');
+            number = -1;
+            heldBracket = false;
+        }
+    }
+
+    // Same rules as CodeTable.numberOf(): digits only, no leading zero, at most nine digits
+    private void appendDigit(char c) {
+        if (c < '0' || c > '9' || code.length() >= 9 || (code.length() > 0 && number == 0)) {
+            number = -1;
+        } else if (code.length() == 0) {
+            number = c - '0';
+        } else if (number >= 0) {
+            number = number * 10 + (c - '0');
+        }
+    }
+
+    // Empty codes (",,", "[]") never match the mapping so they are skipped
+    private void emit() throws IOException {
+        if (code.length() > 0) {
+            consumer.accept(code, number);
+            code.setLength(0);
+        }
+    }
+
+    // Matches the \s class: space, \t, \n, \u000B, \f and \r
+    static boolean isWhitespace(char c) {
+        return c == ' ' || (c >= '\t' && c <= '\r');
+    }
+}
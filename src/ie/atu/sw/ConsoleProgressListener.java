@@ -0,0 +1,72 @@
+package ie.atu.sw;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+    /* Draws the MethodHelper progress bar from a background thread.
+     * progress() only stores the count in a volatile field; the bar is
+     * redrawn every REDRAW_MILLIS, and only when its percentage has changed.
+     * That is at most ten redraws a second however fast the loop runs,
+     * instead of building and printing a bar for every word.
+     */
+public class ConsoleProgressListener implements ProgressListener {
+    private static final long REDRAW_MILLIS = 100;
+
+    private volatile long total = 1;
+    private volatile long done;
+    private int drawnPercent = -1; // Last percentage drawn, guarded by this
+    private ScheduledExecutorService redraw;
+
+    @Override
+    public void start(long total) {
+        this.total = Math.max(1, total);
+        this.done = 0;
+        synchronized (this) {
+            drawnPercent = -1;
+        }
+        redraw = Executors.newSingleThreadScheduledExecutor(task -> {
+            Thread thread = new Thread(task, "progress");
+            thread.setDaemon(true); // Never keeps the program running
+            return thread;
+        });
+        redraw.scheduleAtFixedRate(() -> draw(99), 0, REDRAW_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public void progress(long done) {
+        this.done = done;
+    }
+
+    // Stops the redraws and draws where the run got to, 100% if it reported its total
+    @Override
+    public void finish() {
+        if (redraw != null) {
+            redraw.shutdown();
+            try {
+                redraw.awaitTermination(1, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            redraw = null;
+        }
+        if (draw(100) < 100) {
+            System.out.println(); // printProgress() only ends the line at 100%
+        }
+    }
+
+    @Override
+    public void message(String text) {
+        System.out.println(text);
+    }
+
+    // Redraws if the percentage has moved, capped so only finish() can show 100%
+    private synchronized int draw(int maxPercent) {
+        int percent = (int) Math.min(maxPercent, (100 * done) / total);
+        if (percent != drawnPercent) {
+            MethodHelper.printProgress(percent, 100);
+            drawnPercent = percent;
+        }
+        return percent;
+    }
+}
@@ -0,0 +1,56 @@
+package ie.atu.sw;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+    /* Counts the bytes read through it, used for progress on binary input
+     * where the number of codes isn't known up front. Given Metrics, it also
+     * adds the time spent reading to the READ phase.
+     */
+public class CountingInputStream extends FilterInputStream {
+    private final Metrics metrics; // May be null
+    private long count;
+
+    public CountingInputStream(InputStream in) {
+        this(in, null);
+    }
+
+    public CountingInputStream(InputStream in, Metrics metrics) {
+        super(in);
+        this.metrics = metrics;
+    }
+
+    public long count() {
+        return count;
+    }
+
+    @Override
+    public int read() throws IOException {
+        int b = super.read();
+        if (b >= 0) {
+            count++;
+        }
+        return b;
+    }
+
+    @Override
+    public int read(byte[] buffer, int offset, int length) throws IOException {
+        long start = System.nanoTime();
+        int n = super.read(buffer, offset, length);
+        if (metrics != null) {
+            metrics.add(Metrics.Phase.READ, System.nanoTime() - start);
+        }
+        if (n > 0) {
+            count += n;
+        }
+        return n;
+    }
+
+    @Override
+    public long skip(long n) throws IOException {
+        long skipped = super.skip(n);
+        count += skipped;
+        return skipped;
+    }
+}
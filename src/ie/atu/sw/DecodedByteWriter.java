@@ -0,0 +1,155 @@
+package ie.atu.sw;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+    /* DecodedTextWriter for UTF-8 bytes, see Decoder.decodeUtf8().
+     * Dictionary words and suffixes are already stored once as UTF-8 in the
+     * StringPool, so each one is a single bulk copy of its byte range into
+     * a reusable direct buffer. The buffer goes to the channel with one
+     * write() when it is full, straight from native memory. No String or
+     * char is made and nothing is encoded again on the way out.
+     *
+     * Spaces, suffixes and trim work as in DecodedTextWriter. Whitespace
+     * chars are all below 0x80 and every byte of a multi-byte UTF-8 char is
+     * 0x80 or more, so trimming bytes <= ' ' trims the same text. Only the
+     * whitespace at the ends of a token is looked at, the rest is copied as
+     * it is.
+     */
+public class DecodedByteWriter implements DecodedWriter {
+    private static final byte[] LINE_SEPARATOR = System.lineSeparator().getBytes(StandardCharsets.UTF_8);
+    private static final ByteBuffer SPACE = ByteBuffer.wrap(new byte[] { ' ' });
+
+    private final WritableByteChannel out;
+    private final ByteBuffer buffer; // Direct, filled and then written as a whole
+    private final Metrics metrics; // WRITE time, may be null
+    private byte[] heldWhitespace = new byte[16]; // May be trailing, so not written yet
+    private ByteBuffer heldBuffer = ByteBuffer.wrap(heldWhitespace); // Wraps heldWhitespace, to copy it out
+    private int held;
+    private boolean pendingSpace; // Separator after the last word, dropped if a suffix follows
+    private boolean started; // True once a non-whitespace byte is written (leading trim)
+
+    public DecodedByteWriter(WritableByteChannel out, int bufferSize, Metrics metrics) {
+        this.out = out;
+        this.buffer = ByteBuffer.allocateDirect(Math.max(bufferSize, 1024));
+        this.metrics = metrics;
+    }
+
+    @Override
+    public void word(String word) throws IOException {
+        byte[] utf8 = word.getBytes(StandardCharsets.UTF_8);
+        word(utf8, 0, utf8.length);
+    }
+
+    @Override
+    public void suffix(String suffix) throws IOException {
+        byte[] utf8 = suffix.getBytes(StandardCharsets.UTF_8);
+        write(ByteBuffer.wrap(utf8), 0, utf8.length);
+        pendingSpace = true;
+    }
+
+    // O(s) for s bytes, copied in one go from the pool's buffer
+    @Override
+    public void word(StringPool strings, int id) throws IOException {
+        separate();
+        write(strings.bytes(), strings.start(id), strings.length(id));
+        pendingSpace = true;
+    }
+
+    @Override
+    public void suffix(StringPool strings, int id) throws IOException {
+        write(strings.bytes(), strings.start(id), strings.length(id));
+        pendingSpace = true;
+    }
+
+    // Written as it is, so malformed UTF-8 from Encoder.encodeMapped() comes back byte for byte
+    @Override
+    public void word(byte[] utf8, int offset, int length) throws IOException {
+        separate();
+        write(ByteBuffer.wrap(utf8), offset, length);
+        pendingSpace = true;
+    }
+
+    @Override
+    public void finish() throws IOException {
+        held = 0;
+        pendingSpace = false;
+        copy(ByteBuffer.wrap(LINE_SEPARATOR), 0, LINE_SEPARATOR.length);
+        flush();
+    }
+
+    // Writes whatever is in the buffer to the channel
+    public void flush() throws IOException {
+        long start = System.nanoTime();
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            out.write(buffer);
+        }
+        buffer.clear();
+        if (metrics != null) {
+            metrics.add(Metrics.Phase.WRITE, System.nanoTime() - start);
+        }
+    }
+
+    private void separate() throws IOException {
+        if (pendingSpace) {
+            write(SPACE, 0, 1);
+        }
+    }
+
+    /*
+     * O(s) - source[offset, offset + length) with leading and trailing
+     * whitespace handled as DecodedTextWriter.writeText() does. Leading
+     * whitespace of the text is dropped, trailing whitespace of the token
+     * is held back, and everything between is one bulk copy.
+     */
+    private void write(ByteBuffer source, int offset, int length) throws IOException {
+        int end = offset + length;
+        if (!started) {
+            while (offset < end && isWhitespace(source.get(offset))) {
+                offset++;
+            }
+            if (offset == end) {
+                return;
+            }
+        }
+        int last = end;
+        while (last > offset && isWhitespace(source.get(last - 1))) {
+            last--;
+        }
+        if (last > offset) {
+            copy(heldBuffer, 0, held);
+            held = 0;
+            copy(source, offset, last - offset);
+            started = true;
+        }
+        for (int i = last; i < end; i++) {
+            if (held == heldWhitespace.length) {
+                heldWhitespace = Arrays.copyOf(heldWhitespace, held * 2);
+                heldBuffer = ByteBuffer.wrap(heldWhitespace);
+            }
+            heldWhitespace[held++] = source.get(i);
+        }
+    }
+
+    // Copies length bytes into the buffer, writing it out each time it fills
+    private void copy(ByteBuffer source, int offset, int length) throws IOException {
+        while (length > 0) {
+            if (!buffer.hasRemaining()) {
+                flush();
+            }
+            int n = Math.min(length, buffer.remaining());
+            buffer.put(buffer.position(), source, offset, n); // Absolute on both, source is never moved
+            buffer.position(buffer.position() + n);
+            offset += n;
+            length -= n;
+        }
+    }
+
+    private static boolean isWhitespace(byte b) {
+        return b >= 0 && b <= ' ';
+    }
+}
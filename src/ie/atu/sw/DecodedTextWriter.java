@@ -0,0 +1,145 @@
+package ie.atu.sw;
+
+import java.io.IOException;
+import java.io.Writer;
+
+    /* Builds the decoded text straight into a Writer.
+     * The space after each word is held back instead of written, so a
+     * suffix can be attached to the previous word in O(1) by simply
+     * dropping it, rather than searching the output for the last space.
+     * Leading and trailing whitespace is dropped on the fly, so the output
+     * matches decoding into a StringBuilder and calling trim().
+     *
+     * A fragment writer decodes one part of a larger text for
+     * Decoder.decodeParallel(): nothing is trimmed and its first word gets
+     * no separator. append() joins the fragments up again, adding that
+     * separator and trimming at the fragment edges.
+     */
+public class DecodedTextWriter implements DecodedWriter {
+    private final Writer out;
+    private final StringBuilder heldWhitespace = new StringBuilder(); // May be trailing, so not written yet
+    private boolean pendingSpace; // Separator after the last word, dropped if a suffix follows
+    private boolean started; // True once a non-whitespace char is written (leading trim)
+    private final boolean fragment; // Part of a larger text, trimmed when it is appended
+    private boolean hasTokens; // A word or suffix has been written
+    private boolean startsWithWord; // The first token was a word, so it needs a separator when joined
+
+    public DecodedTextWriter(Writer out) {
+        this(out, false);
+    }
+
+    public DecodedTextWriter(Writer out, boolean fragment) {
+        this.out = out;
+        this.fragment = fragment;
+        this.started = fragment;
+    }
+
+    // A dictionary or hex word, separated from the previous one by a space
+    @Override
+    public void word(String word) throws IOException {
+        if (!hasTokens) {
+            hasTokens = true;
+            startsWithWord = true;
+        }
+        if (pendingSpace) {
+            writeText(" ");
+        }
+        writeText(word);
+        pendingSpace = true;
+    }
+
+    // A suffix is joined onto the previous word, O(1) as the space was never written
+    @Override
+    public void suffix(String suffix) throws IOException {
+        hasTokens = true;
+        writeText(suffix);
+        pendingSpace = true;
+    }
+
+    // Trailing whitespace is dropped and the line ended, as PrintWriter.println() would
+    @Override
+    public void finish() throws IOException {
+        if (fragment) {
+            out.append(heldWhitespace); // Only trailing for the last fragment, append() decides
+        } else {
+            out.write(System.lineSeparator());
+        }
+        heldWhitespace.setLength(0);
+        pendingSpace = false;
+        out.flush();
+    }
+
+    public boolean hasTokens() {
+        return hasTokens;
+    }
+
+    public boolean startsWithWord() {
+        return startsWithWord;
+    }
+
+    /*
+     * Joins on a finished fragment that has tokens. If it starts with a suffix
+     * that is glued onto the word before, otherwise the held back separator
+     * is written first. Only the fragment's ends are looked at for trim, the
+     * rest is written as it is, so it costs O(w) for w whitespace chars at
+     * the ends plus the write.
+     */
+    public void append(CharSequence text, boolean startsWithWord) throws IOException {
+        if (startsWithWord && pendingSpace) {
+            writeText(" ");
+        }
+        pendingSpace = true;
+        int start = 0;
+        int end = text.length();
+        if (!started) {
+            while (start < end && text.charAt(start) <= ' ') {
+                start++;
+            }
+        }
+        int last = end;
+        while (last > start && text.charAt(last - 1) <= ' ') {
+            last--;
+        }
+        if (last > start) {
+            if (heldWhitespace.length() > 0) {
+                out.append(heldWhitespace);
+                heldWhitespace.setLength(0);
+            }
+            out.append(text, start, last);
+            started = true;
+        }
+        if (started) {
+            heldWhitespace.append(text, last, end);
+        }
+    }
+
+    /*
+     * O(t) for text of length t. Whitespace is the same set trim() drops (<= ' '),
+     * it's only held back until a non-whitespace char shows it isn't trailing.
+     */
+    private void writeText(String text) throws IOException {
+        int runStart = 0;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c <= ' ') {
+                if (i > runStart) {
+                    out.write(text, runStart, i - runStart);
+                }
+                runStart = i + 1;
+                if (started) {
+                    heldWhitespace.append(c);
+                }
+            } else {
+                // Held whitespace always comes before runStart, so it's written first
+                if (heldWhitespace.length() > 0) {
+                    out.append(heldWhitespace);
+                    heldWhitespace.setLength(0);
+                }
+                started = true;
+            }
+        }
+        if (runStart < text.length()) {
+            out.write(text, runStart, text.length() - runStart);
+        }
+    }
+}
@@ -0,0 +1,38 @@
+package ie.atu.sw;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+    /* Where the Decoder sends the decoded text, one word or suffix at a time.
+     * The Decoder works out what each code is, the writer puts the words
+     * together: DecodedTextWriter as chars into a Writer, DecodedByteWriter
+     * as UTF-8 bytes copied straight out of the dictionary.
+     * Either way words are separated by one space, a suffix is glued onto
+     * the word before it and the text is trimmed, see DecodedTextWriter.
+     */
+public interface DecodedWriter {
+
+    // A dictionary or hex word, separated from the previous one by a space
+    void word(String word) throws IOException;
+
+    // Joined onto the previous word
+    void suffix(String suffix) throws IOException;
+
+    // A dictionary word by its StringPool id
+    default void word(StringPool strings, int id) throws IOException {
+        word(strings.get(id));
+    }
+
+    // A dictionary suffix by its StringPool id
+    default void suffix(StringPool strings, int id) throws IOException {
+        suffix(strings.get(id));
+    }
+
+    // A word that is already UTF-8, utf8[offset, offset + length), e.g. hex or raw text
+    default void word(byte[] utf8, int offset, int length) throws IOException {
+        word(new String(utf8, offset, length, StandardCharsets.UTF_8));
+    }
+
+    // Drops trailing whitespace, ends the line and flushes, called once after the last word
+    void finish() throws IOException;
+}
@@ -1,18 +1,53 @@
 package ie.atu.sw;
 
 import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
 import java.io.FileReader;
 import java.io.FileWriter;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
 import java.io.PrintWriter;
+import java.io.PushbackInputStream;
+import java.io.RandomAccessFile;
+import java.io.Reader;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
 import java.nio.charset.StandardCharsets;
-import java.util.HashMap;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HexFormat;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
 
 public class Decoder {
+    private static final int PROGRESS_BATCH = 4096; // Codes between progress reports
+    private static final int STREAM_CHUNK = 8 * 1024; // Chars or bytes read at once by the stream methods
+    private static final int PIPELINE_BUFFERS = Pipeline.DEFAULT_BUFFERS; // Buffers each side of decodePipelined()
     private String input; // Path to input text file.
     private String mappingFile; // Path to mapping CSV.
     private String output; // Path to output file.
+    private Dictionary dictionary; // Given to the constructor, otherwise loaded by loadMappings() for each run
+    private LiveDictionary live; // Snapshot taken by loadMappings(), null unless given to the constructor
+    private CodeTable codeTable; // Code -> word or suffix, of the dictionary the input was encoded with
+    private ProgressListener listener = new ConsoleProgressListener(); // Progress bar and messages
+    private ReportFormat report = ReportFormat.NONE; // Metrics report written after each run
+    private Metrics metrics = new Metrics("decode"); // Of the last run
 
     public Decoder(String input, String mappingFile, String output) {
         this.input = input;
@@ -20,6 +55,31 @@ public class Decoder {
         this.output = output;
     }
 
+    // For use as a library with no files, see Encoder(Dictionary). One Decoder per thread
+    public Decoder(Dictionary dictionary) {
+        this.dictionary = Objects.requireNonNull(dictionary);
+    }
+
+    // As Decoder(Dictionary), each run takes the dictionary current when it starts, see Encoder(LiveDictionary)
+    public Decoder(LiveDictionary live) {
+        this.live = Objects.requireNonNull(live);
+    }
+
+    // NoOpProgressListener for headless runs, which report on each file themselves
+    public void setProgressListener(ProgressListener listener) {
+        this.listener = listener;
+    }
+
+    // Writes a JSON or CSV report of metrics() next to the output after each run
+    public void setReportFormat(ReportFormat report) {
+        this.report = report;
+    }
+
+    // Phase times, what the codes decoded to and the compression ratio of the last run
+    public Metrics metrics() {
+        return metrics;
+    }
+
     /*
      * Overall Time Complexity of method:
      * 
@@ -28,34 +88,12 @@ public class Decoder {
      * input file size
      */
     public void decode() throws IOException {
-        HashMap<String, String> codeToWord = new HashMap<>();
-        HashMap<String, String> codeToSuffix = new HashMap<>();
-
-        try (BufferedReader br = new BufferedReader(new FileReader(mappingFile))) {
-            String line;
-            /*
-             * Time Complexity here is O(m) as:
-             * while ((line = br.readLine()) != null) {...}
-             * Word processing like this cannot be done any *
-             * faster, as the code needs to process (loop) for *
-             * every word in the mapping file. This is the same for other sections *
-             * below.
-             */
-            while ((line = br.readLine()) != null) {
-                String[] values = line.split(",");
-                if (values.length == 2) {
-                    String code = values[1].trim();
-                    String word = values[0].trim();
-
-                    if (word.startsWith("@@")) {
-                        codeToSuffix.put(code, word.substring(2)); // Remove @@ prefix when storing
-                    } else {
-                        codeToWord.put(code, word);
-                    }
-                }
-            }
-        } catch (IOException e) {
-            throw new RuntimeException("Error reading mapping file: " + e.getMessage(), e);
+        requireFiles();
+        long started = startRun();
+        loadMappings();
+        if (EncodedFormat.detect(input) != EncodedFormat.TEXT) {
+            decodeBinary(64 * 1024, started); // Nothing to split or strip, so it is always read as a stream
+            return;
         }
 
         /*
@@ -63,6 +101,7 @@ public class Decoder {
          * processing works here
          * while ((line = br.readLine()) != null) {..}
          */
+        long start = System.nanoTime();
         StringBuilder sampleTextBuilder = new StringBuilder();
         try (BufferedReader br = new BufferedReader(new FileReader(input))) {
             String line;
@@ -72,8 +111,10 @@ public class Decoder {
         } catch (IOException e) {
             throw new RuntimeException("Error reading input file: " + e.getMessage(), e);
         }
+        metrics.add(Metrics.Phase.READ, System.nanoTime() - start);
 
         // Process input
+        start = System.nanoTime();
         String sampleText = sampleTextBuilder.toString().trim();
         // O(k) - scans each char once for replaceAll
         sampleText = sampleText.replaceAll("\\s+", "");
@@ -82,51 +123,802 @@ public class Decoder {
         }
         // O(k) - split operation is linear in the input length
         String[] words = sampleText.split(",");
-        StringBuilder decodedText = new StringBuilder();
-        
+        metrics.add(Metrics.Phase.TOKENIZE, System.nanoTime() - start);
+        // Suffixes are attached in O(1) by DecodedTextWriter, which holds back the
+        // trailing space, instead of copying the whole buffer to find the last space
+        StringWriter decodedText = new StringWriter();
+        DecodedTextWriter decoded = new DecodedTextWriter(decodedText);
+
         // Display total number of words being processed
         int totalWords = words.length;
-        System.out.println("Decoding " + totalWords + " words...");
-        
+        listener.message("Decoding " + totalWords + " words...");
+
         // Processes each word, O(n)
-        for (int i = 0; i < totalWords; i++) {
-            String word = words[i];
-            if (codeToWord.containsKey(word)) {
-                decodedText.append(codeToWord.get(word)).append(" ");
-            } else if (codeToSuffix.containsKey(word)) {
-                // Handle suffixes
-                int lastSpaceIndex = decodedText.toString().lastIndexOf(" "); // Convert to String to use lastIndexOf
-                if (lastSpaceIndex != -1) {
-                    decodedText.deleteCharAt(lastSpaceIndex);
-                }
-                decodedText.append(codeToSuffix.get(word)).append(" ");
-            } else if (word.endsWith("x")) {
-                // Handle hex decoding
-                try {
-                    String hexValue = word.substring(0, word.length() - 1); // Remove the 'x' at the end
-                    String decodedHex = new String(HexFormat.of().parseHex(hexValue), StandardCharsets.UTF_8);
-                    decodedText.append(decodedHex).append(" ");
-                } catch (IllegalArgumentException e) {
-                    System.err.println("Invalid hex string: " + word);
+        listener.start(totalWords);
+        start = System.nanoTime();
+        try {
+            for (int i = 0; i < totalWords; i++) {
+                decodeCode(words[i], CodeTable.numberOf(words[i]), decoded, metrics);
+
+                // Reported in batches, the listener draws the progress meter in its own time
+                if (i % PROGRESS_BATCH == 0) {
+                    listener.progress(i);
                 }
             }
-            
-            // Update progress meter for each processed word
-            MethodHelper.printProgress(i + 1, totalWords);
+            decoded.finish(); // Trims and ends the line, as trim() and println() did
+            listener.progress(totalWords);
+        } finally {
+            listener.finish();
         }
-        
-        System.out.println(); 
+        metrics.add(Metrics.Phase.MATCH, System.nanoTime() - start);
 
-        String decodedOutput = decodedText.toString().trim();
+        start = System.nanoTime();
 
         try (PrintWriter pw = new PrintWriter(new FileWriter(output))) {
-            // Writes each word to the file, O(n)
-            String[] outputWords = decodedOutput.split(" ");
-            String joined = String.join(" ", outputWords);
-            pw.println(joined);
+            // Writes the decoded text to the file, O(n)
+            pw.print(decodedText);
+            if (pw.checkError()) {
+                throw new IOException("Could not write to " + output);
+            }
         } catch (IOException e) {
             throw new RuntimeException("Error writing output file: " + e.getMessage(), e);
         }
-        System.out.println("Decoding complete. Output written to: " + output);
+        metrics.add(Metrics.Phase.WRITE, System.nanoTime() - start);
+        listener.message("Decoding complete. Output written to: " + output);
+        finishRun(started);
+    }
+
+    /*
+     * Streaming version of decode(), the output file is identical.
+     *
+     * Time Complexity is the same O(n+m+k), but the input is read through a
+     * buffer of c chars and each code is decoded and written as soon as its
+     * comma is seen, so memory is O(c+m) and output starts straight away
+     * instead of after the text has been copied three times.
+     */
+    public void decodeStream(int chunkSize) throws IOException {
+        requireFiles();
+        long started = startRun();
+        loadMappings();
+        if (EncodedFormat.detect(input) != EncodedFormat.TEXT) {
+            decodeBinary(chunkSize, started);
+            return;
+        }
+
+        listener.message("Decoding...");
+        long totalBytes = Math.max(1, new File(input).length());
+        listener.start(totalBytes); // Input size is only known in bytes, chars read are close enough
+        try (BufferedReader br = new BufferedReader(new FileReader(input), chunkSize);
+                BufferedWriter bw = new BufferedWriter(openOutput(), chunkSize)) {
+            decodeChunks(br, new DecodedTextWriter(bw), chunkSize, endsWithBracket(input));
+            listener.progress(totalBytes);
+        } catch (IOException e) {
+            throw new RuntimeException("Error decoding file: " + e.getMessage(), e);
+        } finally {
+            listener.finish();
+        }
+        listener.message("Decoding complete. Output written to: " + output);
+        finishRun(started);
+    }
+
+    /*
+     * Pipelined version of decodeStream(), the output file is identical.
+     *
+     * Reading the input file, decoding and writing the output file each run
+     * on their own thread, joined by a Pipeline of PIPELINE_BUFFERS buffers
+     * of chunkSize bytes a side, see Encoder.encodePipelined(). All three
+     * formats work, a BLOCKED file is decoded up to its index. READ and
+     * WRITE are the times decoding waited on the other two stages.
+     */
+    public void decodePipelined(int chunkSize) throws IOException {
+        requireFiles();
+        long started = startRun();
+        loadMappings();
+        EncodedHeader header = readHeader();
+        EncodedFormat format = header.format();
+        long length = new File(input).length();
+        if (format == EncodedFormat.BLOCKED) {
+            BlockIndex index = readIndex(header);
+            length = index.blocks() > 0 ? index.end(index.blocks() - 1) : header.length();
+        }
+        long tokenBytes = length - header.length(); // Binary tokens after the header
+        boolean closed = format == EncodedFormat.TEXT && endsWithBracket(input); // See CodeTokenizer
+
+        listener.message(format == EncodedFormat.TEXT ? "Decoding..." : "Decoding binary file...");
+        long totalBytes = Math.max(1, length);
+        listener.start(totalBytes);
+        try (FileInputStream in = new FileInputStream(input);
+                OutputStream out = new FileOutputStream(output)) {
+            in.getChannel().position(header.length());
+            new Pipeline(PIPELINE_BUFFERS, chunkSize).run(in, out, (source, sink) -> {
+                // Platform charset as FileWriter was
+                try (BufferedWriter bw = new BufferedWriter(
+                        new OutputStreamWriter(new TimedOutputStream(sink, metrics)), chunkSize)) {
+                    DecodedTextWriter decoded = new DecodedTextWriter(bw);
+                    if (format == EncodedFormat.TEXT) {
+                        decodeChunks(new InputStreamReader(source), decoded, chunkSize, closed); // As FileReader
+                    } else {
+                        CountingInputStream counting = new CountingInputStream(source, metrics);
+                        long ioNanos = metrics.ioNanos();
+                        long matchStart = System.nanoTime();
+                        decodeTokens(tokenReader(format, counting, chunkSize, tokenBytes), counting, decoded, 0,
+                                Long.MIN_VALUE, Long.MAX_VALUE);
+                        metrics.addExcludingIo(Metrics.Phase.MATCH, matchStart, ioNanos);
+                    }
+                }
+            });
+            listener.progress(totalBytes);
+        } catch (IOException e) {
+            throw new RuntimeException("Error decoding file: " + e.getMessage(), e);
+        } finally {
+            listener.finish();
+        }
+        listener.message("Decoding complete. Output written to: " + output);
+        finishRun(started);
+    }
+
+    /*
+     * Byte-level version of decodeStream(), see DecodedByteWriter. The output
+     * is always UTF-8, whatever the platform charset is: every dictionary
+     * word and suffix is copied as a range of the dictionary's UTF-8 bytes
+     * into a direct buffer, which is written with FileChannel.write() when
+     * it is full. Hex and raw words are written as the bytes they hold, so
+     * malformed UTF-8 encoded by Encoder.encodeMapped() comes back as it
+     * was rather than as U+FFFD. On a UTF-8 platform the output is otherwise
+     * the same as decodeStream(). All three formats work, a BLOCKED file is
+     * decoded up to its index, and text input is read as UTF-8.
+     *
+     * Time Complexity is the same O(n+m+k), memory is the bufferSize output
+     * buffer and the input buffer, however large the file is.
+     */
+    public void decodeUtf8(int bufferSize) throws IOException {
+        requireFiles();
+        long started = startRun();
+        loadMappings();
+        EncodedHeader header = readHeader();
+        EncodedFormat format = header.format();
+        long length = new File(input).length();
+        if (format == EncodedFormat.BLOCKED) {
+            BlockIndex index = readIndex(header);
+            length = index.blocks() > 0 ? index.end(index.blocks() - 1) : header.length();
+        }
+
+        listener.message(format == EncodedFormat.TEXT ? "Decoding..." : "Decoding binary file...");
+        long totalBytes = Math.max(1, length);
+        listener.start(totalBytes);
+        try (FileInputStream file = new FileInputStream(input);
+                FileChannel out = FileChannel.open(Path.of(output), StandardOpenOption.CREATE,
+                        StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            file.getChannel().position(header.length());
+            DecodedByteWriter decoded = new DecodedByteWriter(out, bufferSize, metrics);
+            if (format == EncodedFormat.TEXT) {
+                decodeChunks(new InputStreamReader(file, StandardCharsets.UTF_8), decoded, bufferSize,
+                        endsWithBracket(input));
+            } else {
+                CountingInputStream in = new CountingInputStream(file, metrics);
+                long ioNanos = metrics.ioNanos();
+                long start = System.nanoTime();
+                decodeTokens(tokenReader(format, in, bufferSize, length - header.length()), in, decoded, 0,
+                        Long.MIN_VALUE, Long.MAX_VALUE);
+                metrics.addExcludingIo(Metrics.Phase.MATCH, start, ioNanos);
+            }
+            listener.progress(totalBytes);
+        } catch (IOException e) {
+            throw new RuntimeException("Error decoding file: " + e.getMessage(), e);
+        } finally {
+            listener.finish();
+        }
+        listener.message("Decoding complete. Output written to: " + output);
+        finishRun(started);
+    }
+
+    /*
+     * decodeStream() from an InputStream to a Writer instead of between
+     * files. The format is worked out from the first
+     * bytes as for a file, and the Writer gets what decodeStream() would
+     * write to the output file. Closes neither, and no metrics report is
+     * written. A BLOCKED file has its index at the end, so it can only be
+     * decoded from a file. Text is read once, so it is taken to end with
+     * ']', see CodeTokenizer(CodeConsumer).
+     */
+    public void decodeStream(InputStream in, Writer out, int chunkSize) throws IOException {
+        startRun();
+        loadMappings();
+        PushbackInputStream pushback = new PushbackInputStream(in, EncodedHeader.MAX_LENGTH);
+        byte[] start = pushback.readNBytes(EncodedHeader.MAX_LENGTH);
+        EncodedHeader header = EncodedHeader.parse(start);
+        selectDictionary(header);
+        pushback.unread(start, header.length(), start.length - header.length()); // All but the header
+        DecodedTextWriter decoded = new DecodedTextWriter(new BufferedWriter(out, chunkSize));
+        switch (header.format()) {
+            case BINARY:
+            case HUFFMAN:
+                CountingInputStream counting = new CountingInputStream(pushback, metrics);
+                long ioNanos = metrics.ioNanos();
+                long matchStart = System.nanoTime();
+                decodeTokens(tokenReader(header.format(), counting, chunkSize, Long.MAX_VALUE), counting, decoded, 0,
+                        Long.MIN_VALUE, Long.MAX_VALUE);
+                metrics.addExcludingIo(Metrics.Phase.MATCH, matchStart, ioNanos);
+                break;
+            case BLOCKED:
+                throw new IOException("Blocked files can only be decoded from a file, the index is at the end");
+            default:
+                decodeChunks(new InputStreamReader(pushback, StandardCharsets.UTF_8), decoded, chunkSize, true);
+                break;
+        }
+    }
+
+    // As decodeStream(InputStream, Writer, int)
+    public void decode(InputStream in, Writer out) throws IOException {
+        decodeStream(in, out, STREAM_CHUNK);
+    }
+
+    // As decodeStream(InputStream, Writer, int)
+    public void decode(ReadableByteChannel in, Writer out) throws IOException {
+        decode(Channels.newInputStream(in), out);
+    }
+
+    // Decodes the "[code,code,...]" text format only, the binary formats are bytes. Taken to end with ']'
+    public void decode(Reader in, Writer out) throws IOException {
+        startRun();
+        loadMappings();
+        decodeChunks(in, new DecodedTextWriter(new BufferedWriter(out, STREAM_CHUNK)), STREAM_CHUNK, true);
+    }
+
+    /*
+     * Decodes a text in the "[code,code,...]" format to the text it came
+     * from, line break included as decodeStream() writes it. The words go
+     * straight into the String with no bytes in between.
+     */
+    public String decode(CharSequence encoded) {
+        startRun();
+        loadMappings();
+        StringWriter decoded = new StringWriter(encoded.length() * 2 + 16);
+        try {
+            decodeChunks(new StringReader(encoded.toString()), new DecodedTextWriter(decoded), STREAM_CHUNK,
+                    endsWithBracket(encoded));
+        } catch (IOException e) {
+            throw new RuntimeException("Error decoding text: " + e.getMessage(), e);
+        }
+        return decoded.toString();
+    }
+
+    /*
+     * O(k) - each chunk is tokenized and decoded before the next is read.
+     * closed is whether the input ends with ']', see CodeTokenizer. Input
+     * that is only read once is taken to be closed.
+     */
+    private void decodeChunks(Reader in, DecodedWriter decoded, int chunkSize, boolean closed) throws IOException {
+        // A chunk's codes are collected first, so tokenizing and decoding can be timed apart
+        CodeBuffer codes = new CodeBuffer();
+        CodeTokenizer tokenizer = new CodeTokenizer(codes, closed);
+
+        char[] chunk = new char[chunkSize];
+        long charsRead = 0;
+        int n;
+        while ((n = read(in, chunk, metrics)) != -1) {
+            long start = System.nanoTime();
+            tokenizer.feed(chunk, 0, n);
+            metrics.add(Metrics.Phase.TOKENIZE, System.nanoTime() - start);
+            decodeCodes(codes, decoded, metrics);
+            charsRead += n;
+            listener.progress(charsRead);
+        }
+        tokenizer.finish();
+        decodeCodes(codes, decoded, metrics);
+        decoded.finish();
+    }
+
+    /*
+     * Parallel version of decodeStream(), the output file is identical.
+     *
+     * The code list is read in batches of about threads * 4 partitions of
+     * partitionChars each, cut just after a comma so no code is split.
+     * Each partition is decoded on a ForkJoinPool into its own fragment,
+     * see DecodedTextWriter. A suffix only changes the space before it, so
+     * one at the start of a partition is fixed up when the fragments are
+     * joined in order: the previous fragment's held back separator is
+     * dropped instead of written, and trim is applied at the ends.
+     *
+     * Time Complexity is still O(n+m+k) in total, with the lookups of a
+     * batch shared between the threads. Memory is O(b) for a batch of b
+     * chars and its decoded text.
+     * The binary formats can only be split by reading their varints in order,
+     * so they are decoded by decodeBinary() as before.
+     */
+    public void decodeParallel(int threads, int partitionChars) throws IOException {
+        requireFiles();
+        long started = startRun();
+        loadMappings();
+        if (EncodedFormat.detect(input) != EncodedFormat.TEXT) {
+            decodeBinary(partitionChars, started);
+            return;
+        }
+
+        listener.message("Decoding...");
+        long totalBytes = Math.max(1, new File(input).length());
+        ForkJoinPool pool = new ForkJoinPool(Math.max(1, threads));
+        listener.start(totalBytes); // Input size is only known in bytes, chars read are close enough
+        try (BufferedReader br = new BufferedReader(new FileReader(input), partitionChars);
+                BufferedWriter bw = new BufferedWriter(openOutput(), partitionChars)) {
+            DecodedTextWriter decoded = new DecodedTextWriter(bw);
+            char[] batch = new char[partitionChars * Math.max(1, threads) * 4];
+            int length = 0; // Chars in batch, starting with any carried over from the last one
+            long charsRead = 0;
+            boolean atStart = true; // No cut made yet, the first partition checks for '[' itself
+            boolean openBracket = false; // Whether the input starts with '[', for the last partition
+            boolean closed = endsWithBracket(input); // Whether the brackets are there to strip, see CodeTokenizer
+            boolean eof = false;
+
+            while (!eof) {
+                long readStart = System.nanoTime();
+                int n = 0;
+                while (length < batch.length && (n = br.read(batch, length, batch.length - length)) != -1) {
+                    length += n;
+                    charsRead += n;
+                }
+                eof = n == -1;
+                metrics.add(Metrics.Phase.READ, System.nanoTime() - readStart);
+                if (atStart) {
+                    openBracket = startsWithBracket(batch, length);
+                }
+
+                // O(b) - each char is looked at once to find the cuts
+                List<Callable<DecodedTextWriter>> partitions = new ArrayList<>();
+                List<StringWriter> texts = new ArrayList<>();
+                List<Metrics> partitionMetrics = new ArrayList<>();
+                int start = 0;
+                int cut;
+                while ((cut = findCut(batch, start + partitionChars, length)) >= 0) {
+                    partitions.add(partitionTask(batch, start, cut, atStart, openBracket, closed, false, texts,
+                            partitionMetrics));
+                    atStart = false;
+                    start = cut;
+                }
+                if (eof) {
+                    partitions.add(partitionTask(batch, start, length, atStart, openBracket, closed, true, texts,
+                            partitionMetrics));
+                    start = length;
+                }
+
+                List<Future<DecodedTextWriter>> results = pool.invokeAll(partitions);
+                partitionMetrics.forEach(metrics::merge); // Every task has finished
+                long ioNanos = metrics.ioNanos();
+                long joinStart = System.nanoTime();
+                for (int i = 0; i < results.size(); i++) {
+                    DecodedTextWriter fragment = getPartition(results.get(i));
+                    if (fragment.hasTokens()) {
+                        decoded.append(texts.get(i).getBuffer(), fragment.startsWithWord());
+                    }
+                }
+                metrics.addExcludingIo(Metrics.Phase.MATCH, joinStart, ioNanos);
+
+                // The codes after the last cut go on to the next batch, which grows if it has no cut at all
+                System.arraycopy(batch, start, batch, 0, length - start);
+                length -= start;
+                if (length == batch.length) {
+                    batch = Arrays.copyOf(batch, batch.length * 2);
+                }
+                listener.progress(charsRead);
+            }
+            decoded.finish();
+            listener.progress(totalBytes);
+        } catch (IOException e) {
+            throw new RuntimeException("Error decoding file: " + e.getMessage(), e);
+        } finally {
+            pool.shutdown();
+            listener.finish();
+        }
+        listener.message("Decoding complete. Output written to: " + output);
+        finishRun(started);
+    }
+
+    // Where a partition can end: just after a comma at or after from, -1 if there is none before end
+    private static int findCut(char[] batch, int from, int end) {
+        for (int i = Math.max(from, 1); i < end; i++) {
+            if (batch[i - 1] == ',') {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    // Same whitespace as CodeTokenizer skips, only decides anything once a cut is possible
+    private static boolean startsWithBracket(char[] batch, int length) {
+        for (int i = 0; i < length; i++) {
+            char c = batch[i];
+            if (!CodeTokenizer.isWhitespace(c)) {
+                return c == '[';
+            }
+        }
+        return false;
+    }
+
+    /*
+     * O(w) for w trailing whitespace bytes - whether the file's last
+     * non-whitespace char is ']', read backwards from the end so a streaming
+     * mode knows before its first code whether decode() would strip the
+     * brackets. ']' and whitespace are single bytes in every charset used.
+     */
+    private static boolean endsWithBracket(String file) throws IOException {
+        try (RandomAccessFile in = new RandomAccessFile(file, "r")) {
+            byte[] tail = new byte[256];
+            long end = in.length();
+            while (end > 0) {
+                int n = (int) Math.min(tail.length, end);
+                end -= n;
+                in.seek(end);
+                in.readFully(tail, 0, n);
+                for (int i = n - 1; i >= 0; i--) {
+                    if (!CodeTokenizer.isWhitespace((char) (tail[i] & 0xFF))) {
+                        return tail[i] == ']';
+                    }
+                }
+            }
+            return false;
+        }
+    }
+
+    private static boolean endsWithBracket(CharSequence text) {
+        for (int i = text.length() - 1; i >= 0; i--) {
+            if (!CodeTokenizer.isWhitespace(text.charAt(i))) {
+                return text.charAt(i) == ']';
+            }
+        }
+        return false;
+    }
+
+    /*
+     * Decodes batch[start, end) into its own fragment. The StringWriter and
+     * the partition's own Metrics are added to texts and taskMetrics in
+     * partition order, the task returns the fragment's writer so the join
+     * can see how it starts.
+     */
+    private Callable<DecodedTextWriter> partitionTask(char[] batch, int start, int end, boolean atStart,
+            boolean openBracket, boolean closed, boolean last, List<StringWriter> texts,
+            List<Metrics> taskMetrics) {
+        StringWriter text = new StringWriter((end - start) * 2);
+        texts.add(text);
+        Metrics partitionMetrics = new Metrics("decode");
+        taskMetrics.add(partitionMetrics);
+        return () -> {
+            DecodedTextWriter fragment = new DecodedTextWriter(text, true);
+            CodeBuffer codes = new CodeBuffer();
+            CodeTokenizer tokenizer = atStart ? new CodeTokenizer(codes, closed)
+                    : new CodeTokenizer(codes, closed, openBracket);
+            long tokenizeStart = System.nanoTime();
+            tokenizer.feed(batch, start, end - start);
+            if (last) {
+                tokenizer.finish(); // Otherwise the partition ended with a comma, so no code is left
+            }
+            partitionMetrics.add(Metrics.Phase.TOKENIZE, System.nanoTime() - tokenizeStart);
+            decodeCodes(codes, fragment, partitionMetrics);
+            fragment.finish();
+            return fragment;
+        };
+    }
+
+    private static DecodedTextWriter getPartition(Future<DecodedTextWriter> partition) throws IOException {
+        try {
+            return partition.get();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw new RuntimeException("Error decoding partition: " + e.getCause().getMessage(), e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while decoding", e);
+        }
+    }
+
+    /*
+     * Decodes words [first, first + count) of a BLOCKED file (see
+     * BlockedEncodedWriter) to the output, as the same words of a full
+     * decode would read. Only the blocks holding them are read, found with
+     * a binary search of the index, so the cost is O(log b + r) for b
+     * blocks and r bytes of those blocks, rather than the whole file.
+     * Words are counted as the decoder writes them, see BlockIndex.
+     */
+    public void decodeWords(long first, long count) throws IOException {
+        requireFiles();
+        if (first < 0 || count < 0) {
+            throw new IllegalArgumentException("Word range must not be negative: " + first + "," + count);
+        }
+        long started = startRun();
+        loadMappings();
+        BlockIndex index = readIndex(readHeader());
+        long last = count > index.words() - first ? index.words() : first + count; // Exclusive, can't overflow
+        if (first >= last) {
+            // Nothing there, still an empty text like decode()
+            decodeBlocks(EncodedFormat.BLOCKED, 0, started, 0, 0, 0, 0, 0);
+            return;
+        }
+        int from = index.blockOfWord(first);
+        int to = index.blockOfWord(last - 1);
+        listener.message("Decoding words " + first + " to " + (last - 1) + " of " + index.words() + "...");
+        decodeBlocks(EncodedFormat.BLOCKED, 64 * 1024, started, index.start(from), index.end(to), index.firstWord(from),
+                first, last);
+    }
+
+    /*
+     * Decodes the text that came from source bytes [start, end) of the file
+     * that was encoded. The index only knows where each block's first word
+     * started, so this decodes every block the range overlaps, whole: the
+     * output covers the range, starting and ending on word boundaries, and
+     * can run up to a block either side of it. O(log b + r) like decodeWords().
+     */
+    public void decodeSourceRange(long start, long end) throws IOException {
+        requireFiles();
+        if (start < 0 || end < start) {
+            throw new IllegalArgumentException("Invalid source byte range: " + start + "," + end);
+        }
+        long started = startRun();
+        loadMappings();
+        BlockIndex index = readIndex(readHeader());
+        if (start == end || index.blocks() == 0) {
+            decodeBlocks(EncodedFormat.BLOCKED, 0, started, 0, 0, 0, 0, 0);
+            return;
+        }
+        int from = index.blockOfSource(start);
+        int to = index.blockOfSource(end - 1);
+        long last = to + 1 < index.blocks() ? index.firstWord(to + 1) : index.words();
+        listener.message("Decoding blocks " + from + " to " + to + " of " + index.blocks() + "...");
+        decodeBlocks(EncodedFormat.BLOCKED, 64 * 1024, started, index.start(from), index.end(to), index.firstWord(from),
+                index.firstWord(from), last);
+    }
+
+    // The input's header, with the dictionary it was encoded with picked to decode it
+    private EncodedHeader readHeader() throws IOException {
+        EncodedHeader header = EncodedHeader.read(input);
+        selectDictionary(header);
+        return header;
+    }
+
+    /*
+     * O(r) - decodes with the dictionary whose fingerprint is in the header.
+     * That is normally this run's own; if not and this Decoder was made with
+     * a LiveDictionary, one it has swapped out is used, the one it had when
+     * the input was encoded (see LiveDictionary.snapshot). With neither, the
+     * input is refused rather than decoded to the wrong words. Text input
+     * has no fingerprint and is decoded with this run's dictionary.
+     */
+    private void selectDictionary(EncodedHeader header) throws IOException {
+        if (!header.hasFingerprint() || header.fingerprint() == dictionary.fingerprint()) {
+            return;
+        }
+        Dictionary snapshot = live == null ? null : live.snapshot(header.fingerprint());
+        if (snapshot == null) {
+            throw new IOException("Encoded with another dictionary (fingerprint "
+                    + EncodedHeader.toHex(header.fingerprint()) + ") than this one ("
+                    + EncodedHeader.toHex(dictionary.fingerprint()) + "), use the mapping it was encoded with");
+        }
+        codeTable = snapshot.codes();
+        listener.message("Encoded with an earlier dictionary, decoding with that one (fingerprint "
+                + EncodedHeader.toHex(header.fingerprint()) + ")");
+    }
+
+    // O(b) - the footer of a BLOCKED input, anything else can't be decoded in ranges
+    private BlockIndex readIndex(EncodedHeader header) throws IOException {
+        if (header.format() != EncodedFormat.BLOCKED) {
+            throw new IOException("Range decoding needs a file encoded in the blocked format: " + input);
+        }
+        long start = System.nanoTime();
+        BlockIndex index = BlockIndex.read(Path.of(input));
+        metrics.add(Metrics.Phase.READ, System.nanoTime() - start);
+        return index;
+    }
+
+    /*
+     * Decodes the binary formats (see BinaryEncodedWriter), O(n+m+k).
+     * HUFFMAN is decoded to the same tokens on the way, see tokenReader().
+     * Each token says what it is and how long it is, so there is no
+     * whitespace to strip, no commas to find and no hex to parse.
+     * There is no separate tokenize step either, reading the varints is
+     * part of the MATCH time. A BLOCKED file is read up to its index.
+     */
+    private void decodeBinary(int bufferSize, long started) throws IOException {
+        listener.message("Decoding binary file...");
+        EncodedHeader header = readHeader();
+        long end = new File(input).length();
+        if (header.format() == EncodedFormat.BLOCKED) {
+            BlockIndex index = readIndex(header);
+            end = index.blocks() > 0 ? index.end(index.blocks() - 1) : header.length();
+        }
+        decodeBlocks(header.format(), bufferSize, started, header.length(), end, 0, Long.MIN_VALUE,
+                Long.MAX_VALUE);
+    }
+
+    // Decodes the tokens in input bytes [from, to) to the output file, see decodeTokens()
+    private void decodeBlocks(EncodedFormat format, int bufferSize, long started, long from, long to,
+            long firstWord, long wordsFrom, long wordsTo) throws IOException {
+        long totalBytes = Math.max(1, to - from);
+        listener.start(totalBytes);
+        try (FileInputStream file = new FileInputStream(input);
+                CountingInputStream in = new CountingInputStream(file, metrics);
+                BufferedWriter bw = new BufferedWriter(openOutput(), Math.max(bufferSize, 1024))) {
+            file.getChannel().position(from);
+            DecodedTextWriter decoded = new DecodedTextWriter(bw);
+            long ioNanos = metrics.ioNanos();
+            long start = System.nanoTime();
+            decodeTokens(tokenReader(format, in, bufferSize, to - from), in, decoded, firstWord, wordsFrom,
+                    wordsTo);
+            metrics.addExcludingIo(Metrics.Phase.MATCH, start, ioNanos);
+            listener.progress(totalBytes);
+        } catch (IOException e) {
+            throw new RuntimeException("Error decoding file: " + e.getMessage(), e);
+        } finally {
+            listener.finish();
+        }
+        listener.message("Decoding complete. Output written to: " + output);
+        finishRun(started);
+    }
+
+    /*
+     * Reads the tokens in the next length bytes of in. HUFFMAN tokens are
+     * entropy decoded by a HuffmanInputStream first, up to the end of in.
+     */
+    private static BinaryCodeReader tokenReader(EncodedFormat format, InputStream in, int bufferSize, long length) {
+        if (format == EncodedFormat.HUFFMAN) {
+            return new BinaryCodeReader(new HuffmanInputStream(in), bufferSize, Long.MAX_VALUE);
+        }
+        return new BinaryCodeReader(in, bufferSize, length);
+    }
+
+    /*
+     * Decodes every token reader has, the first of which starts word number
+     * firstWord, keeping only words [wordsFrom, wordsTo). A token that isn't
+     * a suffix starts the next word, suffixes go with the word before them.
+     */
+    private void decodeTokens(BinaryCodeReader reader, CountingInputStream in, DecodedWriter decoded,
+            long firstWord, long wordsFrom, long wordsTo) throws IOException {
+        long tokens = 0;
+        long word = firstWord - 1; // Word the current token belongs to
+        while (reader.next()) {
+            if (!reader.isSuffix() && ++word >= wordsTo) {
+                break;
+            }
+            if (word < wordsFrom) {
+                continue;
+            }
+            switch (reader.kind()) {
+                case BinaryEncodedWriter.WORD:
+                case BinaryEncodedWriter.SUFFIX:
+                    decodeEntry(codeTable.lookup(reader.number()), decoded, metrics);
+                    break;
+                case BinaryEncodedWriter.RAW:
+                    decoded.word(reader.textBytes(), reader.textOffset(), reader.textLength());
+                    metrics.record(Metrics.Event.HEX_WORD);
+                    break;
+                default:
+                    decodeCode(reader.text(), -1, decoded, metrics);
+                    break;
+            }
+            // Reported in batches, the listener draws the progress meter in its own time
+            if (++tokens % PROGRESS_BATCH == 0) {
+                listener.progress(in.count());
+            }
+        }
+        decoded.finish();
+    }
+
+    /*
+     * O(m) from a CSV, or O(1) when a compiled dictionary is mapped
+     * (see Dictionary.load)
+     */
+    private void loadMappings() {
+        if (mappingFile != null) {
+            long start = System.nanoTime();
+            dictionary = Dictionary.load(mappingFile);
+            metrics.add(Metrics.Phase.LOAD, System.nanoTime() - start);
+        } else if (live != null) {
+            dictionary = live.current(); // Kept to the end of the run, whatever is swapped in meanwhile
+        }
+        codeTable = dictionary.codes();
+    }
+
+    private void requireFiles() {
+        if (input == null || output == null) {
+            throw new IllegalStateException("No input or output file, this Decoder was made for streams");
+        }
+    }
+
+    private long startRun() {
+        metrics = new Metrics("decode");
+        return System.nanoTime();
+    }
+
+    // Fills in the file sizes and writes the report, if one was asked for
+    private void finishRun(long started) throws IOException {
+        metrics.finish(input, output, started);
+        if (report != ReportFormat.NONE) {
+            listener.message("Metrics report written to: " + metrics.writeReport(report));
+        }
+    }
+
+    // Platform charset as FileWriter was, with the time spent writing added to metrics
+    private Writer openOutput() throws IOException {
+        return new OutputStreamWriter(new TimedOutputStream(new FileOutputStream(output), metrics));
+    }
+
+    private static int read(Reader in, char[] chunk, Metrics metrics) throws IOException {
+        long start = System.nanoTime();
+        int n = in.read(chunk, 0, chunk.length);
+        metrics.add(Metrics.Phase.READ, System.nanoTime() - start);
+        return n;
+    }
+
+    // Decodes and then clears a batch of codes, timed as MATCH apart from writing to the file
+    private void decodeCodes(CodeBuffer codes, DecodedWriter decoded, Metrics metrics) throws IOException {
+        long ioNanos = metrics.ioNanos();
+        long start = System.nanoTime();
+        for (int i = 0; i < codes.size; i++) {
+            if (codes.texts[i] == null) {
+                decodeEntry(codeTable.lookup(codes.numbers[i]), decoded, metrics);
+            } else {
+                decodeCode(codes.texts[i], -1, decoded, metrics);
+            }
+        }
+        metrics.addExcludingIo(Metrics.Phase.MATCH, start, ioNanos);
+        codes.size = 0;
+    }
+
+    /*
+     * Decodes a single code into the output, one O(1) table lookup.
+     * Numeric codes are an array read with no String made for the code.
+     */
+    private void decodeCode(CharSequence code, int number, DecodedWriter decoded, Metrics metrics)
+            throws IOException {
+        int entry = codeTable.lookup(code, number);
+        if (entry >= 0) {
+            decodeEntry(entry, decoded, metrics);
+        } else if (code.length() > 0 && code.charAt(code.length() - 1) == 'x') {
+            // Handle hex decoding, parsed in place without the 'x' at the end
+            try {
+                byte[] bytes = HexFormat.of().parseHex(code, 0, code.length() - 1);
+                decoded.word(bytes, 0, bytes.length);
+                metrics.record(Metrics.Event.HEX_WORD);
+            } catch (IllegalArgumentException e) {
+                System.err.println("Invalid hex string: " + code);
+                metrics.record(Metrics.Event.UNKNOWN_CODE);
+            }
+        } else {
+            metrics.record(Metrics.Event.UNKNOWN_CODE);
+        }
+    }
+
+    // Unknown codes (entry -1) are skipped, as they always have been. The text goes by id, see DecodedWriter
+    private void decodeEntry(int entry, DecodedWriter decoded, Metrics metrics) throws IOException {
+        if (entry < 0) {
+            metrics.record(Metrics.Event.UNKNOWN_CODE);
+        } else if (codeTable.isSuffix(entry)) {
+            decoded.suffix(codeTable.strings(), codeTable.textId(entry));
+            metrics.record(Metrics.Event.SUFFIX_CODE);
+        } else {
+            decoded.word(codeTable.strings(), codeTable.textId(entry));
+            metrics.record(Metrics.Event.WORD_CODE);
+        }
+    }
+
+    /*
+     * The codes of one chunk, filled by a CodeTokenizer. Plain numeric codes
+     * are kept as just their int, anything else (hex words, non-numeric
+     * codes) as a String. The arrays are reused from chunk to chunk.
+     */
+    private static class CodeBuffer implements CodeTokenizer.CodeConsumer {
+        int size;
+        int[] numbers = new int[1024];
+        String[] texts = new String[1024];
+
+        @Override
+        public void accept(CharSequence code, int number) {
+            if (size == numbers.length) {
+                numbers = Arrays.copyOf(numbers, size * 2);
+                texts = Arrays.copyOf(texts, size * 2);
+            }
+            numbers[size] = number;
+            texts[size] = number >= 0 ? null : code.toString();
+            size++;
+        }
     }
 }
@@ -0,0 +1,483 @@
+package ie.atu.sw;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.DataOutputStream;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.CRC32;
+
+    /* A loaded mapping file, with the indexes both directions need:
+     * tries of words, suffixes and reversed suffixes for the Encoder and a
+     * code table for the Decoder.
+     *
+     * It can be built from the CSV, or mapped from a compiled .dict file
+     * with FileChannel.map. A compiled file holds the finished indexes, so
+     * loading it is O(1): no lines are split and no maps or tries are built,
+     * lookups run straight against the mapped pages.
+     * Loaded dictionaries are cached for the session, see load().
+     * Mapping CSVs are read as UTF-8 whatever the platform charset is.
+     *
+     * A mapped dictionary, or one copied into direct memory by offHeap(),
+     * lives outside the Java heap: the heap only holds a fixed number of
+     * small objects, so heap use and GC time don't grow with the number of
+     * entries. Strings are packed UTF-8 (see StringPool), codes are found
+     * by open addressing (see CodeTable). A CSV of OFF_HEAP_ENTRIES or more
+     * entries is moved off the heap by load() once it is parsed.
+     *
+     * Immutable once loaded, so one instance can be shared by any number of
+     * threads, e.g. given to Encoder(Dictionary) and Decoder(Dictionary).
+     * The UTF-8 tries are the only thing built later, once, under a lock.
+     *
+     * Each dictionary has a 64-bit fingerprint of its entries, which the
+     * binary formats write in their header (see EncodedHeader), so the
+     * Decoder can tell input encoded with another dictionary. A LiveDictionary
+     * keeps the ones it swapped out to decode such input, see snapshot() there.
+     *
+     * Compiled layout (big-endian):
+     *   magic, version, CSV size, CSV last modified, CSV CRC32, fingerprint
+     *   StringPool, word trie, suffix trie, reversed suffix trie, CodeTable
+     */
+public class Dictionary {
+    public static final String COMPILED_EXTENSION = ".dict";
+    private static final int MAGIC = 0x50504431; // "PPD1"
+    private static final int VERSION = 5; // 2 numeric code array, 3 reads UTF-8, 4 fingerprint, 5 UTF-8 strings
+    private static final int OFF_HEAP_ENTRIES = 100_000; // CSVs with at least this many strings go off-heap
+
+    private static final ConcurrentHashMap<Path, CacheEntry> CACHE = new ConcurrentHashMap<>();
+
+    private final long fingerprint; // Of the entries, see fingerprint()
+    private final boolean offHeap; // Every buffer is mapped or direct, see offHeap()
+
+    private final StringPool strings;
+    private final PrefixTrie words; // Word -> code
+    private final PrefixTrie suffixes; // Suffix without "@@" -> code
+    private final PrefixTrie reversedSuffixes; // Reversed suffix -> code, for OptimalSegmenter
+    private final CodeTable codes; // Code -> word or suffix
+    private volatile PrefixTrie utf8Words; // UTF-8 bytes of each word -> code, built on first use
+    private volatile PrefixTrie utf8Suffixes; // UTF-8 bytes of each suffix -> code, built on first use
+
+    private Dictionary(long fingerprint, boolean offHeap, StringPool strings, PrefixTrie words,
+            PrefixTrie suffixes, PrefixTrie reversedSuffixes, CodeTable codes) {
+        this.fingerprint = fingerprint;
+        this.offHeap = offHeap;
+        this.strings = strings;
+        this.words = words;
+        this.suffixes = suffixes;
+        this.reversedSuffixes = reversedSuffixes;
+        this.codes = codes;
+    }
+
+    /*
+     * Identifies the mapping by its entries rather than its file, so the CSV
+     * and its compiled .dict have the same one, and so does a copy of the
+     * CSV with its lines in another order.
+     */
+    public long fingerprint() {
+        return fingerprint;
+    }
+
+    public boolean isOffHeap() {
+        return offHeap;
+    }
+
+    // Number of distinct words, suffixes and codes
+    public int size() {
+        return strings.size();
+    }
+
+    public PrefixTrie words() {
+        return words;
+    }
+
+    public PrefixTrie suffixes() {
+        return suffixes;
+    }
+
+    public PrefixTrie reversedSuffixes() {
+        return reversedSuffixes;
+    }
+
+    public CodeTable codes() {
+        return codes;
+    }
+
+    /*
+     * The word trie keyed by UTF-8 bytes instead of chars, for
+     * Encoder.encodeMapped(). Built from words() the first time it is asked
+     * for, O(m*L), and then kept with the dictionary.
+     */
+    public PrefixTrie utf8Words() {
+        PrefixTrie trie = utf8Words;
+        if (trie == null) {
+            synchronized (this) {
+                trie = utf8Words;
+                if (trie == null) {
+                    trie = utf8Words = toUtf8(words);
+                }
+            }
+        }
+        return trie;
+    }
+
+    // As utf8Words(), for the suffixes
+    public PrefixTrie utf8Suffixes() {
+        PrefixTrie trie = utf8Suffixes;
+        if (trie == null) {
+            synchronized (this) {
+                trie = utf8Suffixes;
+                if (trie == null) {
+                    trie = utf8Suffixes = toUtf8(suffixes);
+                }
+            }
+        }
+        return trie;
+    }
+
+    /*
+     * Returns the dictionary for a mapping file, O(1) if it was already loaded
+     * this session. Entries are keyed by absolute path and checked against the
+     * file's modification time and size, so an edited file is loaded again.
+     * Dictionaries are immutable, so the Encoder and Decoder can share one.
+     */
+    public static Dictionary load(String mappingFile) {
+        Path path = Path.of(mappingFile).toAbsolutePath().normalize();
+        long modified;
+        long size;
+        try {
+            modified = Files.getLastModifiedTime(path).toMillis();
+            size = Files.size(path);
+        } catch (IOException e) {
+            throw new RuntimeException("Error reading mapping file: " + e.getMessage(), e);
+        }
+        // compute() runs one load per path at a time, so two callers never load the same file twice
+        return CACHE.compute(path, (key, cached) -> cached != null && cached.modified == modified
+                && cached.size == size ? cached : new CacheEntry(modified, size, loadUncached(mappingFile)))
+                .dictionary;
+    }
+
+    /*
+     * Loads a mapping file. A .dict file is mapped directly. For a CSV, a
+     * compiled file next to it is used if it is still up to date, otherwise
+     * the CSV is parsed. Package-private so the benchmarks can time it
+     * without the cache.
+     */
+    static Dictionary loadUncached(String mappingFile) {
+        Path path = Path.of(mappingFile);
+        try {
+            if (mappingFile.endsWith(COMPILED_EXTENSION)) {
+                Dictionary dictionary = map(path, null);
+                if (dictionary == null) {
+                    throw new IOException("Compiled by another version, compile the CSV again: " + mappingFile);
+                }
+                return dictionary;
+            }
+            Path compiled = compiledPath(path);
+            if (Files.exists(compiled)) {
+                Dictionary dictionary = map(compiled, path);
+                if (dictionary != null) {
+                    return dictionary;
+                }
+                System.err.println("Compiled dictionary " + compiled + " is out of date, loading " + mappingFile
+                        + " instead. Recompile it to speed up loading.");
+            }
+        } catch (IOException e) {
+            throw new RuntimeException("Error reading mapping file: " + e.getMessage(), e);
+        }
+        Dictionary dictionary = fromCsv(mappingFile);
+        return dictionary.size() >= OFF_HEAP_ENTRIES ? dictionary.offHeap() : dictionary;
+    }
+
+    /*
+     * Time Complexity here is O(m) as:
+     * while ((line = br.readLine()) != null) {...}
+     * Word processing like this cannot be done any *
+     * faster, as the code needs to process (loop) for *
+     * every word in the mapping file.
+     * Building the tries adds O(m*L) for keys up to L chars long.
+     */
+    public static Dictionary fromCsv(String csvFile) {
+        try (Reader csv = new FileReader(csvFile, StandardCharsets.UTF_8)) {
+            return fromCsv(csv);
+        } catch (IOException e) {
+            throw new RuntimeException("Error reading mapping file: " + e.getMessage(), e);
+        }
+    }
+
+    // As fromCsv(String), from mapping lines that aren't in a file, e.g. a resource. The Reader isn't closed
+    public static Dictionary fromCsv(Reader csv) {
+        HashMap<String, String> listWords = new HashMap<>(); // Word -> code
+        HashMap<String, String> suffixCodes = new HashMap<>(); // Suffix without "@@" -> code
+        HashMap<String, String> codeToWord = new HashMap<>();
+        HashMap<String, String> codeToSuffix = new HashMap<>();
+
+        try {
+            BufferedReader br = new BufferedReader(csv);
+            String line;
+            while ((line = br.readLine()) != null) {
+                String[] values = line.split(",");
+                if (values.length == 2) {
+                    String key = values[0].trim();
+                    String value = values[1].trim();
+
+                    if (key.startsWith("@@")) {
+                        suffixCodes.put(key.substring(2), value); // Remove @@ prefix when storing
+                        codeToSuffix.put(value, key.substring(2));
+                    } else {
+                        listWords.put(key, value);
+                        codeToWord.put(value, key);
+                    }
+                }
+            }
+        } catch (IOException e) {
+            throw new RuntimeException("Error reading mapping file: " + e.getMessage(), e);
+        }
+
+        // Every code and decoded text is stored once, the tries and code table refer to it by id
+        StringPool.Builder ids = new StringPool.Builder();
+        codeToWord.forEach((code, word) -> {
+            ids.add(code);
+            ids.add(word);
+        });
+        codeToSuffix.forEach((code, suffix) -> {
+            ids.add(code);
+            ids.add(suffix);
+        });
+        listWords.values().forEach(ids::add);
+        suffixCodes.values().forEach(ids::add);
+        StringPool strings = ids.build();
+
+        HashMap<String, Integer> reversed = new HashMap<>();
+        suffixCodes.forEach((suffix, code) -> reversed.put(new StringBuilder(suffix).reverse().toString(),
+                ids.id(code)));
+
+        // Both directions, as a code given to two words still only decodes to one of them
+        long fingerprint = fingerprint(1, listWords) + fingerprint(2, suffixCodes) + fingerprint(3, codeToWord)
+                + fingerprint(4, codeToSuffix);
+        return new Dictionary(fingerprint, false, strings, new PrefixTrie(toIds(listWords, ids), strings),
+                new PrefixTrie(toIds(suffixCodes, ids), strings), new PrefixTrie(reversed, strings),
+                new CodeTable(codeToWord, codeToSuffix, ids, strings));
+    }
+
+    /*
+     * Compiles a CSV into a .dict file next to it and returns its path.
+     * The CSV's size, modification time and CRC32 are stored so a stale
+     * compiled file is noticed when the CSV changes.
+     */
+    public static Path compile(String csvFile) throws IOException {
+        Path csv = Path.of(csvFile);
+        Path compiled = compiledPath(csv);
+        Dictionary dictionary = fromCsv(csvFile);
+
+        try (DataOutputStream out = new DataOutputStream(
+                new BufferedOutputStream(Files.newOutputStream(compiled), 64 * 1024))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeLong(Files.size(csv));
+            out.writeLong(Files.getLastModifiedTime(csv).toMillis());
+            out.writeLong(checksum(csv));
+            out.writeLong(dictionary.fingerprint);
+            dictionary.writeTo(out);
+        }
+        return compiled;
+    }
+
+    /*
+     * O(m) - a copy of this dictionary in direct memory, outside the heap,
+     * laid out as in a compiled file and used in place the same way.
+     * Returns this if it is off the heap already.
+     */
+    public Dictionary offHeap() {
+        if (offHeap) {
+            return this;
+        }
+        ByteBuffer in = direct(this::writeTo);
+        StringPool strings = StringPool.readFrom(in);
+        return new Dictionary(fingerprint, true, strings, PrefixTrie.readFrom(in, strings),
+                PrefixTrie.readFrom(in, strings), PrefixTrie.readFrom(in, strings), CodeTable.readFrom(in, strings));
+    }
+
+    // Every index, in the order map() and offHeap() read them back
+    private void writeTo(DataOutputStream out) throws IOException {
+        strings.writeTo(out);
+        words.writeTo(out);
+        suffixes.writeTo(out);
+        reversedSuffixes.writeTo(out);
+        codes.writeTo(out);
+    }
+
+    /*
+     * Writes sections into a direct buffer, sized by writing them once to
+     * nowhere first, so nothing the size of the dictionary is made on the heap.
+     */
+    private static ByteBuffer direct(SectionWriter sections) {
+        try {
+            DataOutputStream counter = new DataOutputStream(OutputStream.nullOutputStream());
+            sections.write(counter);
+            ByteBuffer buffer = ByteBuffer.allocateDirect(counter.size());
+            sections.write(new DataOutputStream(new BufferOutputStream(buffer)));
+            return buffer.flip();
+        } catch (IOException e) {
+            throw new RuntimeException("Error copying dictionary off the heap: " + e.getMessage(), e);
+        }
+    }
+
+    // encodings-10000.csv -> encodings-10000.dict
+    public static Path compiledPath(Path csv) {
+        String name = csv.getFileName().toString();
+        String base = name.toLowerCase().endsWith(".csv") ? name.substring(0, name.length() - 4) : name;
+        return csv.resolveSibling(base + COMPILED_EXTENSION);
+    }
+
+    /*
+     * Maps a compiled file, O(1) apart from the CRC check below.
+     * If csv is given and has changed since compiling, or the file is from
+     * another version, returns null.
+     * Size and modification time are checked first, the CRC32 is only
+     * worked out (O(m)) if they differ, e.g. after the CSV was copied.
+     */
+    private static Dictionary map(Path compiled, Path csv) throws IOException {
+        MappedByteBuffer in;
+        try (FileChannel channel = FileChannel.open(compiled, StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new IOException("Compiled dictionary is larger than 2GB: " + compiled);
+            }
+            in = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()); // Stays valid after closing
+        }
+        if (in.getInt() != MAGIC) {
+            throw new IOException("Not a compiled dictionary: " + compiled);
+        }
+        if (in.getInt() != VERSION) {
+            return null; // Compiled by an older version, needs compiling again
+        }
+        long csvSize = in.getLong();
+        long csvModified = in.getLong();
+        long csvChecksum = in.getLong();
+        long fingerprint = in.getLong();
+        if (csv != null && Files.exists(csv)) {
+            boolean unchanged = Files.size(csv) == csvSize
+                    && Files.getLastModifiedTime(csv).toMillis() == csvModified;
+            if (!unchanged && checksum(csv) != csvChecksum) {
+                return null;
+            }
+        }
+
+        StringPool strings = StringPool.readFrom(in);
+        PrefixTrie words = PrefixTrie.readFrom(in, strings);
+        PrefixTrie suffixes = PrefixTrie.readFrom(in, strings);
+        PrefixTrie reversedSuffixes = PrefixTrie.readFrom(in, strings);
+        CodeTable codes = CodeTable.readFrom(in, strings);
+        return new Dictionary(fingerprint, true, strings, words, suffixes, reversedSuffixes, codes);
+    }
+
+    private static long checksum(Path file) throws IOException {
+        CRC32 crc = new CRC32();
+        byte[] buffer = new byte[64 * 1024];
+        try (InputStream in = Files.newInputStream(file)) {
+            int n;
+            while ((n = in.read(buffer)) != -1) {
+                crc.update(buffer, 0, n);
+            }
+        }
+        return crc.getValue();
+    }
+
+    /*
+     * O(m*L) - the entries' hashes are added up, so the order of the CSV
+     * lines doesn't matter, and each is mixed first so near-identical
+     * entries don't cancel out. table tells the four maps apart.
+     */
+    private static long fingerprint(int table, Map<String, String> entries) {
+        long sum = 0;
+        for (Map.Entry<String, String> entry : entries.entrySet()) {
+            long hash = 0xcbf29ce484222325L ^ table; // FNV-1a over the chars of key, a separator and value
+            hash = hash(hash, entry.getKey());
+            hash = (hash ^ 0xFFFF) * 0x100000001b3L;
+            hash = hash(hash, entry.getValue());
+            hash = (hash ^ (hash >>> 30)) * 0xbf58476d1ce4e5b9L; // SplitMix64 finalizer
+            hash = (hash ^ (hash >>> 27)) * 0x94d049bb133111ebL;
+            sum += hash ^ (hash >>> 31);
+        }
+        return sum;
+    }
+
+    private static long hash(long hash, String text) {
+        for (int i = 0; i < text.length(); i++) {
+            hash = (hash ^ text.charAt(i)) * 0x100000001b3L;
+        }
+        return hash;
+    }
+
+    /*
+     * Each key's UTF-8 bytes as chars 0-255, so PrefixTrie can walk bytes.
+     * A key with a lone surrogate has no exact UTF-8 form, so it is left out
+     * rather than matching the '?' it would be written as. Built on the heap,
+     * then moved off it if the rest of the dictionary is.
+     */
+    private PrefixTrie toUtf8(PrefixTrie trie) {
+        HashMap<String, Integer> keys = new HashMap<>();
+        trie.forEachKey((key, codeId) -> {
+            byte[] bytes = key.getBytes(StandardCharsets.UTF_8);
+            if (new String(bytes, StandardCharsets.UTF_8).equals(key)) {
+                keys.put(new String(bytes, StandardCharsets.ISO_8859_1), codeId);
+            }
+        });
+        PrefixTrie utf8 = new PrefixTrie(keys, strings);
+        return offHeap ? PrefixTrie.readFrom(direct(utf8::writeTo), strings) : utf8;
+    }
+
+    private static Map<String, Integer> toIds(Map<String, String> keyToCode, StringPool.Builder ids) {
+        HashMap<String, Integer> result = new HashMap<>();
+        keyToCode.forEach((key, code) -> result.put(key, ids.id(code)));
+        return result;
+    }
+
+    private interface SectionWriter {
+        void write(DataOutputStream out) throws IOException;
+    }
+
+    // Fills a ByteBuffer that is known to be large enough
+    private static class BufferOutputStream extends OutputStream {
+        private final ByteBuffer buffer;
+
+        BufferOutputStream(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        @Override
+        public void write(int b) {
+            buffer.put((byte) b);
+        }
+
+        @Override
+        public void write(byte[] bytes, int offset, int length) {
+            buffer.put(bytes, offset, length);
+        }
+    }
+
+    // A loaded dictionary and the file state it was loaded from
+    private static class CacheEntry {
+        final long modified;
+        final long size;
+        final Dictionary dictionary;
+
+        CacheEntry(long modified, long size, Dictionary dictionary) {
+            this.modified = modified;
+            this.size = size;
+            this.dictionary = dictionary;
+        }
+    }
+}
@@ -0,0 +1,91 @@
+package ie.atu.sw;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+/*
+ * Format of the Encoder's output file.
+ * TEXT is the original "[173,66,4c696c61x]", BINARY is the varint format
+ * (see BinaryEncodedWriter) and BLOCKED is the same tokens cut into blocks
+ * with an index at the end, so ranges can be decoded without reading the
+ * whole file (see BlockedEncodedWriter). HUFFMAN is the BINARY tokens
+ * entropy coded a block at a time (see HuffmanOutputStream). The Decoder
+ * works out which one it has been given from the first bytes of the file,
+ * so only the Encoder needs telling.
+ * The binary formats start with a header holding the dictionary's
+ * fingerprint, see EncodedHeader.
+ */
+public enum EncodedFormat {
+    TEXT	("Text [code,code,...]"),
+    BINARY	("Binary (varint codes)"),
+    BLOCKED	("Blocked binary (seekable index)"),
+    HUFFMAN	("Huffman-coded binary (smallest)");
+
+    static final byte[] BINARY_MAGIC = { 'P', 'P', 'B', '1' };
+    static final byte[] BLOCKED_MAGIC = { 'P', 'P', 'X', '1' };
+    static final byte[] HUFFMAN_MAGIC = { 'P', 'P', 'H', '1' };
+    static final int MAGIC_LENGTH = 4;
+
+    private final String description;
+
+    EncodedFormat(String description) {
+        this.description = description;
+    }
+
+    public String description() {
+        return description;
+    }
+
+    // Cycles to the next format, used by the settings menu toggle
+    public EncodedFormat next() {
+        return values()[(ordinal() + 1) % values().length];
+    }
+
+    // Falls back to TEXT for missing or unknown values in settings.properties
+    public static EncodedFormat parse(String value) {
+        try {
+            return valueOf(value.trim().toUpperCase());
+        } catch (IllegalArgumentException | NullPointerException e) {
+            return TEXT;
+        }
+    }
+
+    // O(1) - only the first four bytes are read
+    public static EncodedFormat detect(String file) throws IOException {
+        try (InputStream in = Files.newInputStream(Path.of(file))) {
+            return detect(in.readNBytes(MAGIC_LENGTH));
+        }
+    }
+
+    // From the first bytes of an encoded file or stream, fewer if it is shorter
+    public static EncodedFormat detect(byte[] start) {
+        if (startsWith(start, BINARY_MAGIC)) {
+            return BINARY;
+        }
+        if (startsWith(start, BLOCKED_MAGIC)) {
+            return BLOCKED;
+        }
+        return startsWith(start, HUFFMAN_MAGIC) ? HUFFMAN : TEXT;
+    }
+
+    // Magic bytes of a binary format, TEXT has none
+    byte[] magic() {
+        switch (this) {
+            case BINARY:
+                return BINARY_MAGIC;
+            case BLOCKED:
+                return BLOCKED_MAGIC;
+            case HUFFMAN:
+                return HUFFMAN_MAGIC;
+            default:
+                return new byte[0];
+        }
+    }
+
+    static boolean startsWith(byte[] start, byte[] magic) {
+        return start.length >= magic.length && Arrays.equals(start, 0, magic.length, magic, 0, magic.length);
+    }
+}
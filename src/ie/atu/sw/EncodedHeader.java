@@ -0,0 +1,84 @@
+package ie.atu.sw;
+
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+    /* The start of an encoded file: which format it is in and, for the
+     * binary formats, the fingerprint of the dictionary it was encoded with
+     * (see Dictionary.fingerprint()), so the Decoder can tell when it has
+     * been given the wrong mapping file.
+     *
+     * Layout (big-endian):
+     *   BINARY, BLOCKED   magic "PPB1" / "PPX1", fingerprint (long), tokens...
+     *   HUFFMAN           magic "PPH1", fingerprint (long), coded blocks...
+     *   TEXT              no header, "[code,code,...]" as it always was
+     */
+public class EncodedHeader {
+    public static final int MAX_LENGTH = EncodedFormat.MAGIC_LENGTH + 8;
+
+    private final EncodedFormat format;
+    private final long fingerprint; // 0 for TEXT
+    private final int length; // Bytes before the first token
+
+    private EncodedHeader(EncodedFormat format, long fingerprint, int length) {
+        this.format = format;
+        this.fingerprint = fingerprint;
+        this.length = length;
+    }
+
+    public EncodedFormat format() {
+        return format;
+    }
+
+    // Every format but TEXT has one
+    public boolean hasFingerprint() {
+        return format != EncodedFormat.TEXT;
+    }
+
+    public long fingerprint() {
+        return fingerprint;
+    }
+
+    public int length() {
+        return length;
+    }
+
+    // O(1) - only the first MAX_LENGTH bytes are read
+    public static EncodedHeader read(String file) throws IOException {
+        try (InputStream in = Files.newInputStream(Path.of(file))) {
+            return parse(in.readNBytes(MAX_LENGTH));
+        }
+    }
+
+    // From the first MAX_LENGTH bytes of an encoded file or stream, fewer if it is shorter
+    public static EncodedHeader parse(byte[] start) throws IOException {
+        EncodedFormat format = EncodedFormat.detect(start);
+        if (format == EncodedFormat.TEXT) {
+            return new EncodedHeader(format, 0, 0);
+        }
+        if (start.length < MAX_LENGTH) {
+            throw new EOFException("Encoded file is too short for its header");
+        }
+        return new EncodedHeader(format, ByteBuffer.wrap(start, EncodedFormat.MAGIC_LENGTH, 8).getLong(), MAX_LENGTH);
+    }
+
+    // Writes the header of a binary format, TEXT has none
+    static void write(OutputStream out, EncodedFormat format, long fingerprint) throws IOException {
+        if (format == EncodedFormat.TEXT) {
+            return;
+        }
+        out.write(format.magic());
+        new DataOutputStream(out).writeLong(fingerprint); // Not flushed, DataOutputStream doesn't buffer
+    }
+
+    // As the Decoder reports it
+    public static String toHex(long fingerprint) {
+        return String.format("%016x", fingerprint);
+    }
+}
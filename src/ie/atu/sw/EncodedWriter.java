@@ -0,0 +1,35 @@
+package ie.atu.sw;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+    /* Where the Encoder sends its output, one token at a time.
+     * The Encoder decides what the tokens are, the writer decides how they
+     * look on disk: the original "[173,66,4c696c61x]" text or the binary
+     * varint format.
+     */
+public interface EncodedWriter {
+
+    // A dictionary code, suffix is true for an "@@" code glued onto the word before it
+    void code(String code, boolean suffix) throws IOException;
+
+    // A dictionary code by its StringPool id, see PrefixTrie.codeId()
+    default void code(StringPool strings, int id, boolean suffix) throws IOException {
+        code(strings.get(id), suffix);
+    }
+
+    // Text with no dictionary code, written out as its UTF-8 bytes
+    void raw(String text) throws IOException;
+
+    // Raw text that is already UTF-8, utf8[offset, offset + length), see Encoder.encodeMapped()
+    default void raw(byte[] utf8, int offset, int length) throws IOException {
+        raw(new String(utf8, offset, length, StandardCharsets.UTF_8));
+    }
+
+    // A new source word starts at this byte of the input, only Encoder.encodeMapped() knows it
+    default void startWord(long sourceOffset) throws IOException {
+    }
+
+    // Ends the output, called once after the last word
+    void finish() throws IOException;
+}
@@ -1,21 +1,61 @@
 package ie.atu.sw;
 
+import java.io.BufferedOutputStream;
 import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
 import java.io.FileReader;
-import java.io.FileWriter;
 import java.io.IOException;
-import java.io.PrintWriter;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.HexFormat;
+import java.util.Arrays;
 import java.util.List;
-import java.util.stream.Collectors;
+import java.util.Objects;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
 
 public class Encoder {
+    private static final int PROGRESS_BATCH = 4096; // Words between progress reports
+    private static final long MAP_WINDOW = 1L << 30; // Bytes mapped at once by encodeMapped()
+    private static final int STREAM_CHUNK = 8 * 1024; // Chars read at once by the stream methods
+    private static final int PIPELINE_BUFFERS = Pipeline.DEFAULT_BUFFERS; // Buffers each side of encodePipelined()
     private String input; // Path to input text file.
     private String mappingFile; // Path to mapping CSV.
     private String output; // Path to output file.
+    private Dictionary dictionary; // Given to the constructor, or filled by loadMappings() for each run
+    private LiveDictionary live; // Snapshot taken by loadMappings(), null unless given to the constructor
+    private PrefixTrie prefixIndex; // Word -> code, filled by loadMappings()
+    private PrefixTrie suffixIndex; // Suffix without "@@" -> code, filled by loadMappings()
+    private PrefixTrie utf8PrefixIndex; // UTF-8 bytes of each word -> code, filled by encodeMapped()
+    private PrefixTrie utf8SuffixIndex; // UTF-8 bytes of each suffix -> code, filled by encodeMapped()
+    private Segmentation segmentation = Segmentation.GREEDY; // How words are split into codes
+    private OptimalSegmenter segmenter; // Only set for the optimal modes
+    private EncodedFormat format = EncodedFormat.TEXT; // Layout of the output file
+    private int blockBytes = BlockedEncodedWriter.DEFAULT_BLOCK_BYTES; // Block size for the BLOCKED format
+    private ProgressListener listener = new ConsoleProgressListener(); // Progress bar and messages
+    private ReportFormat report = ReportFormat.NONE; // Metrics report written after each run
+    private Metrics metrics = new Metrics("encode"); // Of the last run
+    private boolean analyzeVocabulary; // Count the words and remainders written raw
+    private VocabularyAnalyzer vocabulary; // Of the last run, null unless analyzeVocabulary
 
     public Encoder(String input, String mappingFile, String output) {
         this.input = input;
@@ -23,6 +63,62 @@ public class Encoder {
         this.output = output;
     }
 
+    /*
+     * For use as a library, with no files: the stream and String methods
+     * take their input and output on each call. The dictionary is loaded
+     * once by the caller and can be shared between any number of Encoders
+     * and Decoders, it is immutable. An Encoder itself is not thread-safe,
+     * use one per thread.
+     */
+    public Encoder(Dictionary dictionary) {
+        this.dictionary = Objects.requireNonNull(dictionary);
+    }
+
+    // As Encoder(Dictionary), each run takes the dictionary current when it starts and keeps it to the end
+    public Encoder(LiveDictionary live) {
+        this.live = Objects.requireNonNull(live);
+    }
+
+    // NoOpProgressListener for headless runs, which report on each file themselves
+    public void setProgressListener(ProgressListener listener) {
+        this.listener = listener;
+    }
+
+    // Optimal modes give smaller output that the existing Decoder reads unchanged
+    public void setSegmentation(Segmentation segmentation) {
+        this.segmentation = segmentation;
+    }
+
+    // Binary output is smaller and faster to decode, the Decoder detects it by itself
+    public void setFormat(EncodedFormat format) {
+        this.format = format;
+    }
+
+    // Smaller blocks make range decodes read less, at 24 bytes of index each
+    public void setBlockBytes(int blockBytes) {
+        this.blockBytes = blockBytes;
+    }
+
+    // Writes a JSON or CSV report of metrics() next to the output after each run
+    public void setReportFormat(ReportFormat report) {
+        this.report = report;
+    }
+
+    // Phase times, how words were encoded and the compression ratio of the last run
+    public Metrics metrics() {
+        return metrics;
+    }
+
+    // Counts the out-of-vocabulary words and remainders on the next runs, see vocabulary()
+    public void setVocabularyAnalysis(boolean analyzeVocabulary) {
+        this.analyzeVocabulary = analyzeVocabulary;
+    }
+
+    // What was written raw in the last run, or null if the analysis was off
+    public VocabularyAnalyzer vocabulary() {
+        return vocabulary;
+    }
+
     /*
      * Overall Time Complexity of method:
      * 
@@ -31,42 +127,20 @@ public class Encoder {
      * k is input file size, and L is max word length
      */
     public void encode() throws IOException {
-        // Load CSV data into HashMaps.
-        HashMap<String, String> listWords = new HashMap<>();
-        HashMap<String, String> suffixes = new HashMap<>();
-
-        try (BufferedReader br = new BufferedReader(new FileReader(mappingFile))) {
-            String line;
-            /*
-             * Time Complexity here is O(m) as:
-             * while ((line = br.readLine()) != null) {...}
-             * Word processing like this cannot be done any *
-             * faster, as the code needs to process (loop) for *
-             * every word in the mapping file. This is the same for other sections *
-             * below.
-             */
-            while ((line = br.readLine()) != null) {
-                String[] values = line.split(",");
-                if (values.length == 2) {
-                    String key = values[0].trim();
-                    String value = values[1].trim();
-
-                    if (key.startsWith("@@")) {
-                        suffixes.put(key, value);
-                    } else {
-                        listWords.put(key, value);
-                    }
-                }
-            }
-        } catch (IOException e) {
-            throw new RuntimeException("Error reading mapping file: " + e.getMessage(), e);
+        requireFiles();
+        if (format == EncodedFormat.BLOCKED) {
+            encodeMapped(); // Needs the byte offset of every word
+            return;
         }
+        long started = startRun();
+        loadMappings();
 
         /*
          * Reads input file, also O(k) due to the nature of how
          * processing works here
          * while ((line = br.readLine()) != null) {..}
          */
+        long start = System.nanoTime();
         StringBuilder sampleTextBuilder = new StringBuilder();
         try (BufferedReader br = new BufferedReader(new FileReader(input))) {
             String line;
@@ -76,176 +150,681 @@ public class Encoder {
         } catch (IOException e) {
             throw new RuntimeException("Error reading input file: " + e.getMessage(), e);
         }
+        metrics.add(Metrics.Phase.READ, System.nanoTime() - start);
+
+        start = System.nanoTime();
         String sampleText = sampleTextBuilder.toString().trim();
 
-        // Process each word in the sample text.
-        List<String> outputLines = new ArrayList<>();
         // O(k) - split operation is linear in the input length
         String[] words = sampleText.split(" ");
         int totalWords = words.length;
+        metrics.add(Metrics.Phase.TOKENIZE, System.nanoTime() - start);
 
-        // Processes each word, O(n*L) where L is the max word length
-        for (int i = 0; i < totalWords; i++) {
-            String word = words[i];
-            String longestPrefix = null;
-            // Inner loop: O(L) where L is the word length
-            for (int j = word.length(); j > 0; j--) {
-                String prefix = word.substring(0, j);
-                // HashMap lookups are O(1)
-                if (listWords.containsKey(prefix)) {
-                    longestPrefix = prefix;
-                    break;
+        // Write each word's codes to the output file as it is encoded.
+        listener.start(totalWords);
+        try (OutputStream out = new BufferedOutputStream(
+                new TimedOutputStream(new FileOutputStream(output), metrics))) {
+            long ioNanos = metrics.ioNanos();
+            start = System.nanoTime();
+            EncodedWriter writer = track(openWriter(out), vocabulary);
+            // Processes each word, O(n*L) where L is the max word length
+            for (int i = 0; i < totalWords; i++) {
+                record(encodeWord(words[i], writer, segmenter), metrics, vocabulary);
+                // Reported in batches, the listener draws the progress meter in its own time
+                if (i % PROGRESS_BATCH == 0) {
+                    listener.progress(i);
                 }
             }
-            if (longestPrefix != null) {
-                String remainder = word.substring(longestPrefix.length());
-                if (!remainder.isEmpty()) {
-                    String suffixKey = "@@" + remainder;
-                    if (suffixes.containsKey(suffixKey)) {
-                        // Create a line containing both the prefix and the corresponding suffix.
-                        String prefixValue = listWords.get(longestPrefix);
-                        String suffixValue = suffixes.get(suffixKey);
-                        outputLines.add(prefixValue + "," + suffixValue);
-                    } else {
-                        // O(1) operations,
-
-                        /* The encoder will take the longest known prefix from the unknown word,
-                         *  The remainder is then parsed into UTF-8 Bytes 
-                         * Then it is finally converted to hex and a 'x' prefix is added denoting it is a custom word ('x' is not a hex char so it won't be produced in the sequence)
-                         * The combination of the UTF-8 Bytes and the hex representation ensures the char sequence will always be unique, this is essential for reprocessing the data as there won't be any collisions.
-                          */
-                        String prefixValue = listWords.get(longestPrefix);
-                        outputLines.add(prefixValue);
-                        String hexRemainder = HexFormat.of().formatHex(remainder.getBytes(StandardCharsets.UTF_8))
-                                + "x";
-                        outputLines.add(hexRemainder);
-                    }
-                } else {
-                    String prefixValue = listWords.get(longestPrefix);
-                    outputLines.add(prefixValue);
+            writer.finish();
+            metrics.addExcludingIo(Metrics.Phase.MATCH, start, ioNanos);
+            listener.progress(totalWords);
+        } catch (IOException e) {
+            throw new RuntimeException("Error writing output file: " + e.getMessage(), e);
+        } finally {
+            listener.finish();
+        }
+        listener.message("Encoding complete. Output written to: " + output);
+        finishRun(started);
+    }
+
+    /*
+     * Streaming version of encode(), the output file is identical.
+     *
+     * Time Complexity is the same O(n*L+m+k), but memory is O(c+L+m)
+     * where c is the chunk size, instead of holding the whole input, the
+     * split words and the joined output (several times k) at once.
+     * Words are matched and written as soon as the tokenizer completes them.
+     */
+    public void encodeStream(int chunkSize) throws IOException {
+        requireFiles();
+        if (format == EncodedFormat.BLOCKED) {
+            encodeMapped();
+            return;
+        }
+        long started = startRun();
+        loadMappings();
+
+        long totalBytes = Math.max(1, new File(input).length());
+        listener.start(totalBytes); // Input size is only known in bytes, chars read are close enough
+        try (BufferedReader br = new BufferedReader(new FileReader(input), chunkSize);
+                OutputStream out = new BufferedOutputStream(
+                        new TimedOutputStream(new FileOutputStream(output), metrics), chunkSize)) {
+            encodeChunks(br, track(openWriter(out), vocabulary), chunkSize);
+            listener.progress(totalBytes);
+        } catch (IOException e) {
+            throw new RuntimeException("Error encoding file: " + e.getMessage(), e);
+        } finally {
+            listener.finish();
+        }
+        listener.message("Encoding complete. Output written to: " + output);
+        finishRun(started);
+    }
+
+    /*
+     * Pipelined version of encodeStream(), the output file is identical.
+     *
+     * Reading the input file, matching and writing the output file each run
+     * on their own thread, joined by a Pipeline of PIPELINE_BUFFERS buffers
+     * of chunkSize bytes a side. While one chunk is matched the next is
+     * already being read and the last one written, so on slow storage the
+     * wall time tends to the larger of the I/O and the matching instead of
+     * their sum, and memory stays O(c+L+m) as for encodeStream().
+     * READ and WRITE are the times matching waited on the other two stages,
+     * so near zero when the I/O keeps up.
+     */
+    public void encodePipelined(int chunkSize) throws IOException {
+        requireFiles();
+        if (format == EncodedFormat.BLOCKED) {
+            encodeMapped();
+            return;
+        }
+        long started = startRun();
+        loadMappings();
+
+        long totalBytes = Math.max(1, new File(input).length());
+        listener.start(totalBytes); // Input size is only known in bytes, chars read are close enough
+        try (InputStream in = new FileInputStream(input);
+                OutputStream out = new FileOutputStream(output)) {
+            new Pipeline(PIPELINE_BUFFERS, chunkSize).run(in, out, (source, sink) -> {
+                // Platform charset as FileReader was
+                try (Reader reader = new InputStreamReader(source);
+                        OutputStream buffered = new BufferedOutputStream(new TimedOutputStream(sink, metrics),
+                                chunkSize)) {
+                    encodeChunks(reader, track(openWriter(buffered), vocabulary), chunkSize);
                 }
+            });
+            listener.progress(totalBytes);
+        } catch (IOException e) {
+            throw new RuntimeException("Error encoding file: " + e.getMessage(), e);
+        } finally {
+            listener.finish();
+        }
+        listener.message("Encoding complete. Output written to: " + output);
+        finishRun(started);
+    }
+
+    /*
+     * encodeStream() from a Reader to an OutputStream instead of between
+     * files. Writes what encodeStream() would write to the output file and
+     * closes neither. No metrics report is written, metrics() still has the
+     * phase times. The BLOCKED format needs the input as a file.
+     */
+    public void encodeStream(Reader in, OutputStream out, int chunkSize) throws IOException {
+        requireStreamFormat();
+        startRun();
+        loadMappings();
+        encodeChunks(in, track(openWriter(out), vocabulary), chunkSize);
+    }
+
+    // As encodeStream(Reader, OutputStream, int)
+    public void encode(Reader in, OutputStream out) throws IOException {
+        encodeStream(in, out, STREAM_CHUNK);
+    }
+
+    // As encode(Reader, OutputStream), the bytes are read as UTF-8
+    public void encode(InputStream in, OutputStream out) throws IOException {
+        encode(new InputStreamReader(in, StandardCharsets.UTF_8), out);
+    }
+
+    // As encode(Reader, OutputStream), the bytes are read as UTF-8
+    public void encode(ReadableByteChannel in, OutputStream out) throws IOException {
+        encode(Channels.newReader(in, StandardCharsets.UTF_8), out);
+    }
+
+    /*
+     * Encodes a text to the "[code,code,...]" text format, as encodeStream()
+     * would write it to a file, line break included. The codes go straight
+     * into the String with no bytes in between. Only the TEXT format is
+     * text, the others are written with encode(Reader, OutputStream).
+     */
+    public String encode(CharSequence text) {
+        if (format != EncodedFormat.TEXT) {
+            throw new IllegalStateException("Only the text format can be returned as a String, not " + format);
+        }
+        startRun();
+        loadMappings();
+        StringWriter encoded = new StringWriter(text.length() / 2 + 16);
+        try {
+            encodeChunks(new StringReader(text.toString()), track(new TextEncodedWriter(encoded), vocabulary),
+                    STREAM_CHUNK);
+        } catch (IOException e) {
+            throw new RuntimeException("Error encoding text: " + e.getMessage(), e);
+        }
+        return encoded.toString();
+    }
+
+    // O(k) - each chunk is tokenized, matched and written before the next is read
+    private void encodeChunks(Reader in, EncodedWriter writer, int chunkSize) throws IOException {
+        // A chunk's words are collected first, so tokenizing and matching can be timed apart
+        List<String> words = new ArrayList<>();
+        WordTokenizer tokenizer = new WordTokenizer(words::add);
+
+        char[] chunk = new char[chunkSize];
+        long charsRead = 0;
+        int n;
+        while ((n = read(in, chunk, metrics)) != -1) {
+            tokenize(tokenizer, chunk, n, metrics);
+            encodeWords(words, writer, segmenter, metrics, vocabulary);
+            charsRead += n;
+            listener.progress(charsRead);
+        }
+        tokenizer.finish();
+        encodeWords(words, writer, segmenter, metrics, vocabulary);
+        writer.finish();
+    }
+
+    /*
+     * Parallel version of encodeStream(), the output file is identical.
+     *
+     * The input is read in batches of about threads * 4 segments of
+     * segmentChars each. A segment is only cut just after a space or line
+     * break that is followed by a non-whitespace char, so it holds whole
+     * words and the whitespace at the cut can't be trailing (trim). Each
+     * segment gets its own WordTokenizer and is encoded on a ForkJoinPool
+     * into a buffer; the buffers are then written out in input order.
+     *
+     * Time Complexity is still O(n*L+m+k) in total, but the matching of a
+     * batch is shared between the threads. Memory is O(b) for a batch of
+     * b chars and its encoded output.
+     */
+    public void encodeParallel(int threads, int segmentChars) throws IOException {
+        requireFiles();
+        if (format == EncodedFormat.BLOCKED) {
+            encodeMapped();
+            return;
+        }
+        long started = startRun();
+        loadMappings();
+
+        long totalBytes = Math.max(1, new File(input).length());
+        ForkJoinPool pool = new ForkJoinPool(Math.max(1, threads));
+        listener.start(totalBytes); // Input size is only known in bytes, chars read are close enough
+        try (BufferedReader br = new BufferedReader(new FileReader(input), segmentChars);
+                OutputStream out = new BufferedOutputStream(
+                        new TimedOutputStream(new FileOutputStream(output), metrics), segmentChars)) {
+            char[] batch = new char[segmentChars * Math.max(1, threads) * 4];
+            int length = 0; // Chars in batch, starting with any carried over from the last one
+            long charsRead = 0;
+            boolean atStart = true; // No cut made yet, so the leading whitespace is still to trim
+            boolean wroteToken = false; // Text format needs a comma before every token but the first
+            boolean eof = false;
+            if (format == EncodedFormat.TEXT) {
+                out.write('[');
             } else {
-                // Encodes words not in the list into a raw UTF byte sequence as hex. "x" suffix marks custom encoding.
+                EncodedHeader.write(out, format, dictionary.fingerprint());
+            }
+            // Segments are coded as BINARY tokens, for HUFFMAN they are entropy coded once joined up
+            OutputStream tokens = format == EncodedFormat.HUFFMAN ? new HuffmanOutputStream(out) : out;
+
+            while (!eof) {
+                long readStart = System.nanoTime();
+                int n = 0;
+                while (length < batch.length && (n = br.read(batch, length, batch.length - length)) != -1) {
+                    length += n;
+                    charsRead += n;
+                }
+                eof = n == -1;
+                metrics.add(Metrics.Phase.READ, System.nanoTime() - readStart);
+
+                // O(b) - each char is looked at once to find the cuts
+                List<Callable<byte[]>> segments = new ArrayList<>();
+                List<Metrics> segmentMetrics = new ArrayList<>();
+                List<VocabularyAnalyzer> segmentVocabulary = new ArrayList<>();
+                int start = 0;
+                int cut;
+                while ((cut = findCut(batch, start + segmentChars, length)) >= 0) {
+                    segments.add(segmentTask(batch, start, cut, atStart, false, segmentMetrics, segmentVocabulary));
+                    atStart = false;
+                    start = cut;
+                }
+                if (eof) {
+                    segments.add(segmentTask(batch, start, length, atStart, true, segmentMetrics,
+                            segmentVocabulary));
+                    start = length;
+                }
+
+                List<Future<byte[]>> results = pool.invokeAll(segments);
+                segmentMetrics.forEach(metrics::merge); // Every task has finished
+                if (vocabulary != null) {
+                    segmentVocabulary.forEach(vocabulary::merge);
+                }
+                for (Future<byte[]> segment : results) {
+                    byte[] encoded = getSegment(segment);
+                    if (encoded.length > 0) {
+                        if (wroteToken && format == EncodedFormat.TEXT) {
+                            out.write(',');
+                        }
+                        tokens.write(encoded);
+                        wroteToken = true;
+                    }
+                }
 
-                String hex = HexFormat.of().formatHex(word.getBytes(StandardCharsets.UTF_8)) + "x"; 
-                outputLines.add(hex);
+                // The words after the last cut go on to the next batch, which grows if it has no cut at all
+                System.arraycopy(batch, start, batch, 0, length - start);
+                length -= start;
+                if (length == batch.length) {
+                    batch = Arrays.copyOf(batch, batch.length * 2);
+                }
+                listener.progress(charsRead);
             }
-            // Update progress meter for each processed word.
-            MethodHelper.printProgress(i + 1, totalWords);
-        }
-        System.out.println(); // Move to a new line after progress meter
 
-        // Write the output lines to the output file.
-        try (PrintWriter pw = new PrintWriter(new FileWriter(output))) {
-            // O(n) - joining operation is linear in the number of output lines
-            String joined = outputLines.stream()
-                    .collect(Collectors.joining(","));
-            pw.println("[" + joined + "]");
+            if (format == EncodedFormat.TEXT) {
+                out.write(']');
+                out.write(System.lineSeparator().getBytes()); // Platform charset, as TextEncodedWriter writes it
+            }
+            tokens.flush();
+            listener.progress(totalBytes);
         } catch (IOException e) {
-            throw new RuntimeException("Error writing output file: " + e.getMessage(), e);
+            throw new RuntimeException("Error encoding file: " + e.getMessage(), e);
+        } finally {
+            pool.shutdown();
+            listener.finish();
         }
-        System.out.println("Encoding complete. Output written to: " + output);
+        listener.message("Encoding complete. Output written to: " + output);
+        finishRun(started);
     }
 
-    public void decode() throws IOException {
-        HashMap<String, String> codeToWord = new HashMap<>();
-        HashMap<String, String> codeToSuffix = new HashMap<>();
+    /*
+     * Byte-level version of encode(). The input is mapped with FileChannel.map
+     * and always read as UTF-8, whatever the platform charset is. Words are
+     * cut and matched as bytes against the dictionary's UTF-8 tries, and raw
+     * text is hex-encoded straight from the mapped bytes, so no chars are
+     * decoded and then encoded again. For UTF-8 input on a UTF-8 platform the
+     * output is the same as encode(); malformed bytes are written raw as they
+     * are rather than as U+FFFD. The optimal segmentations still work on
+     * chars, so for them each word is decoded first.
+     *
+     * Time Complexity is the same O(n*L+m+k), memory is O(L) plus the mapped
+     * pages, which the OS can drop again at any time. Files over MAP_WINDOW
+     * bytes are mapped a window at a time. Page faults on the mapping are
+     * part of the MATCH time, as are cutting the words.
+     *
+     * The only encoder that knows where each word starts in the input, so
+     * the BLOCKED format is always written by this one.
+     */
+    public void encodeMapped() throws IOException {
+        encodeMapped(MAP_WINDOW);
+    }
 
-        try (BufferedReader br = new BufferedReader(new FileReader(mappingFile))) {
-            String line;
-            /*
-             * Complexity Analysis: O(m)
-             * Maps are created by iterating through each line of the CSV file.
-             * Unlike the encoder, we're creating a reversed mapping (code -> word)
-             * to maintain O(1) lookups when decoding, which prevents having to
-             * search through every entry in the maps for each code we process.
-             */
-            while ((line = br.readLine()) != null) {
-                String[] values = line.split(",");
-                if (values.length == 2) {
-                    String code = values[1].trim();
-                    String word = values[0].trim();
-
-                    if (word.startsWith("@@")) {
-                        codeToSuffix.put(code, word.substring(2)); // Remove @@ prefix when storing
-                    } else {
-                        codeToWord.put(code, word);
+    private void encodeMapped(long window) throws IOException {
+        requireFiles();
+        long started = startRun();
+        loadMappings();
+        long start = System.nanoTime();
+        utf8PrefixIndex = dictionary.utf8Words(); // O(m*L) the first time, then kept with the dictionary
+        utf8SuffixIndex = dictionary.utf8Suffixes();
+        metrics.add(Metrics.Phase.LOAD, System.nanoTime() - start);
+
+        try (FileChannel channel = FileChannel.open(Path.of(input), StandardOpenOption.READ);
+                OutputStream out = new BufferedOutputStream(
+                        new TimedOutputStream(new FileOutputStream(output), metrics), 64 * 1024)) {
+            long size = channel.size();
+            long end = lastWordByte(channel, size); // Everything after it is trailing whitespace (trim)
+            listener.start(Math.max(1, size));
+            EncodedWriter writer = track(openWriter(out), vocabulary);
+            long ioNanos = metrics.ioNanos();
+            start = System.nanoTime();
+
+            MappedByteBuffer mapped = null;
+            long base = 0; // File position of mapped[0]
+            byte[] word = new byte[64]; // Bytes of the word being cut, grows to the longest word
+            int length = 0;
+            boolean inText = false; // Leading whitespace is skipped (trim)
+            boolean lastWasCR = false; // "\r\n" is one line break
+            long wordStart = 0; // Input offset of the word being cut, for the BLOCKED index
+            long words = 0;
+            for (long i = 0; i <= end; i++) {
+                if (mapped == null || i - base >= mapped.limit()) {
+                    base = i;
+                    mapped = map(channel, base, Math.min(window, end + 1 - base));
+                }
+                byte b = mapped.get((int) (i - base));
+                if (!inText) {
+                    if ((b & 0xFF) <= ' ') {
+                        continue;
+                    }
+                    inText = true;
+                    wordStart = i;
+                }
+                if (b == '\n' && lastWasCR) {
+                    lastWasCR = false;
+                    wordStart = i + 1;
+                    continue; // Second half of "\r\n", readLine() counts it once
+                }
+                lastWasCR = b == '\r';
+
+                // Every line break is the single " " encode() joins lines with, then split(" ")
+                if (b == ' ' || b == '\n' || b == '\r') {
+                    writer.startWord(wordStart);
+                    record(encodeWord(word, length, writer), metrics, vocabulary);
+                    length = 0;
+                    wordStart = i + 1;
+                    if (++words % PROGRESS_BATCH == 0) {
+                        listener.progress(i);
+                    }
+                } else {
+                    if (length == word.length) {
+                        word = Arrays.copyOf(word, length * 2);
                     }
+                    word[length++] = b; // Tabs and other control chars stay part of the word
                 }
             }
+            // The last word, or the one empty word split(" ") gives for an empty text
+            writer.startWord(wordStart);
+            record(encodeWord(word, length, writer), metrics, vocabulary);
+            writer.finish();
+            metrics.addExcludingIo(Metrics.Phase.MATCH, start, ioNanos);
+            listener.progress(Math.max(1, size));
         } catch (IOException e) {
-            throw new RuntimeException("Error reading mapping file: " + e.getMessage(), e);
+            throw new RuntimeException("Error encoding file: " + e.getMessage(), e);
+        } finally {
+            listener.finish();
         }
+        listener.message("Encoding complete. Output written to: " + output);
+        finishRun(started);
+    }
 
-        /*
-         * File Reading: O(k) for input of size k
-         * StringBuilder is used for efficiency vs String concatenation
-         * which would create O(k^2) temporary objects in memory
-         */
-        StringBuilder sampleTextBuilder = new StringBuilder();
-        try (BufferedReader br = new BufferedReader(new FileReader(input))) {
-            String line;
-            while ((line = br.readLine()) != null) {
-                sampleTextBuilder.append(line);
+    private MappedByteBuffer map(FileChannel channel, long position, long length) throws IOException {
+        long start = System.nanoTime();
+        MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, position, length);
+        metrics.add(Metrics.Phase.READ, System.nanoTime() - start);
+        return mapped;
+    }
+
+    /*
+     * Position of the last byte that isn't whitespace or a control char, or
+     * -1 if there is none. In UTF-8 those chars are single bytes, and bytes
+     * of a multi-byte char are all 0x80 or more, so this is where trim()
+     * would end the text. Read backwards a block at a time, usually just one.
+     */
+    private long lastWordByte(FileChannel channel, long size) throws IOException {
+        long start = System.nanoTime();
+        ByteBuffer block = ByteBuffer.allocate(8 * 1024);
+        try {
+            for (long blockEnd = size; blockEnd > 0; blockEnd -= block.capacity()) {
+                long blockStart = Math.max(0, blockEnd - block.capacity());
+                block.clear().limit((int) (blockEnd - blockStart));
+                while (block.hasRemaining() && channel.read(block, blockStart + block.position()) != -1) {
+                    // Until the block is full
+                }
+                for (int i = block.position() - 1; i >= 0; i--) {
+                    if ((block.get(i) & 0xFF) > ' ') {
+                        return blockStart + i;
+                    }
+                }
             }
-        } catch (IOException e) {
-            throw new RuntimeException("Error reading input file: " + e.getMessage(), e);
+            return -1;
+        } finally {
+            metrics.add(Metrics.Phase.READ, System.nanoTime() - start);
         }
+    }
 
-        // String Processing: Multiple O(k) operations
-        String sampleText = sampleTextBuilder.toString().trim();
-        sampleText = sampleText.replaceAll("\\s+", ""); // Removes all whitespace
+    /*
+     * Where a segment can end: just after a space or line break that is
+     * followed by a non-whitespace char, at or after from. -1 if there is
+     * none before end, as the char after it is needed to be sure.
+     */
+    private static int findCut(char[] batch, int from, int end) {
+        for (int i = Math.max(from, 1); i < end; i++) {
+            char before = batch[i - 1];
+            if ((before == ' ' || before == '\n' || before == '\r') && batch[i] > ' ') {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /*
+     * Encodes batch[start, end) into its own buffer, with its own segmenter as
+     * they aren't thread-safe and its own Metrics, added to taskMetrics in order.
+     * The same goes for its VocabularyAnalyzer, when the analysis is on.
+     */
+    private Callable<byte[]> segmentTask(char[] batch, int start, int end, boolean atStart, boolean last,
+            List<Metrics> taskMetrics, List<VocabularyAnalyzer> taskVocabulary) {
+        Metrics segmentMetrics = new Metrics("encode");
+        taskMetrics.add(segmentMetrics);
+        VocabularyAnalyzer segmentVocabulary = analyzeVocabulary ? new VocabularyAnalyzer(format) : null;
+        if (segmentVocabulary != null) {
+            taskVocabulary.add(segmentVocabulary);
+        }
+        return () -> {
+            ByteArrayOutputStream encoded = new ByteArrayOutputStream((end - start) / 2 + 16);
+            EncodedWriter writer = track(format == EncodedFormat.TEXT
+                    ? new TextEncodedWriter(new BufferedWriter(new OutputStreamWriter(encoded)), false)
+                    : new BinaryEncodedWriter(encoded), segmentVocabulary);
+            List<String> words = new ArrayList<>();
+            WordTokenizer tokenizer = new WordTokenizer(words::add, atStart);
+            long tokenizeStart = System.nanoTime();
+            tokenizer.feed(batch, start, end - start);
+            if (last) {
+                tokenizer.finish();
+            } else {
+                tokenizer.finishSegment();
+            }
+            segmentMetrics.add(Metrics.Phase.TOKENIZE, System.nanoTime() - tokenizeStart);
+            encodeWords(words, writer, newSegmenter(), segmentMetrics, segmentVocabulary);
+            writer.finish();
+            return encoded.toByteArray();
+        };
+    }
 
-        // Bracket removal is O(1) since it's just substring operations
-        if (sampleText.startsWith("[") && sampleText.endsWith("]")) {
-            sampleText = sampleText.substring(1, sampleText.length() - 1);
+    private static byte[] getSegment(Future<byte[]> segment) throws IOException {
+        try {
+            return segment.get();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw new RuntimeException("Error encoding segment: " + e.getCause().getMessage(), e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while encoding", e);
         }
+    }
 
-        // Splitting the comma-separated codes: O(k)
-        String[] codes = sampleText.split(",");
+    /*
+     * Writes the format chosen with setFormat(), text is in the platform charset
+     * as FileWriter was. The binary formats get this run's dictionary's
+     * fingerprint in their header. HUFFMAN is the BINARY tokens through a
+     * HuffmanOutputStream. Buffered in chars too, as an OutputStreamWriter
+     * allocates on every write and tokens are only a few chars each.
+     */
+    private EncodedWriter openWriter(OutputStream out) throws IOException {
+        if (format == EncodedFormat.BINARY) {
+            return new BinaryEncodedWriter(out, dictionary.fingerprint());
+        } else if (format == EncodedFormat.BLOCKED) {
+            return new BlockedEncodedWriter(out, blockBytes, dictionary.fingerprint());
+        } else if (format == EncodedFormat.HUFFMAN) {
+            EncodedHeader.write(out, format, dictionary.fingerprint());
+            return new BinaryEncodedWriter(new HuffmanOutputStream(out)); // finish() flushes the last block
+        }
+        return new TextEncodedWriter(new BufferedWriter(new OutputStreamWriter(out), 8 * 1024));
+    }
 
-        /*
-         * Decoding Loop: O(n) where n is number of codes
-         * Unlike the encoder's O(n*L) complexity with nested loops,
-         * the decoder uses direct HashMap lookups which are O(1),
-         * making the overall complexity just O(n)
-         */
-        StringBuilder decodedText = new StringBuilder();
-        for (String code : codes) {
-            // All operations below are O(1) per iteration
-            if (codeToWord.containsKey(code)) {
-                decodedText.append(codeToWord.get(code)).append(" ");
-            } else if (codeToSuffix.containsKey(code)) {
-                // Suffix handling with O(1) string operations
-                int lastSpaceIndex = decodedText.toString().lastIndexOf(" ");
-                if (lastSpaceIndex != -1) {
-                    decodedText.deleteCharAt(lastSpaceIndex);
-                }
-                decodedText.append(codeToSuffix.get(code)).append(" ");
-            } else if (code.endsWith("x")) {
-                // Hex decoding with constant time operations per code
-                try {
-                    String hexValue = code.substring(0, code.length() - 1);
-                    String decodedHex = new String(HexFormat.of().parseHex(hexValue), StandardCharsets.UTF_8);
-                    decodedText.append(decodedHex).append(" ");
-                } catch (IllegalArgumentException e) {
-                    System.err.println("Invalid hex string: " + code);
+    /*
+     * O(m) from a CSV, or O(1) when a compiled dictionary is mapped
+     * (see Dictionary.load)
+     */
+    private void loadMappings() {
+        if (mappingFile != null) {
+            long start = System.nanoTime();
+            dictionary = Dictionary.load(mappingFile);
+            metrics.add(Metrics.Phase.LOAD, System.nanoTime() - start);
+        } else if (live != null) {
+            dictionary = live.current(); // Kept to the end of the run, whatever is swapped in meanwhile
+        }
+        prefixIndex = dictionary.words();
+        suffixIndex = dictionary.suffixes();
+        segmenter = newSegmenter();
+    }
+
+    private void requireFiles() {
+        if (input == null || output == null) {
+            throw new IllegalStateException("No input or output file, this Encoder was made for streams");
+        }
+    }
+
+    // BLOCKED needs the byte offset of every word, only encodeMapped() has them
+    private void requireStreamFormat() throws IOException {
+        if (format == EncodedFormat.BLOCKED) {
+            throw new IOException("The blocked format can only be written from a file, see encodeMapped()");
+        }
+    }
+
+    // Null for greedy, which needs no working state
+    private OptimalSegmenter newSegmenter() {
+        return segmentation == Segmentation.GREEDY ? null : new OptimalSegmenter(dictionary, segmentation, format);
+    }
+
+    private long startRun() {
+        metrics = new Metrics("encode");
+        vocabulary = analyzeVocabulary ? new VocabularyAnalyzer(format) : null;
+        return System.nanoTime();
+    }
+
+    // Fills in the file sizes and writes the report, if one was asked for
+    private void finishRun(long started) throws IOException {
+        metrics.finish(input, output, started);
+        if (report != ReportFormat.NONE) {
+            listener.message("Metrics report written to: " + metrics.writeReport(report));
+        }
+    }
+
+    private static int read(Reader in, char[] chunk, Metrics metrics) throws IOException {
+        long start = System.nanoTime();
+        int n = in.read(chunk, 0, chunk.length);
+        metrics.add(Metrics.Phase.READ, System.nanoTime() - start);
+        return n;
+    }
+
+    private static void tokenize(WordTokenizer tokenizer, char[] chunk, int length, Metrics metrics)
+            throws IOException {
+        long start = System.nanoTime();
+        tokenizer.feed(chunk, 0, length);
+        metrics.add(Metrics.Phase.TOKENIZE, System.nanoTime() - start);
+    }
+
+    // Encodes and then clears a batch of words, timed as MATCH apart from writing to the file
+    private void encodeWords(List<String> words, EncodedWriter out, OptimalSegmenter segmenter, Metrics metrics,
+            VocabularyAnalyzer vocabulary) throws IOException {
+        long ioNanos = metrics.ioNanos();
+        long start = System.nanoTime();
+        for (int i = 0; i < words.size(); i++) {
+            record(encodeWord(words.get(i), out, segmenter), metrics, vocabulary);
+        }
+        metrics.addExcludingIo(Metrics.Phase.MATCH, start, ioNanos);
+        words.clear();
+    }
+
+    // Lets the analyzer see the raw text written, the writer is unchanged when the analysis is off
+    private static EncodedWriter track(EncodedWriter writer, VocabularyAnalyzer vocabulary) {
+        return vocabulary != null ? vocabulary.track(writer) : writer;
+    }
+
+    private static void record(Metrics.Event event, Metrics metrics, VocabularyAnalyzer vocabulary) {
+        metrics.record(event);
+        if (vocabulary != null) {
+            vocabulary.record(event);
+        }
+    }
+
+    /*
+     * encodeWord() for the UTF-8 bytes word[0, length), used by encodeMapped().
+     * Greedy matches the bytes against the UTF-8 tries; as keys are whole
+     * chars, the longest byte prefix is the longest char prefix.
+     */
+    private Metrics.Event encodeWord(byte[] word, int length, EncodedWriter out) throws IOException {
+        if (segmenter != null) {
+            return segmenter.encode(new String(word, 0, length, StandardCharsets.UTF_8), out);
+        }
+
+        int prefixNode = utf8PrefixIndex.longestPrefix(word, 0, length);
+        if (prefixNode >= 0) {
+            int prefixLength = utf8PrefixIndex.length(prefixNode); // In bytes
+            out.code(utf8PrefixIndex.strings(), utf8PrefixIndex.codeId(prefixNode), false);
+            if (prefixLength < length) {
+                int suffixNode = utf8SuffixIndex.find(word, prefixLength, length);
+                if (suffixNode >= 0) {
+                    out.code(utf8SuffixIndex.strings(), utf8SuffixIndex.codeId(suffixNode), true);
+                    return Metrics.Event.PREFIX_SUFFIX;
                 }
+                out.raw(word, prefixLength, length - prefixLength);
+                return Metrics.Event.PREFIX_HEX;
             }
+            return Metrics.Event.FULL_WORD;
+        }
+        out.raw(word, 0, length);
+        return Metrics.Event.FULL_HEX;
+    }
+
+    /*
+     * Encodes a single word, writing its code(s) to out, and returns how it
+     * was encoded. segmenter is null for greedy
+     */
+    private Metrics.Event encodeWord(String word, EncodedWriter out, OptimalSegmenter segmenter)
+            throws IOException {
+        if (segmenter != null) {
+            return segmenter.encode(word, out); // O(L*K), see OptimalSegmenter
         }
 
-        // Output Writing: O(n) operations
-        String decodedOutput = decodedText.toString().trim();
+        // Single pass: O(L) where L is the word length, no substrings are created
+        int prefixNode = prefixIndex.longestPrefix(word, 0, word.length());
+        if (prefixNode >= 0) {
+            int prefixLength = prefixIndex.length(prefixNode);
+            out.code(prefixIndex.strings(), prefixIndex.codeId(prefixNode), false);
+            if (prefixLength < word.length()) {
+                int suffixNode = suffixIndex.find(word, prefixLength, word.length());
+                if (suffixNode >= 0) {
+                    // The prefix is followed by the corresponding suffix.
+                    out.code(suffixIndex.strings(), suffixIndex.codeId(suffixNode), true);
+                    return Metrics.Event.PREFIX_SUFFIX;
+                } else {
+                    // O(1) operations,
 
-        try (PrintWriter pw = new PrintWriter(new FileWriter(output))) {
-            // Final string processing: O(n) for splitting and joining
-            String[] outputWords = decodedOutput.split(" ");
-            String joined = String.join(" ", outputWords);
-            pw.println(joined);
-        } catch (IOException e) {
-            throw new RuntimeException("Error writing output file: " + e.getMessage(), e);
+                    /* The encoder will take the longest known prefix from the unknown word,
+                     * The remainder is then written raw, as UTF-8 bytes. In the text format
+                     * it is converted to hex and a 'x' prefix is added denoting it is a custom word ('x' is not a hex char so it won't be produced in the sequence)
+                     * The combination of the UTF-8 Bytes and the hex representation ensures the char sequence will always be unique, this is essential for reprocessing the data as there won't be any collisions.
+                      */
+                    out.raw(word.substring(prefixLength));
+                    return Metrics.Event.PREFIX_HEX;
+                }
+            }
+            return Metrics.Event.FULL_WORD;
+        } else {
+            // Encodes words not in the list as a raw UTF byte sequence (hex with an "x" suffix in the text format).
+            out.raw(word);
+            return Metrics.Event.FULL_HEX;
         }
+    }
 
-        System.out.println("Decoding complete. Output written to: " + output);
+    /*
+     * Decodes with the same files, kept so an Encoder can reverse its own output.
+     * It used to have its own copy of the decode loop, which attached suffixes with
+     * toString().lastIndexOf(" ") - O(k) per suffix and O(n*k) overall.
+     * Decoder attaches them in O(1), so this now just hands over to it.
+     */
+    public void decode() throws IOException {
+        new Decoder(input, mappingFile, output).decode();
     }
-}
\ No newline at end of file
+}
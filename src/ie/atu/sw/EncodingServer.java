@@ -0,0 +1,373 @@
+package ie.atu.sw;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+    /* Long-running mode, used when Runner is started with "serve":
+     *   serve [--map file ...] [--port N] [--threads N]
+     * Every mapping file given is loaded once at start up and kept warm, so
+     * a request pays for neither a JVM start nor a dictionary load. Requests
+     * are plain HTTP on the loopback address only:
+     *   POST /encode?map=name&format=text|binary&segmentation=...   body is UTF-8 text
+     *   POST /decode?map=name                                       body is encoded text or binary
+     *   GET  /maps                                                  loaded mapping names, one per line
+     *   POST /reload?map=name                                       loads the mapping file again
+     * map is the file name of one of the mapping files, the first one if
+     * left out. Bodies are streamed through the Encoder and Decoder a chunk
+     * at a time, so a document of any size is never held whole.
+     * Responses are held back up to RESPONSE_BUFFER bytes, so a small one
+     * goes out in one write with its length and a bad request still gets
+     * a 400 with the reason as its body. Nagle's algorithm is turned off,
+     * or every small response waits on the client's delayed ACK.
+     *
+     * Each request runs on a fixed pool of N threads. The dictionaries are
+     * loaded into immutable Dictionary objects that every request shares,
+     * each gets its own Encoder or Decoder. Each mapping is a LiveDictionary,
+     * so /reload rolls out an edited mapping file without stopping: requests
+     * already running finish with the old dictionary, later ones get the
+     * new one, and binary output encoded with the old one still decodes.
+     */
+public class EncodingServer {
+    public static final int OK = 0;
+    public static final int USAGE = 2;
+    public static final int DEFAULT_PORT = 8765;
+
+    private static final int OUTPUT_BUFFER = 8 * 1024; // Bytes the Encoder writes before passing them on
+    private static final int RESPONSE_BUFFER = 64 * 1024; // Responses up to this size are sent in one go
+    private static final String WARM_UP_TEXT = "the quick brown fox jumps over the lazy dog";
+
+    private final Map<String, LiveDictionary> maps = new LinkedHashMap<>(); // Name -> dictionary, first is the default
+    private final HttpServer server;
+    private final ExecutorService pool;
+
+    public EncodingServer(Iterable<String> mappingFiles, int port, int threads) throws IOException {
+        this(mappingFiles, port, threads, LiveDictionary.DEFAULT_RETAINED);
+    }
+
+    // retained is how many reloaded-over dictionaries each mapping keeps to decode what they encoded
+    public EncodingServer(Iterable<String> mappingFiles, int port, int threads, int retained) throws IOException {
+        for (String mappingFile : mappingFiles) {
+            String name = Path.of(mappingFile).getFileName().toString();
+            if (!maps.containsKey(name)) {
+                maps.put(name, new LiveDictionary(mappingFile, retained));
+            }
+        }
+        if (maps.isEmpty()) {
+            throw new IllegalArgumentException("No mapping file, give one with --map");
+        }
+        System.setProperty("sun.net.httpserver.nodelay", "true"); // Read once, when the first server is made
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+        pool = Executors.newFixedThreadPool(Math.max(1, threads));
+        server.setExecutor(pool);
+        server.createContext("/encode", exchange -> handle(exchange, true));
+        server.createContext("/decode", exchange -> handle(exchange, false));
+        server.createContext("/maps", this::listMaps);
+        server.createContext("/reload", this::reload);
+    }
+
+    // Warms up every dictionary, then starts taking requests
+    public void start() throws IOException {
+        for (LiveDictionary dictionary : maps.values()) {
+            warmUp(dictionary.current());
+        }
+        server.start();
+    }
+
+    public void stop() {
+        server.stop(1);
+        pool.shutdown();
+        try {
+            pool.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // The port actually bound, for --port 0
+    public int port() {
+        return server.getAddress().getPort();
+    }
+
+    // Runs the server from the command line arguments until the JVM is stopped, returns the exit code
+    public static int run(String[] args) throws IOException {
+        Settings settings = new Settings();
+        settings.load();
+        List<String> mappingFiles = new ArrayList<>();
+        int port = DEFAULT_PORT;
+        int threads = Math.max(4, Runtime.getRuntime().availableProcessors() * 2);
+        int retained = LiveDictionary.DEFAULT_RETAINED;
+        try {
+            for (int i = 1; i < args.length; i++) {
+                String option = args[i];
+                if (i + 1 >= args.length) {
+                    throw new IllegalArgumentException("Missing value for " + option);
+                }
+                String value = args[++i];
+                switch (option) {
+                    case "--map":
+                        mappingFiles.add(value);
+                        break;
+                    case "--port":
+                        port = parseNumber(option, value, 0);
+                        break;
+                    case "--threads":
+                        threads = parseNumber(option, value, 1);
+                        break;
+                    case "--retain":
+                        retained = parseNumber(option, value, 0);
+                        break;
+                    default:
+                        throw new IllegalArgumentException("Unknown option " + option);
+                }
+            }
+            if (mappingFiles.isEmpty() && settings.mapFile != null && !settings.mapFile.isEmpty()) {
+                mappingFiles.add(settings.mapFile);
+            }
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            printUsage();
+            return USAGE;
+        }
+
+        EncodingServer server;
+        try {
+            server = new EncodingServer(mappingFiles, port, threads, retained);
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            printUsage();
+            return USAGE;
+        }
+        server.start();
+        System.out.printf("Serving %s on http://127.0.0.1:%d with %d thread(s), Ctrl+C to stop%n",
+                String.join(", ", server.maps.keySet()), server.port(), threads);
+
+        CountDownLatch stopped = new CountDownLatch(1);
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            server.stop();
+            stopped.countDown();
+        }));
+        try {
+            stopped.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return OK;
+    }
+
+    private void handle(HttpExchange exchange, boolean encode) throws IOException {
+        LazyResponse response = new LazyResponse(exchange);
+        try {
+            if (!exchange.getRequestMethod().equals("POST")) {
+                sendError(exchange, 405, "Use POST");
+                return;
+            }
+            Map<String, String> query = query(exchange.getRequestURI().getRawQuery());
+            LiveDictionary dictionary = dictionary(query.get("map"));
+            if (encode) {
+                EncodedFormat format = EncodedFormat.parse(query.getOrDefault("format", "text"));
+                Encoder encoder = new Encoder(dictionary);
+                encoder.setProgressListener(new NoOpProgressListener());
+                encoder.setFormat(format);
+                encoder.setSegmentation(Segmentation.parse(query.getOrDefault("segmentation", "greedy")));
+                exchange.getResponseHeaders().set("Content-Type", format == EncodedFormat.TEXT
+                        ? "text/plain; charset=US-ASCII" : "application/octet-stream");
+                encoder.encode(exchange.getRequestBody(), new BufferedOutputStream(response, OUTPUT_BUFFER));
+            } else {
+                Decoder decoder = new Decoder(dictionary);
+                decoder.setProgressListener(new NoOpProgressListener());
+                exchange.getResponseHeaders().set("Content-Type", "text/plain; charset=UTF-8");
+                Writer out = new OutputStreamWriter(response, StandardCharsets.UTF_8);
+                decoder.decode(exchange.getRequestBody(), out);
+                out.flush();
+            }
+            response.finish();
+        } catch (IOException | IllegalArgumentException e) {
+            if (response.committed()) {
+                throw e; // Too late for a status, the client sees the response cut short
+            }
+            sendError(exchange, 400, e.getMessage());
+        } catch (RuntimeException e) {
+            if (response.committed()) {
+                throw e;
+            }
+            sendError(exchange, 500, e.getMessage());
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private void listMaps(HttpExchange exchange) throws IOException {
+        try {
+            byte[] body = (String.join("\n", maps.keySet()) + "\n").getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("Content-Type", "text/plain; charset=UTF-8");
+            exchange.sendResponseHeaders(200, body.length);
+            exchange.getResponseBody().write(body);
+        } finally {
+            exchange.close();
+        }
+    }
+
+    // Answers with the new dictionary's fingerprint, as written in the header of binary output
+    private void reload(HttpExchange exchange) throws IOException {
+        try {
+            if (!exchange.getRequestMethod().equals("POST")) {
+                sendError(exchange, 405, "Use POST");
+                return;
+            }
+            String name = query(exchange.getRequestURI().getRawQuery()).get("map");
+            LiveDictionary dictionary = dictionary(name);
+            Dictionary previous = dictionary.current();
+            Dictionary next = dictionary.reload();
+            warmUp(next);
+            byte[] body = (EncodedHeader.toHex(previous.fingerprint()) + " -> " + EncodedHeader.toHex(
+                    next.fingerprint()) + "\n").getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("Content-Type", "text/plain; charset=UTF-8");
+            exchange.sendResponseHeaders(200, body.length);
+            exchange.getResponseBody().write(body);
+        } catch (IllegalArgumentException e) {
+            sendError(exchange, 400, e.getMessage());
+        } catch (RuntimeException e) {
+            sendError(exchange, 500, e.getMessage()); // The old dictionary stays in use
+        } finally {
+            exchange.close();
+        }
+    }
+
+    // The dictionary a request names, or the default for none
+    private LiveDictionary dictionary(String name) {
+        if (name == null || name.isEmpty()) {
+            return maps.values().iterator().next();
+        }
+        LiveDictionary dictionary = maps.get(name);
+        if (dictionary == null) {
+            throw new IllegalArgumentException("Unknown mapping " + name + ", GET /maps lists them");
+        }
+        return dictionary;
+    }
+
+    // Runs the encode and decode paths through once, so the first request isn't the one to load their classes
+    private static void warmUp(Dictionary dictionary) {
+        Encoder encoder = new Encoder(dictionary);
+        encoder.setProgressListener(new NoOpProgressListener());
+        Decoder decoder = new Decoder(dictionary);
+        decoder.setProgressListener(new NoOpProgressListener());
+        decoder.decode(encoder.encode(WARM_UP_TEXT));
+    }
+
+    private static void sendError(HttpExchange exchange, int status, String message) throws IOException {
+        byte[] body = (message == null ? "Error" : message).concat("\n").getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "text/plain; charset=UTF-8");
+        exchange.sendResponseHeaders(status, body.length);
+        exchange.getResponseBody().write(body);
+    }
+
+    // "a=1&b=2" -> {a=1, b=2}
+    private static Map<String, String> query(String rawQuery) {
+        Map<String, String> query = new HashMap<>();
+        if (rawQuery == null) {
+            return query;
+        }
+        for (String pair : rawQuery.split("&")) {
+            int equals = pair.indexOf('=');
+            if (equals > 0) {
+                query.put(URLDecoder.decode(pair.substring(0, equals), StandardCharsets.UTF_8),
+                        URLDecoder.decode(pair.substring(equals + 1), StandardCharsets.UTF_8));
+            }
+        }
+        return query;
+    }
+
+    private static int parseNumber(String option, String value, int min) {
+        try {
+            int parsed = Integer.parseInt(value.trim());
+            if (parsed >= min) {
+                return parsed;
+            }
+        } catch (NumberFormatException e) {
+            // Reported below
+        }
+        throw new IllegalArgumentException(option + " must be a number of at least " + min + ": " + value);
+    }
+
+    private static void printUsage() {
+        System.err.println("Usage: serve [--map file ...] [--port N] [--threads N] [--retain N]");
+        System.err.println("Without --map the mapping file from settings.properties is served.");
+        System.err.println("--retain is how many earlier versions of each mapping still decode after a reload.");
+    }
+
+    /*
+     * Holds the first RESPONSE_BUFFER bytes back. A response that fits is sent
+     * whole with its length when the request is done, one write for a small
+     * document; a longer one is sent chunked from then on. Until something
+     * has been sent an error can still get its own status.
+     */
+    private static class LazyResponse extends OutputStream {
+        private final HttpExchange exchange;
+        private final ByteArrayOutputStream held = new ByteArrayOutputStream();
+        private OutputStream body;
+
+        LazyResponse(HttpExchange exchange) {
+            this.exchange = exchange;
+        }
+
+        boolean committed() {
+            return body != null;
+        }
+
+        // Sends what is held, with its length if the response ends here
+        void finish() throws IOException {
+            if (body == null) {
+                exchange.sendResponseHeaders(200, held.size() == 0 ? -1 : held.size());
+                held.writeTo(exchange.getResponseBody());
+            }
+            exchange.getResponseBody().flush();
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[] { (byte) b }, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] bytes, int offset, int length) throws IOException {
+            if (body == null && held.size() + length <= RESPONSE_BUFFER) {
+                held.write(bytes, offset, length);
+                return;
+            }
+            if (body == null) {
+                exchange.sendResponseHeaders(200, 0); // Chunked, the length isn't known yet
+                body = exchange.getResponseBody();
+                held.writeTo(body);
+            }
+            body.write(bytes, offset, length);
+        }
+
+        @Override
+        public void flush() throws IOException {
+            if (body != null) {
+                body.flush();
+            }
+        }
+    }
+}
@@ -0,0 +1,180 @@
+package ie.atu.sw;
+
+import java.util.Arrays;
+
+    /* A canonical Huffman code over the symbols of one block, see
+     * HuffmanOutputStream. Only each symbol's code length is stored in the
+     * file. Codes are handed out in order of (length, symbol), so the
+     * decoder rebuilds exactly the same code from the lengths alone.
+     *
+     * Lengths are limited to MAX_LENGTH bits. When a block's code would be
+     * deeper, its counts are halved and the code is built again, which only
+     * happens for blocks with a long tail of rare symbols and costs them a
+     * fraction of a percent. Decoding looks up FAST_BITS bits at once in a
+     * table, the longer codes of the rarest symbols are found a length at a
+     * time.
+     */
+public class HuffmanCode {
+    static final int MAX_LENGTH = 24; // Deep enough for any block, see HuffmanOutputStream.BLOCK_TOKENS
+    private static final int FAST_BITS = 11;
+
+    private final long[] symbols; // In canonical order, by length and then by value
+    private final int[] codes; // Code of the i-th symbol in the order given to the constructor, MSB first
+    private final int[] lengths; // Length of the same
+    private final int[] first = new int[MAX_LENGTH + 1]; // First code of each length
+    private final int[] count = new int[MAX_LENGTH + 1]; // Codes of each length
+    private final int[] offset = new int[MAX_LENGTH + 1]; // Index in symbols of the first code of each length
+    private int[] fast; // FAST_BITS leading bits -> (index << 5) | length, 0 for longer codes. Made by decode()
+    private int maxLength;
+
+    /*
+     * O(n) - values[0, n) in ascending order with their code lengths, as
+     * written to and read from a block. Lengths that can't be a prefix code,
+     * as from a corrupt file, throw IllegalArgumentException.
+     */
+    HuffmanCode(long[] values, int[] valueLengths, int n) {
+        long space = 0; // Of the 2^MAX_LENGTH codes of the longest length, how many are taken (Kraft)
+        for (int i = 0; i < n; i++) {
+            int length = valueLengths[i];
+            if (length < 1 || length > MAX_LENGTH || (space += 1L << (MAX_LENGTH - length)) > 1L << MAX_LENGTH) {
+                throw new IllegalArgumentException("Invalid Huffman code lengths");
+            }
+            count[length]++;
+            maxLength = Math.max(maxLength, length);
+        }
+        int code = 0;
+        int index = 0;
+        for (int length = 1; length <= MAX_LENGTH; length++) {
+            first[length] = code;
+            offset[length] = index;
+            code = (code + count[length]) << 1;
+            index += count[length];
+        }
+
+        // A counting sort by length keeps values in order within each length
+        symbols = new long[n];
+        codes = new int[n];
+        lengths = new int[n];
+        int[] next = offset.clone();
+        for (int i = 0; i < n; i++) {
+            int length = valueLengths[i];
+            int position = next[length]++;
+            symbols[position] = values[i];
+            codes[i] = first[length] + position - offset[length];
+            lengths[i] = length;
+        }
+    }
+
+    // Of the i-th symbol given to the constructor
+    int code(int i) {
+        return codes[i];
+    }
+
+    int length(int i) {
+        return lengths[i];
+    }
+
+    long symbol(int index) {
+        return symbols[index];
+    }
+
+    /*
+     * O(1) for codes up to FAST_BITS long, O(L) for longer ones. bits holds
+     * the next bits of the stream from its top bit down. Returns the
+     * symbol's index for symbol() shifted left by 5, with the code's length
+     * in the low 5 bits, or -1 if the bits aren't a code.
+     */
+    int decode(long bits) {
+        if (fast == null) {
+            fast = buildFast();
+        }
+        int entry = fast[(int) (bits >>> (64 - FAST_BITS))];
+        if (entry != 0) {
+            return entry;
+        }
+        for (int length = FAST_BITS + 1; length <= maxLength; length++) {
+            int index = (int) (bits >>> (64 - length)) - first[length];
+            if (index >= 0 && index < count[length]) {
+                return ((offset[length] + index) << 5) | length;
+            }
+        }
+        return -1;
+    }
+
+    // Every FAST_BITS bit pattern that starts with a short enough code points at its symbol
+    private int[] buildFast() {
+        int[] table = new int[1 << FAST_BITS];
+        for (int length = 1; length <= Math.min(maxLength, FAST_BITS); length++) {
+            for (int i = 0; i < count[length]; i++) {
+                int from = (first[length] + i) << (FAST_BITS - length);
+                int to = from + (1 << (FAST_BITS - length));
+                int entry = ((offset[length] + i) << 5) | length;
+                for (int pattern = from; pattern < to; pattern++) {
+                    table[pattern] = entry;
+                }
+            }
+        }
+        return table;
+    }
+
+    /*
+     * O(n log n) - the code length of each of counts[0, n), none of them
+     * zero, at most MAX_LENGTH. Symbols are merged two at a time, rarest
+     * first. As the counts are sorted, the merged nodes come out in order
+     * too, so two queues do the job of a heap. A lone symbol gets length 1.
+     */
+    static int[] lengths(long[] counts, int n) {
+        int[] lengths = new int[n];
+        if (n == 1) {
+            lengths[0] = 1;
+            return lengths;
+        }
+        long[] scaled = Arrays.copyOf(counts, n);
+        while (true) {
+            // Count and symbol packed in a long, so sorting needs no objects. Counts are under 2^31
+            long[] sorted = new long[n];
+            for (int i = 0; i < n; i++) {
+                sorted[i] = scaled[i] << 32 | i;
+            }
+            Arrays.sort(sorted);
+            int[] order = new int[n];
+            for (int i = 0; i < n; i++) {
+                order[i] = (int) sorted[i];
+            }
+
+            // Nodes 0 to n - 1 are the sorted leaves, n onwards the merged nodes in the order they are made
+            long[] weight = new long[2 * n - 1];
+            int[] parent = new int[2 * n - 1];
+            for (int i = 0; i < n; i++) {
+                weight[i] = scaled[order[i]];
+            }
+            int leaf = 0;
+            int merged = n;
+            for (int node = n; node < 2 * n - 1; node++) {
+                for (int pick = 0; pick < 2; pick++) {
+                    boolean takeLeaf = leaf < n && (merged == node || weight[leaf] <= weight[merged]);
+                    int smallest = takeLeaf ? leaf++ : merged++;
+                    weight[node] += weight[smallest];
+                    parent[smallest] = node;
+                }
+            }
+
+            // Parents are made after their children, so depths can be filled in from the root down
+            int[] depth = new int[2 * n - 1];
+            int deepest = 0;
+            for (int node = 2 * n - 3; node >= 0; node--) {
+                depth[node] = depth[parent[node]] + 1;
+                deepest = Math.max(deepest, depth[node]);
+            }
+            if (deepest <= MAX_LENGTH) {
+                for (int i = 0; i < n; i++) {
+                    lengths[order[i]] = depth[i];
+                }
+                return lengths;
+            }
+            for (int i = 0; i < n; i++) {
+                scaled[i] = (scaled[i] + 1) >>> 1; // Never zero, so a halved code is still complete
+            }
+        }
+    }
+}
@@ -0,0 +1,249 @@
+package ie.atu.sw;
+
+import java.io.BufferedInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+
+    /* Decoding stage for the HUFFMAN format: reads the blocks written by
+     * HuffmanOutputStream and gives back the token stream that went into
+     * it, so a BinaryCodeReader reads it as if it were BINARY. Reads until
+     * the end of in, which must be past the header.
+     *
+     * A block is read whole, its codes are rebuilt from the code lengths,
+     * the side section is decoded and tokens are then decoded as the reader
+     * asks for bytes, straight into its buffer. Most codes take one table lookup, see HuffmanCode.
+     */
+public class HuffmanInputStream extends InputStream {
+    private static final int MAX_VARINT = 10; // Bytes of a long as a varint
+
+    private final InputStream in;
+    private final byte[] one = new byte[1]; // For read()
+    private final byte[] pending = new byte[MAX_VARINT]; // A token header that didn't fit the reader's buffer
+    private int pendingPosition;
+    private int pendingLength;
+
+    // The current block
+    private HuffmanCode code;
+    private long tokensLeft;
+    private final BitReader tokenBits = new BitReader();
+    private final BitReader sideBits = new BitReader();
+    private byte[] side = new byte[0]; // Decoded as the block is read
+    private int sideLength;
+    private int sidePosition;
+    private long textRemaining; // Bytes of a RAW or CODE token's text still to give back
+
+    public HuffmanInputStream(InputStream in) {
+        this.in = new BufferedInputStream(in, 64 * 1024); // The block headers are read a byte at a time
+    }
+
+    @Override
+    public int read() throws IOException {
+        return read(one, 0, 1) == -1 ? -1 : one[0] & 0xFF;
+    }
+
+    @Override
+    public int read(byte[] buffer, int offset, int length) throws IOException {
+        int start = offset;
+        int end = offset + length;
+        while (offset < end) {
+            if (pendingPosition < pendingLength) {
+                int n = Math.min(pendingLength - pendingPosition, end - offset);
+                System.arraycopy(pending, pendingPosition, buffer, offset, n);
+                pendingPosition += n;
+                offset += n;
+            } else if (textRemaining > 0) {
+                int n = (int) Math.min(textRemaining, end - offset);
+                System.arraycopy(side, sidePosition, buffer, offset, n);
+                sidePosition += n;
+                textRemaining -= n;
+                offset += n;
+            } else if (tokensLeft == 0 && !readBlock()) {
+                break;
+            } else if (end - offset >= MAX_VARINT) {
+                offset = nextToken(buffer, offset);
+            } else {
+                pendingLength = nextToken(pending, 0);
+                pendingPosition = 0;
+            }
+        }
+        return offset == start && length > 0 ? -1 : offset - start;
+    }
+
+    @Override
+    public void close() throws IOException {
+        in.close();
+    }
+
+    /*
+     * O(1) mostly - decodes the next token and writes its header varint to
+     * target at position, returning where it ends. Its text, if any, is
+     * left for read() to copy from the side section.
+     */
+    private int nextToken(byte[] target, int position) throws IOException {
+        long symbol = code.symbol(tokenBits.next(code));
+        tokensLeft--;
+        long header;
+        if (symbol == HuffmanOutputStream.RAW_SYMBOL) {
+            textRemaining = sideVarint();
+            header = textRemaining << 2 | BinaryEncodedWriter.RAW;
+        } else if ((symbol & 3) == BinaryEncodedWriter.CODE) {
+            textRemaining = sideVarint();
+            header = ((textRemaining << 1 | symbol >>> 2) << 2) | BinaryEncodedWriter.CODE;
+        } else {
+            header = symbol;
+        }
+        if (textRemaining > sideLength - sidePosition) {
+            throw new EOFException("Truncated text in encoded file");
+        }
+        while ((header & ~0x7FL) != 0) {
+            target[position++] = (byte) ((header & 0x7F) | 0x80);
+            header >>>= 7;
+        }
+        target[position++] = (byte) header;
+        return position;
+    }
+
+    // O(s + t + b) - reads a whole block, decoding its side section, false at the end of in
+    private boolean readBlock() throws IOException {
+        int first = in.read();
+        if (first < 0) {
+            return false;
+        }
+        tokensLeft = readVarint(first);
+        if (tokensLeft <= 0 || tokensLeft > HuffmanOutputStream.BLOCK_TOKENS) {
+            throw new IOException("Corrupt block in encoded file");
+        }
+        code = readCode((int) tokensLeft, Long.MAX_VALUE);
+        tokenBits.read(size(readVarint(in.read())));
+
+        sideLength = size(readVarint(in.read()));
+        sidePosition = 0;
+        if (sideLength > 0) {
+            HuffmanCode sideCode = readCode(256, 0xFF);
+            sideBits.read(size(readVarint(in.read())));
+            if (side.length < sideLength) {
+                side = new byte[Math.max(sideLength, side.length * 2)];
+            }
+            for (int i = 0; i < sideLength; i++) {
+                side[i] = (byte) sideCode.symbol(sideBits.next(sideCode));
+            }
+        }
+        return true;
+    }
+
+    // A code's table as HuffmanOutputStream.writeCode() writes it, of at most max symbols up to maxValue
+    private HuffmanCode readCode(int max, long maxValue) throws IOException {
+        int symbols = size(readVarint(in.read()));
+        if (symbols <= 0 || symbols > max) {
+            throw new IOException("Corrupt block in encoded file");
+        }
+        long[] values = new long[symbols];
+        long value = 0;
+        for (int i = 0; i < symbols; i++) {
+            value += readVarint(in.read());
+            if (value < 0 || value > maxValue) {
+                throw new IOException("Corrupt block in encoded file");
+            }
+            values[i] = value;
+        }
+        int[] lengths = new int[symbols];
+        int bits = 0;
+        int bitCount = 0;
+        for (int i = 0; i < symbols; i++) {
+            if (bitCount < 5) {
+                int b = in.read();
+                if (b < 0) {
+                    throw new EOFException("Truncated block in encoded file");
+                }
+                bits = (bits << 8) | b;
+                bitCount += 8;
+            }
+            bitCount -= 5;
+            lengths[i] = ((bits >>> bitCount) & 31) + 1;
+        }
+        try {
+            return new HuffmanCode(values, lengths, symbols);
+        } catch (IllegalArgumentException e) {
+            throw new IOException("Corrupt block in encoded file: " + e.getMessage(), e);
+        }
+    }
+
+    // The side section holds the length of each RAW and CODE text
+    private long sideVarint() throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            if (sidePosition == sideLength) {
+                break;
+            }
+            int b = side[sidePosition++];
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("Corrupt text length in encoded file");
+    }
+
+    private long readVarint(int first) throws IOException {
+        int b = first;
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            if (b < 0) {
+                throw new EOFException("Truncated block in encoded file");
+            }
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+            b = in.read();
+        }
+        throw new IOException("Corrupt varint in encoded file");
+    }
+
+    private static int size(long value) throws IOException {
+        if (value > Integer.MAX_VALUE - 8) {
+            throw new IOException("Block too large in encoded file: " + value);
+        }
+        return (int) value;
+    }
+
+    // Coded bytes of a block, taken a code at a time from the top bit down
+    private class BitReader {
+        private byte[] coded = new byte[0];
+        private int codedLength;
+        private int codedPosition; // Next byte of coded to go into bits
+        private long bits; // Next bits of coded from the top bit down
+        private int bitCount; // Of bits, the rest are zeros
+
+        // Reads length coded bytes from in, reusing the array when it is big enough
+        void read(int length) throws IOException {
+            if (coded.length < length) {
+                coded = new byte[Math.max(length, coded.length * 2)];
+            }
+            if (in.readNBytes(coded, 0, length) != length) {
+                throw new EOFException("Truncated block in encoded file");
+            }
+            codedLength = length;
+            codedPosition = 0;
+            bits = 0;
+            bitCount = 0;
+        }
+
+        // O(1) mostly - the index in code.symbol() of the next code
+        int next(HuffmanCode code) throws IOException {
+            while (bitCount <= 56 && codedPosition < codedLength) {
+                bits |= (long) (coded[codedPosition++] & 0xFF) << (56 - bitCount);
+                bitCount += 8;
+            }
+            int entry = code.decode(bits);
+            int length = entry & 31;
+            if (entry < 0 || length > bitCount) {
+                throw new IOException("Corrupt Huffman code in encoded file");
+            }
+            bits <<= length;
+            bitCount -= length;
+            return entry >>> 5;
+        }
+    }
+}
@@ -0,0 +1,387 @@
+package ie.atu.sw;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+
+    /* Entropy coding stage for the HUFFMAN format: takes the token stream
+     * BinaryEncodedWriter writes and Huffman codes it a block at a time,
+     * so the codes of common words cost a few bits and rare ones more,
+     * instead of every code costing whole bytes by its number. Each block
+     * has its own frequency table, so the code follows the text as it goes.
+     *
+     * A token's kind and code number together are one symbol. The text of a
+     * RAW or CODE token would make every symbol unique, so its symbol only
+     * says which it is and its length and bytes go into a side section of
+     * the block, which is coded a byte at a time with a code of its own.
+     * Layout of a block, varints as in BinaryEncodedWriter:
+     *
+     *   tokens, token code, coded bytes, the coded tokens,
+     *   side bytes, and when there are any: side code, coded bytes, the
+     *   coded side section
+     *
+     * A code is its number of symbols, their values ascending, each as the
+     * gap from the one before, and each one's code length less one in 5
+     * bits, padded to a whole byte.
+     *
+     * Blocks are only cut between tokens, every BLOCK_TOKENS tokens and on
+     * flush(), which BinaryEncodedWriter.finish() calls. HuffmanInputStream
+     * gives the token stream back.
+     */
+public class HuffmanOutputStream extends OutputStream {
+    static final int BLOCK_TOKENS = 1 << 17; // Also bounds the code length, see HuffmanCode.MAX_LENGTH
+    static final long RAW_SYMBOL = BinaryEncodedWriter.RAW; // Length and text are in the side section
+    static final long CODE_SYMBOL = BinaryEncodedWriter.CODE; // Plus 4 for the suffix flag
+
+    private final OutputStream out;
+
+    // The token being read, byte by byte as the writer sends it
+    private long header; // Varint so far
+    private int shift; // Bits of header read so far, 0 between tokens
+    private long textRemaining; // Bytes of RAW or CODE text still to come
+
+    // The block so far
+    private long[] symbols = new long[1024];
+    private int tokens;
+    private byte[] side = new byte[1024];
+    private int sideLength;
+    private final SymbolCounts counts = new SymbolCounts();
+
+    public HuffmanOutputStream(OutputStream out) {
+        this.out = out;
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        if (textRemaining > 0) {
+            sideByte(b);
+            textRemaining--;
+            endToken();
+            return;
+        }
+        if (shift > 63) {
+            throw new IOException("Corrupt token, varint too long");
+        }
+        header |= (long) (b & 0x7F) << shift;
+        shift += 7;
+        if ((b & 0x80) != 0) {
+            return;
+        }
+        long value = header >>> 2;
+        switch ((int) header & 3) {
+            case BinaryEncodedWriter.WORD:
+            case BinaryEncodedWriter.SUFFIX:
+                addSymbol(header);
+                break;
+            case BinaryEncodedWriter.RAW:
+                addSymbol(RAW_SYMBOL);
+                text(value);
+                break;
+            default:
+                addSymbol(CODE_SYMBOL | (value & 1) << 2);
+                text(value >>> 1);
+                break;
+        }
+        header = 0;
+        shift = 0;
+        endToken();
+    }
+
+    // Text bytes are copied in one go, anything else goes through write(int)
+    @Override
+    public void write(byte[] bytes, int offset, int length) throws IOException {
+        while (length > 0) {
+            if (textRemaining > 0) {
+                int n = (int) Math.min(textRemaining, length);
+                ensureSide(n);
+                System.arraycopy(bytes, offset, side, sideLength, n);
+                sideLength += n;
+                textRemaining -= n;
+                offset += n;
+                length -= n;
+                endToken();
+            } else {
+                write(bytes[offset++]);
+                length--;
+            }
+        }
+    }
+
+    // Codes and writes the tokens so far as a block, unless a token is only part written
+    @Override
+    public void flush() throws IOException {
+        if (shift == 0 && textRemaining == 0) {
+            writeBlock();
+        }
+        out.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        flush();
+        out.close();
+    }
+
+    // A block ends once it is full and nothing of a token is left to come
+    private void endToken() throws IOException {
+        if (tokens >= BLOCK_TOKENS && shift == 0 && textRemaining == 0) {
+            writeBlock();
+        }
+    }
+
+    private void addSymbol(long symbol) {
+        if (tokens == symbols.length) {
+            symbols = Arrays.copyOf(symbols, tokens * 2);
+        }
+        symbols[tokens++] = symbol;
+        counts.add(symbol);
+    }
+
+    // Starts the text of a RAW or CODE token, its length goes first
+    private void text(long length) {
+        writeVarint(length);
+        textRemaining = length;
+    }
+
+    private void sideByte(int b) {
+        ensureSide(1);
+        side[sideLength++] = (byte) b;
+    }
+
+    private void writeVarint(long value) {
+        while ((value & ~0x7FL) != 0) {
+            sideByte((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        sideByte((int) value);
+    }
+
+    private void ensureSide(int more) {
+        if (sideLength + more > side.length) {
+            side = Arrays.copyOf(side, Math.max(side.length * 2, sideLength + more));
+        }
+    }
+
+    /*
+     * O(t + s log s + b) for t tokens with s distinct symbols and b side
+     * bytes: each code is built from the block's counts, then each token
+     * and each side byte is written as its code.
+     */
+    private void writeBlock() throws IOException {
+        if (tokens == 0) {
+            return;
+        }
+        BlockBuffer block = new BlockBuffer(counts.size() * 3 + tokens * 2 + sideLength + 32);
+        block.varint(tokens);
+        int n = counts.size();
+        long[] values = counts.symbols();
+        Arrays.sort(values);
+        long[] frequencies = new long[n];
+        for (int i = 0; i < n; i++) {
+            frequencies[i] = counts.count(values[i]);
+            counts.setIndex(values[i], i);
+        }
+        HuffmanCode code = writeCode(block, values, frequencies, n);
+        BlockBuffer coded = new BlockBuffer(tokens * 2 + 8);
+        for (int t = 0; t < tokens; t++) {
+            int i = counts.index(symbols[t]);
+            coded.bits(code.code(i), code.length(i));
+        }
+        coded.endBits();
+        block.varint(coded.length);
+        block.write(coded.bytes, 0, coded.length);
+
+        block.varint(sideLength);
+        if (sideLength > 0) {
+            writeSide(block);
+        }
+        out.write(block.bytes, 0, block.length);
+
+        tokens = 0;
+        sideLength = 0;
+        counts.clear();
+    }
+
+    // O(b) - the side bytes coded with a byte code of their own, as spelling is skewed too
+    private void writeSide(BlockBuffer block) {
+        long[] byteCounts = new long[256];
+        for (int i = 0; i < sideLength; i++) {
+            byteCounts[side[i] & 0xFF]++;
+        }
+        long[] values = new long[256];
+        long[] frequencies = new long[256];
+        int[] index = new int[256];
+        int n = 0;
+        for (int b = 0; b < 256; b++) {
+            if (byteCounts[b] > 0) {
+                values[n] = b;
+                frequencies[n] = byteCounts[b];
+                index[b] = n++;
+            }
+        }
+        HuffmanCode code = writeCode(block, values, frequencies, n);
+        BlockBuffer coded = new BlockBuffer(sideLength + 8);
+        for (int i = 0; i < sideLength; i++) {
+            int b = index[side[i] & 0xFF];
+            coded.bits(code.code(b), code.length(b));
+        }
+        coded.endBits();
+        block.varint(coded.length);
+        block.write(coded.bytes, 0, coded.length);
+    }
+
+    // Writes a code's table, values[0, n) ascending as gaps and then their lengths, and returns the code
+    private static HuffmanCode writeCode(BlockBuffer block, long[] values, long[] frequencies, int n) {
+        int[] lengths = HuffmanCode.lengths(frequencies, n);
+        block.varint(n);
+        long previous = 0;
+        for (int i = 0; i < n; i++) {
+            block.varint(values[i] - previous);
+            previous = values[i];
+        }
+        for (int i = 0; i < n; i++) {
+            block.bits(lengths[i] - 1, 5);
+        }
+        block.endBits();
+        return new HuffmanCode(values, lengths, n);
+    }
+
+    // A growable byte array, ByteArrayOutputStream without the locking and copying, that also packs codes
+    private static class BlockBuffer {
+        byte[] bytes;
+        int length;
+        private long bits; // Of a code not yet in whole bytes, MSB first
+        private int bitCount;
+
+        BlockBuffer(int capacity) {
+            bytes = new byte[capacity];
+        }
+
+        void write(int b) {
+            if (length == bytes.length) {
+                bytes = Arrays.copyOf(bytes, length * 2);
+            }
+            bytes[length++] = (byte) b;
+        }
+
+        void write(byte[] source, int offset, int count) {
+            if (length + count > bytes.length) {
+                bytes = Arrays.copyOf(bytes, Math.max(bytes.length * 2, length + count));
+            }
+            System.arraycopy(source, offset, bytes, length, count);
+            length += count;
+        }
+
+        void varint(long value) {
+            while ((value & ~0x7FL) != 0) {
+                write((int) ((value & 0x7F) | 0x80));
+                value >>>= 7;
+            }
+            write((int) value);
+        }
+
+        void bits(int code, int codeLength) {
+            bits = (bits << codeLength) | code;
+            bitCount += codeLength;
+            while (bitCount >= 8) {
+                bitCount -= 8;
+                write((int) (bits >>> bitCount));
+            }
+        }
+
+        // Pads the last bits with zeros to a whole byte
+        void endBits() {
+            if (bitCount > 0) {
+                write((int) (bits << (8 - bitCount)));
+                bitCount = 0;
+            }
+        }
+    }
+
+    /*
+     * Symbol -> count, then -> index in the block's code, by open addressing
+     * on the symbol so counting a token makes no objects. Grows to stay at
+     * most half full, and keeps its size from block to block.
+     */
+    private static class SymbolCounts {
+        private long[] keys = new long[1024];
+        private int[] values = new int[1024]; // Count while the block is read, then index
+        private boolean[] used = new boolean[1024];
+        private int size;
+
+        void add(long symbol) {
+            int slot = slot(symbol);
+            if (!used[slot]) {
+                used[slot] = true;
+                keys[slot] = symbol;
+                size++;
+                if (size * 2 > keys.length) {
+                    grow();
+                    slot = slot(symbol);
+                }
+            }
+            values[slot]++;
+        }
+
+        int count(long symbol) {
+            return values[slot(symbol)];
+        }
+
+        void setIndex(long symbol, int index) {
+            values[slot(symbol)] = index;
+        }
+
+        int index(long symbol) {
+            return values[slot(symbol)];
+        }
+
+        int size() {
+            return size;
+        }
+
+        long[] symbols() {
+            long[] symbols = new long[size];
+            int n = 0;
+            for (int slot = 0; slot < keys.length; slot++) {
+                if (used[slot]) {
+                    symbols[n++] = keys[slot];
+                }
+            }
+            return symbols;
+        }
+
+        void clear() {
+            Arrays.fill(used, false);
+            Arrays.fill(values, 0);
+            size = 0;
+        }
+
+        // Where symbol is, or the empty slot it would go in
+        private int slot(long symbol) {
+            int mask = keys.length - 1;
+            long hash = symbol * 0x9E3779B97F4A7C15L;
+            int slot = (int) (hash >>> 40) & mask;
+            while (used[slot] && keys[slot] != symbol) {
+                slot = (slot + 1) & mask;
+            }
+            return slot;
+        }
+
+        private void grow() {
+            long[] oldKeys = keys;
+            int[] oldValues = values;
+            boolean[] oldUsed = used;
+            keys = new long[oldKeys.length * 2];
+            values = new int[oldKeys.length * 2];
+            used = new boolean[oldKeys.length * 2];
+            for (int i = 0; i < oldKeys.length; i++) {
+                if (oldUsed[i]) {
+                    int slot = slot(oldKeys[i]);
+                    used[slot] = true;
+                    keys[slot] = oldKeys[i];
+                    values[slot] = oldValues[i];
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,129 @@
+package ie.atu.sw;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicReference;
+
+    /* A dictionary that can be replaced while it is in use, for a long-running
+     * process such as EncodingServer that has to take a new mapping file
+     * without stopping. Dictionaries are immutable, so a swap is just a new
+     * reference: current() is one volatile read and never waits, and an
+     * Encoder or Decoder made with this takes the current dictionary once at
+     * the start of each run and keeps it to the end. Work in flight finishes
+     * with the dictionary it started with while new work gets the new one.
+     *
+     * Output encoded before a swap still decodes, as its header names the
+     * old dictionary's fingerprint and a Decoder made with this finds it with
+     * snapshot(). Only the last `retained` dictionaries swapped out are kept
+     * for that, and retire() lets them go once their output is decoded, so a
+     * server reloading its mapping all day doesn't hold on to every version.
+     */
+public class LiveDictionary {
+    public static final int DEFAULT_RETAINED = 4; // Dictionaries swapped out that snapshot() still finds
+
+    private final String mappingFile; // Reloaded by reload(), null if made from a Dictionary
+    private final int retained;
+    private final AtomicReference<Dictionary> current;
+    private volatile List<Dictionary> earlier = List.of(); // Swapped out, newest first, replaced whole by swap()
+
+    public LiveDictionary(String mappingFile) {
+        this(mappingFile, DEFAULT_RETAINED);
+    }
+
+    public LiveDictionary(String mappingFile, int retained) {
+        this.mappingFile = Objects.requireNonNull(mappingFile);
+        this.retained = requireRetained(retained);
+        this.current = new AtomicReference<>(Dictionary.load(mappingFile));
+    }
+
+    public LiveDictionary(Dictionary dictionary) {
+        this(dictionary, DEFAULT_RETAINED);
+    }
+
+    public LiveDictionary(Dictionary dictionary, int retained) {
+        this.mappingFile = null;
+        this.retained = requireRetained(retained);
+        this.current = new AtomicReference<>(Objects.requireNonNull(dictionary));
+    }
+
+    // O(1), lock-free
+    public Dictionary current() {
+        return current.get();
+    }
+
+    /*
+     * O(r) - puts next in use for every run that starts from now on and
+     * returns the one it replaces, which snapshot() finds until `retained`
+     * newer ones have been swapped out or retire() is called. Swaps wait on
+     * each other, never on current() or snapshot().
+     */
+    public synchronized Dictionary swap(Dictionary next) {
+        Objects.requireNonNull(next);
+        Dictionary previous = current.get();
+        List<Dictionary> kept = new ArrayList<>(earlier.size() + 1);
+        kept.add(previous);
+        kept.addAll(earlier);
+        kept.removeIf(dictionary -> dictionary.fingerprint() == next.fingerprint()); // Never the current one
+        kept = kept.subList(0, Math.min(kept.size(), retained));
+        earlier = List.copyOf(kept); // Before the swap, so a snapshot() in between still finds previous
+        current.set(next);
+        return previous;
+    }
+
+    /*
+     * O(r) - the current dictionary or one of those kept by swap() with this
+     * fingerprint, or null if none has it. Never waits on a swap.
+     */
+    public Dictionary snapshot(long fingerprint) {
+        Dictionary dictionary = current.get();
+        if (dictionary.fingerprint() == fingerprint) {
+            return dictionary;
+        }
+        for (Dictionary kept : earlier) {
+            if (kept.fingerprint() == fingerprint) {
+                return kept;
+            }
+        }
+        return null;
+    }
+
+    /*
+     * O(1) - forgets every dictionary swapped out so far, for when nothing
+     * encoded with them is left to decode. Output they encoded is refused
+     * from then on rather than decoded with the current one.
+     */
+    public synchronized void retire() {
+        earlier = List.of();
+    }
+
+    /*
+     * Loads the mapping file again and swaps it in, returning the new
+     * dictionary. The load runs on the caller's thread while every other
+     * thread carries on with the old one; an unchanged file comes from
+     * Dictionary's cache in O(1).
+     */
+    public Dictionary reload() {
+        if (mappingFile == null) {
+            throw new IllegalStateException("Made from a Dictionary, there is no mapping file to reload");
+        }
+        Dictionary next = Dictionary.load(mappingFile);
+        swap(next);
+        return next;
+    }
+
+    public String mappingFile() {
+        return mappingFile;
+    }
+
+    public int retained() {
+        return retained;
+    }
+
+    private static int requireRetained(int retained) {
+        if (retained < 0) {
+            throw new IllegalArgumentException("Dictionaries retained can't be negative: " + retained);
+        }
+        return retained;
+    }
+}
@@ -0,0 +1,251 @@
+package ie.atu.sw;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+    /* Timers and counters for one Encoder or Decoder run, see their metrics().
+     *
+     * Phases are timed per chunk or per loop, never per word, so collecting
+     * them costs a few nanoTime() calls per 64K of input. Events are a plain
+     * array increment per word or code. In the parallel modes each task
+     * keeps its own Metrics and they are merged when it finishes, so
+     * TOKENIZE and MATCH are then thread time added up over all the threads.
+     *
+     * The compression ratio is bytes out / bytes in, lower is better.
+     */
+public class Metrics {
+
+    public enum Phase {
+        LOAD,       // Getting the dictionary, near zero on a cache hit
+        READ,       // Reading and decoding the input file
+        TOKENIZE,   // Splitting it into words or codes
+        MATCH,      // Matching words to codes, or codes to words, and formatting the output
+        WRITE       // Writing the output file
+    }
+
+    public enum Event {
+        // Encoder, how each word was encoded
+        FULL_WORD(true),        // One word code
+        PREFIX_SUFFIX(true),    // Word code then suffix code(s)
+        PREFIX_HEX(true),       // Word code then the rest as hex
+        HEX_SUFFIX(true),       // Hex then suffix code(s), only from the optimal modes
+        FULL_HEX(true),         // No code at all, the whole word is hex
+        // Decoder, what each code turned out to be
+        WORD_CODE(false),
+        SUFFIX_CODE(false),
+        HEX_WORD(false),
+        UNKNOWN_CODE(false);    // Not in the mapping and not valid hex, skipped
+
+        private final boolean encoding;
+
+        Event(boolean encoding) {
+            this.encoding = encoding;
+        }
+    }
+
+    private final String operation; // "encode" or "decode"
+    private final long[] nanos = new long[Phase.values().length];
+    private final long[] counts = new long[Event.values().length];
+    private long totalNanos;
+    private long bytesIn;
+    private long bytesOut;
+    private String input = "";
+    private String output = "";
+
+    public Metrics(String operation) {
+        this.operation = operation;
+    }
+
+    public String operation() {
+        return operation;
+    }
+
+    public long nanos(Phase phase) {
+        return nanos[phase.ordinal()];
+    }
+
+    public long count(Event event) {
+        return counts[event.ordinal()];
+    }
+
+    // Wall clock time of the whole run
+    public long totalNanos() {
+        return totalNanos;
+    }
+
+    public long bytesIn() {
+        return bytesIn;
+    }
+
+    public long bytesOut() {
+        return bytesOut;
+    }
+
+    public double compressionRatio() {
+        return bytesIn == 0 ? 0 : (double) bytesOut / bytesIn;
+    }
+
+    // MB of input per second of wall clock time
+    public double throughput() {
+        return totalNanos == 0 ? 0 : bytesIn / 1e6 / (totalNanos / 1e9);
+    }
+
+    public void add(Phase phase, long elapsed) {
+        nanos[phase.ordinal()] += elapsed;
+    }
+
+    // Time spent on file reads and writes so far
+    public long ioNanos() {
+        return nanos(Phase.READ) + nanos(Phase.WRITE);
+    }
+
+    /*
+     * Adds the time since start to phase, less any READ or WRITE time recorded
+     * in the meantime, for loops that read or write as they go. ioNanos is
+     * ioNanos() taken when the loop started.
+     */
+    public void addExcludingIo(Phase phase, long start, long ioNanos) {
+        add(phase, System.nanoTime() - start - (ioNanos() - ioNanos));
+    }
+
+    public void record(Event event) {
+        counts[event.ordinal()]++;
+    }
+
+    // Adds another task's timers and counters to these
+    public void merge(Metrics other) {
+        for (int i = 0; i < nanos.length; i++) {
+            nanos[i] += other.nanos[i];
+        }
+        for (int i = 0; i < counts.length; i++) {
+            counts[i] += other.counts[i];
+        }
+    }
+
+    // Called once the run is over, with the files it used
+    void finish(String input, String output, long startNanos) throws IOException {
+        this.input = input;
+        this.output = output;
+        this.totalNanos = System.nanoTime() - startNanos;
+        this.bytesIn = Files.size(Path.of(input));
+        this.bytesOut = Files.size(Path.of(output));
+    }
+
+    /*
+     * Writes the report in the given format and returns its path, next to
+     * the output file (out.txt -> out.txt.metrics.json).
+     */
+    public Path writeReport(ReportFormat format) throws IOException {
+        Path report = Path.of(output + ".metrics." + format.extension());
+        try (Writer out = new BufferedWriter(Files.newBufferedWriter(report, StandardCharsets.UTF_8))) {
+            out.write(format == ReportFormat.CSV ? toCsv() : toJson());
+        }
+        return report;
+    }
+
+    public String toJson() {
+        StringBuilder json = new StringBuilder("{\n");
+        List<Field> fields = fields();
+        for (int i = 0; i < fields.size(); i++) {
+            Field field = fields.get(i);
+            json.append("  \"").append(field.name).append("\": ")
+                    .append(field.text ? quote(field.value) : field.value)
+                    .append(i + 1 < fields.size() ? ",\n" : "\n");
+        }
+        return json.append("}\n").toString();
+    }
+
+    // A header line and one line of values
+    public String toCsv() {
+        StringBuilder header = new StringBuilder();
+        StringBuilder values = new StringBuilder();
+        for (Field field : fields()) {
+            if (header.length() > 0) {
+                header.append(',');
+                values.append(',');
+            }
+            header.append(field.name);
+            values.append(field.text ? csvQuote(field.value) : field.value);
+        }
+        return header + System.lineSeparator() + values + System.lineSeparator();
+    }
+
+    // Report fields in order, only the events of this run's operation
+    private List<Field> fields() {
+        List<Field> fields = new ArrayList<>();
+        fields.add(new Field("operation", operation, true));
+        fields.add(new Field("input", input, true));
+        fields.add(new Field("output", output, true));
+        fields.add(new Field("bytesIn", String.valueOf(bytesIn), false));
+        fields.add(new Field("bytesOut", String.valueOf(bytesOut), false));
+        fields.add(new Field("compressionRatio", String.format(Locale.ROOT, "%.4f", compressionRatio()), false));
+        fields.add(new Field("totalMillis", millis(totalNanos), false));
+        fields.add(new Field("throughputMBps", String.format(Locale.ROOT, "%.2f", throughput()), false));
+        for (Phase phase : Phase.values()) {
+            fields.add(new Field(camelCase(phase.name()) + "Millis", millis(nanos(phase)), false));
+        }
+        for (Event event : Event.values()) {
+            if (event.encoding == operation.equals("encode")) {
+                fields.add(new Field(camelCase(event.name()), String.valueOf(count(event)), false));
+            }
+        }
+        return fields;
+    }
+
+    private static String millis(long nanos) {
+        return String.format(Locale.ROOT, "%.3f", nanos / 1e6);
+    }
+
+    // PREFIX_SUFFIX -> prefixSuffix
+    private static String camelCase(String name) {
+        StringBuilder result = new StringBuilder();
+        boolean upper = false;
+        for (char c : name.toLowerCase().toCharArray()) {
+            if (c == '_') {
+                upper = true;
+            } else {
+                result.append(upper ? Character.toUpperCase(c) : c);
+                upper = false;
+            }
+        }
+        return result.toString();
+    }
+
+    private static String quote(String text) {
+        StringBuilder quoted = new StringBuilder("\"");
+        for (char c : text.toCharArray()) {
+            if (c == '"' || c == '\\') {
+                quoted.append('\\').append(c);
+            } else if (c < ' ') {
+                quoted.append(String.format("\\u%04x", (int) c));
+            } else {
+                quoted.append(c);
+            }
+        }
+        return quoted.append('"').toString();
+    }
+
+    private static String csvQuote(String text) {
+        return text.contains(",") || text.contains("\"") ? "\"" + text.replace("\"", "\"\"") + "\"" : text;
+    }
+
+    // One name and value of the report, text values are quoted
+    private static class Field {
+        final String name;
+        final String value;
+        final boolean text;
+
+        Field(String name, String value, boolean text) {
+            this.name = name;
+            this.value = value;
+            this.text = text;
+        }
+    }
+}
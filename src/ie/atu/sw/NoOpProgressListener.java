@@ -0,0 +1,23 @@
+package ie.atu.sw;
+
+    /* Ignores everything, for headless runs such as BatchRunner and the
+     * benchmarks: no progress bar and no messages on System.out.
+     */
+public class NoOpProgressListener implements ProgressListener {
+
+    @Override
+    public void start(long total) {
+    }
+
+    @Override
+    public void progress(long done) {
+    }
+
+    @Override
+    public void finish() {
+    }
+
+    @Override
+    public void message(String text) {
+    }
+}
@@ -0,0 +1,286 @@
+package ie.atu.sw;
+
+import java.io.IOException;
+
+    /* Picks the cheapest way to split a word into codes, instead of the
+     * greedy longest prefix. Only splits the existing Decoder already
+     * understands are considered:
+     *   head [suffix suffix ...]    head is a word code or hex, each suffix
+     *                               code is glued onto the word by the Decoder
+     *   word-code hex-tail          the greedy fallback
+     * Greedy's own split is always one of them. Sizes are those of the output
+     * format, see codeBytes() and hexBytes(): chars plus a comma in TEXT,
+     * varint tokens in BINARY, which BLOCKED and HUFFMAN are written from.
+     *
+     * FEWEST_BYTES keeps the smallest split, fewer codes breaking ties, so it
+     * is never larger than greedy's. FEWEST_TOKENS keeps the split with the
+     * fewest codes that is no larger than greedy's, the smallest breaking
+     * ties. Greedy never writes more than two codes, so that is one code
+     * where one fits and otherwise the smallest pair; it never chains suffixes.
+     *
+     * Dynamic programming over end positions: cost[j] is the cheapest way to
+     * write word[0, j) as a head plus suffixes. Heads come from one walk of the
+     * forward prefix trie, suffixes ending at j from a backwards walk of a trie
+     * of reversed suffixes. Each walk stops at the longest key, K chars, so a
+     * word of length L costs O(L*K) - linear in L for a given dictionary.
+     *
+     * Codes are sized and written by their StringPool ids, so no String is
+     * made for them even when the dictionary is off the heap.
+     *
+     * Keeps its working arrays between words, so one instance per thread.
+     */
+public class OptimalSegmenter {
+    private static final long NONE = Long.MAX_VALUE; // Position can't be reached
+    private static final long WEIGHT = 1L << 32; // Bytes outweigh any number of codes
+    private static final int HEAD_WORD = -1; // from[] markers for the first segment
+    private static final int HEAD_HEX = -2;
+
+    private final PrefixTrie prefixIndex;
+    private final PrefixTrie suffixIndex; // For greedy's size, see greedyBytes()
+    private final PrefixTrie reversedSuffixIndex;
+    private final StringPool strings; // Every trie's codes
+    private final boolean fewestTokens; // Otherwise fewest bytes
+    private final boolean binary; // Sized as varint tokens, otherwise as text
+
+    private long[] cost = new long[16]; // Cheapest head+suffixes for word[0, j)
+    private int[] from = new int[16]; // Where the last segment of that split starts, or a HEAD_ marker
+    private int[] codeAt = new int[16]; // StringPool id of that last segment's code, -1 for hex
+    private int[] utf8Offsets = new int[17]; // UTF-8 bytes in word[0, j), for hex sizes
+    private long tailCost; // Cost of the split bestTail() returns
+
+    // Sizes each split as format writes it
+    public OptimalSegmenter(Dictionary dictionary, Segmentation mode, EncodedFormat format) {
+        this.prefixIndex = dictionary.words();
+        this.suffixIndex = dictionary.suffixes();
+        this.reversedSuffixIndex = dictionary.reversedSuffixes(); // Matched walking back from j
+        this.strings = prefixIndex.strings();
+        this.fewestTokens = mode == Segmentation.FEWEST_TOKENS;
+        this.binary = format != EncodedFormat.TEXT;
+    }
+
+    // Encodes one word, writing its code(s) to out like Encoder.encodeWord(), and returns how
+    public Metrics.Event encode(String word, EncodedWriter out) throws IOException {
+        int length = word.length();
+        if (length == 0) {
+            out.raw(word); // Same as greedy, an empty word is empty raw text
+            return Metrics.Event.FULL_HEX;
+        }
+        ensureCapacity(length);
+        countUtf8(word);
+
+        for (int j = 1; j <= length; j++) {
+            cost[j] = NONE;
+            if (canCut(word, j)) {
+                // Whole head as hex, always possible
+                relax(j, 0, HEAD_HEX, -1, weigh(hexBytes(0, j)));
+            }
+        }
+
+        // Forward prefix trie: every word code that starts the word
+        int node = PrefixTrie.ROOT;
+        for (int j = 1; j <= length && node >= 0; j++) {
+            node = prefixIndex.next(node, word.charAt(j - 1));
+            if (node >= 0 && prefixIndex.isKey(node)) {
+                int code = prefixIndex.codeId(node);
+                relax(j, 0, HEAD_WORD, code, weigh(codeBytes(code, false)));
+            }
+        }
+
+        if (fewestTokens) {
+            return encodeFewestTokens(word, out);
+        }
+
+        // Reversed suffix trie: every suffix code that ends at j, in increasing j
+        for (int j = 2; j <= length; j++) {
+            relaxSuffixes(word, j);
+        }
+
+        int bestTail = bestTail(word);
+        if (bestTail >= 0 && tailCost < cost[length]) {
+            return writeTail(word, bestTail, out);
+        }
+        return rebuild(word, length, out);
+    }
+
+    /*
+     * cost[] only holds single heads so far: one code if the cheapest fits in
+     * greedy's size, otherwise the cheaper of a head plus one suffix and a
+     * word code plus a hex tail. Greedy's split is one of those, so it fits.
+     */
+    private Metrics.Event encodeFewestTokens(String word, EncodedWriter out) throws IOException {
+        int length = word.length();
+        long single = cost[length]; // Never NONE, the whole word as hex is always a head
+        if (single / WEIGHT <= greedyBytes(word)) {
+            return rebuild(word, length, out);
+        }
+        int singleFrom = from[length];
+        int singleCode = codeAt[length];
+        cost[length] = NONE;
+        relaxSuffixes(word, length);
+        int bestTail = bestTail(word);
+        if (bestTail >= 0 && tailCost < cost[length]) {
+            return writeTail(word, bestTail, out);
+        }
+        if (cost[length] == NONE) { // No pair either, only where greedy cuts a surrogate pair in two
+            cost[length] = single;
+            from[length] = singleFrom;
+            codeAt[length] = singleCode;
+        }
+        return rebuild(word, length, out);
+    }
+
+    // Every suffix code that ends at j, on top of the cheapest split of what comes before it
+    private void relaxSuffixes(String word, int j) {
+        int node = PrefixTrie.ROOT;
+        for (int i = j - 1; i > 0 && node >= 0; i--) {
+            node = reversedSuffixIndex.next(node, word.charAt(i));
+            if (node >= 0 && reversedSuffixIndex.isKey(node) && cost[i] != NONE && canCut(word, i)) {
+                int code = reversedSuffixIndex.codeId(node);
+                relax(j, cost[i], i, code, weigh(codeBytes(code, true)));
+            }
+        }
+    }
+
+    // Greedy's fallback: the cheapest word code followed by the rest as hex, -1 if none. Its cost goes in tailCost
+    private int bestTail(String word) {
+        int length = word.length();
+        int bestTail = -1;
+        tailCost = NONE;
+        int node = PrefixTrie.ROOT;
+        for (int j = 1; j < length && node >= 0; j++) {
+            node = prefixIndex.next(node, word.charAt(j - 1));
+            if (node >= 0 && prefixIndex.isKey(node) && canCut(word, j)) {
+                long total = weigh(codeBytes(prefixIndex.codeId(node), false)) + weigh(hexBytes(j, length));
+                if (total < tailCost) {
+                    tailCost = total;
+                    bestTail = node;
+                }
+            }
+        }
+        return bestTail;
+    }
+
+    private Metrics.Event writeTail(String word, int node, EncodedWriter out) throws IOException {
+        out.code(strings, prefixIndex.codeId(node), false);
+        out.raw(word.substring(prefixIndex.length(node)));
+        return Metrics.Event.PREFIX_HEX;
+    }
+
+    // O(L) - the size of what Encoder.encodeWord() writes for a word without a segmenter
+    private long greedyBytes(String word) {
+        int length = word.length();
+        int prefix = prefixIndex.longestPrefix(word, 0, length);
+        if (prefix < 0) {
+            return hexBytes(0, length);
+        }
+        int prefixLength = prefixIndex.length(prefix);
+        long bytes = codeBytes(prefixIndex.codeId(prefix), false);
+        if (prefixLength == length) {
+            return bytes;
+        }
+        int suffix = suffixIndex.find(word, prefixLength, length);
+        return bytes + (suffix >= 0 ? codeBytes(suffixIndex.codeId(suffix), true) : hexBytes(prefixLength, length));
+    }
+
+    // Follows from[] back to the start, then writes the segments in order
+    private Metrics.Event rebuild(String word, int end, EncodedWriter out) throws IOException {
+        int segments = 0;
+        for (int j = end; j > 0; j = Math.max(from[j], 0)) {
+            segments++;
+        }
+        int[] ends = new int[segments];
+        for (int s = segments - 1, j = end; s >= 0; s--, j = Math.max(from[j], 0)) {
+            ends[s] = j;
+        }
+        for (int s = 0; s < segments; s++) {
+            int j = ends[s];
+            if (from[j] == HEAD_HEX) {
+                out.raw(word.substring(0, j));
+            } else {
+                out.code(strings, codeAt[j], from[j] != HEAD_WORD);
+            }
+        }
+        boolean hexHead = from[ends[0]] == HEAD_HEX;
+        if (segments == 1) {
+            return hexHead ? Metrics.Event.FULL_HEX : Metrics.Event.FULL_WORD;
+        }
+        return hexHead ? Metrics.Event.HEX_SUFFIX : Metrics.Event.PREFIX_SUFFIX;
+    }
+
+    private void relax(int j, long before, int start, int code, long segmentCost) {
+        long total = before + segmentCost;
+        if (total < cost[j]) {
+            cost[j] = total;
+            from[j] = start;
+            codeAt[j] = code;
+        }
+    }
+
+    // Bytes decide, each code adds one so the split with fewer codes wins a tie
+    private static long weigh(long bytes) {
+        return bytes * WEIGHT + 1;
+    }
+
+    // Code id as TextEncodedWriter writes it, the chars and a comma, or as BinaryEncodedWriter does
+    private long codeBytes(int code, boolean suffix) {
+        if (!binary) {
+            return strings.chars(code) + 1;
+        }
+        int number = strings.number(code);
+        if (number >= 0) {
+            return BinaryEncodedWriter.varintLength(((long) number << 2) | BinaryEncodedWriter.WORD);
+        }
+        int bytes = strings.length(code);
+        return BinaryEncodedWriter.varintLength(((((long) bytes << 1) | (suffix ? 1 : 0)) << 2)
+                | BinaryEncodedWriter.CODE) + bytes;
+    }
+
+    // Text hex is two chars per UTF-8 byte, the 'x' marker and a comma, binary raw text is the bytes themselves
+    private long hexBytes(int start, int end) {
+        int bytes = utf8Offsets[end] - utf8Offsets[start];
+        if (!binary) {
+            return 2L * bytes + 2;
+        }
+        return BinaryEncodedWriter.varintLength(((long) bytes << 2) | BinaryEncodedWriter.RAW) + bytes;
+    }
+
+    // Never split a surrogate pair, the halves would not survive the trip through UTF-8
+    private static boolean canCut(String word, int j) {
+        return j == 0 || j == word.length()
+                || !(Character.isHighSurrogate(word.charAt(j - 1)) && Character.isLowSurrogate(word.charAt(j)));
+    }
+
+    // Same byte counts as getBytes(UTF_8), a lone surrogate becomes a one byte '?'
+    private void countUtf8(String word) {
+        for (int i = 0; i < word.length(); i++) {
+            char c = word.charAt(i);
+            int bytes;
+            if (c < 0x80) {
+                bytes = 1;
+            } else if (c < 0x800) {
+                bytes = 2;
+            } else if (Character.isHighSurrogate(c) && i + 1 < word.length()
+                    && Character.isLowSurrogate(word.charAt(i + 1))) {
+                bytes = 2; // Half of the pair's 4 bytes, the low surrogate adds the rest
+            } else if (Character.isLowSurrogate(c) && i > 0 && Character.isHighSurrogate(word.charAt(i - 1))) {
+                bytes = 2;
+            } else if (Character.isSurrogate(c)) {
+                bytes = 1;
+            } else {
+                bytes = 3;
+            }
+            utf8Offsets[i + 1] = utf8Offsets[i] + bytes;
+        }
+    }
+
+    private void ensureCapacity(int length) {
+        if (cost.length <= length) {
+            int size = Math.max(length + 1, cost.length * 2);
+            cost = new long[size];
+            from = new int[size];
+            codeAt = new int[size];
+            utf8Offsets = new int[size + 1];
+        }
+        cost[0] = 0;
+    }
+}
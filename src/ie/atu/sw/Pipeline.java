@@ -0,0 +1,133 @@
+package ie.atu.sw;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicReference;
+
+    /* Runs a CPU stage between a reader stage and a writer stage, each on its
+     * own thread, so reading the next input, matching the current one and
+     * writing the last one's output all happen at once:
+     *
+     *   in -> [reader] -> BufferPipe -> [stage] -> BufferPipe -> [writer] -> out
+     *
+     * The reader and writer only move bytes. Each pipe holds `buffers`
+     * buffers of bufferSize bytes, so a run uses a fixed 2 * buffers *
+     * bufferSize bytes however large the file, and a stage that gets ahead
+     * waits for the slower one instead of filling memory. The wall time
+     * tends to the slowest of the three stages rather than their sum.
+     *
+     * If any stage fails the others are stopped and run() throws what went
+     * wrong first, not the "another stage failed" the others then see.
+     */
+public class Pipeline {
+    public static final int DEFAULT_BUFFERS = 4;
+
+    private final int buffers;
+    private final int bufferSize;
+
+    // The work between reading and writing, it must read in until it has what it needs
+    public interface Stage {
+        void run(InputStream in, OutputStream out) throws IOException;
+    }
+
+    public Pipeline(int buffers, int bufferSize) {
+        this.buffers = Math.max(1, buffers);
+        this.bufferSize = Math.max(1, bufferSize);
+    }
+
+    /*
+     * Runs stage on the calling thread with the reader and writer on two more.
+     * Returns once everything stage wrote has reached out, closes neither.
+     */
+    public void run(InputStream in, OutputStream out, Stage stage) throws IOException {
+        BufferPipe input = new BufferPipe(buffers, bufferSize);
+        BufferPipe output = new BufferPipe(buffers, bufferSize);
+        AtomicReference<Exception> failure = new AtomicReference<>(); // The first stage to fail
+        ExecutorService threads = Executors.newFixedThreadPool(2, runnable -> {
+            Thread thread = new Thread(runnable, "pipeline");
+            thread.setDaemon(true); // A reader stuck on a slow read never holds the JVM up
+            return thread;
+        });
+        try {
+            Future<Long> reader = threads.submit(stage(input, null, failure, () -> input.fill(in)));
+            Future<Long> writer = threads.submit(stage(output, null, failure, () -> {
+                long written = output.drainTo(out);
+                out.flush();
+                return written;
+            }));
+            try {
+                stage(input, output, failure, () -> {
+                    try (OutputStream sink = output.sink()) {
+                        stage.run(input.source(), sink);
+                    }
+                    return 0L;
+                }).call();
+            } catch (Exception e) {
+                // Recorded by stage()
+            }
+            input.abort(); // Stops the reader if stage didn't need all of the input, as for a blocked file's index
+            await(reader);
+            await(writer);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            input.abort();
+            output.abort();
+            throw new InterruptedIOException("Interrupted waiting on the pipeline");
+        } finally {
+            threads.shutdown();
+        }
+        rethrow(failure.get());
+    }
+
+    /*
+     * Wraps a stage to record its failure and stop the pipes it uses, other
+     * is null for the reader and writer. A failure is only its own if neither
+     * pipe had been stopped yet, otherwise it is another stage's reaching it.
+     */
+    private static Callable<Long> stage(BufferPipe pipe, BufferPipe other, AtomicReference<Exception> failure,
+            Callable<Long> work) {
+        return () -> {
+            try {
+                return work.call();
+            } catch (Exception e) {
+                if (!pipe.aborted() && (other == null || !other.aborted())) {
+                    failure.compareAndSet(null, e);
+                }
+                pipe.abort();
+                if (other != null) {
+                    other.abort();
+                }
+                throw e;
+            }
+        };
+    }
+
+    // Waits for a stage thread, its failure is already recorded
+    private static void await(Future<Long> stage) throws InterruptedException {
+        try {
+            stage.get();
+        } catch (ExecutionException e) {
+            // Recorded by stage()
+        }
+    }
+
+    private static void rethrow(Exception failure) throws IOException {
+        if (failure == null) {
+            return;
+        }
+        if (failure instanceof IOException) {
+            throw (IOException) failure;
+        }
+        if (failure instanceof RuntimeException) {
+            throw (RuntimeException) failure;
+        }
+        throw new RuntimeException("Error in pipeline: " + failure.getMessage(), failure);
+    }
+}
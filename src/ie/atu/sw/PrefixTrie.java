@@ -0,0 +1,247 @@
+package ie.atu.sw;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.IntBuffer;
+import java.util.ArrayDeque;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.function.BiConsumer;
+
+    /* Compact char-indexed trie over the mapping keys.
+     * Finds the longest known prefix of a word in one left-to-right pass,
+     * O(L) char comparisons and no allocation, where the old loop called
+     * substring(0, j) and containsKey() for every length j - O(L^2) chars
+     * and L temporary Strings per word.
+     *
+     * Nodes are flattened into arrays after building: the edges of node i
+     * are edgeChars/edgeTargets[firstEdge[i] .. firstEdge[i + 1]), sorted
+     * by char so a child is found by binary search. The arrays are held as
+     * buffers so a compiled dictionary can be used straight from a mapped file.
+     *
+     * The same trie also works on bytes: keyed by UTF-8 bytes stored as
+     * chars 0-255 (see Dictionary.utf8Words()), it is walked with the byte[]
+     * versions of longestPrefix() and find(), and lengths are in bytes.
+     */
+public class PrefixTrie {
+    public static final int ROOT = 0; // Node every walk starts from
+    private final IntBuffer firstEdge; // Start of each node's edge range, one extra entry at the end
+    private final CharBuffer edgeChars; // Edge labels, sorted within each node
+    private final IntBuffer edgeTargets; // Child node for each edge
+    private final IntBuffer depths; // Length of the key that ends at each node
+    private final IntBuffer codeIds; // Code stored at each node as a StringPool id, -1 if no key ends there
+    private final StringPool strings;
+
+    /*
+     * O(m*L) to build, where m is the number of keys and L the longest key.
+     * A temporary tree of TreeMaps is built first, then flattened breadth first.
+     * Entries map each key to the StringPool id of its code.
+     */
+    public PrefixTrie(Map<String, Integer> entries, StringPool strings) {
+        BuildNode root = new BuildNode();
+        int nodeCount = 1;
+        for (Map.Entry<String, Integer> entry : entries.entrySet()) {
+            BuildNode node = root;
+            String key = entry.getKey();
+            for (int i = 0; i < key.length(); i++) {
+                BuildNode child = node.children.get(key.charAt(i));
+                if (child == null) {
+                    child = new BuildNode();
+                    node.children.put(key.charAt(i), child);
+                    nodeCount++;
+                }
+                node = child;
+            }
+            node.code = entry.getValue();
+        }
+
+        int[] firstEdge = new int[nodeCount + 1];
+        char[] edgeChars = new char[nodeCount - 1];
+        int[] edgeTargets = new int[nodeCount - 1];
+        int[] depths = new int[nodeCount];
+        int[] codeIds = new int[nodeCount];
+
+        // Breadth first, so node ids are handed out in the order nodes are queued
+        ArrayDeque<BuildNode> queue = new ArrayDeque<>();
+        queue.add(root);
+        int nextId = 1;
+        int edge = 0;
+        for (int id = 0; id < nodeCount; id++) {
+            BuildNode node = queue.poll();
+            codeIds[id] = node.code;
+            firstEdge[id] = edge;
+            for (Map.Entry<Character, BuildNode> child : node.children.entrySet()) {
+                edgeChars[edge] = child.getKey();
+                edgeTargets[edge] = nextId;
+                depths[nextId] = depths[id] + 1;
+                queue.add(child.getValue());
+                nextId++;
+                edge++;
+            }
+        }
+        firstEdge[nodeCount] = edge;
+
+        this.firstEdge = IntBuffer.wrap(firstEdge);
+        this.edgeChars = CharBuffer.wrap(edgeChars);
+        this.edgeTargets = IntBuffer.wrap(edgeTargets);
+        this.depths = IntBuffer.wrap(depths);
+        this.codeIds = IntBuffer.wrap(codeIds);
+        this.strings = strings;
+    }
+
+    private PrefixTrie(IntBuffer firstEdge, CharBuffer edgeChars, IntBuffer edgeTargets, IntBuffer depths,
+            IntBuffer codeIds, StringPool strings) {
+        this.firstEdge = firstEdge;
+        this.edgeChars = edgeChars;
+        this.edgeTargets = edgeTargets;
+        this.depths = depths;
+        this.codeIds = codeIds;
+        this.strings = strings;
+    }
+
+    /*
+     * Returns the node of the longest key that is a prefix of text[start, end),
+     * or -1 if there is none. The empty key never matches.
+     * O(L * log(a)) where a is the number of distinct chars after a node.
+     */
+    public int longestPrefix(CharSequence text, int start, int end) {
+        int node = ROOT;
+        int match = -1;
+        for (int i = start; i < end; i++) {
+            node = child(node, text.charAt(i));
+            if (node < 0) {
+                break;
+            }
+            if (codeIds.get(node) >= 0) {
+                match = node;
+            }
+        }
+        return match;
+    }
+
+    // Returns the node for exactly text[start, end), or -1 if it isn't a key
+    public int find(CharSequence text, int start, int end) {
+        int node = ROOT;
+        for (int i = start; i < end && node >= 0; i++) {
+            node = child(node, text.charAt(i));
+        }
+        return node >= 0 && codeIds.get(node) >= 0 ? node : -1;
+    }
+
+    // longestPrefix() over bytes, for a trie keyed by bytes
+    public int longestPrefix(byte[] text, int start, int end) {
+        int node = ROOT;
+        int match = -1;
+        for (int i = start; i < end; i++) {
+            node = child(node, (char) (text[i] & 0xFF));
+            if (node < 0) {
+                break;
+            }
+            if (codeIds.get(node) >= 0) {
+                match = node;
+            }
+        }
+        return match;
+    }
+
+    // find() over bytes, for a trie keyed by bytes
+    public int find(byte[] text, int start, int end) {
+        int node = ROOT;
+        for (int i = start; i < end && node >= 0; i++) {
+            node = child(node, (char) (text[i] & 0xFF));
+        }
+        return node >= 0 && codeIds.get(node) >= 0 ? node : -1;
+    }
+
+    /*
+     * Single step of a walk, for callers that need every match along the way
+     * rather than just the longest. Returns -1 once no key continues with c.
+     */
+    public int next(int node, char c) {
+        return child(node, c);
+    }
+
+    // True if a key ends at this node (the empty key at ROOT never counts)
+    public boolean isKey(int node) {
+        return node > ROOT && codeIds.get(node) >= 0;
+    }
+
+    // Length of the key that ends at a matched node
+    public int length(int node) {
+        return depths.get(node);
+    }
+
+    // Code of the key that ends at a matched node
+    public String code(int node) {
+        return strings.get(codeIds.get(node));
+    }
+
+    // StringPool id of code(node), so it can be written without making the String, see EncodedWriter
+    int codeId(int node) {
+        return codeIds.get(node);
+    }
+
+    StringPool strings() {
+        return strings;
+    }
+
+    /*
+     * Calls action with every key and the StringPool id of its code,
+     * depth first. O(total key length), used to build other tries from this one.
+     */
+    void forEachKey(BiConsumer<String, Integer> action) {
+        forEachKey(ROOT, new StringBuilder(), action);
+    }
+
+    void writeTo(DataOutputStream out) throws IOException {
+        BufferSections.writeInts(out, firstEdge);
+        BufferSections.writeChars(out, edgeChars);
+        BufferSections.writeInts(out, edgeTargets);
+        BufferSections.writeInts(out, depths);
+        BufferSections.writeInts(out, codeIds);
+    }
+
+    // O(1) - the trie is used in place, nothing is copied out of the buffer
+    static PrefixTrie readFrom(ByteBuffer in, StringPool strings) {
+        return new PrefixTrie(BufferSections.readInts(in), BufferSections.readChars(in),
+                BufferSections.readInts(in), BufferSections.readInts(in), BufferSections.readInts(in), strings);
+    }
+
+    // Recursion is bounded by the longest key
+    private void forEachKey(int node, StringBuilder key, BiConsumer<String, Integer> action) {
+        if (isKey(node)) {
+            action.accept(key.toString(), codeIds.get(node));
+        }
+        for (int edge = firstEdge.get(node); edge < firstEdge.get(node + 1); edge++) {
+            key.append(edgeChars.get(edge));
+            forEachKey(edgeTargets.get(edge), key, action);
+            key.setLength(key.length() - 1);
+        }
+    }
+
+    // Binary search of the node's sorted edges, -1 if there is no such child
+    private int child(int node, char c) {
+        int low = firstEdge.get(node);
+        int high = firstEdge.get(node + 1) - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            char midChar = edgeChars.get(mid);
+            if (midChar < c) {
+                low = mid + 1;
+            } else if (midChar > c) {
+                high = mid - 1;
+            } else {
+                return edgeTargets.get(mid);
+            }
+        }
+        return -1;
+    }
+
+    // Only used while building, discarded once the arrays are filled
+    private static class BuildNode {
+        final TreeMap<Character, BuildNode> children = new TreeMap<>();
+        int code = -1;
+    }
+}
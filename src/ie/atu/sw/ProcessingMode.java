@@ -0,0 +1,113 @@
+package ie.atu.sw;
+
+import java.io.IOException;
+
+/*
+ * How the Encoder and Decoder go through a file, picked from the settings.
+ * More than one of them can be switched on but only one runs: the first
+ * of PARALLEL, MAPPED, PIPELINED and STREAM that is on, else WHOLE_FILE.
+ * The menu and batch mode both pick and run it here, and report() names
+ * the settings that lost out.
+ */
+public enum ProcessingMode {
+    PARALLEL	("Parallel"),
+    MAPPED		("Memory-mapped UTF-8"),
+    PIPELINED	("Pipelined I/O"),
+    STREAM		("Streaming"),
+    WHOLE_FILE	("Whole file");
+
+    private final String description;
+
+    ProcessingMode(String description) {
+        this.description = description;
+    }
+
+    public String description() {
+        return description;
+    }
+
+    // The mode the menu runs
+    public static ProcessingMode of(Settings settings) {
+        return first(settings, true, WHOLE_FILE);
+    }
+
+    // Batch mode's threads each take a whole file, and a file is streamed unless another mode is on
+    public static ProcessingMode perFile(Settings settings) {
+        return first(settings, false, STREAM);
+    }
+
+    private static ProcessingMode first(Settings settings, boolean parallel, ProcessingMode fallback) {
+        for (ProcessingMode mode : values()) {
+            if (mode != WHOLE_FILE && (parallel || mode != PARALLEL) && mode.isOn(settings)) {
+                return mode;
+            }
+        }
+        return fallback;
+    }
+
+    private boolean isOn(Settings settings) {
+        switch (this) {
+            case PARALLEL:
+                return settings.threads > 1;
+            case MAPPED:
+                return settings.mappedInput;
+            case PIPELINED:
+                return settings.pipelined;
+            case STREAM:
+                return settings.streamMode;
+            default:
+                return true;
+        }
+    }
+
+    // e.g. "Memory-mapped UTF-8 (Pipelined I/O, Streaming ignored)"
+    public String report(Settings settings) {
+        StringBuilder ignored = new StringBuilder();
+        for (ProcessingMode mode : values()) {
+            if (mode.ordinal() > ordinal() && mode != WHOLE_FILE && mode.isOn(settings)) {
+                ignored.append(ignored.length() == 0 ? "" : ", ").append(mode.description);
+            }
+        }
+        return ignored.length() == 0 ? description : description + " (" + ignored + " ignored)";
+    }
+
+    public void encode(Encoder encoder, Settings settings) throws IOException {
+        switch (this) {
+            case PARALLEL:
+                encoder.encodeParallel(settings.threads, settings.chunkSize);
+                break;
+            case MAPPED:
+                encoder.encodeMapped();
+                break;
+            case PIPELINED:
+                encoder.encodePipelined(settings.chunkSize);
+                break;
+            case STREAM:
+                encoder.encodeStream(settings.chunkSize);
+                break;
+            default:
+                encoder.encode();
+                break;
+        }
+    }
+
+    public void decode(Decoder decoder, Settings settings) throws IOException {
+        switch (this) {
+            case PARALLEL:
+                decoder.decodeParallel(settings.threads, settings.chunkSize);
+                break;
+            case MAPPED:
+                decoder.decodeUtf8(settings.chunkSize);
+                break;
+            case PIPELINED:
+                decoder.decodePipelined(settings.chunkSize);
+                break;
+            case STREAM:
+                decoder.decodeStream(settings.chunkSize);
+                break;
+            default:
+                decoder.decode();
+                break;
+        }
+    }
+}
@@ -0,0 +1,22 @@
+package ie.atu.sw;
+
+    /* Receives progress from the Encoder and Decoder.
+     * They report in batches (every few thousand words or codes, or once per
+     * chunk), and progress() should only store the count: drawing is up to
+     * the listener, see ConsoleProgressListener, so the encode and decode
+     * loops never wait on the console.
+     */
+public interface ProgressListener {
+
+    // A run is starting, total is in whatever unit progress() will count (words, codes or bytes)
+    void start(long total);
+
+    // How much is done so far, can be called from any thread
+    void progress(long done);
+
+    // The run has ended, successfully or not. Reporting total before this shows it as complete
+    void finish();
+
+    // A one-off line such as "Encoding complete", never sent from inside the loops
+    void message(String text);
+}
@@ -0,0 +1,40 @@
+package ie.atu.sw;
+
+/*
+ * Whether a Metrics report is written after each encode or decode, and as what.
+ * The report goes next to the output file, e.g. out.txt.metrics.json.
+ */
+public enum ReportFormat {
+    NONE	("Off"),
+    JSON	("JSON"),
+    CSV		("CSV");
+
+    private final String description;
+
+    ReportFormat(String description) {
+        this.description = description;
+    }
+
+    public String description() {
+        return description;
+    }
+
+    // File extension of the report, without the dot
+    public String extension() {
+        return name().toLowerCase();
+    }
+
+    // Cycles to the next format, used by the settings menu toggle
+    public ReportFormat next() {
+        return values()[(ordinal() + 1) % values().length];
+    }
+
+    // Falls back to NONE for missing or unknown values in settings.properties
+    public static ReportFormat parse(String value) {
+        try {
+            return valueOf(value.trim().toUpperCase());
+        } catch (IllegalArgumentException | NullPointerException e) {
+            return NONE;
+        }
+    }
+}
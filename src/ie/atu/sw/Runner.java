@@ -6,6 +6,15 @@ import java.io.*;
 public class Runner {
 
 	public static void main(String[] args) throws Exception {
+		// "serve" keeps the dictionaries loaded and takes requests over HTTP, see EncodingServer
+		if (args.length > 0 && args[0].equals("serve")) {
+			System.exit(EncodingServer.run(args));
+		}
+		// With arguments it runs headless, see BatchRunner, e.g. encode --in texts/ --out encoded/
+		if (args.length > 0) {
+			System.exit(BatchRunner.run(args));
+		}
+
 		Scanner scanner = new Scanner(System.in);
 		boolean exit = false;
 
@@ -36,11 +45,13 @@ public class Runner {
 			System.out.println("(4) Configure Settings");
 			System.out.println("(5) Encode Text File");
 			System.out.println("(6) Decode Text File");
-			System.out.println("(7) Quit");
+			System.out.println("(7) Compile Mapping File");
+			System.out.println("(8) Analyse Unknown Words & Extend Mapping");
+			System.out.println("(9) Quit");
 
 			// Prompt for selection
 			System.out.print(ConsoleColour.BLACK_BOLD_BRIGHT);
-			System.out.print("Select Option [1-7]: ");
+			System.out.print("Select Option [1-9]: ");
 			System.out.println();
 			System.out.print(ConsoleColour.WHITE);
 
@@ -118,7 +129,47 @@ public class Runner {
 						MethodHelper.printWarning("Disabled");
 					}
 
-					MethodHelper.printInfo("\nToggle settings [1-2] or press Enter to go back:");
+					System.out.println("\033[3mStreaming mode reads, processes and writes files in chunks so large files don't need to fit in memory.\033[0m");
+					System.out.print("3. Streaming mode: ");
+					if (settings.streamMode) {
+						MethodHelper.printSuccess("Enabled");
+					} else {
+						MethodHelper.printWarning("Disabled");
+					}
+
+					System.out.println("\033[3mOptimal segmentation searches every prefix/suffix split for the smallest output, greedy takes the longest prefix.\033[0m");
+					System.out.print("4. Segmentation: ");
+					MethodHelper.printSuccess(settings.segmentation.description());
+
+					System.out.println("\033[3mBinary output stores codes as varints and unknown words as raw UTF-8, blocked binary adds an index so ranges can be decoded on their own (see --words in batch mode), Huffman-coded binary is the smallest. Decoding detects the format automatically.\033[0m");
+					System.out.print("5. Encoded output format: ");
+					MethodHelper.printSuccess(settings.outputFormat.description());
+
+					System.out.println("\033[3mWith more than one thread the input is split at word or code boundaries and the parts are encoded or decoded in parallel, the output is the same.\033[0m");
+					System.out.print("6. Threads: ");
+					MethodHelper.printSuccess(String.valueOf(settings.threads));
+
+					System.out.println("\033[3mA metrics report has the time spent loading, reading, tokenizing, matching and writing, how words were encoded and the compression ratio.\033[0m");
+					System.out.print("7. Metrics report: ");
+					MethodHelper.printSuccess(settings.metricsReport.description());
+
+					System.out.println("\033[3mMemory-mapped input encodes straight from the file's UTF-8 bytes, whatever the system charset is, without decoding it into Java Strings. Decoding then copies the dictionary's UTF-8 bytes straight to the output file.\033[0m");
+					System.out.print("8. Memory-mapped UTF-8 input: ");
+					if (settings.mappedInput) {
+						MethodHelper.printSuccess("Enabled");
+					} else {
+						MethodHelper.printWarning("Disabled");
+					}
+
+					System.out.println("\033[3mPipelined mode reads, processes and writes on separate threads, so slow storage is read while the last chunk is still being processed.\033[0m");
+					System.out.print("9. Pipelined I/O: ");
+					if (settings.pipelined) {
+						MethodHelper.printSuccess("Enabled");
+					} else {
+						MethodHelper.printWarning("Disabled");
+					}
+
+					MethodHelper.printInfo("\nToggle settings [1-9] or press Enter to go back:");
 					String settingChoice = scanner.nextLine();
 
 					switch (settingChoice) {
@@ -142,6 +193,62 @@ public class Runner {
 								MethodHelper.printWarning("Disabled");
 							}
 							break;
+						case "3":
+							settings.streamMode = !settings.streamMode;
+							settings.save();
+							System.out.print("Streaming mode: ");
+							if (settings.streamMode) {
+								MethodHelper.printSuccess("Enabled");
+							} else {
+								MethodHelper.printWarning("Disabled");
+							}
+							break;
+						case "4":
+							settings.segmentation = settings.segmentation.next();
+							settings.save();
+							System.out.print("Segmentation: ");
+							MethodHelper.printSuccess(settings.segmentation.description());
+							break;
+						case "5":
+							settings.outputFormat = settings.outputFormat.next();
+							settings.save();
+							System.out.print("Encoded output format: ");
+							MethodHelper.printSuccess(settings.outputFormat.description());
+							break;
+						case "6":
+							// Doubles up to the number of cores, then back to one
+							int cores = Runtime.getRuntime().availableProcessors();
+							settings.threads = settings.threads >= cores ? 1 : Math.min(settings.threads * 2, cores);
+							settings.save();
+							System.out.print("Threads: ");
+							MethodHelper.printSuccess(String.valueOf(settings.threads));
+							break;
+						case "7":
+							settings.metricsReport = settings.metricsReport.next();
+							settings.save();
+							System.out.print("Metrics report: ");
+							MethodHelper.printSuccess(settings.metricsReport.description());
+							break;
+						case "8":
+							settings.mappedInput = !settings.mappedInput;
+							settings.save();
+							System.out.print("Memory-mapped UTF-8 input: ");
+							if (settings.mappedInput) {
+								MethodHelper.printSuccess("Enabled");
+							} else {
+								MethodHelper.printWarning("Disabled");
+							}
+							break;
+						case "9":
+							settings.pipelined = !settings.pipelined;
+							settings.save();
+							System.out.print("Pipelined I/O: ");
+							if (settings.pipelined) {
+								MethodHelper.printSuccess("Enabled");
+							} else {
+								MethodHelper.printWarning("Disabled");
+							}
+							break;
 						default:
 							MethodHelper.printInfo("No changes made to settings.");
 					}
@@ -153,14 +260,18 @@ public class Runner {
 								"Please specify Mapping, Input, and Output files via Options 1-3 before encoding.");
 					} else {
 						Encoder enc = new Encoder(inputFile, mapFile, outputFile);
-						enc.encode();
+						enc.setSegmentation(settings.segmentation);
+						enc.setFormat(settings.outputFormat);
+						enc.setReportFormat(settings.metricsReport);
+						run(enc, settings);
 
 						// Auto re-processing if enabled
 						if (settings.autoEncodeDecode) {
 							MethodHelper.printInfo("Auto re-processing enabled: Decoding the output file...");
 							String autoDecFile = "autoDEC.txt";
 							Decoder autoDec = new Decoder(outputFile, mapFile, autoDecFile);
-							autoDec.decode();
+							autoDec.setReportFormat(settings.metricsReport);
+							run(autoDec, settings);
 							MethodHelper.printSuccess("Re-processed file created: " + autoDecFile);
 						}
 					}
@@ -172,19 +283,78 @@ public class Runner {
 								"Please specify Mapping, Input, and Output files via Options 1-3 before decoding.");
 					} else {
 						Decoder dec = new Decoder(inputFile, mapFile, outputFile);
-						dec.decode();
+						dec.setReportFormat(settings.metricsReport);
+						run(dec, settings);
 
 						// Auto re-processing if enabled
 						if (settings.autoEncodeDecode) {
 							MethodHelper.printInfo("Auto re-processing enabled: Re-encoding the output file...");
 							String autoEncFile = "autoENC.txt";
 							Encoder autoEnc = new Encoder(outputFile, mapFile, autoEncFile);
-							autoEnc.encode();
+							autoEnc.setSegmentation(settings.segmentation);
+							autoEnc.setFormat(settings.outputFormat);
+							autoEnc.setReportFormat(settings.metricsReport);
+							run(autoEnc, settings);
 							MethodHelper.printSuccess("Re-processed file created: " + autoEncFile);
 						}
 					}
 					break;
 				case "7":
+					MethodHelper.printHeader("Option 7 selected: Compile Mapping File");
+					if (mapFile.isEmpty() || mapFile.endsWith(Dictionary.COMPILED_EXTENSION)) {
+						MethodHelper.printWarning("Please specify a CSV Mapping file via Option 1 before compiling.");
+					} else {
+						try {
+							MethodHelper.printSuccess("Compiled dictionary written to: " + Dictionary.compile(mapFile));
+							MethodHelper.printInfo("It will be used instead of " + mapFile + " until the CSV changes.");
+						} catch (IOException e) {
+							MethodHelper.printError("Error compiling mapping file: " + e.getMessage());
+						}
+					}
+					break;
+				case "8":
+					MethodHelper.printHeader("Option 8 selected: Analyse Unknown Words & Extend Mapping");
+					if (inputFile.isEmpty() || mapFile.isEmpty() || outputFile.isEmpty()
+							|| mapFile.endsWith(Dictionary.COMPILED_EXTENSION)) {
+						MethodHelper.printWarning(
+								"Please specify a CSV Mapping, Input, and Output files via Options 1-3 before analysing.");
+					} else {
+						MethodHelper.printInfo("How many new entries should be added at most? (default: 100)");
+						int limit = Settings.parsePositive(scanner.nextLine(), 100);
+
+						// Encoded as in Option 5, counting every word and remainder written as hex
+						Encoder enc = new Encoder(inputFile, mapFile, outputFile);
+						enc.setSegmentation(settings.segmentation);
+						enc.setFormat(settings.outputFormat);
+						enc.setReportFormat(settings.metricsReport);
+						enc.setVocabularyAnalysis(true);
+						run(enc, settings);
+
+						VocabularyAnalyzer vocabulary = enc.vocabulary();
+						MethodHelper.printInfo(vocabulary.occurrences() + " hex token(s), " + vocabulary.distinct()
+								+ " distinct unknown word(s) and remainder(s)");
+						try {
+							File extended = VocabularyAnalyzer.extendedPath(new File(mapFile).toPath()).toFile();
+							List<VocabularyAnalyzer.Candidate> added = vocabulary.writeExtendedMapping(mapFile,
+									extended.toPath(), limit);
+							long saved = 0;
+							for (int i = 0; i < added.size(); i++) {
+								VocabularyAnalyzer.Candidate candidate = added.get(i);
+								saved += candidate.bytesSaved();
+								if (i < 10) {
+									System.out.printf("  %-24s %8d x, ~%d bytes saved%n", candidate.mappingKey(),
+											candidate.occurrences(), candidate.bytesSaved());
+								}
+							}
+							MethodHelper.printSuccess(added.size() + " new entries, about " + saved
+									+ " bytes smaller output. Extended mapping written to: " + extended.getPath());
+							MethodHelper.printInfo("Existing codes are unchanged. Select it with Option 1 to use it.");
+						} catch (IOException e) {
+							MethodHelper.printError("Error writing extended mapping file: " + e.getMessage());
+						}
+					}
+					break;
+				case "9":
 					MethodHelper.printInfo("Quitting...");
 					exit = true;
 					break;
@@ -200,4 +370,17 @@ public class Runner {
 
 		scanner.close();
 	}
-}
\ No newline at end of file
+
+	// Encodes in the mode the settings pick, see ProcessingMode, and says which one that was
+	private static void run(Encoder enc, Settings settings) throws IOException {
+		ProcessingMode mode = ProcessingMode.of(settings);
+		MethodHelper.printInfo("Mode: " + mode.report(settings));
+		mode.encode(enc, settings);
+	}
+
+	private static void run(Decoder dec, Settings settings) throws IOException {
+		ProcessingMode mode = ProcessingMode.of(settings);
+		MethodHelper.printInfo("Mode: " + mode.report(settings));
+		mode.decode(dec, settings);
+	}
+}
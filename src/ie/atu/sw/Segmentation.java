@@ -0,0 +1,36 @@
+package ie.atu.sw;
+
+/*
+ * How the Encoder splits a word into codes.
+ * GREEDY is the original behaviour: longest prefix, then one suffix or a hex tail.
+ * The other two search every split with OptimalSegmenter, sized as the output format writes it.
+ */
+public enum Segmentation {
+    GREEDY			("Greedy (longest prefix)"),
+    FEWEST_TOKENS	("Optimal (fewest codes, no larger than greedy)"),
+    FEWEST_BYTES	("Optimal (smallest output)");
+
+    private final String description;
+
+    Segmentation(String description) {
+        this.description = description;
+    }
+
+    public String description() {
+        return description;
+    }
+
+    // Cycles to the next mode, used by the settings menu toggle
+    public Segmentation next() {
+        return values()[(ordinal() + 1) % values().length];
+    }
+
+    // Falls back to GREEDY for missing or unknown values in settings.properties
+    public static Segmentation parse(String value) {
+        try {
+            return valueOf(value.trim().toUpperCase());
+        } catch (IllegalArgumentException | NullPointerException e) {
+            return GREEDY;
+        }
+    }
+}
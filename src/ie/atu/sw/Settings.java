@@ -5,10 +5,19 @@ import java.util.Properties;
 
 public class Settings {
     private static final String SETTINGS_FILE = "settings.properties";
+    private static final int DEFAULT_CHUNK_SIZE = 64 * 1024;
     private final Properties properties = new Properties();
 
     public boolean filePersist;
     public boolean autoEncodeDecode;
+    public boolean streamMode; // Process files in fixed-size chunks instead of loading them whole
+    public boolean mappedInput; // Encode by memory-mapping the input and matching its UTF-8 bytes, decode to UTF-8 bytes
+    public boolean pipelined; // Read, process and write on separate threads so I/O overlaps the work
+    public int chunkSize; // Chunk size in chars used by streaming mode
+    public int threads; // More than one encodes or decodes parts of the input in parallel
+    public Segmentation segmentation; // How the Encoder splits words into codes
+    public EncodedFormat outputFormat; // Layout of encoded files, the Decoder detects it itself
+    public ReportFormat metricsReport; // Metrics report written next to each output, or none
     public String inFile;
     public String outFile;
     public String mapFile;
@@ -20,6 +29,14 @@ public class Settings {
                 properties.load(input);
                 filePersist = Boolean.parseBoolean(properties.getProperty("filePersist", "true"));
                 autoEncodeDecode = Boolean.parseBoolean(properties.getProperty("autoEncodeDecode", "false"));
+                streamMode = Boolean.parseBoolean(properties.getProperty("streamMode", "false"));
+                mappedInput = Boolean.parseBoolean(properties.getProperty("mappedInput", "false"));
+                pipelined = Boolean.parseBoolean(properties.getProperty("pipelined", "false"));
+                chunkSize = parsePositive(properties.getProperty("chunkSize"), DEFAULT_CHUNK_SIZE);
+                threads = parsePositive(properties.getProperty("threads"), 1);
+                segmentation = Segmentation.parse(properties.getProperty("segmentation"));
+                outputFormat = EncodedFormat.parse(properties.getProperty("outputFormat"));
+                metricsReport = ReportFormat.parse(properties.getProperty("metricsReport"));
                 inFile = properties.getProperty("inFile", "");
                 outFile = properties.getProperty("outFile", "");
                 mapFile = properties.getProperty("mapFile", "");
@@ -29,6 +46,14 @@ public class Settings {
         } else {
             filePersist = true;
             autoEncodeDecode = false;
+            streamMode = false;
+            mappedInput = false;
+            pipelined = false;
+            chunkSize = DEFAULT_CHUNK_SIZE;
+            threads = 1;
+            segmentation = Segmentation.GREEDY;
+            outputFormat = EncodedFormat.TEXT;
+            metricsReport = ReportFormat.NONE;
             inFile = "";
             outFile = "";
             mapFile = "";
@@ -38,6 +63,14 @@ public class Settings {
     public void save() {
         properties.setProperty("filePersist", String.valueOf(filePersist));
         properties.setProperty("autoEncodeDecode", String.valueOf(autoEncodeDecode));
+        properties.setProperty("streamMode", String.valueOf(streamMode));
+        properties.setProperty("mappedInput", String.valueOf(mappedInput));
+        properties.setProperty("pipelined", String.valueOf(pipelined));
+        properties.setProperty("chunkSize", String.valueOf(chunkSize));
+        properties.setProperty("threads", String.valueOf(threads));
+        properties.setProperty("segmentation", segmentation.name());
+        properties.setProperty("outputFormat", outputFormat.name());
+        properties.setProperty("metricsReport", metricsReport.name());
         properties.setProperty("inFile", inFile != null ? inFile : "");
         properties.setProperty("outFile", outFile != null ? outFile : "");
         properties.setProperty("mapFile", mapFile != null ? mapFile : "");
@@ -64,4 +97,14 @@ public class Settings {
         this.mapFile = mapFile;
         save();
     }
+
+    // The default if the value is missing or not a positive number, also for prompts and options
+    static int parsePositive(String value, int defaultValue) {
+        try {
+            int parsed = Integer.parseInt(value.trim());
+            return parsed > 0 ? parsed : defaultValue;
+        } catch (NumberFormatException | NullPointerException e) {
+            return defaultValue;
+        }
+    }
 }
@@ -0,0 +1,241 @@
+package ie.atu.sw;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+
+    /* Every word, suffix and code of a dictionary, stored once as packed
+     * UTF-8. String i is bytes[offsets[i] .. offsets[i + 1]). The buffers
+     * are either heap arrays (built from a CSV), views of a mapped compiled
+     * dictionary or direct memory (see Dictionary.offHeap()).
+     *
+     * Built on the heap, every String is already there from the CSV and is
+     * kept. Read from a buffer, Strings are only made when asked for, and
+     * only the last RECENT_STRINGS of them are kept, so the heap used stays
+     * the same however many entries the dictionary has. Codes are written
+     * out straight from their bytes, see writeTo(int, OutputStream), so the
+     * Encoder makes no Strings for them either.
+     */
+public class StringPool {
+    private static final int RECENT_STRINGS = 1 << 14; // Strings kept for a pool read from a buffer
+
+    private final IntBuffer offsets; // count + 1 entries
+    private final ByteBuffer bytes;
+    private final String[] all; // Every string, for a pool built on the heap, otherwise null
+    private final Recent[] recent; // A String per slot of id & mask, for a pool read from a buffer
+    private final int mask;
+
+    private StringPool(IntBuffer offsets, ByteBuffer bytes, String[] all) {
+        this.offsets = offsets;
+        this.bytes = bytes;
+        this.all = all;
+        int slots = Math.min(RECENT_STRINGS, Integer.highestOneBit(Math.max(1, offsets.limit() - 1)) << 1);
+        this.recent = all == null ? new Recent[slots] : null;
+        this.mask = slots - 1;
+    }
+
+    public int size() {
+        return offsets.limit() - 1;
+    }
+
+    // O(1) when kept, O(s) otherwise for a string of s bytes
+    public String get(int id) {
+        if (all != null) {
+            return all[id];
+        }
+        Recent kept = recent[id & mask]; // One read, a Recent never changes once made
+        if (kept != null && kept.id == id) {
+            return kept.value;
+        }
+        String value = decode(id);
+        recent[id & mask] = new Recent(id, value); // Racy, but any thread's Recent is a correct one
+        return value;
+    }
+
+    // Compares without creating a String, O(s). ASCII is compared byte by byte, anything else decoded
+    public boolean matches(int id, CharSequence text) {
+        if (all != null) {
+            return all[id].contentEquals(text);
+        }
+        int start = offsets.get(id);
+        int length = offsets.get(id + 1) - start;
+        if (length < text.length()) {
+            return false; // UTF-8 is never shorter than the chars it holds
+        }
+        for (int i = 0; i < length; i++) {
+            byte b = bytes.get(start + i);
+            if (b < 0) {
+                return get(id).contentEquals(text);
+            }
+            if (i >= text.length() || b != text.charAt(i)) {
+                return false;
+            }
+        }
+        return length == text.length();
+    }
+
+    // CodeTable.numberOf() of string id, read from its bytes without making the String, O(s)
+    int number(int id) {
+        if (all != null) {
+            return CodeTable.numberOf(all[id]);
+        }
+        int start = offsets.get(id);
+        int length = offsets.get(id + 1) - start;
+        if (length == 0 || length > 9 || (bytes.get(start) == '0' && length > 1)) {
+            return -1; // Nine digits always fit in an int
+        }
+        int number = 0;
+        for (int i = start; i < start + length; i++) {
+            byte b = bytes.get(i);
+            if (b < '0' || b > '9') {
+                return -1;
+            }
+            number = number * 10 + (b - '0');
+        }
+        return number;
+    }
+
+    // String id's length in chars, as get(id).length() without making the String, O(s)
+    int chars(int id) {
+        if (all != null) {
+            return all[id].length();
+        }
+        int chars = 0;
+        for (int i = offsets.get(id); i < offsets.get(id + 1); i++) {
+            byte b = bytes.get(i);
+            if ((b & 0xC0) != 0x80) {
+                chars++; // Each char starts with one byte that isn't a continuation byte
+            }
+            if ((b & 0xF8) == 0xF0) {
+                chars++; // Four bytes are a surrogate pair
+            }
+        }
+        return chars;
+    }
+
+    // Writes string id's UTF-8 bytes, O(s) and no String made
+    void writeTo(int id, OutputStream out) throws IOException {
+        int start = offsets.get(id);
+        int length = offsets.get(id + 1) - start;
+        if (bytes.hasArray()) {
+            out.write(bytes.array(), bytes.arrayOffset() + start, length);
+            return;
+        }
+        for (int i = start; i < start + length; i++) {
+            out.write(bytes.get(i));
+        }
+    }
+
+    // Writes string id as chars, O(s). ASCII, such as every numeric code, goes byte by byte, anything else via get()
+    void writeTo(int id, Writer out) throws IOException {
+        if (all != null) {
+            out.write(all[id]);
+            return;
+        }
+        int start = offsets.get(id);
+        int end = offsets.get(id + 1);
+        for (int i = start; i < end; i++) {
+            if (bytes.get(i) < 0) {
+                out.write(get(id));
+                return;
+            }
+        }
+        for (int i = start; i < end; i++) {
+            out.write(bytes.get(i));
+        }
+    }
+
+    // Where string id's UTF-8 bytes start in bytes(), see DecodedByteWriter
+    int start(int id) {
+        return offsets.get(id);
+    }
+
+    int length(int id) {
+        return offsets.get(id + 1) - offsets.get(id);
+    }
+
+    // Every string's UTF-8 bytes back to back. Only read with absolute gets, so it can be shared
+    ByteBuffer bytes() {
+        return bytes;
+    }
+
+    void writeTo(DataOutputStream out) throws IOException {
+        BufferSections.writeInts(out, offsets);
+        BufferSections.writeBytes(out, bytes);
+    }
+
+    static StringPool readFrom(ByteBuffer in) {
+        IntBuffer offsets = BufferSections.readInts(in);
+        ByteBuffer bytes = BufferSections.readBytes(in);
+        return new StringPool(offsets, bytes, null);
+    }
+
+    private String decode(int id) {
+        int start = offsets.get(id);
+        byte[] utf8 = new byte[offsets.get(id + 1) - start];
+        bytes.get(start, utf8);
+        return new String(utf8, StandardCharsets.UTF_8);
+    }
+
+    // A String and the id it is for, immutable so it can be shared without locking
+    private static class Recent {
+        final int id;
+        final String value;
+
+        Recent(int id, String value) {
+            this.id = id;
+            this.value = value;
+        }
+    }
+
+    /*
+     * Collects strings while a dictionary is built, each distinct string is
+     * stored once. Mapping files are read as UTF-8, so every string has an
+     * exact UTF-8 form.
+     */
+    static class Builder {
+        private final HashMap<String, Integer> ids = new HashMap<>();
+        private final List<String> strings = new ArrayList<>();
+
+        int add(String value) {
+            Integer id = ids.get(value);
+            if (id == null) {
+                id = strings.size();
+                ids.put(value, id);
+                strings.add(value);
+            }
+            return id;
+        }
+
+        // Id of a string that has already been added
+        int id(String value) {
+            return ids.get(value);
+        }
+
+        String string(int id) {
+            return strings.get(id);
+        }
+
+        StringPool build() {
+            int[] offsets = new int[strings.size() + 1];
+            byte[][] encoded = new byte[strings.size()][];
+            for (int i = 0; i < strings.size(); i++) {
+                encoded[i] = strings.get(i).getBytes(StandardCharsets.UTF_8);
+                offsets[i + 1] = offsets[i] + encoded[i].length;
+            }
+            byte[] utf8 = new byte[offsets[strings.size()]];
+            for (int i = 0; i < encoded.length; i++) {
+                System.arraycopy(encoded[i], 0, utf8, offsets[i], encoded[i].length);
+            }
+            // Already have the Strings, no need to make them again
+            return new StringPool(IntBuffer.wrap(offsets), ByteBuffer.wrap(utf8), strings.toArray(new String[0]));
+        }
+    }
+}
@@ -0,0 +1,76 @@
+package ie.atu.sw;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.HexFormat;
+
+    /* The original output format: "[code,code,...]" on one line.
+     * Raw text is written as the hex of its UTF-8 bytes with an 'x' on the end,
+     * 'x' isn't a hex char so it can't be confused with the hex itself.
+     */
+public class TextEncodedWriter implements EncodedWriter {
+    private final Writer out;
+    private final boolean brackets; // False for a fragment of a list, see Encoder.encodeParallel()
+    private boolean first = true; // No comma before the first token
+
+    public TextEncodedWriter(Writer out) {
+        this(out, true);
+    }
+
+    // Without brackets only the comma separated tokens are written, for joining up later
+    public TextEncodedWriter(Writer out, boolean brackets) {
+        this.out = out;
+        this.brackets = brackets;
+    }
+
+    @Override
+    public void code(String code, boolean suffix) throws IOException {
+        separator();
+        out.write(code);
+    }
+
+    // Straight from the dictionary's bytes, see StringPool.writeTo(int, Writer)
+    @Override
+    public void code(StringPool strings, int id, boolean suffix) throws IOException {
+        separator();
+        strings.writeTo(id, out);
+    }
+
+    @Override
+    public void raw(String text) throws IOException {
+        separator();
+        out.write(HexFormat.of().formatHex(text.getBytes(StandardCharsets.UTF_8)));
+        out.write('x');
+    }
+
+    // Hex straight from the bytes, they are never turned into a String
+    @Override
+    public void raw(byte[] utf8, int offset, int length) throws IOException {
+        separator();
+        HexFormat.of().formatHex(out, utf8, offset, offset + length);
+        out.write('x');
+    }
+
+    // The line separator matches the PrintWriter.println() the Encoder used before
+    @Override
+    public void finish() throws IOException {
+        if (brackets) {
+            if (first) {
+                out.write('[');
+            }
+            out.write(']');
+            out.write(System.lineSeparator());
+        }
+        out.flush();
+    }
+
+    private void separator() throws IOException {
+        if (!first) {
+            out.write(',');
+        } else if (brackets) {
+            out.write('[');
+        }
+        first = false;
+    }
+}
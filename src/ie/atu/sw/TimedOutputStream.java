@@ -0,0 +1,40 @@
+package ie.atu.sw;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+    /* Adds the time spent writing to the file to Metrics' WRITE phase.
+     * It sits under the buffering, so it is only called once per full buffer
+     * and timing it costs next to nothing.
+     */
+public class TimedOutputStream extends FilterOutputStream {
+    private final Metrics metrics;
+
+    public TimedOutputStream(OutputStream out, Metrics metrics) {
+        super(out);
+        this.metrics = metrics;
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        long start = System.nanoTime();
+        out.write(b);
+        metrics.add(Metrics.Phase.WRITE, System.nanoTime() - start);
+    }
+
+    // FilterOutputStream would write the bytes one at a time
+    @Override
+    public void write(byte[] buffer, int offset, int length) throws IOException {
+        long start = System.nanoTime();
+        out.write(buffer, offset, length);
+        metrics.add(Metrics.Phase.WRITE, System.nanoTime() - start);
+    }
+
+    @Override
+    public void flush() throws IOException {
+        long start = System.nanoTime();
+        out.flush();
+        metrics.add(Metrics.Phase.WRITE, System.nanoTime() - start);
+    }
+}
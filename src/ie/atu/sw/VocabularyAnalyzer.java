@@ -0,0 +1,292 @@
+package ie.atu.sw;
+
+import java.io.BufferedReader;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.Writer;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+    /* Out-of-vocabulary analysis: counts the text the Encoder had to write
+     * raw (as hex in the text format) during a run, and suggests new
+     * mapping entries for it:
+     *   word        a whole word with no code, or the raw head before suffix codes
+     *   remainder   what was left after a word's prefix code, added as an "@@" suffix
+     * Candidates are ranked by the bytes they would have saved over the run,
+     * their occurrences times the size of the raw token less the size of a
+     * new code.
+     *
+     * writeExtendedMapping() copies the mapping file as it is and appends
+     * the best N, numbered after the highest existing code, so every
+     * existing code keeps its meaning and older output still decodes.
+     *
+     * One instance per thread, like Metrics, merged once the threads are done.
+     */
+public class VocabularyAnalyzer {
+    private final EncodedFormat format; // Token sizes differ between the formats
+    private final HashMap<String, Long> words = new HashMap<>(); // Raw word -> occurrences
+    private final HashMap<String, Long> remainders = new HashMap<>(); // Raw remainder -> occurrences
+    private String pendingRaw; // Raw text of the word being encoded, see track()
+
+    public VocabularyAnalyzer(EncodedFormat format) {
+        this.format = format;
+    }
+
+    /*
+     * Wraps the writer a word is encoded to, so the raw text it gets is
+     * seen here. record() is then called with how the word was encoded.
+     */
+    public EncodedWriter track(EncodedWriter out) {
+        return new EncodedWriter() {
+            @Override
+            public void code(String code, boolean suffix) throws IOException {
+                out.code(code, suffix);
+            }
+
+            @Override
+            public void code(StringPool strings, int id, boolean suffix) throws IOException {
+                out.code(strings, id, suffix);
+            }
+
+            @Override
+            public void raw(String text) throws IOException {
+                pendingRaw = text;
+                out.raw(text);
+            }
+
+            @Override
+            public void raw(byte[] utf8, int offset, int length) throws IOException {
+                pendingRaw = new String(utf8, offset, length, StandardCharsets.UTF_8);
+                out.raw(utf8, offset, length);
+            }
+
+            @Override
+            public void startWord(long sourceOffset) throws IOException {
+                out.startWord(sourceOffset);
+            }
+
+            @Override
+            public void finish() throws IOException {
+                out.finish();
+            }
+        };
+    }
+
+    // O(L) - counts the raw text of the word just encoded, if it had any
+    public void record(Metrics.Event event) {
+        String raw = pendingRaw;
+        pendingRaw = null;
+        if (raw == null || raw.isEmpty()) {
+            return; // Empty words are written raw but there is nothing to add a code for
+        }
+        switch (event) {
+            case FULL_HEX:
+            case HEX_SUFFIX:
+                words.merge(raw, 1L, Long::sum);
+                break;
+            case PREFIX_HEX:
+                remainders.merge(raw, 1L, Long::sum);
+                break;
+            default:
+                break;
+        }
+    }
+
+    public void merge(VocabularyAnalyzer other) {
+        other.words.forEach((text, count) -> words.merge(text, count, Long::sum));
+        other.remainders.forEach((text, count) -> remainders.merge(text, count, Long::sum));
+    }
+
+    // Distinct raw words and remainders seen
+    public int distinct() {
+        return words.size() + remainders.size();
+    }
+
+    // Raw tokens written in total
+    public long occurrences() {
+        long total = 0;
+        for (long count : words.values()) {
+            total += count;
+        }
+        for (long count : remainders.values()) {
+            total += count;
+        }
+        return total;
+    }
+
+    /*
+     * Every word and remainder, best saving first, with the saving worked
+     * out for a code numbered codeNumber. Ties go in text order so the
+     * result is repeatable. O(d log d) for d distinct texts.
+     */
+    public List<Candidate> candidates(int codeNumber) {
+        List<Candidate> candidates = new ArrayList<>(distinct());
+        long codeSize = codeSize(codeNumber);
+        words.forEach((text, count) -> candidates.add(new Candidate(text, false, count, count
+                * (rawSize(text) - codeSize))));
+        remainders.forEach((text, count) -> candidates.add(new Candidate(text, true, count, count
+                * (rawSize(text) - codeSize))));
+        candidates.sort(Comparator.comparingLong(Candidate::bytesSaved).reversed()
+                .thenComparing(Candidate::mappingKey));
+        return candidates;
+    }
+
+    /*
+     * Writes a copy of mappingFile to target with up to limit new entries
+     * appended, and returns them. Only candidates that save bytes, are not
+     * already keys, and survive the CSV (no commas, whitespace or leading
+     * "@@" on a word) are added. The CSV is read and appended to as
+     * UTF-8, as Dictionary reads it.
+     */
+    public List<Candidate> writeExtendedMapping(String mappingFile, Path target, int limit) throws IOException {
+        Path source = Path.of(mappingFile);
+        if (mappingFile.endsWith(Dictionary.COMPILED_EXTENSION)) {
+            throw new IOException("Extending needs the CSV mapping file, not " + mappingFile);
+        }
+        if (source.toAbsolutePath().normalize().equals(target.toAbsolutePath().normalize())) {
+            throw new IOException("Extended mapping would overwrite " + mappingFile);
+        }
+
+        // O(m) - the existing keys, and the highest numeric code so new ones come after it
+        Set<String> keys = new HashSet<>();
+        int lastCode = -1;
+        try (BufferedReader br = new BufferedReader(new FileReader(mappingFile, StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = br.readLine()) != null) {
+                String[] values = line.split(",");
+                if (values.length == 2) {
+                    keys.add(values[0].trim());
+                    lastCode = Math.max(lastCode, CodeTable.numberOf(values[1].trim()));
+                }
+            }
+        }
+
+        CharsetEncoder utf8 = StandardCharsets.UTF_8.newEncoder(); // Rejects lone surrogates
+        List<Candidate> added = new ArrayList<>();
+        for (Candidate candidate : candidates(lastCode + 1)) {
+            if (added.size() >= limit || candidate.bytesSaved() <= 0) {
+                break; // Sorted, so nothing after this saves more
+            }
+            if (storable(candidate) && !keys.contains(candidate.mappingKey())
+                    && utf8.canEncode(candidate.text())) {
+                added.add(candidate);
+            }
+        }
+
+        Files.copy(source, target, StandardCopyOption.REPLACE_EXISTING);
+        boolean endsWithNewline = endsWithNewline(target);
+        try (Writer out = new FileWriter(target.toFile(), StandardCharsets.UTF_8, true)) {
+            if (!endsWithNewline) {
+                out.write(System.lineSeparator());
+            }
+            int code = lastCode + 1;
+            for (Candidate candidate : added) {
+                out.write(candidate.mappingKey() + "," + code++ + System.lineSeparator());
+            }
+        }
+        return added;
+    }
+
+    // encodings-10000.csv -> encodings-10000-extended.csv
+    public static Path extendedPath(Path csv) {
+        String name = csv.getFileName().toString();
+        String base = name.toLowerCase().endsWith(".csv") ? name.substring(0, name.length() - 4) : name;
+        return csv.resolveSibling(base + "-extended.csv");
+    }
+
+    // Tokens are sized as BINARY writes them, before HUFFMAN codes them, so the separator is left out of both
+    private long rawSize(String text) {
+        int bytes = text.getBytes(StandardCharsets.UTF_8).length;
+        if (format != EncodedFormat.TEXT) {
+            return varintSize((long) bytes << 2) + bytes;
+        }
+        return 2L * bytes + 1; // Hex plus the 'x'
+    }
+
+    private long codeSize(int number) {
+        if (format != EncodedFormat.TEXT) {
+            return varintSize((long) number << 2);
+        }
+        return Integer.toString(number).length();
+    }
+
+    private static int varintSize(long value) {
+        int size = 1;
+        while ((value & ~0x7FL) != 0) {
+            value >>>= 7;
+            size++;
+        }
+        return size;
+    }
+
+    // Dictionary splits on commas and trims the key, and a word starting "@@" would load as a suffix
+    private static boolean storable(Candidate candidate) {
+        String text = candidate.text();
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c == ',' || c <= ' ' || Character.isWhitespace(c)) {
+                return false;
+            }
+        }
+        return candidate.isSuffix() || !text.startsWith("@@");
+    }
+
+    private static boolean endsWithNewline(Path file) throws IOException {
+        try (RandomAccessFile in = new RandomAccessFile(file.toFile(), "r")) {
+            if (in.length() == 0) {
+                return true; // Nothing to end
+            }
+            in.seek(in.length() - 1);
+            int last = in.read();
+            return last == '\n' || last == '\r';
+        }
+    }
+
+    // A suggested mapping entry and what it would have saved over the run
+    public static class Candidate {
+        private final String text;
+        private final boolean suffix;
+        private final long occurrences;
+        private final long bytesSaved;
+
+        Candidate(String text, boolean suffix, long occurrences, long bytesSaved) {
+            this.text = text;
+            this.suffix = suffix;
+            this.occurrences = occurrences;
+            this.bytesSaved = bytesSaved;
+        }
+
+        public String text() {
+            return text;
+        }
+
+        // True for a remainder, added as an "@@" suffix
+        public boolean isSuffix() {
+            return suffix;
+        }
+
+        public long occurrences() {
+            return occurrences;
+        }
+
+        public long bytesSaved() {
+            return bytesSaved;
+        }
+
+        // The key as written in the mapping CSV
+        public String mappingKey() {
+            return suffix ? "@@" + text : text;
+        }
+    }
+}
@@ -0,0 +1,98 @@
+package ie.atu.sw;
+
+import java.io.IOException;
+
+    /* Splits a stream of characters into words one chunk at a time,
+     * giving exactly the same words as Encoder.encode() gets from
+     * joining every line with " ", trimming and then calling split(" ").
+     * A word that runs over the end of a chunk is carried into the next one.
+     */
+public class WordTokenizer {
+
+    // Receives each word as soon as it is complete
+    public interface WordConsumer {
+        void accept(String word) throws IOException;
+    }
+
+    private final WordConsumer consumer;
+    private final StringBuilder word = new StringBuilder(); // Word being built, may span chunks
+    private final StringBuilder pending = new StringBuilder(); // Whitespace held back in case it is trailing (trim)
+    private boolean started; // True once a non-whitespace char is seen (leading trim)
+    private boolean lastWasCR; // "\r\n" is one line break, even across chunks
+
+    public WordTokenizer(WordConsumer consumer) {
+        this(consumer, true);
+    }
+
+    /*
+     * atStart is false for a segment cut out of the middle of the text
+     * (see Encoder.encodeParallel()), leading whitespace is only trimmed
+     * at the very start of the text.
+     */
+    public WordTokenizer(WordConsumer consumer, boolean atStart) {
+        this.consumer = consumer;
+        this.started = !atStart;
+    }
+
+    /*
+     * O(c) for a chunk of c chars, each char is looked at once.
+     * Memory is bounded by the chunk plus the longest word, not the file size.
+     */
+    public void feed(char[] chunk, int offset, int length) throws IOException {
+        int end = offset + length;
+        for (int i = offset; i < end; i++) {
+            char c = chunk[i];
+            if (c == '\n' && lastWasCR) {
+                lastWasCR = false;
+                continue; // Second half of "\r\n", readLine() already counted it
+            }
+            lastWasCR = c == '\r';
+            if (c == '\n' || c == '\r') {
+                c = ' '; // Every line break becomes the single " " that encode() joins lines with
+            }
+
+            if (c <= ' ') {
+                // String.trim() drops anything <= ' ', so hold it back until a real char follows
+                if (started) {
+                    pending.append(c);
+                }
+            } else {
+                started = true;
+                flushPending();
+                word.append(c);
+            }
+        }
+    }
+
+    // Emits the final word, trailing whitespace is dropped just like trim()
+    public void finish() throws IOException {
+        pending.setLength(0);
+        emit();
+    }
+
+    /*
+     * Ends a segment that was cut just after a line break or space with more
+     * words still to come. That whitespace isn't trailing, so it is flushed
+     * as if the next segment's first char had arrived here.
+     */
+    public void finishSegment() throws IOException {
+        flushPending();
+    }
+
+    private void flushPending() throws IOException {
+        for (int i = 0; i < pending.length(); i++) {
+            char c = pending.charAt(i);
+            if (c == ' ') {
+                emit(); // Two spaces in a row give an empty word, as split(" ") does
+            } else {
+                word.append(c); // Tabs and other control chars stay part of the word
+            }
+        }
+        pending.setLength(0);
+    }
+
+    private void emit() throws IOException {
+        consumer.accept(word.toString());
+        word.setLength(0);
+    }
+}
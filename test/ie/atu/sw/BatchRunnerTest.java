@@ -0,0 +1,87 @@
+package ie.atu.sw;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+    /* BatchRunner from the command line arguments: a directory encoded
+     * and decoded back on several threads, globs, and the exit codes for
+     * bad arguments and files that fail.
+     */
+public class BatchRunnerTest {
+    private static final String MAPPING = "the,0\ncat,1\nsat,2\non,3\nmat,4\n@@s,5\n";
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void encodesAndDecodesADirectory() throws IOException {
+        Path in = Files.createDirectories(dir.resolve("in"));
+        for (int i = 0; i < 5; i++) {
+            Files.writeString(in.resolve("f" + i + ".txt"), "the cats sat\non the mat " + i + "\n");
+        }
+        for (String format : new String[] { "text", "binary" }) {
+            assertEquals(BatchRunner.OK, BatchRunner.run(new String[] { "encode", "--map", map(), "--in",
+                    in.toString(), "--out", dir.resolve("enc").toString(), "--threads", "3", "--format", format }));
+            assertEquals(BatchRunner.OK, BatchRunner.run(new String[] { "decode", "--map", map(), "--in",
+                    dir.resolve("enc").toString(), "--out", dir.resolve("dec").toString(), "--threads", "2" }));
+            for (int i = 0; i < 5; i++) {
+                assertTrue(Files.exists(dir.resolve("enc").resolve("f" + i + ".txt.enc")));
+                assertEquals("the cats sat on the mat " + i + System.lineSeparator(),
+                        Files.readString(dir.resolve("dec").resolve("f" + i + ".txt"), StandardCharsets.UTF_8));
+            }
+        }
+    }
+
+    @Test
+    void globPicksTheMatchingFiles() throws IOException {
+        Files.writeString(dir.resolve("a.txt"), "the cat\n");
+        Files.writeString(dir.resolve("b.txt"), "the mat\n");
+        Files.writeString(dir.resolve("c.log"), "the sat\n");
+        assertEquals(BatchRunner.OK, BatchRunner.run(new String[] { "encode", "--map", map(), "--in",
+                dir.resolve("*.txt").toString(), "--out", dir.resolve("out").toString() }));
+        assertTrue(Files.exists(dir.resolve("out").resolve("a.txt.enc")));
+        assertTrue(Files.exists(dir.resolve("out").resolve("b.txt.enc")));
+        assertFalse(Files.exists(dir.resolve("out").resolve("c.log.enc")));
+    }
+
+    @Test
+    void badArgumentsAreUsageErrors() throws IOException {
+        assertEquals(BatchRunner.USAGE, BatchRunner.run(new String[] { "squash" }));
+        assertEquals(BatchRunner.USAGE, BatchRunner.run(new String[] { "encode", "--map" }));
+        assertEquals(BatchRunner.USAGE, BatchRunner.run(new String[] { "encode", "--bogus", "1" }));
+        assertEquals(BatchRunner.USAGE, BatchRunner.run(new String[] { "encode", "--map", map(), "--in", "x",
+                "--threads", "0" }));
+    }
+
+    @Test
+    void failuresAreReported() throws IOException {
+        assertEquals(BatchRunner.FAILED, BatchRunner.run(new String[] { "encode", "--map", map(), "--in",
+                dir.resolve("missing.txt").toString() }));
+        // A binary file cut off inside "zebra" fails, the other file still goes through
+        Path in = Files.createDirectories(dir.resolve("in"));
+        Files.writeString(in.resolve("x"), "the zebra\n");
+        assertEquals(BatchRunner.OK, BatchRunner.run(new String[] { "encode", "--map", map(), "--in",
+                in.resolve("x").toString(), "--out", in.toString(), "--format", "binary" }));
+        Files.delete(in.resolve("x"));
+        byte[] encoded = Files.readAllBytes(in.resolve("x.enc"));
+        Files.write(in.resolve("x.enc"), Arrays.copyOf(encoded, encoded.length - 1));
+        Files.writeString(in.resolve("y.enc"), "[0,4]");
+        assertEquals(BatchRunner.FAILED, BatchRunner.run(new String[] { "decode", "--map", map(), "--in",
+                in.toString(), "--out", dir.resolve("out").toString(), "--threads", "2" }));
+        assertEquals("the mat" + System.lineSeparator(), Files.readString(dir.resolve("out").resolve("y")));
+    }
+
+    private String map() throws IOException {
+        return Files.writeString(dir.resolve("map.csv"), MAPPING, StandardCharsets.UTF_8).toString();
+    }
+}
@@ -0,0 +1,106 @@
+package ie.atu.sw;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.util.Arrays;
+
+import org.junit.jupiter.api.Test;
+
+    /* The varint tokens of the BINARY format, as BinaryEncodedWriter writes
+     * them and BinaryCodeReader reads them back, including text that
+     * doesn't fit the reader's buffer and input that ends mid token.
+     */
+public class BinaryCodeReaderTest {
+
+    @Test
+    void writesVarintTokens() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        BinaryEncodedWriter writer = new BinaryEncodedWriter(out);
+        writer.code("5", false);
+        writer.code("300", true);
+        writer.raw("hé");
+        writer.code("x1", true);
+        byte[] expected = {
+                5 << 2, // WORD 5
+                (byte) (0x80 | (300 << 2 | 1) & 0x7F), (300 << 2 | 1) >>> 7, // SUFFIX 300, two bytes
+                3 << 2 | 2, 'h', (byte) 0xC3, (byte) 0xA9, // RAW, 3 UTF-8 bytes
+                (2 << 1 | 1) << 2 | 3, 'x', '1' // CODE "x1" with the suffix flag
+        };
+        assertEquals(Arrays.toString(expected), Arrays.toString(out.toByteArray()));
+    }
+
+    @Test
+    void readsEveryKind() throws IOException {
+        BinaryCodeReader reader = reader(tokens(), 16);
+        assertTrue(reader.next());
+        assertToken(reader, BinaryEncodedWriter.WORD, false);
+        assertEquals(5, reader.number());
+        assertTrue(reader.next());
+        assertToken(reader, BinaryEncodedWriter.SUFFIX, true);
+        assertEquals(300, reader.number());
+        assertTrue(reader.next());
+        assertToken(reader, BinaryEncodedWriter.RAW, false);
+        assertEquals("hé", reader.text());
+        assertTrue(reader.next());
+        assertToken(reader, BinaryEncodedWriter.CODE, true);
+        assertEquals("x1", reader.text());
+        assertTrue(reader.next());
+        assertToken(reader, BinaryEncodedWriter.RAW, false);
+        assertEquals("a".repeat(100), reader.text()); // Longer than the buffer
+        assertFalse(reader.next());
+    }
+
+    @Test
+    void stopsAtTheGivenLength() throws IOException {
+        byte[] tokens = tokens();
+        BinaryCodeReader reader = new BinaryCodeReader(new ByteArrayInputStream(tokens), 16, 1 + 2);
+        assertTrue(reader.next());
+        assertTrue(reader.next());
+        assertFalse(reader.next());
+    }
+
+    @Test
+    void rejectsTruncatedTokens() {
+        byte[] tokens = tokens();
+        // Inside the two byte varint, inside "hé" and inside the long text
+        for (int length : new int[] { 2, 5, tokens.length - 1 }) {
+            BinaryCodeReader reader = reader(Arrays.copyOf(tokens, length), 16);
+            assertThrows(EOFException.class, () -> {
+                while (reader.next()) {
+                    // Reads to the end
+                }
+            }, "cut at " + length);
+        }
+    }
+
+    private static void assertToken(BinaryCodeReader reader, int kind, boolean suffix) {
+        assertEquals(kind, reader.kind());
+        assertEquals(suffix, reader.isSuffix());
+    }
+
+    private static byte[] tokens() {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        BinaryEncodedWriter writer = new BinaryEncodedWriter(out);
+        try {
+            writer.code("5", false);
+            writer.code("300", true);
+            writer.raw("hé");
+            writer.code("x1", true);
+            writer.raw("a".repeat(100));
+        } catch (IOException e) {
+            throw new RuntimeException("Error writing tokens: " + e.getMessage(), e);
+        }
+        return out.toByteArray();
+    }
+
+    private static BinaryCodeReader reader(byte[] bytes, int bufferSize) {
+        return new BinaryCodeReader(new ByteArrayInputStream(bytes), bufferSize, bytes.length);
+    }
+}
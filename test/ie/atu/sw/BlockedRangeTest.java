@@ -0,0 +1,144 @@
+package ie.atu.sw;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+    /* The BLOCKED format's index (see BlockIndex) and the range decoders
+     * that use it, with blocks of a few words so that ranges start and end
+     * on every side of a block edge. Every word is in the mapping, so word
+     * i of the decoder is word i of the source.
+     */
+public class BlockedRangeTest {
+    private static final String[] WORDS = { "the", "cat", "sat", "on", "mat" };
+
+    @TempDir
+    Path dir;
+    private final List<String> words = new ArrayList<>();
+    private final List<Long> offsets = new ArrayList<>(); // Source byte offset of each word
+    private Path encoded;
+    private BlockIndex index;
+
+    @BeforeEach
+    void encode() throws IOException {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < 60; i++) {
+            offsets.add((long) text.length());
+            words.add(WORDS[i % WORDS.length]);
+            text.append(words.get(i)).append(i % 7 == 6 ? "\n" : " ");
+        }
+        Files.writeString(dir.resolve("in.txt"), text, StandardCharsets.UTF_8);
+        Files.writeString(dir.resolve("map.csv"), "the,0\ncat,1\nsat,2\non,3\nmat,4\n", StandardCharsets.UTF_8);
+        encoded = dir.resolve("out.blk");
+        Encoder encoder = new Encoder(dir.resolve("in.txt").toString(), map(), encoded.toString());
+        encoder.setProgressListener(new NoOpProgressListener());
+        encoder.setFormat(EncodedFormat.BLOCKED);
+        encoder.setBlockBytes(8);
+        encoder.encodeMapped();
+        index = BlockIndex.read(encoded);
+    }
+
+    @Test
+    void indexMatchesTheSource() {
+        assertTrue(index.blocks() > 4, "expected several blocks, got " + index.blocks());
+        assertEquals(words.size(), index.words());
+        for (int block = 0; block < index.blocks(); block++) {
+            long first = index.firstWord(block);
+            assertEquals(offsets.get((int) first), index.sourceOffset(block), "block " + block);
+            assertEquals(block, index.blockOfWord(first));
+            assertEquals(block, index.blockOfSource(index.sourceOffset(block)));
+            if (block > 0) {
+                assertEquals(block - 1, index.blockOfWord(first - 1));
+                assertEquals(block - 1, index.blockOfSource(index.sourceOffset(block) - 1));
+                assertEquals(index.end(block - 1), index.start(block));
+            }
+        }
+    }
+
+    @Test
+    void wordsAtBlockEdges() throws IOException {
+        for (int block = 0; block < index.blocks(); block++) {
+            int first = (int) index.firstWord(block);
+            assertWords(first, 1);
+            assertWords(first, 3);
+            if (first > 0) {
+                assertWords(first - 1, 1); // Last word of the block before
+                assertWords(first - 1, 2); // Across the edge
+            }
+        }
+    }
+
+    @Test
+    void wordsAtTheEnds() throws IOException {
+        assertWords(0, words.size());
+        assertWords(words.size() - 1, 1);
+        assertEquals(words(words.size() - 2, words.size()), decodeWords(words.size() - 2, 1000)); // Clipped
+        assertEquals(System.lineSeparator(), decodeWords(words.size(), 5));
+        assertEquals(System.lineSeparator(), decodeWords(3, 0));
+    }
+
+    @Test
+    void sourceRangesAtBlockEdges() throws IOException {
+        for (int block = 0; block < index.blocks(); block++) {
+            long start = index.sourceOffset(block);
+            assertEquals(blocks(block, block), decodeSourceRange(start, start + 1));
+            if (block > 0) {
+                // One byte either side of the edge takes both blocks, the byte before it only the block before
+                assertEquals(blocks(block - 1, block), decodeSourceRange(start - 1, start + 1));
+                assertEquals(blocks(block - 1, block - 1), decodeSourceRange(start - 1, start));
+            }
+        }
+        assertEquals(System.lineSeparator(), decodeSourceRange(5, 5));
+    }
+
+    private void assertWords(int first, int count) throws IOException {
+        assertEquals(words(first, first + count), decodeWords(first, count), "words " + first + "+" + count);
+    }
+
+    // Words [from, to) as the decoder writes them
+    private String words(int from, int to) {
+        return String.join(" ", words.subList(from, Math.min(to, words.size()))) + System.lineSeparator();
+    }
+
+    // The whole of blocks [from, to]
+    private String blocks(int from, int to) {
+        int last = to + 1 < index.blocks() ? (int) index.firstWord(to + 1) : words.size();
+        return words((int) index.firstWord(from), last);
+    }
+
+    private String decodeWords(long first, long count) throws IOException {
+        Decoder decoder = decoder();
+        decoder.decodeWords(first, count);
+        return decoded();
+    }
+
+    private String decodeSourceRange(long start, long end) throws IOException {
+        Decoder decoder = decoder();
+        decoder.decodeSourceRange(start, end);
+        return decoded();
+    }
+
+    private Decoder decoder() {
+        Decoder decoder = new Decoder(encoded.toString(), map(), dir.resolve("decoded.txt").toString());
+        decoder.setProgressListener(new NoOpProgressListener());
+        return decoder;
+    }
+
+    private String decoded() throws IOException {
+        return Files.readString(dir.resolve("decoded.txt"), StandardCharsets.UTF_8);
+    }
+
+    private String map() {
+        return dir.resolve("map.csv").toString();
+    }
+}
@@ -0,0 +1,87 @@
+package ie.atu.sw;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+    /* CodeTable lookups through the flat numeric array and through the
+     * hash table, which must agree: "07" and "7" are different codes, and
+     * codes too sparse for the array still resolve. Each table is checked
+     * as built from the CSV and as mapped from a compiled file.
+     */
+public class CodeTableTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void numberOfReadsPlainDecimals() {
+        assertEquals(0, CodeTable.numberOf("0"));
+        assertEquals(173, CodeTable.numberOf("173"));
+        assertEquals(999_999_999, CodeTable.numberOf("999999999"));
+        assertEquals(-1, CodeTable.numberOf("1000000000")); // Over nine digits
+        assertEquals(-1, CodeTable.numberOf("07"));
+        assertEquals(-1, CodeTable.numberOf(""));
+        assertEquals(-1, CodeTable.numberOf("12a"));
+        assertEquals(-1, CodeTable.numberOf("-1"));
+    }
+
+    @Test
+    void denseAndHashedLookupsAgree() throws IOException {
+        for (CodeTable codes : tables("the,0\ncat,1\nsat,7\nmat,07\n@@s,2\nq,x9\n")) {
+            assertEntry(codes, "0", "the", false);
+            assertEntry(codes, "7", "sat", false);
+            assertEntry(codes, "07", "mat", false);
+            assertEntry(codes, "2", "s", true);
+            assertEntry(codes, "x9", "q", false);
+            assertMissing(codes, "3");
+            assertMissing(codes, "5000");
+            assertMissing(codes, "007");
+        }
+    }
+
+    @Test
+    void sparseCodesUseTheHashTable() throws IOException {
+        for (CodeTable codes : tables("the,0\ncat,50000000\n@@s,123456\n")) {
+            assertEntry(codes, "0", "the", false);
+            assertEntry(codes, "50000000", "cat", false);
+            assertEntry(codes, "123456", "s", true);
+            assertMissing(codes, "1");
+        }
+    }
+
+    @Test
+    void decoderResolvesEveryKindOfCode() throws IOException {
+        Path mapping = Files.writeString(dir.resolve("map.csv"), "the,0\ncat,1\nsat,7\nmat,07\n@@s,2\n",
+                StandardCharsets.UTF_8);
+        Path input = Files.writeString(dir.resolve("in.txt"), "[0,1,2,07,7,2,6f6bx,3]", StandardCharsets.UTF_8);
+        Path output = dir.resolve("out.txt");
+        new Decoder(input.toString(), mapping.toString(), output.toString()).decodeStream(4);
+        assertEquals("the cats mat sats ok" + System.lineSeparator(), Files.readString(output));
+    }
+
+    private static void assertEntry(CodeTable codes, String code, String text, boolean suffix) {
+        for (int entry : new int[] { codes.lookup(code), codes.lookup(code, CodeTable.numberOf(code)) }) {
+            assertEquals(text, codes.text(entry), code);
+            assertEquals(suffix, codes.isSuffix(entry), code);
+        }
+    }
+
+    private static void assertMissing(CodeTable codes, String code) {
+        assertEquals(-1, codes.lookup(code), code);
+        assertEquals(-1, codes.lookup(code, CodeTable.numberOf(code)), code);
+    }
+
+    private CodeTable[] tables(String csv) throws IOException {
+        Path mapping = Files.writeString(dir.resolve("map.csv"), csv, StandardCharsets.UTF_8);
+        Path compiled = Dictionary.compile(mapping.toString());
+        return new CodeTable[] { Dictionary.fromCsv(mapping.toString()).codes(),
+                Dictionary.load(compiled.toString()).codes() };
+    }
+}
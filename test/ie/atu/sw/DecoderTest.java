@@ -0,0 +1,175 @@
+package ie.atu.sw;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+    /* Each of the Decoder's modes against decode(), which is the reference:
+     * every mode must write the same text for the same encoded file, from
+     * what the Encoder writes to hand-made files with stray whitespace,
+     * empty codes and brackets in odd places.
+     */
+public class DecoderTest {
+    static final String MAPPING = "the,0\ncat,1\nsat,2\non,3\nmat,4\nca,5\n@@s,6\n@@ing,7\n";
+    static final String[] ENCODED = {
+            "[0,1,2,3,0,4,6,7a65627261x,0,1,6,2,7,0,5,74616c6f67x,4]\n",
+            "[0,1,2]",
+            " [ 0 ,\n1,\t2 ]\r\n",
+            "0,1,2",
+            "[6,0,6,6,1]",
+            "[0,,1,,,2,]",
+            "[]",
+            "",
+            "  \n",
+            "[0,1]2]",
+            "[0,1],2]",
+            "0,1]",
+            "[0,e9x,zzx,99,63c3a9x]",
+            "[0,1,2",
+            " [ 1 ,\n6 ,0\n",
+            "[",
+            "[6,0,1",
+            "[63x,0",
+            "[0]]",
+            "[[0,1]"
+    };
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void streamMatchesDecode() throws IOException {
+        for (String encoded : ENCODED) {
+            String expected = decode(encoded);
+            for (int chunk = 1; chunk <= encoded.length() + 1; chunk++) {
+                decoder(encoded).decodeStream(chunk);
+                assertEquals(expected, output(), "\"" + encoded + "\" in chunks of " + chunk);
+            }
+        }
+    }
+
+    @Test
+    void utf8MatchesDecode() throws IOException {
+        for (String encoded : ENCODED) {
+            if (encoded.contains("e9x")) {
+                continue; // Non-ASCII hex, decode() writes it in the platform charset rather than UTF-8
+            }
+            String expected = decode(encoded);
+            for (int bufferSize : new int[] { 1, 16, 8192 }) {
+                decoder(encoded).decodeUtf8(bufferSize);
+                assertEquals(expected, output(), "\"" + encoded + "\" buffer of " + bufferSize);
+            }
+        }
+    }
+
+    @Test
+    void pipelinedMatchesDecode() throws IOException {
+        for (String encoded : ENCODED) {
+            String expected = decode(encoded);
+            for (int chunk : new int[] { 1, 3, 8192 }) {
+                decoder(encoded).decodePipelined(chunk);
+                assertEquals(expected, output(), "\"" + encoded + "\" in chunks of " + chunk);
+            }
+        }
+    }
+
+    @Test
+    void stringMatchesDecode() throws IOException {
+        for (String encoded : ENCODED) {
+            if (encoded.contains("e9x")) {
+                continue; // Non-ASCII hex, decode() writes it in the platform charset and the String has no charset
+            }
+            assertEquals(decode(encoded), decoder(encoded).decode(encoded), "\"" + encoded + "\"");
+        }
+    }
+
+    @Test
+    void parallelMatchesDecode() throws IOException {
+        for (String encoded : ENCODED) {
+            String expected = decode(encoded);
+            for (int threads : new int[] { 1, 3 }) {
+                for (int partition : new int[] { 1, 4, 64 }) {
+                    decoder(encoded).decodeParallel(threads, partition);
+                    assertEquals(expected, output(), "\"" + encoded + "\" threads " + threads + " partitions of "
+                            + partition);
+                }
+            }
+        }
+    }
+
+    @Test
+    void parallelCutsBeforeEveryKindOfCode() throws IOException {
+        // Every partition size puts a cut after each comma: before a suffix code, a hex word, the closing ']'
+        String[] encoded = {
+                "[0,6,6,1,7,7a65627261x,6,63c3a9x,7,0]\n",
+                "[6,0,7a65627261x,6]",
+                " [ 0 ,\n6 , 61x , ] \n",
+                "[0,6,1,7,2"
+        };
+        for (String text : encoded) {
+            String expected = decode(text);
+            for (int partition = 1; partition <= text.length() + 1; partition++) {
+                for (int threads : new int[] { 1, 2, 4 }) {
+                    decoder(text).decodeParallel(threads, partition);
+                    assertEquals(expected, output(), "\"" + text + "\" threads " + threads + " partitions of "
+                            + partition);
+                }
+            }
+        }
+    }
+
+    @Test
+    void suffixesJoinThePreviousWord() throws IOException {
+        String n = System.lineSeparator();
+        assertEquals("the cats sating" + n, decode("[0,1,6,2,7]"));
+        assertEquals("s thess cat" + n, decode("[6,0,6,6,1]")); // A leading suffix has nothing to join
+        assertEquals("the zebras" + n, decode("[0,7a65627261x,6]"));
+        assertEquals("the" + n, decode("[0,99,zz]")); // Unknown codes are skipped
+    }
+
+    @Test
+    void suffixesStayLinearOnLongInput() throws IOException {
+        // The old decoder copied everything decoded so far for each suffix, this would take minutes
+        StringBuilder encoded = new StringBuilder("[");
+        StringBuilder expected = new StringBuilder();
+        for (int i = 0; i < 200_000; i++) {
+            encoded.append("1,6,");
+            expected.append("cats ");
+        }
+        encoded.append("0]");
+        expected.append("the").append(System.lineSeparator());
+        assertEquals(expected.toString(), decode(encoded.toString()));
+    }
+
+    @Test
+    void encoderDecodesThroughTheDecoder() throws IOException {
+        String expected = decode(ENCODED[0]);
+        Path mapping = dir.resolve("map.csv");
+        new Encoder(dir.resolve("in.txt").toString(), mapping.toString(), dir.resolve("out.txt").toString()).decode();
+        assertEquals(expected, output());
+    }
+
+    // decode() of the encoded text, as the file it writes
+    String decode(String encoded) throws IOException {
+        decoder(encoded).decode();
+        return output();
+    }
+
+    Decoder decoder(String encoded) throws IOException {
+        Path input = dir.resolve("in.txt");
+        Path mapping = dir.resolve("map.csv");
+        Files.writeString(input, encoded, StandardCharsets.UTF_8);
+        Files.writeString(mapping, MAPPING, StandardCharsets.UTF_8);
+        return new Decoder(input.toString(), mapping.toString(), dir.resolve("out.txt").toString());
+    }
+
+    String output() throws IOException {
+        return Files.readString(dir.resolve("out.txt"), StandardCharsets.UTF_8);
+    }
+}
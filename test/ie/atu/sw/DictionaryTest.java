@@ -0,0 +1,201 @@
+package ie.atu.sw;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+    /* Dictionary from the CSV and from a compiled .dict file: both must
+     * give the same lookups, a compiled file must be passed over once the
+     * CSV changes, and anything else must not be mapped as a dictionary.
+     * load() hands out one shared instance per file until the file changes.
+     * An off-heap copy must write the same codes straight from its bytes.
+     */
+public class DictionaryTest {
+    private static final String MAPPING = "the,0\ncat,1\nsat,2\n@@s,3\n@@ing,4\nbad line\n";
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void compiledMatchesCsv() throws IOException {
+        Path csv = csv(MAPPING);
+        Path compiled = Dictionary.compile(csv.toString());
+        assertEquals(Dictionary.compiledPath(csv), compiled);
+        assertLookups(Dictionary.fromCsv(csv.toString()));
+        assertLookups(Dictionary.load(compiled.toString()));
+        assertLookups(Dictionary.load(csv.toString())); // Picks up the compiled file
+    }
+
+    @Test
+    void staleCompiledFileIsSkipped() throws IOException {
+        Path csv = csv(MAPPING);
+        Dictionary.compile(csv.toString());
+        csv(MAPPING + "dog,5\n");
+        Dictionary dictionary = Dictionary.load(csv.toString());
+        assertTrue(dictionary.codes().lookup("5") >= 0, "the CSV must be read again");
+        assertLookups(dictionary);
+    }
+
+    @Test
+    void olderVersionIsCompiledAgain() throws IOException {
+        Path csv = csv(MAPPING);
+        Path compiled = Dictionary.compile(csv.toString());
+        byte[] bytes = Files.readAllBytes(compiled);
+        bytes[7]--; // The version after the magic
+        Files.write(compiled, bytes);
+        assertLookups(Dictionary.load(csv.toString()));
+        assertThrows(RuntimeException.class, () -> Dictionary.load(compiled.toString()));
+    }
+
+    @Test
+    void rejectsFilesThatAreNotCompiled() throws IOException {
+        Path notCompiled = Files.writeString(dir.resolve("map.dict"), MAPPING, StandardCharsets.UTF_8);
+        assertThrows(RuntimeException.class, () -> Dictionary.load(notCompiled.toString()));
+    }
+
+    @Test
+    void encodesTheSameWithEitherFile() throws IOException {
+        Path csv = csv(MAPPING);
+        Path input = Files.writeString(dir.resolve("in.txt"), "the cats sating dog\n", StandardCharsets.UTF_8);
+        String fromCsv = encode(input, csv);
+        assertEquals(fromCsv, encode(input, Dictionary.compile(csv.toString())));
+    }
+
+    @Test
+    void loadIsCachedUntilTheFileChanges() throws IOException {
+        Path csv = csv(MAPPING);
+        Dictionary first = Dictionary.load(csv.toString());
+        assertSame(first, Dictionary.load(csv.toString()));
+        assertSame(first, Dictionary.load(dir.resolve("x").resolve("..").resolve("map.csv").toString()));
+
+        Files.setLastModifiedTime(csv, FileTime.fromMillis(Files.getLastModifiedTime(csv).toMillis() - 60_000));
+        Dictionary reloaded = Dictionary.load(csv.toString());
+        assertNotSame(first, reloaded);
+        assertLookups(reloaded);
+    }
+
+    @Test
+    void concurrentLoadsShareOneDictionary() throws Exception {
+        Path csv = csv(MAPPING);
+        ExecutorService pool = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<Dictionary>> loads = new ArrayList<>();
+            for (int i = 0; i < 8; i++) {
+                loads.add(pool.submit(() -> Dictionary.load(csv.toString())));
+            }
+            for (Future<Dictionary> load : loads) {
+                assertSame(loads.get(0).get(), load.get());
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    void offHeapMatchesHeap() throws IOException {
+        Path csv = csv(MAPPING + "caf\u00e9,5\n\u732b,6\n@@\u00e9s,7\n"); // Packed as multi-byte UTF-8
+        Dictionary heap = Dictionary.fromCsv(csv.toString());
+        Dictionary offHeap = heap.offHeap();
+        assertTrue(offHeap.isOffHeap());
+        assertFalse(heap.isOffHeap());
+        assertSame(offHeap, offHeap.offHeap());
+        assertEquals(heap.fingerprint(), offHeap.fingerprint());
+        assertLookups(offHeap);
+        Dictionary mapped = Dictionary.load(Dictionary.compile(csv.toString()).toString());
+        assertTrue(mapped.isOffHeap());
+
+        String text = "the caf\u00e9s sat \u732b cating caf\u00e9\u00e9s\n";
+        String encoded = new Encoder(heap).encode(text);
+        String decoded = new Decoder(heap).decode(encoded);
+        for (Dictionary dictionary : new Dictionary[] { offHeap, mapped }) {
+            assertEquals("caf\u00e9", dictionary.codes().text(dictionary.codes().lookup("5")));
+            assertEquals(encoded, new Encoder(dictionary).encode(text));
+            assertEquals(decoded, new Decoder(dictionary).decode(encoded));
+        }
+    }
+
+    @Test
+    void offHeapCodesAreWrittenFromTheirBytes() throws IOException {
+        // Numeric, non-numeric, zero-padded and multi-byte codes, one a surrogate pair
+        Dictionary heap = Dictionary.fromCsv(new StringReader(
+                "the,0\ncat,c1\nsat,s\u00e9\non,\uD83D\uDE00\n@@s,\u732b\n@@ing,04\n@@e,123456789\n"));
+        Dictionary offHeap = heap.offHeap();
+        StringPool strings = offHeap.words().strings();
+        for (int id = 0; id < strings.size(); id++) {
+            String value = strings.get(id);
+            assertEquals(CodeTable.numberOf(value), strings.number(id), value);
+            assertEquals(value.length(), strings.chars(id), value);
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            strings.writeTo(id, bytes);
+            assertArrayEquals(value.getBytes(StandardCharsets.UTF_8), bytes.toByteArray(), value);
+            StringWriter chars = new StringWriter();
+            strings.writeTo(id, chars);
+            assertEquals(value, chars.toString());
+        }
+
+        byte[] text = "the cats sate on cating thee zebra\n".getBytes(StandardCharsets.UTF_8);
+        for (EncodedFormat format : EncodedFormat.values()) {
+            if (format == EncodedFormat.BLOCKED) {
+                continue; // Only written from a file, its tokens are BINARY's
+            }
+            for (Segmentation segmentation : Segmentation.values()) {
+                assertArrayEquals(encode(heap, format, segmentation, text),
+                        encode(offHeap, format, segmentation, text), format + " " + segmentation);
+            }
+        }
+    }
+
+    private static byte[] encode(Dictionary dictionary, EncodedFormat format, Segmentation segmentation, byte[] text)
+            throws IOException {
+        Encoder encoder = new Encoder(dictionary);
+        encoder.setProgressListener(new NoOpProgressListener());
+        encoder.setFormat(format);
+        encoder.setSegmentation(segmentation);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        encoder.encode(new ByteArrayInputStream(text), out);
+        return out.toByteArray();
+    }
+
+    private static void assertLookups(Dictionary dictionary) {
+        CodeTable codes = dictionary.codes();
+        assertEquals("cat", codes.text(codes.lookup("1")));
+        assertFalse(codes.isSuffix(codes.lookup("1")));
+        assertEquals("ing", codes.text(codes.lookup("4")));
+        assertTrue(codes.isSuffix(codes.lookup("4")));
+        assertEquals(-1, codes.lookup("9"));
+        assertEquals("3", dictionary.suffixes().code(dictionary.suffixes().find("s", 0, 1)));
+        assertEquals(-1, dictionary.words().find("bad line", 0, 8));
+    }
+
+    private String encode(Path input, Path mapping) throws IOException {
+        Path output = dir.resolve("out.txt");
+        new Encoder(input.toString(), mapping.toString(), output.toString()).encode();
+        return Files.readString(output, StandardCharsets.UTF_8);
+    }
+
+    private Path csv(String text) throws IOException {
+        return Files.writeString(dir.resolve("map.csv"), text, StandardCharsets.UTF_8);
+    }
+}
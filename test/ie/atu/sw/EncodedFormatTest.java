@@ -0,0 +1,208 @@
+package ie.atu.sw;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+    /* Every EncodedFormat through the file Encoder and Decoder: the BINARY
+     * and HUFFMAN files byte for byte for a short text, and round trips
+     * through each encode and decode mode, up to HUFFMAN files of several
+     * blocks. A truncated file must fail rather than decode to less text.
+     */
+public class EncodedFormatTest {
+    private static final String MAPPING = "the,0\ncat,1\nsat,2\non,3\nmat,4\n@@s,5\n@@ing,6\n";
+    private static final String TEXT = "the cat sat\non the mats  zebra\nthe mat\n";
+    private static final int ENCODE_MODES = 5; // See encode()
+    private static final int DECODE_MODES = 5; // See decode()
+    private static final String DECODED = "the cat sat on the mats  zebra the mat" + System.lineSeparator();
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void binaryLayout() throws IOException {
+        byte[] expected = concat(header(EncodedFormat.BINARY_MAGIC),
+                new byte[] { 0 << 2, 1 << 2, 2 << 2, 3 << 2, 0 << 2, 4 << 2, 5 << 2 | 1, // the cat sat on the mat @@s
+                        0 << 2 | 2, // The second space as empty raw text
+                        5 << 2 | 2, 'z', 'e', 'b', 'r', 'a', 0 << 2, 4 << 2 });
+        assertArrayEquals(expected, Files.readAllBytes(encode(EncodedFormat.BINARY, TEXT)));
+    }
+
+    @Test
+    void huffmanLayout() throws IOException {
+        // The BINARY tokens above as one block: 8 symbols, "zebra" and its length in the side section
+        byte[] tokens = { 0, 4, 8, 12, 0, 16, 21, 2, 22, 'z', 'e', 'b', 'r', 'a', 0, 16 };
+        ByteArrayOutputStream block = new ByteArrayOutputStream();
+        try (HuffmanOutputStream huffman = new HuffmanOutputStream(block)) {
+            huffman.write(tokens, 0, tokens.length);
+        }
+        assertArrayEquals(concat(header(EncodedFormat.HUFFMAN_MAGIC), block.toByteArray()),
+                Files.readAllBytes(encode(EncodedFormat.HUFFMAN, TEXT)));
+    }
+
+    @Test
+    void formatsAreDetected() throws IOException {
+        for (EncodedFormat format : EncodedFormat.values()) {
+            assertEquals(format, EncodedFormat.detect(encode(format, TEXT).toString()));
+        }
+    }
+
+    @Test
+    void everyFormatRoundTrips() throws IOException {
+        for (EncodedFormat format : EncodedFormat.values()) {
+            for (int encodeMode = 0; encodeMode < ENCODE_MODES; encodeMode++) {
+                Path encoded = encode(format, TEXT, encodeMode);
+                for (int decodeMode = 0; decodeMode < DECODE_MODES; decodeMode++) {
+                    assertEquals(DECODED, decode(encoded, decodeMode),
+                            format + " encode mode " + encodeMode + " decode mode " + decodeMode);
+                }
+            }
+        }
+    }
+
+    @Test
+    void emptyInputRoundTrips() throws IOException {
+        for (EncodedFormat format : EncodedFormat.values()) {
+            assertEquals(System.lineSeparator(), decode(encode(format, ""), 0), format.name());
+        }
+    }
+
+    @Test
+    void huffmanRoundTripsManyBlocks() throws IOException {
+        StringBuilder text = new StringBuilder();
+        String[] words = { "the", "cat", "sat", "on", "mat", "mats", "sating", "dog", "x" };
+        Random random = new Random(7);
+        for (int i = 0; i < HuffmanOutputStream.BLOCK_TOKENS * 2 + 500; i++) {
+            text.append(i % 10 == 9 ? "\n" : " ");
+            text.append(random.nextInt(20) == 0 ? "w" + random.nextInt(10_000) : words[random.nextInt(words.length)]);
+        }
+        String expected = decode(encode(EncodedFormat.BINARY, text.toString()), 0);
+        for (int encodeMode = 0; encodeMode < ENCODE_MODES; encodeMode++) {
+            Path encoded = encode(EncodedFormat.HUFFMAN, text.toString(), encodeMode);
+            for (int decodeMode = 0; decodeMode < DECODE_MODES; decodeMode++) {
+                assertEquals(expected, decode(encoded, decodeMode), "encode mode " + encodeMode + " decode mode "
+                        + decodeMode);
+            }
+        }
+    }
+
+    @Test
+    void utf8RoundTripsThroughMappedModes() throws IOException {
+        // Not through the Reader based modes, they use the platform charset
+        for (EncodedFormat format : EncodedFormat.values()) {
+            Path encoded = encode(format, "the caf\u00e9 sat \u732b\n", 3);
+            assertEquals("the caf\u00e9 sat \u732b" + System.lineSeparator(), decode(encoded, 4), format.name());
+        }
+    }
+
+    @Test
+    void truncatedFilesFail() throws IOException {
+        // Cut inside "zebra", and inside the last HUFFMAN block
+        byte[] binary = Files.readAllBytes(encode(EncodedFormat.BINARY, TEXT));
+        assertFailsToDecode(write("binary", Arrays.copyOf(binary, 12 + 11)));
+        byte[] huffman = Files.readAllBytes(encode(EncodedFormat.HUFFMAN, TEXT));
+        assertFailsToDecode(write("huffman", Arrays.copyOf(huffman, huffman.length - 2)));
+    }
+
+    // The Decoder wraps what went wrong reading the file
+    private void assertFailsToDecode(Path encoded) {
+        RuntimeException e = assertThrows(RuntimeException.class, () -> decode(encoded, 0));
+        assertTrue(e.getCause() instanceof IOException, e.toString());
+    }
+
+    private Path encode(EncodedFormat format, String text) throws IOException {
+        return encode(format, text, 0);
+    }
+
+    // Modes: 0 encode(), 1 encodeStream(), 2 encodeParallel(), 3 encodeMapped(), 4 encodePipelined()
+    private Path encode(EncodedFormat format, String text, int mode) throws IOException {
+        Path input = dir.resolve("in.txt");
+        Path output = dir.resolve("out." + format + "." + mode);
+        Files.writeString(input, text, StandardCharsets.UTF_8);
+        Encoder encoder = new Encoder(input.toString(), mapping().toString(), output.toString());
+        encoder.setProgressListener(new NoOpProgressListener());
+        encoder.setFormat(format);
+        switch (mode) {
+            case 0:
+                encoder.encode();
+                break;
+            case 1:
+                encoder.encodeStream(16);
+                break;
+            case 2:
+                encoder.encodeParallel(3, 8);
+                break;
+            case 3:
+                encoder.encodeMapped();
+                break;
+            default:
+                encoder.encodePipelined(16);
+                break;
+        }
+        return output;
+    }
+
+    // Modes: 0 decode(), 1 decodeStream(), 2 decodeParallel(), 3 decodePipelined(), 4 decodeUtf8()
+    private String decode(Path encoded, int mode) throws IOException {
+        Path output = dir.resolve("decoded.txt");
+        Decoder decoder = new Decoder(encoded.toString(), mapping().toString(), output.toString());
+        decoder.setProgressListener(new NoOpProgressListener());
+        switch (mode) {
+            case 0:
+                decoder.decode();
+                break;
+            case 1:
+                decoder.decodeStream(16);
+                break;
+            case 2:
+                decoder.decodeParallel(3, 8);
+                break;
+            case 3:
+                decoder.decodePipelined(16);
+                break;
+            default:
+                decoder.decodeUtf8(16);
+                break;
+        }
+        return Files.readString(output, StandardCharsets.UTF_8);
+    }
+
+    private Path write(String name, byte[] bytes) throws IOException {
+        return Files.write(dir.resolve(name), bytes);
+    }
+
+    private Path mapping() throws IOException {
+        Path mapping = dir.resolve("map.csv");
+        if (!Files.exists(mapping)) {
+            Files.writeString(mapping, MAPPING, StandardCharsets.UTF_8);
+        }
+        return mapping;
+    }
+
+    private byte[] header(byte[] magic) throws IOException {
+        ByteArrayOutputStream header = new ByteArrayOutputStream();
+        header.write(magic);
+        new DataOutputStream(header).writeLong(Dictionary.load(mapping().toString()).fingerprint());
+        return header.toByteArray();
+    }
+
+    private static byte[] concat(byte[] first, byte[] second) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        out.write(first);
+        out.write(second);
+        return out.toByteArray();
+    }
+}
@@ -0,0 +1,132 @@
+package ie.atu.sw;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+    /* Each of the Encoder's modes against encode(), which is the reference:
+     * every mode must write the same file for the same input and mapping.
+     */
+public class EncoderTest {
+    static final String MAPPING = "the,0\ncat,1\nsat,2\non,3\nmat,4\nca,5\n@@s,6\n@@ing,7\n";
+    static final String TEXT = "the cat sat\non the mats  zebra\r\ncats sating\tthe catalog\n\n  mat  \n";
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void encodesLongestPrefixThenSuffix() throws IOException {
+        // Known suffix, hex remainder, a word with no known prefix, and "x" for each empty word
+        assertEquals("[0,1,2,3,0,4,6,x,7a65627261x,1,6,2,696e6709746865x,1,616c6f67x,x,x,x,4]"
+                + System.lineSeparator(), encode(TEXT));
+    }
+
+    @Test
+    void streamMatchesEncode() throws IOException {
+        String expected = encode(TEXT);
+        for (int chunk : new int[] { 1, 2, 3, 7, 64, 8192 }) {
+            Encoder encoder = encoder(TEXT);
+            encoder.encodeStream(chunk);
+            assertEquals(expected, output(), "chunks of " + chunk);
+        }
+    }
+
+    @Test
+    void streamMatchesEncodeOnEmptyInput() throws IOException {
+        String expected = encode("");
+        encoder("").encodeStream(16);
+        assertEquals(expected, output());
+    }
+
+    @Test
+    void parallelMatchesEncode() throws IOException {
+        StringBuilder text = new StringBuilder(TEXT);
+        for (int i = 0; i < 500; i++) {
+            text.append(i % 3 == 0 ? "  " : " ").append(i % 7 == 0 ? "catsing" : "the");
+            text.append(i % 11 == 0 ? "\r\n" : "");
+        }
+        for (Segmentation segmentation : Segmentation.values()) {
+            for (EncodedFormat format : EncodedFormat.values()) {
+                String expected = encode(text.toString(), segmentation, format);
+                for (int threads : new int[] { 1, 2, 4 }) {
+                    for (int segment : new int[] { 1, 5, 64, 1 << 16 }) {
+                        Encoder encoder = encoder(text.toString());
+                        encoder.setSegmentation(segmentation);
+                        encoder.setFormat(format);
+                        encoder.encodeParallel(threads, segment);
+                        assertEquals(expected, output(), segmentation + " " + format + " threads " + threads
+                                + " segments of " + segment);
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    void parallelMatchesEncodeAtTheEdges() throws IOException {
+        for (String text : new String[] { "", "   ", "\n\n", "the", "  the  ", "the\r\n\r\ncat  " }) {
+            String expected = encode(text);
+            encoder(text).encodeParallel(2, 1);
+            assertEquals(expected, output(), "\"" + text + "\"");
+        }
+    }
+
+    @Test
+    void mappedMatchesEncode() throws IOException {
+        // ASCII only, encode() reads the input in the platform charset
+        for (String text : new String[] { TEXT, "", "  \r\n ", "the", "cat  sat\r", "catsing mat\n\n" }) {
+            for (Segmentation segmentation : Segmentation.values()) {
+                for (EncodedFormat format : EncodedFormat.values()) {
+                    String expected = encode(text, segmentation, format);
+                    Encoder encoder = encoder(text);
+                    encoder.setSegmentation(segmentation);
+                    encoder.setFormat(format);
+                    encoder.encodeMapped();
+                    assertEquals(expected, output(), "\"" + text + "\" " + segmentation + " " + format);
+                }
+            }
+        }
+    }
+
+    @Test
+    void mappedReadsUtf8() throws IOException {
+        // The mapping is read as UTF-8 too, so the keys match
+        Files.writeString(dir.resolve("in.txt"), "caf\u00e9 caf\u00e9s \u732bx", StandardCharsets.UTF_8);
+        Path mapping = Files.writeString(dir.resolve("map.csv"), "caf\u00e9,0\n\u732b,1\n@@s,2\n",
+                StandardCharsets.UTF_8);
+        new Encoder(dir.resolve("in.txt").toString(), mapping.toString(), dir.resolve("out.txt").toString())
+                .encodeMapped();
+        assertEquals("[0,0,2,1,78x]" + System.lineSeparator(), output());
+    }
+
+    // encode() of the text, as the file it writes
+    String encode(String text) throws IOException {
+        return encode(text, Segmentation.GREEDY, EncodedFormat.TEXT);
+    }
+
+    String encode(String text, Segmentation segmentation, EncodedFormat format) throws IOException {
+        Encoder encoder = encoder(text);
+        encoder.setSegmentation(segmentation);
+        encoder.setFormat(format);
+        encoder.encode();
+        return output();
+    }
+
+    Encoder encoder(String text) throws IOException {
+        Path input = dir.resolve("in.txt");
+        Path mapping = dir.resolve("map.csv");
+        Files.writeString(input, text, StandardCharsets.UTF_8);
+        Files.writeString(mapping, MAPPING, StandardCharsets.UTF_8);
+        return new Encoder(input.toString(), mapping.toString(), dir.resolve("out.txt").toString());
+    }
+
+    String output() throws IOException {
+        return Files.readString(dir.resolve("out.txt"), StandardCharsets.ISO_8859_1); // Binary too
+    }
+}
@@ -0,0 +1,115 @@
+package ie.atu.sw;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+    /* The serve mode over loopback HTTP: /encode must return the same bytes
+     * as the file Encoder, /decode must give the text back, and a bad
+     * request must get a status and its reason rather than a cut off body.
+     */
+public class EncodingServerTest {
+    private static final String TEXT = "the cat sat\non the mats  zebra\nthe mat\n";
+
+    @TempDir
+    Path dir;
+    private EncodingServer server;
+    private final HttpClient client = HttpClient.newHttpClient();
+
+    @BeforeEach
+    void start() throws IOException {
+        Files.writeString(dir.resolve("map.csv"), "the,0\ncat,1\nsat,2\non,3\nmat,4\n@@s,5\n",
+                StandardCharsets.UTF_8);
+        Files.writeString(dir.resolve("other.csv"), "zebra,0\n", StandardCharsets.UTF_8);
+        server = new EncodingServer(List.of(map("map.csv"), map("other.csv")), 0, 2);
+        server.start();
+    }
+
+    @AfterEach
+    void stop() {
+        server.stop();
+    }
+
+    @Test
+    void encodesLikeTheEncoder() throws Exception {
+        for (EncodedFormat format : new EncodedFormat[] { EncodedFormat.TEXT, EncodedFormat.BINARY }) {
+            HttpResponse<byte[]> response = post("/encode?format=" + format.name().toLowerCase(), TEXT.getBytes());
+            assertEquals(200, response.statusCode());
+            assertArrayEquals(encode(format, "map.csv"), response.body(), format.name());
+        }
+        HttpResponse<byte[]> other = post("/encode?map=other.csv", TEXT.getBytes());
+        assertArrayEquals(encode(EncodedFormat.TEXT, "other.csv"), other.body());
+        // An unknown format falls back to text like every other setting
+        assertArrayEquals(encode(EncodedFormat.TEXT, "map.csv"), post("/encode?format=zip", TEXT.getBytes()).body());
+    }
+
+    @Test
+    void decodesWhatItEncoded() throws Exception {
+        for (String format : new String[] { "text", "binary" }) {
+            byte[] encoded = post("/encode?format=" + format, TEXT.getBytes()).body();
+            HttpResponse<byte[]> decoded = post("/decode", encoded);
+            assertEquals(200, decoded.statusCode());
+            assertEquals("the cat sat on the mats  zebra the mat" + System.lineSeparator(),
+                    new String(decoded.body(), StandardCharsets.UTF_8), format);
+        }
+    }
+
+    @Test
+    void listsTheMaps() throws Exception {
+        HttpResponse<String> response = client.send(HttpRequest.newBuilder(uri("/maps")).build(),
+                HttpResponse.BodyHandlers.ofString());
+        assertEquals("map.csv\nother.csv\n", response.body());
+    }
+
+    @Test
+    void badRequestsGetAStatus() throws Exception {
+        assertEquals(400, post("/encode?map=missing.csv", TEXT.getBytes()).statusCode());
+        byte[] binary = encode(EncodedFormat.BINARY, "map.csv");
+        byte[] truncated = Arrays.copyOf(binary, binary.length - 4); // Cut inside "zebra"
+        assertEquals(400, post("/decode", truncated).statusCode());
+        HttpResponse<String> get = client.send(HttpRequest.newBuilder(uri("/encode")).build(),
+                HttpResponse.BodyHandlers.ofString());
+        assertEquals(405, get.statusCode());
+    }
+
+    private HttpResponse<byte[]> post(String path, byte[] body) throws Exception {
+        HttpRequest request = HttpRequest.newBuilder(uri(path))
+                .POST(HttpRequest.BodyPublishers.ofByteArray(body)).build();
+        return client.send(request, HttpResponse.BodyHandlers.ofByteArray());
+    }
+
+    private URI uri(String path) {
+        return URI.create("http://127.0.0.1:" + server.port() + path);
+    }
+
+    // What the file Encoder writes for TEXT
+    private byte[] encode(EncodedFormat format, String mapName) throws IOException {
+        Path input = dir.resolve("in.txt");
+        Path output = dir.resolve("out.enc");
+        Files.writeString(input, TEXT, StandardCharsets.UTF_8);
+        Encoder encoder = new Encoder(input.toString(), map(mapName), output.toString());
+        encoder.setProgressListener(new NoOpProgressListener());
+        encoder.setFormat(format);
+        encoder.encode();
+        return Files.readAllBytes(output);
+    }
+
+    private String map(String name) {
+        return dir.resolve(name).toString();
+    }
+}
@@ -0,0 +1,99 @@
+package ie.atu.sw;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+    /* The code lengths HuffmanCode.lengths() picks, the canonical codes the
+     * constructor hands out for them and the checks that keep a corrupt
+     * table out of the decoder.
+     */
+public class HuffmanCodeTest {
+
+    @Test
+    void lengthsFollowTheCounts() {
+        assertArrayEquals(new int[] { 3, 3, 2, 1 }, HuffmanCode.lengths(new long[] { 1, 1, 2, 4 }, 4));
+        assertArrayEquals(new int[] { 1, 1 }, HuffmanCode.lengths(new long[] { 7, 1 }, 2));
+    }
+
+    @Test
+    void loneSymbolGetsOneBit() {
+        assertArrayEquals(new int[] { 1 }, HuffmanCode.lengths(new long[] { 42 }, 1));
+    }
+
+    @Test
+    void lengthsAreLimited() {
+        // Fibonacci counts make the deepest possible tree, 39 levels for 40 symbols
+        int n = 40;
+        long[] counts = new long[n];
+        counts[0] = 1;
+        counts[1] = 1;
+        for (int i = 2; i < n; i++) {
+            counts[i] = counts[i - 1] + counts[i - 2];
+        }
+        int[] lengths = HuffmanCode.lengths(counts, n);
+        long space = 0;
+        for (int length : lengths) {
+            assertTrue(length >= 1 && length <= HuffmanCode.MAX_LENGTH, "length " + length);
+            space += 1L << (HuffmanCode.MAX_LENGTH - length);
+        }
+        assertEquals(1L << HuffmanCode.MAX_LENGTH, space, "code must stay complete");
+        for (int i = 1; i < n; i++) {
+            assertTrue(lengths[i] <= lengths[i - 1], "a commoner symbol must not get a longer code");
+        }
+    }
+
+    @Test
+    void codesAreCanonical() {
+        // Shorter codes first, then by value within a length
+        long[] values = { 10, 20, 30, 40 };
+        HuffmanCode code = new HuffmanCode(values, new int[] { 2, 3, 1, 3 }, 4);
+        assertCode(code, 0, 0b10, 2);
+        assertCode(code, 1, 0b110, 3);
+        assertCode(code, 2, 0b0, 1);
+        assertCode(code, 3, 0b111, 3);
+    }
+
+    @Test
+    void decodesEveryCode() {
+        int n = 300;
+        long[] values = new long[n];
+        long[] counts = new long[n];
+        for (int i = 0; i < n; i++) {
+            values[i] = i * 4L;
+            counts[i] = 1 + (i * 7919L) % 1000; // Spread lengths past the fast table's bits
+        }
+        int[] lengths = HuffmanCode.lengths(counts, n);
+        HuffmanCode code = new HuffmanCode(values, lengths, n);
+        for (int i = 0; i < n; i++) {
+            long bits = (long) code.code(i) << (64 - code.length(i));
+            int entry = code.decode(bits | (1L << (63 - code.length(i)))); // Whatever follows is ignored
+            assertEquals(code.length(i), entry & 31);
+            assertEquals(values[i], code.symbol(entry >>> 5));
+        }
+    }
+
+    @Test
+    void unusedBitsDoNotDecode() {
+        HuffmanCode code = new HuffmanCode(new long[] { 5 }, new int[] { 1 }, 1);
+        assertEquals(-1, code.decode(1L << 63));
+        assertEquals(1, code.decode(0) & 31);
+    }
+
+    @Test
+    void rejectsImpossibleLengths() {
+        long[] values = { 1, 2, 3 };
+        assertThrows(IllegalArgumentException.class, () -> new HuffmanCode(values, new int[] { 1, 1, 1 }, 3));
+        assertThrows(IllegalArgumentException.class, () -> new HuffmanCode(values, new int[] { 0, 1, 2 }, 3));
+        assertThrows(IllegalArgumentException.class,
+                () -> new HuffmanCode(values, new int[] { 1, 2, HuffmanCode.MAX_LENGTH + 1 }, 3));
+    }
+
+    private static void assertCode(HuffmanCode code, int i, int bits, int length) {
+        assertEquals(length, code.length(i), "length of symbol " + i);
+        assertEquals(bits, code.code(i), "code of symbol " + i);
+    }
+}
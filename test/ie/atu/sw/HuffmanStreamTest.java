@@ -0,0 +1,248 @@
+package ie.atu.sw;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+    /* HuffmanOutputStream and HuffmanInputStream on their own: the block
+     * layout byte for byte, token streams of every kind through one block
+     * and several, and blocks that are cut short or don't add up.
+     */
+public class HuffmanStreamTest {
+
+    @Test
+    void blockLayout() throws IOException {
+        // WORD 0, WORD 0, WORD 1, WORD 0: symbols 0 and 4, one bit each
+        byte[] tokens = { 0x00, 0x00, 0x04, 0x00 };
+        byte[] expected = {
+                4, // Tokens
+                2, 0, 4, // Symbols, values as gaps
+                0, 0, // Lengths less one, 5 bits each: 00000 00000
+                1, 0b0010_0000, // Coded bytes, codes 0 0 1 0
+                0 // No side section
+        };
+        assertArrayEquals(expected, huffman(tokens));
+        assertArrayEquals(tokens, unhuffman(expected));
+    }
+
+    @Test
+    void sideSectionLayout() throws IOException {
+        // WORD 0, then RAW "hi": the RAW symbol is 2 and its length and text go to the side section
+        byte[] tokens = { 0x00, 2 << 2 | BinaryEncodedWriter.RAW, 'h', 'i' };
+        byte[] expected = {
+                2, // Tokens
+                2, 0, 2, // Symbols 0 and 2
+                0, 0, // One bit each
+                1, 0b0100_0000, // Codes 0 1
+                3, // Side bytes: the length 2, 'h', 'i'
+                3, 2, 'h' - 2, 'i' - 'h', // Side symbols
+                0b0000_1000, 0b0100_0000, // Lengths 2 2 1 less one: 00001 00001 00000
+                1, (byte) 0b1011_0000 // 2 -> 10, 'h' -> 11, 'i' -> 0
+        };
+        assertArrayEquals(expected, huffman(tokens));
+        assertArrayEquals(tokens, unhuffman(expected));
+    }
+
+    @Test
+    void emptyStreamWritesNothing() throws IOException {
+        assertEquals(0, huffman(new byte[0]).length);
+        assertEquals(-1, new HuffmanInputStream(new ByteArrayInputStream(new byte[0])).read());
+    }
+
+    @Test
+    void roundTripsEveryKindOfToken() throws IOException {
+        byte[] tokens = tokens(new Random(1), 5_000);
+        assertArrayEquals(tokens, unhuffman(huffman(tokens)));
+    }
+
+    @Test
+    void roundTripsManyBlocks() throws IOException {
+        byte[] tokens = tokens(new Random(2), HuffmanOutputStream.BLOCK_TOKENS * 2 + 1234);
+        byte[] coded = huffman(tokens);
+        assertTrue(blocks(coded) >= 3, "expected several blocks");
+        assertArrayEquals(tokens, unhuffman(coded));
+
+        // A reader asking for a byte or a few at a time gets the same stream back
+        assertArrayEquals(tokens, read(new HuffmanInputStream(new ByteArrayInputStream(coded)), 1));
+        assertArrayEquals(tokens, read(new HuffmanInputStream(new ByteArrayInputStream(coded)), 7));
+    }
+
+    @Test
+    void writesSplitAnywhere() throws IOException {
+        // BinaryEncodedWriter writes a header and then the text, but any split must do
+        byte[] tokens = tokens(new Random(3), 2_000);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        HuffmanOutputStream huffman = new HuffmanOutputStream(out);
+        Random random = new Random(4);
+        for (int i = 0; i < tokens.length;) {
+            int n = Math.min(tokens.length - i, random.nextInt(9));
+            if (n == 1) {
+                huffman.write(tokens[i]);
+            } else {
+                huffman.write(tokens, i, n);
+            }
+            i += n;
+            if (random.nextInt(50) == 0) {
+                huffman.flush(); // Cuts a block if no token is half written
+            }
+        }
+        huffman.flush();
+        assertArrayEquals(tokens, unhuffman(out.toByteArray()));
+    }
+
+    @Test
+    void rejectsTruncatedBlocks() throws IOException {
+        byte[] coded = huffman(tokens(new Random(5), 3_000));
+        for (int length = 1; length < coded.length; length += Math.max(1, coded.length / 97)) {
+            byte[] truncated = Arrays.copyOf(coded, length);
+            assertThrows(IOException.class, () -> unhuffman(truncated), "cut at " + length);
+        }
+    }
+
+    @Test
+    void rejectsTokenCountsOutOfRange() {
+        assertCorrupt(new byte[] { 0 }); // No tokens
+        assertCorrupt(varint(HuffmanOutputStream.BLOCK_TOKENS + 1));
+        assertCorrupt(new byte[] { 2, 3, 0, 4, 8 }); // More symbols than tokens
+        assertCorrupt(new byte[] { 2, 0 }); // No symbols
+    }
+
+    @Test
+    void rejectsImpossibleCodeLengths() {
+        // Three one-bit codes don't fit (Kraft), nor does a length over HuffmanCode.MAX_LENGTH
+        assertCorrupt(new byte[] { 3, 3, 0, 4, 4, 0, 0, 1, 0, 0 });
+        assertCorrupt(new byte[] { 1, 1, 0, (byte) 0b1111_1000, 1, 0, 0 });
+    }
+
+    @Test
+    void rejectsBitsThatAreNoCode() {
+        // One symbol with code 0, the coded byte starts with a 1
+        assertCorrupt(new byte[] { 1, 1, 0, 0, 1, (byte) 0x80, 0 });
+    }
+
+    @Test
+    void rejectsTruncatedSideSection() {
+        // A RAW token of 5 bytes, but the side section is its length and then only 2 bytes
+        byte[] shortText = { 1, 1, 2, 0, 1, 0, 3, 1, 5, 0, 1, 0 }; // Side code of just the byte 5, coded 0
+        assertThrows(EOFException.class, () -> unhuffman(shortText));
+
+        // The side section's coded bytes end early
+        byte[] block = { 2, 2, 0, 2, 0, 0, 1, 0b0100_0000, 3, 3, 2, 'h' - 2, 'i' - 'h', 0b0000_1000, 0b0100_0000, 1 };
+        assertThrows(EOFException.class, () -> unhuffman(block));
+    }
+
+    @Test
+    void rejectsSideBytesOverAByte() {
+        assertCorrupt(new byte[] { 1, 1, 2, 0, 1, 0, 1, 1, (byte) 0x80, 2, 0, 1, 0 });
+    }
+
+    private static void assertCorrupt(byte[] coded) {
+        assertThrows(IOException.class, () -> unhuffman(coded));
+    }
+
+    // Random tokens as BinaryEncodedWriter writes them, common words far more often than rare ones
+    private static byte[] tokens(Random random, int count) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        for (int i = 0; i < count; i++) {
+            int pick = random.nextInt(100);
+            if (pick < 80) {
+                int code = (int) Math.min(Math.abs(random.nextGaussian()) * 300, 100_000);
+                writeVarint(out, (long) code << 2 | (pick < 65 ? BinaryEncodedWriter.WORD : BinaryEncodedWriter.SUFFIX));
+            } else if (pick < 98) {
+                byte[] text = ("w" + random.nextInt(1_000_000) + "é").getBytes(StandardCharsets.UTF_8);
+                writeVarint(out, (long) text.length << 2 | BinaryEncodedWriter.RAW);
+                out.write(text, 0, text.length);
+            } else {
+                byte[] text = ("c" + random.nextInt(50)).getBytes(StandardCharsets.UTF_8);
+                writeVarint(out, ((long) text.length << 1 | random.nextInt(2)) << 2 | BinaryEncodedWriter.CODE);
+                out.write(text, 0, text.length);
+            }
+        }
+        return out.toByteArray();
+    }
+
+    private static byte[] huffman(byte[] tokens) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (HuffmanOutputStream huffman = new HuffmanOutputStream(out)) {
+            huffman.write(tokens, 0, tokens.length);
+        }
+        return out.toByteArray();
+    }
+
+    private static byte[] unhuffman(byte[] coded) throws IOException {
+        return read(new HuffmanInputStream(new ByteArrayInputStream(coded)), 64 * 1024);
+    }
+
+    private static byte[] read(InputStream in, int bufferSize) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[bufferSize];
+        int n;
+        while ((n = in.read(buffer, 0, buffer.length)) > 0) {
+            out.write(buffer, 0, n);
+        }
+        return out.toByteArray();
+    }
+
+    // Walks the block headers without decoding anything
+    private static int blocks(byte[] coded) {
+        int[] position = { 0 };
+        int blocks = 0;
+        while (position[0] < coded.length) {
+            blocks++;
+            readVarint(coded, position); // Tokens
+            skipCode(coded, position);
+            position[0] += (int) readVarint(coded, position);
+            long side = readVarint(coded, position);
+            if (side > 0) {
+                skipCode(coded, position);
+                position[0] += (int) readVarint(coded, position);
+            }
+        }
+        return blocks;
+    }
+
+    private static void skipCode(byte[] coded, int[] position) {
+        long symbols = readVarint(coded, position);
+        for (long i = 0; i < symbols; i++) {
+            readVarint(coded, position);
+        }
+        position[0] += (int) ((5 * symbols + 7) / 8);
+    }
+
+    private static long readVarint(byte[] bytes, int[] position) {
+        long value = 0;
+        for (int shift = 0;; shift += 7) {
+            int b = bytes[position[0]++] & 0xFF;
+            value |= (long) (b & 0x7F) << shift;
+            if (b < 0x80) {
+                return value;
+            }
+        }
+    }
+
+    private static byte[] varint(long value) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        writeVarint(out, value);
+        return out.toByteArray();
+    }
+
+    private static void writeVarint(ByteArrayOutputStream out, long value) {
+        while ((value & ~0x7FL) != 0) {
+            out.write((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.write((int) value);
+    }
+}
@@ -0,0 +1,124 @@
+package ie.atu.sw;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+    /* Dictionary fingerprints, the header the binary formats write them in
+     * and LiveDictionary swaps: binary output must still decode after the
+     * dictionary it was encoded with has been swapped out, as long as it is
+     * still retained, and a file whose dictionary isn't kept must be refused
+     * rather than decoded.
+     */
+public class LiveDictionaryTest {
+    private static final String MAPPING = "the,0\ncat,1\nsat,2\n@@s,3\n";
+    private static final String SWAPPED = "cat,0\nthe,1\nsat,2\n@@s,3\n"; // Same words, other codes
+    private static final String TEXT = "the cats sat\n";
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void fingerprintIsOfTheEntries() throws IOException {
+        long fingerprint = Dictionary.fromCsv(new StringReader(MAPPING)).fingerprint();
+        assertEquals(fingerprint, Dictionary.fromCsv(new StringReader("@@s,3\nsat,2\nthe,0\ncat,1\n")).fingerprint());
+        Path csv = Files.writeString(dir.resolve("map.csv"), MAPPING, StandardCharsets.UTF_8);
+        assertEquals(fingerprint, Dictionary.load(Dictionary.compile(csv.toString()).toString()).fingerprint());
+        assertNotEquals(fingerprint, Dictionary.fromCsv(new StringReader(SWAPPED)).fingerprint());
+    }
+
+    @Test
+    void swappedOutDictionaryStillDecodes() throws IOException {
+        Dictionary first = Dictionary.fromCsv(new StringReader(MAPPING));
+        Dictionary second = Dictionary.fromCsv(new StringReader(SWAPPED));
+        LiveDictionary live = new LiveDictionary(first);
+        byte[] encoded = encode(live);
+        assertSame(first, live.swap(second));
+        assertSame(second, live.current());
+        assertEquals("the cats sat" + System.lineSeparator(), decode(live, encoded));
+    }
+
+    @Test
+    void unknownDictionaryIsRefused() throws IOException {
+        byte[] encoded = encode(new LiveDictionary(Dictionary.fromCsv(new StringReader(MAPPING))));
+        encoded[EncodedFormat.MAGIC_LENGTH] ^= 0x5A; // A fingerprint no dictionary has
+        Path input = Files.write(dir.resolve("in.enc"), encoded);
+        Path mapping = Files.writeString(dir.resolve("map.csv"), MAPPING, StandardCharsets.UTF_8);
+        Decoder decoder = new Decoder(input.toString(), mapping.toString(), dir.resolve("out.txt").toString());
+        decoder.setProgressListener(new NoOpProgressListener());
+        IOException e = assertThrows(IOException.class, decoder::decode);
+        assertTrue(e.getMessage().contains("another dictionary"), e.getMessage());
+    }
+
+    @Test
+    void onlyTheLastRetainedAreKept() throws IOException {
+        Dictionary first = Dictionary.fromCsv(new StringReader(MAPPING));
+        Dictionary second = Dictionary.fromCsv(new StringReader(SWAPPED));
+        Dictionary third = Dictionary.fromCsv(new StringReader(MAPPING + "on,4\n"));
+        LiveDictionary live = new LiveDictionary(first, 1);
+        byte[] encoded = encode(live);
+        live.swap(second);
+        assertSame(first, live.snapshot(first.fingerprint()));
+        live.swap(third);
+        assertNull(live.snapshot(first.fingerprint()));
+        assertSame(second, live.snapshot(second.fingerprint()));
+        assertSame(third, live.snapshot(third.fingerprint()));
+        assertThrows(IOException.class, () -> decode(live, encoded));
+
+        live.swap(first); // Back in use, so it isn't kept as well
+        assertSame(first, live.snapshot(first.fingerprint()));
+        assertSame(third, live.snapshot(third.fingerprint()));
+        assertNull(live.snapshot(second.fingerprint()));
+        live.retire();
+        assertNull(live.snapshot(third.fingerprint()));
+        assertEquals("the cats sat" + System.lineSeparator(), decode(live, encoded));
+    }
+
+    @Test
+    void otherDictionariesAreNotFound() throws IOException {
+        LiveDictionary live = new LiveDictionary(Dictionary.fromCsv(new StringReader(MAPPING)));
+        byte[] encoded = encode(live);
+        Decoder decoder = new Decoder(Dictionary.fromCsv(new StringReader(SWAPPED)));
+        decoder.setProgressListener(new NoOpProgressListener());
+        assertThrows(IOException.class, () -> decoder.decode(new ByteArrayInputStream(encoded), new StringWriter()));
+        assertThrows(IllegalArgumentException.class, () -> new LiveDictionary(live.current(), -1));
+    }
+
+    @Test
+    void reloadNeedsAFile() {
+        LiveDictionary live = new LiveDictionary(Dictionary.fromCsv(new StringReader(MAPPING)));
+        assertThrows(IllegalStateException.class, live::reload);
+    }
+
+    private static byte[] encode(LiveDictionary live) throws IOException {
+        Encoder encoder = new Encoder(live);
+        encoder.setProgressListener(new NoOpProgressListener());
+        encoder.setFormat(EncodedFormat.BINARY);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        encoder.encode(new ByteArrayInputStream(TEXT.getBytes(StandardCharsets.UTF_8)), out);
+        return out.toByteArray();
+    }
+
+    private static String decode(LiveDictionary live, byte[] encoded) throws IOException {
+        Decoder decoder = new Decoder(live);
+        decoder.setProgressListener(new NoOpProgressListener());
+        StringWriter out = new StringWriter();
+        decoder.decode(new ByteArrayInputStream(encoded), out);
+        return out.toString();
+    }
+}
@@ -0,0 +1,100 @@
+package ie.atu.sw;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+    /* The Metrics of encode and decode runs: how each word or code was
+     * handled must come out the same in every mode, the byte counts must
+     * be the files' sizes, and the reports must carry the fields.
+     */
+public class MetricsTest {
+    private static final String MAPPING = "the,0\ncat,1\n@@s,2\n";
+    private static final String TEXT = "the cats zebra catx\nthe the\n";
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void encodeEventsAreTheSameInEveryMode() throws IOException {
+        Path input = Files.writeString(dir.resolve("in.txt"), TEXT, StandardCharsets.UTF_8);
+        for (int mode = 0; mode < 3; mode++) {
+            Encoder encoder = new Encoder(input.toString(), map(), dir.resolve("out.txt").toString());
+            encoder.setProgressListener(new NoOpProgressListener());
+            if (mode == 0) {
+                encoder.encode();
+            } else if (mode == 1) {
+                encoder.encodeStream(4);
+            } else {
+                encoder.encodeParallel(2, 4);
+            }
+            Metrics metrics = encoder.metrics();
+            String run = "encode mode " + mode;
+            assertEquals("encode", metrics.operation());
+            assertEquals(3, metrics.count(Metrics.Event.FULL_WORD), run);
+            assertEquals(1, metrics.count(Metrics.Event.PREFIX_SUFFIX), run);
+            assertEquals(1, metrics.count(Metrics.Event.PREFIX_HEX), run);
+            assertEquals(1, metrics.count(Metrics.Event.FULL_HEX), run);
+            assertEquals(Files.size(input), metrics.bytesIn(), run);
+            assertEquals(Files.size(dir.resolve("out.txt")), metrics.bytesOut(), run);
+            assertTrue(metrics.totalNanos() > 0, run);
+        }
+    }
+
+    @Test
+    void decodeEventsAreTheSameInEveryMode() throws IOException {
+        Path input = Files.writeString(dir.resolve("in.txt"), "[0,1,2,7a65627261x,1,78x,zz,0]",
+                StandardCharsets.UTF_8);
+        for (int mode = 0; mode < 3; mode++) {
+            Decoder decoder = new Decoder(input.toString(), map(), dir.resolve("out.txt").toString());
+            decoder.setProgressListener(new NoOpProgressListener());
+            if (mode == 0) {
+                decoder.decode();
+            } else if (mode == 1) {
+                decoder.decodeStream(4);
+            } else {
+                decoder.decodeParallel(2, 4);
+            }
+            Metrics metrics = decoder.metrics();
+            String run = "decode mode " + mode;
+            assertEquals(4, metrics.count(Metrics.Event.WORD_CODE), run);
+            assertEquals(1, metrics.count(Metrics.Event.SUFFIX_CODE), run);
+            assertEquals(2, metrics.count(Metrics.Event.HEX_WORD), run);
+            assertEquals(1, metrics.count(Metrics.Event.UNKNOWN_CODE), run);
+            assertEquals(Files.size(dir.resolve("out.txt")), metrics.bytesOut(), run);
+        }
+    }
+
+    @Test
+    void reportsAreWrittenNextToTheOutput() throws IOException {
+        Path input = Files.writeString(dir.resolve("in.txt"), TEXT, StandardCharsets.UTF_8);
+        for (ReportFormat format : List.of(ReportFormat.JSON, ReportFormat.CSV)) {
+            Encoder encoder = new Encoder(input.toString(), map(), dir.resolve("out.txt").toString());
+            encoder.setProgressListener(new NoOpProgressListener());
+            encoder.setReportFormat(format);
+            encoder.encode();
+            String report = Files.readString(dir.resolve("out.txt.metrics." + format.extension()));
+            if (format == ReportFormat.JSON) {
+                assertTrue(report.contains("\"operation\": \"encode\""), report);
+                assertTrue(report.contains("\"prefixSuffix\": 1"), report);
+            } else {
+                List<String> lines = report.lines().toList();
+                assertEquals(2, lines.size());
+                int column = List.of(lines.get(0).split(",")).indexOf("fullHex");
+                assertEquals("1", lines.get(1).split(",")[column]);
+            }
+        }
+    }
+
+    private String map() throws IOException {
+        return Files.writeString(dir.resolve("map.csv"), MAPPING, StandardCharsets.UTF_8).toString();
+    }
+}
@@ -0,0 +1,79 @@
+package ie.atu.sw;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+    /* Pipeline and its BufferPipes: bytes must come out in order through
+     * buffers far smaller than the input, and a failing stage must be
+     * reported with its own error rather than the ones it causes in the
+     * stages stopped after it.
+     */
+public class PipelineTest {
+
+    @Test
+    void copiesInOrderThroughSmallBuffers() throws IOException {
+        byte[] bytes = new byte[100_000];
+        new Random(7).nextBytes(bytes);
+        for (int bufferSize : new int[] { 1, 7, 4096 }) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            new Pipeline(2, bufferSize).run(new ByteArrayInputStream(bytes), out, PipelineTest::copy);
+            assertArrayEquals(bytes, out.toByteArray(), "buffer size " + bufferSize);
+        }
+    }
+
+    @Test
+    void stageMayStopReadingEarly() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        new Pipeline(2, 16).run(new ByteArrayInputStream(new byte[100_000]), out, (in, sink) -> {
+            sink.write(in.readNBytes(10));
+        });
+        assertEquals(10, out.size());
+    }
+
+    @Test
+    void stageFailureIsRethrown() {
+        IOException e = assertThrows(IOException.class, () -> new Pipeline(2, 16).run(
+                new ByteArrayInputStream(new byte[100_000]), new ByteArrayOutputStream(), (in, sink) -> {
+                    in.readNBytes(100);
+                    throw new IOException("stage");
+                }));
+        assertEquals("stage", e.getMessage());
+    }
+
+    @Test
+    void readerAndWriterFailuresAreRethrown() {
+        InputStream failingIn = new InputStream() {
+            @Override
+            public int read() throws IOException {
+                throw new IOException("reader");
+            }
+        };
+        IOException reader = assertThrows(IOException.class,
+                () -> new Pipeline(2, 16).run(failingIn, new ByteArrayOutputStream(), PipelineTest::copy));
+        assertEquals("reader", reader.getMessage());
+
+        OutputStream failingOut = new OutputStream() {
+            @Override
+            public void write(int b) throws IOException {
+                throw new IOException("writer");
+            }
+        };
+        IOException writer = assertThrows(IOException.class, () -> new Pipeline(2, 16).run(
+                new ByteArrayInputStream(new byte[100_000]), failingOut, PipelineTest::copy));
+        assertEquals("writer", writer.getMessage());
+    }
+
+    private static void copy(InputStream in, OutputStream out) throws IOException {
+        in.transferTo(out);
+    }
+}
@@ -0,0 +1,136 @@
+package ie.atu.sw;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+    /* PrefixTrie against the substring loop it replaced: the longest key
+     * that starts a word, and exact lookups of a range, for random keys
+     * over a small alphabet so that keys share long prefixes. The word
+     * trie is checked as Dictionary builds it from the CSV and as it is
+     * mapped back from a compiled file.
+     */
+public class PrefixTrieTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void findsTheLongestPrefix() throws IOException {
+        for (PrefixTrie trie : tries(Map.of("a", "1", "abc", "2", "abcde", "3", "b", "4", "d", "5"))) {
+            assertMatch(trie, "abcd", "abc");
+            assertMatch(trie, "abcdef", "abcde");
+            assertMatch(trie, "ab", "a");
+            assertMatch(trie, "da", "d");
+            assertEquals(-1, trie.longestPrefix("cab", 0, 3));
+            assertEquals(-1, trie.longestPrefix("", 0, 0));
+        }
+    }
+
+    @Test
+    void matchesTheSubstringLoop() throws IOException {
+        Random random = new Random(11);
+        Map<String, String> entries = new HashMap<>();
+        for (int i = 0; i < 2_000; i++) {
+            entries.put(randomWord(random, 1 + random.nextInt(8)), Integer.toString(i));
+        }
+        for (PrefixTrie trie : tries(entries)) {
+            assertMatchesLoop(trie, entries, random);
+        }
+    }
+
+    @Test
+    void utf8TrieMatchesTheCharTrie() throws IOException {
+        // Keys of one, two, three and four byte chars, the last a surrogate pair
+        String[] alphabet = { "a", "\u00e9", "\u732b", "\ud83d\ude00" };
+        Random random = new Random(12);
+        Map<String, String> entries = new HashMap<>();
+        for (int i = 0; i < 500; i++) {
+            entries.put(randomWord(random, alphabet, 1 + random.nextInt(5)), Integer.toString(i));
+        }
+        Dictionary dictionary = dictionary(entries);
+        PrefixTrie chars = dictionary.words();
+        PrefixTrie bytes = dictionary.utf8Words();
+        for (int i = 0; i < 5_000; i++) {
+            String word = randomWord(random, alphabet, random.nextInt(8));
+            byte[] utf8 = word.getBytes(StandardCharsets.UTF_8);
+            int charNode = chars.longestPrefix(word, 0, word.length());
+            int byteNode = bytes.longestPrefix(utf8, 0, utf8.length);
+            if (charNode < 0) {
+                assertEquals(-1, byteNode, word);
+            } else {
+                String prefix = word.substring(0, chars.length(charNode));
+                assertEquals(prefix.getBytes(StandardCharsets.UTF_8).length, bytes.length(byteNode), word);
+                assertEquals(chars.code(charNode), bytes.code(byteNode), word);
+            }
+            int found = bytes.find(utf8, 0, utf8.length);
+            assertEquals(entries.get(word), found < 0 ? null : bytes.code(found), word);
+        }
+    }
+
+    private static void assertMatchesLoop(PrefixTrie trie, Map<String, String> entries, Random random) {
+        for (int i = 0; i < 20_000; i++) {
+            String text = "#" + randomWord(random, random.nextInt(12)) + "#";
+            String expected = null;
+            for (int j = text.length() - 1; j > 1 && expected == null; j--) {
+                if (entries.containsKey(text.substring(1, j))) {
+                    expected = text.substring(1, j);
+                }
+            }
+            int node = trie.longestPrefix(text, 1, text.length() - 1);
+            if (expected == null) {
+                assertEquals(-1, node, text);
+            } else {
+                assertEquals(expected.length(), trie.length(node), text);
+                assertEquals(entries.get(expected), trie.code(node), text);
+            }
+
+            int found = trie.find(text, 1, text.length() - 1);
+            String word = text.substring(1, text.length() - 1);
+            assertEquals(entries.get(word), found < 0 ? null : trie.code(found), text);
+        }
+    }
+
+    // The word trie built from a CSV of the entries, and the same trie compiled and mapped back
+    private PrefixTrie[] tries(Map<String, String> entries) throws IOException {
+        Path compiled = Dictionary.compile(csv(entries).toString());
+        return new PrefixTrie[] { dictionary(entries).words(), Dictionary.load(compiled.toString()).words() };
+    }
+
+    private Dictionary dictionary(Map<String, String> entries) throws IOException {
+        return Dictionary.fromCsv(csv(entries).toString());
+    }
+
+    private Path csv(Map<String, String> entries) throws IOException {
+        StringBuilder csv = new StringBuilder();
+        entries.forEach((word, code) -> csv.append(word).append(',').append(code).append('\n'));
+        return Files.writeString(dir.resolve("map.csv"), csv, StandardCharsets.UTF_8);
+    }
+
+    private static void assertMatch(PrefixTrie trie, String word, String key) {
+        int node = trie.longestPrefix(word, 0, word.length());
+        assertEquals(key.length(), trie.length(node), word);
+        assertEquals(trie.code(trie.find(key, 0, key.length())), trie.code(node), word);
+    }
+
+    private static String randomWord(Random random, int length) {
+        return randomWord(random, new String[] { "a", "b", "c", "d" }, length);
+    }
+
+    private static String randomWord(Random random, String[] alphabet, int length) {
+        StringBuilder word = new StringBuilder();
+        for (int i = 0; i < length; i++) {
+            word.append(alphabet[random.nextInt(alphabet.length)]);
+        }
+        return word.toString();
+    }
+}
@@ -0,0 +1,55 @@
+package ie.atu.sw;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import org.junit.jupiter.api.Test;
+
+    /* Which ProcessingMode the menu and batch mode pick when several
+     * settings are on at once, and how report() names the ones left out.
+     */
+public class ProcessingModeTest {
+
+    @Test
+    void firstModeThatIsOnWins() {
+        Settings settings = settings();
+        assertEquals(ProcessingMode.WHOLE_FILE, ProcessingMode.of(settings));
+        settings.streamMode = true;
+        assertEquals(ProcessingMode.STREAM, ProcessingMode.of(settings));
+        settings.pipelined = true;
+        assertEquals(ProcessingMode.PIPELINED, ProcessingMode.of(settings));
+        settings.mappedInput = true;
+        assertEquals(ProcessingMode.MAPPED, ProcessingMode.of(settings));
+        settings.threads = 4;
+        assertEquals(ProcessingMode.PARALLEL, ProcessingMode.of(settings));
+    }
+
+    @Test
+    void batchModeStreamsEachFile() {
+        Settings settings = settings();
+        settings.threads = 4;
+        assertEquals(ProcessingMode.STREAM, ProcessingMode.perFile(settings));
+        settings.pipelined = true;
+        assertEquals(ProcessingMode.PIPELINED, ProcessingMode.perFile(settings));
+    }
+
+    @Test
+    void reportNamesTheIgnoredSettings() {
+        Settings settings = settings();
+        assertEquals("Whole file", ProcessingMode.of(settings).report(settings));
+        settings.streamMode = true;
+        settings.pipelined = true;
+        settings.mappedInput = true;
+        assertEquals("Memory-mapped UTF-8 (Pipelined I/O, Streaming ignored)",
+                ProcessingMode.of(settings).report(settings));
+    }
+
+    // Every mode off, without reading settings.properties
+    private static Settings settings() {
+        Settings settings = new Settings();
+        settings.threads = 1;
+        settings.streamMode = false;
+        settings.pipelined = false;
+        settings.mappedInput = false;
+        return settings;
+    }
+}
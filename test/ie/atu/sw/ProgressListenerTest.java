@@ -0,0 +1,127 @@
+package ie.atu.sw;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+    /* What the Encoder and Decoder tell their ProgressListener: one start,
+     * progress that never goes back and ends at the total, then finish and
+     * the completion message, and finish even when a run fails.
+     */
+public class ProgressListenerTest {
+    private static final String MAPPING = "the,0\ncat,1\nsat,2\n@@s,3\n";
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void everyEncodeModeReportsToTheEnd() throws IOException {
+        Path input = input("the cats sat\n".repeat(5_000));
+        for (int mode = 0; mode < 3; mode++) {
+            Recorder recorder = new Recorder();
+            Encoder encoder = new Encoder(input.toString(), map(), dir.resolve("out.txt").toString());
+            encoder.setProgressListener(recorder);
+            if (mode == 0) {
+                encoder.encode();
+            } else if (mode == 1) {
+                encoder.encodeStream(1024);
+            } else {
+                encoder.encodeParallel(2, 1024);
+            }
+            recorder.assertComplete("encode mode " + mode);
+        }
+    }
+
+    @Test
+    void everyDecodeModeReportsToTheEnd() throws IOException {
+        Path input = input("[" + "0,1,3,2,".repeat(5_000) + "0]");
+        for (int mode = 0; mode < 3; mode++) {
+            Recorder recorder = new Recorder();
+            Decoder decoder = new Decoder(input.toString(), map(), dir.resolve("out.txt").toString());
+            decoder.setProgressListener(recorder);
+            if (mode == 0) {
+                decoder.decode();
+            } else if (mode == 1) {
+                decoder.decodeStream(1024);
+            } else {
+                decoder.decodeParallel(2, 1024);
+            }
+            recorder.assertComplete("decode mode " + mode);
+        }
+    }
+
+    @Test
+    void failedRunStillFinishes() throws IOException {
+        Path input = input("the zebra\n");
+        Encoder encoder = new Encoder(input.toString(), map(), dir.resolve("out.bin").toString());
+        encoder.setProgressListener(new NoOpProgressListener());
+        encoder.setFormat(EncodedFormat.BINARY);
+        encoder.encode();
+        byte[] encoded = Files.readAllBytes(dir.resolve("out.bin"));
+        Files.write(dir.resolve("out.bin"), Arrays.copyOf(encoded, encoded.length - 1));
+
+        Recorder recorder = new Recorder();
+        Decoder decoder = new Decoder(dir.resolve("out.bin").toString(), map(), dir.resolve("out.txt").toString());
+        decoder.setProgressListener(recorder);
+        assertThrows(RuntimeException.class, () -> decoder.decodeStream(1024));
+        assertTrue(recorder.events.contains("finish"), recorder.events.toString());
+    }
+
+    private Path input(String text) throws IOException {
+        return Files.writeString(dir.resolve("in.txt"), text, StandardCharsets.UTF_8);
+    }
+
+    private String map() throws IOException {
+        return Files.writeString(dir.resolve("map.csv"), MAPPING, StandardCharsets.UTF_8).toString();
+    }
+
+    // Keeps every call, progress only as the count so far
+    private static class Recorder implements ProgressListener {
+        final List<String> events = new ArrayList<>();
+        long total = -1;
+        long done = -1;
+        boolean backwards;
+
+        @Override
+        public synchronized void start(long total) {
+            events.add("start");
+            this.total = total;
+        }
+
+        @Override
+        public synchronized void progress(long done) {
+            backwards |= done < this.done;
+            this.done = done;
+        }
+
+        @Override
+        public synchronized void finish() {
+            events.add("finish");
+        }
+
+        @Override
+        public synchronized void message(String text) {
+            events.add("message");
+        }
+
+        void assertComplete(String run) {
+            assertEquals(List.of("start", "finish", "message"), events.subList(events.indexOf("start"), events.size()),
+                    run);
+            assertTrue(total > 0, run);
+            assertEquals(total, done, run);
+            assertFalse(backwards, run + " went backwards");
+        }
+    }
+}
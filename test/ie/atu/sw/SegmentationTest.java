@@ -0,0 +1,124 @@
+package ie.atu.sw;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+    /* The optimal Segmentation modes against GREEDY: whatever split they
+     * pick, the Decoder must read back the same characters, and neither
+     * may write more than greedy does in the format it writes. Spaces can
+     * differ, as greedy's word code + hex tail fallback decodes to two words
+     * and both modes still use it when it is cheapest.
+     */
+public class SegmentationTest {
+    private static final String MAPPING = "the,0\ncat,1\nsat,2\non,3\nmat,4\nca,5\nt,6\n"
+            + "@@s,7\n@@ing,8\n@@t,9\n@@ting,10\n";
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void chainsSuffixesWhereGreedyFallsBackToHex() throws IOException {
+        // Greedy takes "cat" and writes "sing" as hex, FEWEST_BYTES chains @@s and @@ing
+        String n = System.lineSeparator();
+        assertEquals("[1,73696e67x]" + n, encode("catsing", Segmentation.GREEDY));
+        assertEquals("cat sing" + n, decode(encode("catsing", Segmentation.GREEDY)));
+        assertEquals("[1,7,8]" + n, encode("catsing", Segmentation.FEWEST_BYTES));
+        assertEquals("catsing" + n, decode(encode("catsing", Segmentation.FEWEST_BYTES)));
+        // Whole hex is a single code but larger than greedy, so FEWEST_TOKENS takes the best pair
+        assertEquals("[63617473x,8]" + n, encode("catsing", Segmentation.FEWEST_TOKENS));
+    }
+
+    @Test
+    void fewestTokensTakesOneCodeThatFits() throws IOException {
+        // Greedy writes "t" and then "q" as hex, "tq" as one hex code is no larger
+        String n = System.lineSeparator();
+        assertEquals("[6,71x]" + n, encode("tq", Segmentation.GREEDY));
+        assertEquals("[7471x]" + n, encode("tq", Segmentation.FEWEST_TOKENS));
+    }
+
+    @Test
+    void everyModeDecodesToTheSameChars() throws IOException {
+        String text = randomText(new Random(5), 3_000);
+        String greedy = encode(text, Segmentation.GREEDY);
+        String expected = text.replaceAll("\\s", "");
+        for (Segmentation mode : Segmentation.values()) {
+            String encoded = encode(text, mode);
+            assertEquals(expected, decode(encoded).replaceAll("\\s", ""), mode.name());
+            assertTrue(encoded.length() <= greedy.length(), mode + " " + encoded.length() + " > " + greedy.length());
+        }
+        String tokens = encode(text, Segmentation.FEWEST_TOKENS);
+        assertTrue(codes(tokens) <= codes(greedy), codes(tokens) + " > " + codes(greedy));
+        assertTrue(codes(tokens) < codes(encode(text, Segmentation.FEWEST_BYTES)));
+    }
+
+    @Test
+    void binaryIsSizedAsBinary() throws IOException {
+        // Hex costs two chars a byte in text but one byte in binary, so the splits and sizes differ by format
+        String text = randomText(new Random(9), 3_000);
+        long greedy = encode(text, Segmentation.GREEDY, EncodedFormat.BINARY);
+        long tokens = encode(text, Segmentation.FEWEST_TOKENS, EncodedFormat.BINARY);
+        long bytes = encode(text, Segmentation.FEWEST_BYTES, EncodedFormat.BINARY);
+        assertTrue(bytes <= tokens && tokens <= greedy, bytes + " / " + tokens + " / " + greedy);
+        for (Segmentation mode : Segmentation.values()) {
+            encode(text, mode, EncodedFormat.BINARY);
+            assertEquals(text.replaceAll("\\s", ""), decodeFile().replaceAll("\\s", ""), mode.name());
+        }
+    }
+
+    private static long codes(String encoded) {
+        return encoded.chars().filter(c -> c == ',').count() + 1;
+    }
+
+    // Words glued from mapped pieces and a few stray letters, so many splits are possible
+    private static String randomText(Random random, int words) {
+        String[] pieces = { "the", "cat", "sat", "on", "mat", "ca", "t", "s", "ing", "ting", "q", "zz", "a" };
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < words; i++) {
+            int count = 1 + random.nextInt(4);
+            for (int j = 0; j < count; j++) {
+                text.append(pieces[random.nextInt(pieces.length)]);
+            }
+            text.append(i % 12 == 11 ? "\n" : " ");
+        }
+        return text.toString();
+    }
+
+    private String encode(String text, Segmentation mode) throws IOException {
+        encode(text, mode, EncodedFormat.TEXT);
+        return Files.readString(dir.resolve("out.txt"), StandardCharsets.UTF_8);
+    }
+
+    // Size of the encoded file
+    private long encode(String text, Segmentation mode, EncodedFormat format) throws IOException {
+        Files.writeString(dir.resolve("in.txt"), text, StandardCharsets.UTF_8);
+        Encoder encoder = new Encoder(dir.resolve("in.txt").toString(), mapping(), dir.resolve("out.txt").toString());
+        encoder.setSegmentation(mode);
+        encoder.setFormat(format);
+        encoder.encode();
+        return Files.size(dir.resolve("out.txt"));
+    }
+
+    private String decode(String encoded) throws IOException {
+        Files.writeString(dir.resolve("out.txt"), encoded, StandardCharsets.UTF_8);
+        return decodeFile();
+    }
+
+    // Decodes out.txt, whatever its format
+    private String decodeFile() throws IOException {
+        new Decoder(dir.resolve("out.txt").toString(), mapping(), dir.resolve("decoded.txt").toString()).decode();
+        return Files.readString(dir.resolve("decoded.txt"), StandardCharsets.UTF_8);
+    }
+
+    private String mapping() throws IOException {
+        return Files.writeString(dir.resolve("map.csv"), MAPPING, StandardCharsets.UTF_8).toString();
+    }
+}
@@ -0,0 +1,22 @@
+package ie.atu.sw;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import org.junit.jupiter.api.Test;
+
+    /* Settings.parsePositive(), which the settings file, the menu prompts
+     * and the batch options all read their numbers through.
+     */
+public class SettingsTest {
+
+    @Test
+    void parsePositiveFallsBackToTheDefault() {
+        assertEquals(8, Settings.parsePositive("8", 3));
+        assertEquals(8, Settings.parsePositive(" 8\n", 3));
+        assertEquals(3, Settings.parsePositive("0", 3));
+        assertEquals(3, Settings.parsePositive("-8", 3));
+        assertEquals(3, Settings.parsePositive("eight", 3));
+        assertEquals(3, Settings.parsePositive("", 3));
+        assertEquals(3, Settings.parsePositive(null, 3));
+    }
+}
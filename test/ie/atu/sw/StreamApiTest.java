@@ -0,0 +1,118 @@
+package ie.atu.sw;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+    /* Encoder(Dictionary) and Decoder(Dictionary) with no files: the String,
+     * Reader, InputStream and channel methods must write what the file
+     * methods write, and one Dictionary must serve several threads at once.
+     */
+public class StreamApiTest {
+    private static final String MAPPING = "the,0\ncat,1\nsat,2\non,3\nmat,4\n@@s,5\n@@ing,6\n";
+    private static final String TEXT = "the cat sat\non the mats  zebra\r\ncats sating\tthe catalog\n";
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void stringsMatchTheFileMethods() throws IOException {
+        Dictionary dictionary = Dictionary.fromCsv(new StringReader(MAPPING));
+        String encoded = new Encoder(dictionary).encode(TEXT);
+        assertEquals(new String(encodeFile(EncodedFormat.TEXT), StandardCharsets.US_ASCII), encoded);
+        assertEquals(decodeFile(encoded), new Decoder(dictionary).decode(encoded));
+    }
+
+    @Test
+    void streamsMatchTheFileMethods() throws IOException {
+        Dictionary dictionary = Dictionary.fromCsv(new StringReader(MAPPING));
+        byte[] text = TEXT.getBytes(StandardCharsets.UTF_8);
+        for (EncodedFormat format : new EncodedFormat[] { EncodedFormat.TEXT, EncodedFormat.BINARY }) {
+            byte[] expected = encodeFile(format);
+            Encoder encoder = new Encoder(dictionary);
+            encoder.setProgressListener(new NoOpProgressListener());
+            encoder.setFormat(format);
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            encoder.encode(new ByteArrayInputStream(text), out);
+            assertArrayEquals(expected, out.toByteArray(), format + " InputStream");
+            out.reset();
+            encoder.encode(Channels.newChannel(new ByteArrayInputStream(text)), out);
+            assertArrayEquals(expected, out.toByteArray(), format + " channel");
+
+            Decoder decoder = new Decoder(dictionary);
+            decoder.setProgressListener(new NoOpProgressListener());
+            StringWriter decoded = new StringWriter();
+            decoder.decode(new ByteArrayInputStream(expected), decoded);
+            assertEquals(decodeFile(new String(encodeFile(EncodedFormat.TEXT), StandardCharsets.US_ASCII)),
+                    decoded.toString(), format.name());
+        }
+    }
+
+    @Test
+    void fileMethodsNeedFiles() {
+        Dictionary dictionary = Dictionary.fromCsv(new StringReader(MAPPING));
+        assertThrows(IllegalStateException.class, () -> new Encoder(dictionary).encode());
+        assertThrows(IllegalStateException.class, () -> new Decoder(dictionary).decode());
+    }
+
+    @Test
+    void oneDictionaryServesManyThreads() throws Exception {
+        Dictionary dictionary = Dictionary.fromCsv(new StringReader(MAPPING));
+        String expected = new Encoder(dictionary).encode(TEXT);
+        ExecutorService pool = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<String>> results = new ArrayList<>();
+            for (int i = 0; i < 32; i++) {
+                results.add(pool.submit(() -> new Encoder(dictionary).encode(TEXT)));
+            }
+            for (Future<String> result : results) {
+                assertEquals(expected, result.get());
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    // What the file Encoder writes for TEXT
+    private byte[] encodeFile(EncodedFormat format) throws IOException {
+        Path input = Files.writeString(dir.resolve("in.txt"), TEXT, StandardCharsets.UTF_8);
+        Path output = dir.resolve("out.enc");
+        Encoder encoder = new Encoder(input.toString(), mapping().toString(), output.toString());
+        encoder.setProgressListener(new NoOpProgressListener());
+        encoder.setFormat(format);
+        encoder.encode();
+        return Files.readAllBytes(output);
+    }
+
+    // What the file Decoder writes for encoded
+    private String decodeFile(String encoded) throws IOException {
+        Path input = Files.writeString(dir.resolve("in.enc"), encoded, StandardCharsets.UTF_8);
+        Path output = dir.resolve("out.txt");
+        Decoder decoder = new Decoder(input.toString(), mapping().toString(), output.toString());
+        decoder.setProgressListener(new NoOpProgressListener());
+        decoder.decode();
+        return Files.readString(output, StandardCharsets.UTF_8);
+    }
+
+    private Path mapping() throws IOException {
+        return Files.writeString(dir.resolve("map.csv"), MAPPING, StandardCharsets.UTF_8);
+    }
+}
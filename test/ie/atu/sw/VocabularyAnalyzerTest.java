@@ -0,0 +1,90 @@
+package ie.atu.sw;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+    /* VocabularyAnalyzer over an Encoder run: the raw words and remainders
+     * it ranks, the same in every encode mode, and the extended mapping it
+     * writes, which must keep the existing lines and make the next run
+     * smaller.
+     */
+public class VocabularyAnalyzerTest {
+    private static final String MAPPING = "the,0\ncat,1\n@@s,2";
+    private static final String TEXT = "zebra the zebra cats catx\ncatx zebra catx yak a,b\n";
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void ranksRawTextBySaving() throws IOException {
+        // zebra 3 * (11 - 1), @@x 3 * (3 - 1), yak 1 * (7 - 1), a,b 1 * (7 - 1)
+        for (int mode = 0; mode < 3; mode++) {
+            List<VocabularyAnalyzer.Candidate> candidates = analyze(TEXT, mode).candidates(3);
+            assertEquals(List.of("zebra", "@@x", "a,b", "yak"), keys(candidates), "encode mode " + mode);
+            assertEquals(3, candidates.get(0).occurrences());
+            assertEquals(30, candidates.get(0).bytesSaved());
+            assertEquals(6, candidates.get(1).bytesSaved());
+        }
+    }
+
+    @Test
+    void extendedMappingAppendsTheBest() throws IOException {
+        VocabularyAnalyzer vocabulary = analyze(TEXT, 0);
+        Path target = VocabularyAnalyzer.extendedPath(dir.resolve("map.csv"));
+        assertEquals(dir.resolve("map-extended.csv"), target);
+
+        // "a,b" can't be a CSV key, so the third entry is yak
+        List<VocabularyAnalyzer.Candidate> added = vocabulary.writeExtendedMapping(map(), target, 3);
+        assertEquals(List.of("zebra", "@@x", "yak"), keys(added));
+        String n = System.lineSeparator();
+        assertEquals(MAPPING + n + "zebra,3" + n + "@@x,4" + n + "yak,5" + n, Files.readString(target));
+
+        long before = Files.size(dir.resolve("out.txt"));
+        encode(TEXT, target.toString(), 0);
+        assertTrue(Files.size(dir.resolve("out.txt")) < before);
+    }
+
+    @Test
+    void refusesToOverwriteTheMapping() throws IOException {
+        VocabularyAnalyzer vocabulary = analyze(TEXT, 0);
+        assertThrows(IOException.class, () -> vocabulary.writeExtendedMapping(map(), dir.resolve("map.csv"), 3));
+    }
+
+    private VocabularyAnalyzer analyze(String text, int mode) throws IOException {
+        return encode(text, map(), mode).vocabulary();
+    }
+
+    private Encoder encode(String text, String mapping, int mode) throws IOException {
+        Path input = Files.writeString(dir.resolve("in.txt"), text, StandardCharsets.UTF_8);
+        Encoder encoder = new Encoder(input.toString(), mapping, dir.resolve("out.txt").toString());
+        encoder.setProgressListener(new NoOpProgressListener());
+        encoder.setVocabularyAnalysis(true);
+        if (mode == 0) {
+            encoder.encode();
+        } else if (mode == 1) {
+            encoder.encodeStream(4);
+        } else {
+            encoder.encodeParallel(2, 4);
+        }
+        return encoder;
+    }
+
+    private static List<String> keys(List<VocabularyAnalyzer.Candidate> candidates) {
+        return candidates.stream().map(VocabularyAnalyzer.Candidate::mappingKey).collect(Collectors.toList());
+    }
+
+    private String map() throws IOException {
+        return Files.writeString(dir.resolve("map.csv"), MAPPING, StandardCharsets.UTF_8).toString();
+    }
+}
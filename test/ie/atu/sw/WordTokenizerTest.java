@@ -0,0 +1,55 @@
+package ie.atu.sw;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+    /* WordTokenizer against what Encoder.encode() does to the whole text:
+     * join the lines with " ", trim and split(" "). Every text is fed in
+     * chunks of every size, so words, "\r\n" pairs and runs of spaces are
+     * cut at every point.
+     */
+public class WordTokenizerTest {
+    private static final String[] TEXTS = {
+            "the cat sat",
+            "  leading and trailing  ",
+            "two  spaces and\tone tab",
+            "lines\nand\r\nbreaks\rof\n\nevery kind\r\n",
+            "\n\n \r\n",
+            "",
+            "one",
+            " \u0001control\u0001 chars \u0001"
+    };
+
+    @Test
+    void matchesSplitForEveryChunkSize() throws IOException {
+        for (String text : TEXTS) {
+            List<String> expected = split(text);
+            for (int chunk = 1; chunk <= text.length() + 1; chunk++) {
+                assertEquals(expected, tokenize(text, chunk), "\"" + text + "\" in chunks of " + chunk);
+            }
+        }
+    }
+
+    // The words encode() gets from a text
+    private static List<String> split(String text) {
+        String joined = String.join(" ", text.lines().toList()) + " ";
+        return Arrays.asList(joined.trim().split(" "));
+    }
+
+    private static List<String> tokenize(String text, int chunkSize) throws IOException {
+        List<String> words = new ArrayList<>();
+        WordTokenizer tokenizer = new WordTokenizer(words::add);
+        char[] chars = text.toCharArray();
+        for (int i = 0; i < chars.length; i += chunkSize) {
+            tokenizer.feed(chars, i, Math.min(chunkSize, chars.length - i));
+        }
+        tokenizer.finish();
+        return words;
+    }
+}